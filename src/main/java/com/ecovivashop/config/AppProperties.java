@@ -10,6 +10,7 @@ import org.springframework.context.annotation.Configuration;
 public class AppProperties {
     
     private Upload upload = new Upload();
+    private Pedidos pedidos = new Pedidos();
     
     public Upload getUpload() {
         return upload;
@@ -19,6 +20,14 @@ public class AppProperties {
         this.upload = upload;
     }
     
+    public Pedidos getPedidos() {
+        return pedidos;
+    }
+    
+    public void setPedidos(Pedidos pedidos) {
+        this.pedidos = pedidos;
+    }
+    
     public static class Upload {
         private String path = "uploads";
         
@@ -30,4 +39,27 @@ public class AppProperties {
             this.path = path;
         }
     }
+    
+    public static class Pedidos {
+        // Prefijo de los números de pedido
+        private String prefijo = "ECO-";
+        // Identificador de esta instancia (0-1023), obligatorio y distinto en cada instancia
+        private Integer nodoId;
+        
+        public String getPrefijo() {
+            return prefijo;
+        }
+        
+        public void setPrefijo(String prefijo) {
+            this.prefijo = prefijo;
+        }
+        
+        public Integer getNodoId() {
+            return nodoId;
+        }
+        
+        public void setNodoId(Integer nodoId) {
+            this.nodoId = nodoId;
+        }
+    }
 }
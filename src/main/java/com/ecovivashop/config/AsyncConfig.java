@@ -0,0 +1,187 @@
+package com.ecovivashop.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Pools de hilos para trabajo en segundo plano. Cada pool está acotado en hilos
+ * y en cola para que un pico de peticiones no agote la memoria.
+ *
+ * Con spring.threads.virtual.enabled=true Spring Boot atiende las peticiones de
+ * Tomcat y las tareas programadas con hilos virtuales, y estos pools también los
+ * usan. Solo tiene efecto en Java 21 o superior; en versiones anteriores todo
+ * sigue con hilos de plataforma.
+ */
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AsyncConfig.class);
+    
+    private final boolean hilosVirtuales;
+    
+    public AsyncConfig(@Value("${spring.threads.virtual.enabled:false}") boolean hilosVirtuales) {
+        this.hilosVirtuales = hilosVirtuales;
+        if (hilosVirtuales && !hilosVirtualesDisponibles()) {
+            logger.warn("spring.threads.virtual.enabled activo pero Java {} no tiene hilos virtuales; "
+                + "se usan hilos de plataforma", Runtime.version().feature());
+        }
+    }
+    
+    /**
+     * Worker de la bandeja de salida de correos. Si la cola está llena la tarea
+     * se descarta: el correo sigue en la base de datos y lo recoge el sondeo periódico.
+     */
+    @Bean(name = "emailExecutor", destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor emailExecutor(@Value("${app.email.outbox.hilos:2}") int hilos) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("email-outbox-");
+        if (this.hilosVirtuales) {
+            usarHilosVirtualesSiHay(executor, "email-outbox-");
+        }
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * Recarga en segundo plano de las caches de productos. Si la cola se llena la
+     * recarga la hace el propio hilo que leyó la entrada, que es lo que ocurría
+     * sin recarga anticipada.
+     */
+    @Bean(name = "cacheExecutor", destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor cacheExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("cache-refresh-");
+        if (this.hilosVirtuales) {
+            usarHilosVirtualesSiHay(executor, "cache-refresh-");
+        }
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * Variantes redimensionadas de las imágenes de producto. Es trabajo de CPU y
+     * memoria, así que el pool es pequeño; si la cola se llena la variante la genera
+     * el hilo que subió la imagen, como antes.
+     */
+    @Bean(name = "imagenExecutor", destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor imagenExecutor(@Value("${app.imagenes.hilos:2}") int hilos) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("imagen-");
+        if (this.hilosVirtuales) {
+            usarHilosVirtualesSiHay(executor, "imagen-");
+        }
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * Cargas masivas de productos. Cada carga ocupa su hilo de principio a fin y
+     * abre una transacción por lote, así que caben pocas a la vez; si la cola está
+     * llena la carga se rechaza y el administrador lo vuelve a intentar más tarde.
+     */
+    @Bean(name = "cargaMasivaExecutor", destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor cargaMasivaExecutor(@Value("${app.productos.carga-masiva.hilos:2}") int hilos) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(10);
+        executor.setThreadNamePrefix("carga-masiva-");
+        if (this.hilosVirtuales) {
+            usarHilosVirtualesSiHay(executor, "carga-masiva-");
+        }
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * Réplica de los archivos subidos en el almacenamiento compartido (y su borrado).
+     * Es E/S de red; si la cola se llena, la réplica la hace el hilo que subió el
+     * archivo para no perder ninguna.
+     */
+    @Bean(name = "blobExecutor", destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor blobExecutor(@Value("${app.blobs.hilos:4}") int hilos) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("blob-");
+        if (this.hilosVirtuales) {
+            usarHilosVirtualesSiHay(executor, "blob-");
+        }
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * Autorización de pagos con tarjeta. Cada tarea pasa casi todo su tiempo esperando
+     * a la entidad bancaria, así que el pool puede ser grande y, en Java 21 o superior,
+     * sus hilos son virtuales aunque el modo general esté desactivado. Si la cola está
+     * llena la tarea se rechaza y la pasarela responde que está saturada, en lugar de
+     * dejar esperando al cliente.
+     */
+    @Bean(name = "procesadorPagoExecutor", destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor procesadorPagoExecutor(@Value("${app.pagos.hilos:50}") int hilos,
+                                                         @Value("${app.pagos.cola:500}") int cola) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(cola);
+        executor.setThreadNamePrefix("pago-");
+        usarHilosVirtualesSiHay(executor, "pago-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * Indica si la JVM soporta hilos virtuales (Java 21+).
+     */
+    public static boolean hilosVirtualesDisponibles() {
+        return Runtime.version().feature() >= 21;
+    }
+    
+    /**
+     * Sustituye los hilos de plataforma del pool por hilos virtuales cuando la JVM
+     * los soporta. El pool sigue acotado en hilos y en cola; en versiones
+     * anteriores queda como estaba.
+     */
+    public static void usarHilosVirtualesSiHay(ThreadPoolTaskExecutor executor, String prefijo) {
+        if (!hilosVirtualesDisponibles()) {
+            return;
+        }
+        executor.setThreadFactory(new VirtualThreadTaskExecutor(prefijo).getVirtualThreadFactory());
+    }
+}
@@ -0,0 +1,42 @@
+package com.ecovivashop.config;
+
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.ecovivashop.service.BlobStorage;
+import com.ecovivashop.service.LocalBlobStorage;
+import com.ecovivashop.service.S3BlobStorage;
+
+@Configuration
+public class BlobStorageConfig {
+
+    /**
+     * Almacenamiento compartido de los archivos subidos. Con "local" (por defecto) es
+     * el mismo directorio de la caché, o un montaje compartido si se indica otro;
+     * con "s3" cualquier servicio compatible (AWS S3, MinIO...).
+     */
+    @Bean
+    public BlobStorage blobStorage(
+            @Value("${app.blobs.almacenamiento:local}") String tipo,
+            @Value("${app.blobs.local.directorio:${app.upload.path:uploads}/blobs}") String directorio,
+            @Value("${app.blobs.s3.endpoint:}") String endpoint,
+            @Value("${app.blobs.s3.bucket:}") String bucket,
+            @Value("${app.blobs.s3.region:us-east-1}") String region,
+            @Value("${app.blobs.s3.access-key:}") String accessKey,
+            @Value("${app.blobs.s3.secret-key:}") String secretKey) {
+        switch (tipo.trim().toLowerCase()) {
+            case "local":
+                return new LocalBlobStorage(Paths.get(directorio));
+            case "s3":
+                if (endpoint.isBlank() || bucket.isBlank()) {
+                    throw new IllegalStateException("app.blobs.s3.endpoint y app.blobs.s3.bucket son obligatorios con almacenamiento s3");
+                }
+                return new S3BlobStorage(endpoint, bucket, region, accessKey, secretKey);
+            default:
+                throw new IllegalStateException("Tipo de almacenamiento de archivos desconocido: " + tipo);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.ecovivashop.config;
+
+import java.io.Serial;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Caché de segundo nivel de Hibernate sobre Google Guava, en memoria de cada
+ * nodo. Se activa con {@code hibernate.cache.region.factory_class}.
+ *
+ * Las regiones de entidades y de consultas son caches acotadas que expiran;
+ * la región de marcas de tiempo (última modificación de cada tabla) es un mapa
+ * sin expiración, como exige Hibernate para invalidar bien las consultas.
+ *
+ * La coherencia entre nodos la da {@link com.ecovivashop.service.InvalidacionCacheCluster},
+ * que desaloja en los demás nodos lo que cambia en uno.
+ */
+public class GuavaRegionFactory extends RegionFactoryTemplate {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final String MAX_ENTRADAS = "hibernate.cache.guava.max_entries";
+    public static final String EXPIRACION_SEGUNDOS = "hibernate.cache.guava.expiration_seconds";
+
+    private long maxEntradas = 10_000;
+    private long expiracionSegundos = 600;
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map<String, Object> configValues) {
+        this.maxEntradas = leer(configValues, MAX_ENTRADAS, this.maxEntradas);
+        this.expiracionSegundos = leer(configValues, EXPIRACION_SEGUNDOS, this.expiracionSegundos);
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        // Las regiones se liberan una a una con StorageAccess.release()
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+                                                                    DomainDataRegionBuildingContext buildingContext) {
+        return new GuavaStorageAccess(this.nuevaCache());
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName,
+                                                                  SessionFactoryImplementor sessionFactory) {
+        return new GuavaStorageAccess(this.nuevaCache());
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName,
+                                                                SessionFactoryImplementor sessionFactory) {
+        return new GuavaStorageAccess(new ConcurrentHashMap<>());
+    }
+
+    private ConcurrentMap<Object, Object> nuevaCache() {
+        Cache<Object, Object> cache = CacheBuilder.newBuilder()
+            .maximumSize(this.maxEntradas)
+            .expireAfterWrite(this.expiracionSegundos, TimeUnit.SECONDS)
+            .build();
+        return cache.asMap();
+    }
+
+    private static long leer(Map<String, Object> configValues, String clave, long porDefecto) {
+        Object valor = configValues.get(clave);
+        return valor == null ? porDefecto : Long.parseLong(valor.toString().trim());
+    }
+
+    /**
+     * Almacenamiento de una región sobre un mapa concurrente
+     */
+    static class GuavaStorageAccess implements DomainDataStorageAccess {
+
+        private final ConcurrentMap<Object, Object> datos;
+
+        GuavaStorageAccess(ConcurrentMap<Object, Object> datos) {
+            this.datos = datos;
+        }
+
+        @Override
+        public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+            return this.datos.get(key);
+        }
+
+        @Override
+        public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+            this.datos.put(key, value);
+        }
+
+        @Override
+        public void removeFromCache(Object key, SharedSessionContractImplementor session) {
+            this.datos.remove(key);
+        }
+
+        @Override
+        public void clearCache(SharedSessionContractImplementor session) {
+            this.datos.clear();
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return this.datos.containsKey(key);
+        }
+
+        @Override
+        public void evictData() {
+            this.datos.clear();
+        }
+
+        @Override
+        public void evictData(Object key) {
+            this.datos.remove(key);
+        }
+
+        @Override
+        public void release() {
+            this.datos.clear();
+        }
+    }
+}
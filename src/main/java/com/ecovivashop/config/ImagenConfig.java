@@ -1,6 +1,5 @@
 package com.ecovivashop.config;
 
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -8,15 +7,9 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @Configuration
 public class ImagenConfig implements WebMvcConfigurer {
     
-    @Value("${app.upload.path:uploads}")
-    private String uploadPath;
-    
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // Configurar el manejo de archivos estáticos para imágenes subidas
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:" + uploadPath + "/");
-        
+        // Las imágenes subidas (/uploads/**) no van aquí: las sirve ArchivoSubidoController
         // Mantener la configuración existente para archivos estáticos
         registry.addResourceHandler("/static/**")
                 .addResourceLocations("classpath:/static/");
@@ -1,8 +1,8 @@
 package com.ecovivashop.controller;
 
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.security.Principal;
+import java.time.YearMonth;
 import java.util.List;
 
 import org.springframework.stereotype.Controller;
@@ -18,18 +18,18 @@ import org.springframework.web.multipart.MultipartFile;
 import com.ecovivashop.entity.ImagenPerfil.TipoUsuario;
 import com.ecovivashop.entity.Usuario;
 import com.ecovivashop.service.ImagenService;
-import com.ecovivashop.service.PedidoService;
+import com.ecovivashop.service.MetricasStore;
 import com.ecovivashop.service.UsuarioService;
 
 @Controller
 public class AdminController extends BaseAdminController {
     private final ImagenService imagenService;
-    private final PedidoService pedidoService;
+    private final MetricasStore metricasStore;
 
     // Constructor manual
-    public AdminController(UsuarioService usuarioService, ImagenService imagenService, PedidoService pedidoService) {
+    public AdminController(UsuarioService usuarioService, ImagenService imagenService, MetricasStore metricasStore) {
         this.imagenService = imagenService;
-        this.pedidoService = pedidoService;
+        this.metricasStore = metricasStore;
     }// ========== RUTAS PRINCIPALES ==========
     
     // Dashboard empresarial principal 
@@ -101,22 +101,11 @@ public class AdminController extends BaseAdminController {
             Usuario usuario = this.usuarioService.findByEmail(principal.getName());
             model.addAttribute("usuario", usuario);
 
-            // Calcular estadísticas para el dashboard
-            System.out.println("🔍 AdminController: Calculando estadísticas para dashboard");
-            BigDecimal ventasMes = this.pedidoService.calcularVentasMesActual();
-            System.out.println("🔍 AdminController: Ventas del mes calculadas: " + ventasMes);
-            model.addAttribute("ventasMes", ventasMes);
-
-            // Calcular otras métricas útiles
-            Long totalClientes = this.usuarioService.contarUsuariosActivos();
-            model.addAttribute("totalClientes", totalClientes);
-
-            Long pedidosPendientes = this.pedidoService.contarPorEstado("PENDIENTE");
-            model.addAttribute("pedidosPendientes", pedidosPendientes);
-
-            // Contar productos activos (esto necesitaría un método en ProductoService)
-            // Por ahora usamos un valor por defecto
-            model.addAttribute("totalProductos", 136L);
+            // Estadísticas del dashboard (contadores en memoria, sin consultas)
+            model.addAttribute("ventasMes", this.metricasStore.ventas(YearMonth.now()));
+            model.addAttribute("totalClientes", this.metricasStore.usuariosActivos());
+            model.addAttribute("pedidosPendientes", this.metricasStore.pedidosEnEstado("PENDIENTE"));
+            model.addAttribute("totalProductos", this.metricasStore.productosActivos());
         } else {
             System.out.println("⚠️ AdminController: Usuario no autenticado");
         }
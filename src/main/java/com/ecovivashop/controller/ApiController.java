@@ -1,6 +1,8 @@
 package com.ecovivashop.controller;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +28,7 @@ import com.ecovivashop.entity.Producto;
 import com.ecovivashop.entity.Rol;
 import com.ecovivashop.entity.Usuario;
 import com.ecovivashop.service.InventarioService;
+import com.ecovivashop.service.MetricasStore;
 import com.ecovivashop.service.PedidoService;
 import com.ecovivashop.service.ProductoService;
 import com.ecovivashop.service.RolService;
@@ -41,16 +44,18 @@ public class ApiController {
     private final PedidoService pedidoService;
     private final InventarioService inventarioService;
     private final RolService rolService;
+    private final MetricasStore metricasStore;
 
     // Constructor manual
     public ApiController(UsuarioService usuarioService, ProductoService productoService,
                         PedidoService pedidoService, InventarioService inventarioService,
-                        RolService rolService) {
+                        RolService rolService, MetricasStore metricasStore) {
         this.usuarioService = usuarioService;
         this.productoService = productoService;
         this.pedidoService = pedidoService;
         this.inventarioService = inventarioService;
         this.rolService = rolService;
+        this.metricasStore = metricasStore;
     }
 
     // ========== DASHBOARD STATS ==========
@@ -59,26 +64,26 @@ public class ApiController {
         Map<String, Object> stats = new HashMap<>();
         
         try {
-            // Estadísticas de usuarios
-            stats.put("totalUsuarios", this.usuarioService.contarUsuariosActivos());
-            stats.put("totalClientes", this.usuarioService.contarClientes());
-            stats.put("totalAdmins", this.usuarioService.contarAdministradores());
-            stats.put("usuariosHoy", this.usuarioService.contarUsuariosRegistradosHoy());
+            // Estadísticas de usuarios (contadores en memoria, sin consultas)
+            stats.put("totalUsuarios", this.metricasStore.usuariosActivos());
+            stats.put("totalClientes", this.metricasStore.usuariosConRol("ROLE_CLIENTE"));
+            stats.put("totalAdmins", this.metricasStore.usuariosConRol("ROLE_ADMIN")
+                + this.metricasStore.usuariosConRol("ROLE_SUPER_ADMIN"));
+            stats.put("usuariosHoy", this.metricasStore.usuariosRegistrados(LocalDate.now()));
             
             // Estadísticas de productos
-            stats.put("totalProductos", this.productoService.contarProductosActivos());
-            stats.put("productosStock", this.inventarioService.contarConStock());
-            stats.put("productosAgotados", this.inventarioService.contarAgotados());
-            stats.put("stockBajo", this.inventarioService.contarConStockBajo());
+            stats.put("totalProductos", this.metricasStore.productosActivos());
+            stats.put("productosStock", this.metricasStore.inventarioConStock());
+            stats.put("productosAgotados", this.metricasStore.inventarioAgotado());
+            stats.put("stockBajo", this.metricasStore.inventarioStockBajo());
             
             // Estadísticas de pedidos
-            stats.put("pedidosPendientes", this.pedidoService.contarPorEstado("PENDIENTE"));
-            stats.put("pedidosEnviados", this.pedidoService.contarPorEstado("ENVIADO"));
-            stats.put("pedidosEntregados", this.pedidoService.contarPorEstado("ENTREGADO"));
-              // Ventas del mes
-            BigDecimal ventasMes = this.pedidoService.calcularVentasMesActual();
-            stats.put("ventasMes", ventasMes != null ? ventasMes : BigDecimal.ZERO);
-              return ResponseEntity.ok(stats);
+            stats.put("pedidosPendientes", this.metricasStore.pedidosEnEstado("PENDIENTE"));
+            stats.put("pedidosEnviados", this.metricasStore.pedidosEnEstado("ENVIADO"));
+            stats.put("pedidosEntregados", this.metricasStore.pedidosEnEstado("ENTREGADO"));
+            // Ventas del mes
+            stats.put("ventasMes", this.metricasStore.ventas(YearMonth.now()));
+            return ResponseEntity.ok(stats);
         } catch (RuntimeException e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("error", "Error al obtener estadísticas: " + e.getMessage());
@@ -95,9 +100,12 @@ public class ApiController {
           try {
             Pageable pageable = PageRequest.of(page, size, Sort.by("fechaRegistro").descending());
             Page<Usuario> usuarios = this.usuarioService.obtenerUsuariosPaginados(pageable);
+            List<Integer> idsUsuario = usuarios.getContent().stream().map(Usuario::getIdUsuario).toList();
             
             Map<String, Object> response = new HashMap<>();
             response.put("usuarios", usuarios.getContent());
+            // Pedidos y total gastado de cada usuario de la página (una consulta agrupada)
+            response.put("pedidosPorUsuario", this.pedidoService.obtenerEstadisticasClientes(idsUsuario));
             response.put("totalPages", usuarios.getTotalPages());
             response.put("totalElements", usuarios.getTotalElements());            response.put("currentPage", usuarios.getNumber());
             
@@ -0,0 +1,53 @@
+package com.ecovivashop.controller;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.util.UrlPathHelper;
+
+import com.ecovivashop.service.AlmacenBlobService;
+import com.ecovivashop.service.EntregaImagenService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Archivos subidos (imágenes de productos y perfiles) bajo /uploads. Sustituye al
+ * manejador de recursos estáticos: los nombres son únicos, así que se sirven como
+ * inmutables, con ETag para las peticiones condicionales y sendfile bajo Tomcat.
+ * Los blobs que este nodo no tiene se traen antes del almacenamiento compartido.
+ */
+@Controller
+public class ArchivoSubidoController {
+
+    private static final String PREFIJO = "/uploads/";
+    private static final String PREFIJO_BLOBS = "blobs/";
+
+    private final EntregaImagenService entregaImagenService;
+    private final AlmacenBlobService almacenBlobService;
+
+    public ArchivoSubidoController(EntregaImagenService entregaImagenService,
+                                   AlmacenBlobService almacenBlobService) {
+        this.entregaImagenService = entregaImagenService;
+        this.almacenBlobService = almacenBlobService;
+    }
+
+    @GetMapping("/uploads/**")
+    public void servirArchivo(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String ruta = UrlPathHelper.defaultInstance.getPathWithinApplication(request);
+        Optional<Path> archivo = Optional.empty();
+        if (ruta.startsWith(PREFIJO + PREFIJO_BLOBS)) {
+            archivo = this.almacenBlobService.obtenerLocal(ruta.substring((PREFIJO + PREFIJO_BLOBS).length()));
+        } else if (ruta.startsWith(PREFIJO)) {
+            archivo = this.entregaImagenService.resolverSubida(ruta.substring(PREFIJO.length()));
+        }
+
+        if (archivo.isEmpty() || !this.entregaImagenService.entregar(archivo.get(), true, request, response)) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+        }
+    }
+}
@@ -10,10 +10,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -26,13 +27,21 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.ecovivashop.dto.Carrito;
+import com.ecovivashop.dto.Cotizacion;
+import com.ecovivashop.dto.LineaCarritoDTO;
+import com.ecovivashop.dto.ProductoCatalogoDTO;
+import com.ecovivashop.dto.ProductoFiltro;
 import com.ecovivashop.entity.Pedido;
 import com.ecovivashop.entity.PedidoDetalle;
 import com.ecovivashop.entity.Producto;
 import com.ecovivashop.entity.Usuario;
+import com.ecovivashop.service.CarritoStore;
 import com.ecovivashop.service.CustomOAuth2User;
-import com.ecovivashop.service.EmailService;
+import com.ecovivashop.service.ImagenService;
+import com.ecovivashop.service.NumeroPedidoGenerator;
 import com.ecovivashop.service.PedidoService;
+import com.ecovivashop.service.PricingEngine;
 import com.ecovivashop.service.ProductoService;
 import com.ecovivashop.service.UsuarioService;
 import com.itextpdf.text.Document;
@@ -53,16 +62,25 @@ import jakarta.servlet.http.HttpSession;
 @RequestMapping("/client")
 public class ClientController {
 
+    // Campos por los que el cliente puede ordenar el catálogo
+    private static final Set<String> ORDENES_CATALOGO = Set.of("nombre", "precio", "categoria", "puntuacionEco");
+
     private final UsuarioService usuarioService;
     private final ProductoService productoService;
     private final PedidoService pedidoService;
-    private final EmailService emailService;
+    private final NumeroPedidoGenerator numeroPedidoGenerator;
+    private final CarritoStore carritoStore;
+    private final ImagenService imagenService;
 
-    public ClientController(UsuarioService usuarioService, ProductoService productoService, PedidoService pedidoService, EmailService emailService) {
+    public ClientController(UsuarioService usuarioService, ProductoService productoService, PedidoService pedidoService,
+                            NumeroPedidoGenerator numeroPedidoGenerator, CarritoStore carritoStore,
+                            ImagenService imagenService) {
         this.usuarioService = usuarioService;
         this.productoService = productoService;
         this.pedidoService = pedidoService;
-        this.emailService = emailService;
+        this.numeroPedidoGenerator = numeroPedidoGenerator;
+        this.carritoStore = carritoStore;
+        this.imagenService = imagenService;
     }
 
     @GetMapping("/home")
@@ -77,23 +95,62 @@ public class ClientController {
     @GetMapping("/catalogo")
     public String catalogo(Model model, Authentication authentication,
                           @RequestParam(defaultValue = "0") int page,
-                          @RequestParam(defaultValue = "12") int size) {
+                          @RequestParam(defaultValue = "12") int size,
+                          @RequestParam(required = false) Integer despues,
+                          @RequestParam(required = false) String busqueda,
+                          @RequestParam(required = false) String categoria,
+                          @RequestParam(required = false) String marca,
+                          @RequestParam(required = false) String minPrecio,
+                          @RequestParam(required = false) String maxPrecio,
+                          @RequestParam(required = false) String ecoMin,
+                          @RequestParam(defaultValue = "false") boolean conStock,
+                          @RequestParam(required = false) String sortBy,
+                          @RequestParam(defaultValue = "asc") String sortDir) {
         if (authentication != null) {
             Usuario usuario = getUsuarioFromPrincipal(authentication);
             model.addAttribute("usuario", usuario);
         }
 
-        // Load products (temporarily without pagination to debug)
-        List<Producto> productosList = this.productoService.obtenerProductosActivos();
-        Page<Producto> productos = new PageImpl<>(productosList, PageRequest.of(page, size), productosList.size());
+        ProductoFiltro filtro = ProductoFiltro.desdeParametros(busqueda, categoria, marca, minPrecio, maxPrecio, ecoMin, conStock);
+        Sort orden = ORDENES_CATALOGO.contains(sortBy)
+            ? Sort.by("desc".equalsIgnoreCase(sortDir) ? Sort.Direction.DESC : Sort.Direction.ASC, sortBy)
+            : Sort.unsorted();
+
+        Page<ProductoCatalogoDTO> productos;
+        Integer siguienteCursor = null;
+        if (filtro.isVacio() && orden.isUnsorted()) {
+            // Página del catálogo paginada en base de datos; "despues" es el último id de la página anterior
+            productos = this.productoService.obtenerPaginaCatalogo(page, size, despues);
+            List<ProductoCatalogoDTO> contenido = productos.getContent();
+            siguienteCursor = contenido.isEmpty() ? null : contenido.get(contenido.size() - 1).getIdProducto();
+        } else {
+            productos = this.productoService.buscarCatalogo(filtro,
+                PageRequest.of(Math.max(page, 0), Math.max(size, 1), orden.and(Sort.by("idProducto"))));
+        }
 
         // Load available categories
         List<String> categorias = this.productoService.obtenerCategoriasDisponibles();
 
         model.addAttribute("productos", productos);
+        // Imagen principal de cada producto de la página, para servir el tamaño tarjeta
+        model.addAttribute("imagenesPrincipales", this.imagenService.obtenerImagenesPrincipales(
+            productos.getContent().stream().map(ProductoCatalogoDTO::getIdProducto).toList()));
         model.addAttribute("categorias", categorias);
-        model.addAttribute("currentPage", page);
+        model.addAttribute("facetas", this.productoService.obtenerFacetas(filtro));
+        model.addAttribute("currentPage", productos.getNumber());
         model.addAttribute("totalPages", productos.getTotalPages());
+        model.addAttribute("size", productos.getSize());
+        model.addAttribute("siguienteCursor", siguienteCursor);
+        model.addAttribute("paginaMaximaSinCursor", ProductoService.PAGINA_MAXIMA_SIN_CURSOR);
+        model.addAttribute("busqueda", busqueda);
+        model.addAttribute("categoria", categoria);
+        model.addAttribute("marca", marca);
+        model.addAttribute("minPrecio", minPrecio);
+        model.addAttribute("maxPrecio", maxPrecio);
+        model.addAttribute("ecoMin", ecoMin);
+        model.addAttribute("conStock", conStock);
+        model.addAttribute("sortBy", sortBy);
+        model.addAttribute("sortDir", sortDir);
 
         return "client/catalogo-completo";
     }
@@ -112,6 +169,8 @@ public class ClientController {
         }
 
         model.addAttribute("producto", producto);
+        model.addAttribute("imagenPrincipal",
+            this.imagenService.obtenerImagenPrincipalProducto(id.longValue()).orElse(null));
         return "client/producto-detalle";
     }
 
@@ -137,56 +196,8 @@ public class ClientController {
             model.addAttribute("usuario", usuario);
         }
 
-        // Obtener carrito de la sesión
-        List<Map<String, Object>> carrito = getCarritoFromSession(session);
-        if (carrito == null) {
-            carrito = new ArrayList<>();
-        }
-
-        // Calcular resumen del pedido
-        BigDecimal subtotal = BigDecimal.ZERO;
-        for (Map<String, Object> item : carrito) {
-            Object precio = item.get("precio");
-            Object cantidad = item.get("cantidad");
-            
-            BigDecimal precioBD = BigDecimal.ZERO;
-            if (precio instanceof BigDecimal bd) {
-                precioBD = bd;
-            } else if (precio instanceof Double d) {
-                precioBD = BigDecimal.valueOf(d);
-            } else if (precio instanceof String s) {
-                precioBD = new BigDecimal(s);
-            }
-            
-            int cantidadInt = 0;
-            if (cantidad instanceof Integer i) {
-                cantidadInt = i;
-            } else if (cantidad instanceof String s) {
-                cantidadInt = Integer.parseInt(s);
-            }
-            
-            subtotal = subtotal.add(precioBD.multiply(BigDecimal.valueOf(cantidadInt)));
-        }
-        
-        // Calcular descuento eco (5%)
-        BigDecimal descuento = subtotal.multiply(BigDecimal.valueOf(0.05));
-        
-        // Envío gratis
-        BigDecimal envio = BigDecimal.ZERO;
-        
-        // Calcular IGV (18%) sobre el subtotal después del descuento
-        BigDecimal baseImponible = subtotal.subtract(descuento);
-        BigDecimal igv = baseImponible.multiply(BigDecimal.valueOf(0.18));
-        
-        // Calcular total
-        BigDecimal total = subtotal.subtract(descuento).add(envio).add(igv);
-
-        model.addAttribute("carrito", carrito);
-        model.addAttribute("subtotal", subtotal);
-        model.addAttribute("descuento", descuento);
-        model.addAttribute("envio", envio);
-        model.addAttribute("igv", igv);
-        model.addAttribute("total", total);
+        Carrito carrito = this.carritoStore.obtener(session);
+        this.agregarResumenCarrito(model, carrito);
         return "client/carrito";
     }
 
@@ -198,55 +209,12 @@ public class ClientController {
         }
 
         // Verificar que el carrito no esté vacío
-        List<Map<String, Object>> carrito = getCarritoFromSession(session);
-        if (carrito == null || carrito.isEmpty()) {
+        Carrito carrito = this.carritoStore.obtener(session);
+        if (carrito.isVacio()) {
             return "redirect:/client/catalogo";
         }
 
-                // Calcular resumen del pedido (reutilizar lógica del carrito)
-        BigDecimal subtotal = BigDecimal.ZERO;
-        for (Map<String, Object> item : carrito) {
-            Object precio = item.get("precio");
-            Object cantidad = item.get("cantidad");
-            
-            BigDecimal precioBD = BigDecimal.ZERO;
-            if (precio instanceof BigDecimal bd) {
-                precioBD = bd;
-            } else if (precio instanceof Double d) {
-                precioBD = BigDecimal.valueOf(d);
-            } else if (precio instanceof String s) {
-                precioBD = new BigDecimal(s);
-            }
-            
-            int cantidadInt = 0;
-            if (cantidad instanceof Integer i) {
-                cantidadInt = i;
-            } else if (cantidad instanceof String s) {
-                cantidadInt = Integer.parseInt(s);
-            }
-            
-            subtotal = subtotal.add(precioBD.multiply(BigDecimal.valueOf(cantidadInt)));
-        }
-        
-        // Calcular descuento eco (5%)
-        BigDecimal descuento = subtotal.multiply(BigDecimal.valueOf(0.05));
-        
-        // Envío gratis
-        BigDecimal envio = BigDecimal.ZERO;
-        
-        // Calcular IGV (18%) sobre el subtotal después del descuento
-        BigDecimal baseImponible = subtotal.subtract(descuento);
-        BigDecimal igv = baseImponible.multiply(BigDecimal.valueOf(0.18));
-        
-        // Calcular total
-        BigDecimal total = subtotal.subtract(descuento).add(envio).add(igv);
-
-        model.addAttribute("carrito", carrito);
-        model.addAttribute("subtotal", subtotal);
-        model.addAttribute("descuento", descuento);
-        model.addAttribute("envio", envio);
-        model.addAttribute("igv", igv);
-        model.addAttribute("total", total);
+        this.agregarResumenCarrito(model, carrito);
         return "client/pago";
     }
 
@@ -289,62 +257,23 @@ public class ClientController {
             }
 
             // Obtener carrito de la sesión
-            List<Map<String, Object>> carrito = getCarritoFromSession(session);
-            if (carrito == null || carrito.isEmpty()) {
+            Carrito carrito = this.carritoStore.obtener(session);
+            if (carrito.isVacio()) {
                 response.put("success", false);
                 response.put("message", "El carrito está vacío.");
                 return response;
             }
 
-            // Calcular totales (reutilizar lógica del checkout)
-            BigDecimal subtotal = BigDecimal.ZERO;
-            for (Map<String, Object> item : carrito) {
-                Object precio = item.get("precio");
-                Object cantidad = item.get("cantidad");
-
-                BigDecimal precioBD = BigDecimal.ZERO;
-                if (precio instanceof BigDecimal bd) {
-                    precioBD = bd;
-                } else if (precio instanceof Double d) {
-                    precioBD = BigDecimal.valueOf(d);
-                } else if (precio instanceof String s) {
-                    precioBD = new BigDecimal(s);
-                }
-
-                int cantidadInt = 0;
-                if (cantidad instanceof Integer i) {
-                    cantidadInt = i;
-                } else if (cantidad instanceof String s) {
-                    cantidadInt = Integer.parseInt(s);
-                }
-
-                subtotal = subtotal.add(precioBD.multiply(BigDecimal.valueOf(cantidadInt)));
-            }
-
-            // Calcular descuento eco (5%)
-            BigDecimal descuento = subtotal.multiply(BigDecimal.valueOf(0.05));
-
-            // Envío gratis
-            BigDecimal envio = BigDecimal.ZERO;
-
-            // Calcular IGV (18%) sobre el subtotal después del descuento
-            BigDecimal baseImponible = subtotal.subtract(descuento);
-            BigDecimal igv = baseImponible.multiply(BigDecimal.valueOf(0.18));
-
-            // Calcular total
-            BigDecimal total = subtotal.subtract(descuento).add(envio).add(igv);
-
             // Construir dirección de envío
             String direccionEnvio = firstName + " " + lastName + ", " + address + ", " + city + ", " + zipCode;
 
             // Generar número de pedido único
-            String numeroPedido = "ECO-" + System.currentTimeMillis();
+            String numeroPedido = this.numeroPedidoGenerator.generar();
 
             // Crear pedido usando PedidoService
+            // Los importes salen de la misma cotización mostrada en el carrito y el pago
             Pedido pedido = this.pedidoService.crearPedidoDesdeCarro(
-                usuario, carrito, numeroPedido, paymentMethod, direccionEnvio,
-                subtotal, envio, descuento, igv, total
-            );
+                usuario, carrito, numeroPedido, paymentMethod, direccionEnvio, email, firstName + " " + lastName);
 
             // Verificar que el pedido se creó correctamente
             if (pedido == null) {
@@ -353,18 +282,10 @@ public class ClientController {
                 return response;
             }
 
-            // Enviar email de confirmación de pedido
-            try {
-                String nombreCompleto = firstName + " " + lastName;
-                this.emailService.enviarCorreoConfirmacionPedido(email, nombreCompleto, numeroPedido, total.toString());
-                System.out.println("✅ Email de confirmación enviado para pedido: " + numeroPedido);
-            } catch (Exception e) {
-                System.err.println("⚠️ Error enviando email de confirmación para pedido " + numeroPedido + ": " + e.getMessage());
-                // No fallar el proceso de pago por error en email
-            }
+            // El email de confirmación queda registrado por crearPedidoDesdeCarro y se envía en segundo plano
 
-            // Limpiar carrito de la sesión
-            session.removeAttribute("carrito");
+            // Limpiar carrito
+            this.carritoStore.vaciar(session);
 
             // Agregar número de pedido a la sesión para la página de confirmación
             session.setAttribute("ultimoNumeroPedido", numeroPedido);
@@ -617,24 +538,7 @@ public class ClientController {
     @GetMapping("/carrito/count")
     @ResponseBody
     public int getCartCount(HttpSession session) {
-        List<Map<String, Object>> carrito = getCarritoFromSession(session);
-        if (carrito == null) {
-            return 0;
-        }
-        return carrito.stream().mapToInt(item -> {
-            Object cantidad = item.get("cantidad");
-            if (cantidad instanceof Integer i) {
-                return i;
-            } else if (cantidad instanceof String s) {
-                try {
-                    return Integer.parseInt(s);
-                } catch (NumberFormatException e) {
-                    return 0;
-                }
-            } else {
-                return 0;
-            }
-        }).sum();
+        return this.carritoStore.obtener(session).getTotalUnidades();
     }
 
     @PostMapping("/carrito/agregar")
@@ -653,47 +557,20 @@ public class ClientController {
                 return response;
             }
             
-            // Obtener carrito de la sesión
-            List<Map<String, Object>> carrito = getCarritoFromSession(session);
-            
-            // Ensure carrito is not null
-            if (carrito == null) {
-                carrito = new ArrayList<>();
-                session.setAttribute("carrito", carrito);
-            }
-            
-            // Verificar si el producto ya está en el carrito
-            boolean productoExistente = false;
-            for (Map<String, Object> item : carrito) {
-                Object idProducto = item.get("idProducto");
-                if (idProducto != null && idProducto.equals(productoId)) {
-                    // Actualizar cantidad
-                    Object cantidadActual = item.get("cantidad");
-                    int cantidadExistente = 0;
-                    if (cantidadActual instanceof Integer cantidadInt) {
-                        cantidadExistente = cantidadInt;
-                    }
-                    int nuevaCantidad = cantidad + cantidadExistente;
-                    item.put("cantidad", nuevaCantidad);
-                    productoExistente = true;
-                    break;
-                }
+            if (cantidad <= 0) {
+                response.put("success", false);
+                response.put("message", "La cantidad debe ser mayor que cero");
+                return response;
             }
             
-            // Si no existe, agregar nuevo item
-            if (!productoExistente) {
-                Map<String, Object> item = new HashMap<>();
-                item.put("idProducto", productoId);
-                item.put("nombre", producto.getNombre());
-                item.put("precio", producto.getPrecio());
-                item.put("cantidad", cantidad);
-                item.put("imagen", producto.getImagenUrl());
-                carrito.add(item);
-            }
+            // Si ya está en el carrito se suman las unidades
+            Carrito carrito = this.carritoStore.obtener(session);
+            carrito.agregar(productoId, cantidad, Carrito.aCentimos(producto.getPrecio()));
+            this.carritoStore.guardar(session, carrito);
             
             response.put("success", true);
             response.put("message", "Producto agregado al carrito");
-            response.put("totalItems", getCartCount(session));
+            response.put("totalItems", carrito.getTotalUnidades());
             
         } catch (Exception e) {
             response.put("success", false);
@@ -711,40 +588,18 @@ public class ClientController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // Obtener carrito de la sesión
-            List<Map<String, Object>> carrito = getCarritoFromSession(session);
-            if (carrito == null) {
-                response.put("success", false);
-                response.put("message", "Carrito no encontrado");
-                return response;
-            }
-            
-            // Buscar el producto en el carrito
-            boolean productoEncontrado = false;
-            for (Map<String, Object> item : carrito) {
-                Object idProducto = item.get("idProducto");
-                if (idProducto != null && idProducto.equals(productoId)) {
-                    if (cantidad <= 0) {
-                        // Si cantidad es 0 o menor, eliminar el producto
-                        carrito.remove(item);
-                    } else {
-                        // Actualizar cantidad
-                        item.put("cantidad", cantidad);
-                    }
-                    productoEncontrado = true;
-                    break;
-                }
-            }
-            
-            if (!productoEncontrado) {
+            // Con cantidad 0 o menor se elimina el producto
+            Carrito carrito = this.carritoStore.obtener(session);
+            if (!carrito.actualizarCantidad(productoId, cantidad)) {
                 response.put("success", false);
                 response.put("message", "Producto no encontrado en el carrito");
                 return response;
             }
+            this.carritoStore.guardar(session, carrito);
             
             response.put("success", true);
             response.put("message", "Carrito actualizado correctamente");
-            response.put("totalItems", getCartCount(session));
+            response.put("totalItems", carrito.getTotalUnidades());
             
         } catch (Exception e) {
             response.put("success", false);
@@ -761,29 +616,17 @@ public class ClientController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // Obtener carrito de la sesión
-            List<Map<String, Object>> carrito = getCarritoFromSession(session);
-            if (carrito == null) {
-                response.put("success", false);
-                response.put("message", "Carrito no encontrado");
-                return response;
-            }
-            
-            // Buscar y remover el producto del carrito
-            boolean productoRemovido = carrito.removeIf(item -> {
-                Object idProducto = item.get("idProducto");
-                return idProducto != null && idProducto.equals(productoId);
-            });
-            
-            if (!productoRemovido) {
+            Carrito carrito = this.carritoStore.obtener(session);
+            if (!carrito.eliminar(productoId)) {
                 response.put("success", false);
                 response.put("message", "Producto no encontrado en el carrito");
                 return response;
             }
+            this.carritoStore.guardar(session, carrito);
             
             response.put("success", true);
             response.put("message", "Producto eliminado del carrito");
-            response.put("totalItems", getCartCount(session));
+            response.put("totalItems", carrito.getTotalUnidades());
             
         } catch (Exception e) {
             response.put("success", false);
@@ -887,14 +730,13 @@ public class ClientController {
         table.addCell(cell);
 
         // Productos
-        BigDecimal total = BigDecimal.ZERO;
         for (PedidoDetalle detalle : pedido.getDetalles()) {
             table.addCell(new Phrase(detalle.getProducto().getNombre(), normalFont));
             table.addCell(new Phrase(String.valueOf(detalle.getCantidad()), normalFont));
             table.addCell(new Phrase("S/ " + detalle.getPrecioUnitario().toString(), normalFont));
-            BigDecimal subtotal = detalle.getPrecioUnitario().multiply(BigDecimal.valueOf(detalle.getCantidad()));
-            table.addCell(new Phrase("S/ " + subtotal.toString(), normalFont));
-            total = total.add(subtotal);
+            long subtotalLinea = PricingEngine.subtotalLineaCentimos(
+                Carrito.aCentimos(detalle.getPrecioUnitario()), detalle.getCantidad());
+            table.addCell(new Phrase("S/ " + Carrito.desdeCentimos(subtotalLinea), normalFont));
         }
 
         document.add(table);
@@ -904,17 +746,14 @@ public class ClientController {
         totalesTitle.setSpacingAfter(10);
         document.add(totalesTitle);
 
-        BigDecimal descuento = total.multiply(BigDecimal.valueOf(0.05)); // 5% descuento
-        BigDecimal subtotalConDescuento = total.subtract(descuento);
-        BigDecimal igv = subtotalConDescuento.multiply(BigDecimal.valueOf(0.18)); // 18% IGV
-        BigDecimal totalFinal = subtotalConDescuento.add(igv);
-
+        // Los importes cobrados, guardados en el pedido al confirmarlo
+        Cotizacion cotizacion = PricingEngine.desdePedido(pedido);
         Paragraph resumen = new Paragraph(
-            "Subtotal: S/ " + total.toString() + "\n" +
-            "Descuento (5%): S/ " + descuento.toString() + "\n" +
-            "Subtotal con descuento: S/ " + subtotalConDescuento.toString() + "\n" +
-            "IGV (18%): S/ " + igv.toString() + "\n" +
-            "TOTAL A PAGAR: S/ " + totalFinal.toString(), normalFont);
+            "Subtotal: S/ " + cotizacion.getSubtotal() + "\n" +
+            "Descuento (5%): S/ " + cotizacion.getDescuento() + "\n" +
+            "Subtotal con descuento: S/ " + cotizacion.getBaseImponible() + "\n" +
+            "IGV (18%): S/ " + cotizacion.getIgv() + "\n" +
+            "TOTAL A PAGAR: S/ " + cotizacion.getTotal(), normalFont);
         resumen.setSpacingAfter(20);
         document.add(resumen);
 
@@ -933,22 +772,24 @@ public class ClientController {
     }
 
     /**
-     * Helper method to safely get the shopping cart from session
+     * Líneas del carrito con nombre e imagen del producto (de la caché de productos)
+     * y el resumen de importes, para las vistas del carrito y del pago
      */
-    @SuppressWarnings("unchecked")
-    private List<Map<String, Object>> getCarritoFromSession(HttpSession session) {
-        // Ensure session is created
-        session.setAttribute("session_test", "test");
-        
-        Object carritoObj = session.getAttribute("carrito");
-        
-        if (carritoObj instanceof List<?> carritoList) {
-            // Pattern matching instanceof ensures type safety, no need for try-catch
-            return (List<Map<String, Object>>) carritoList;
+    private void agregarResumenCarrito(Model model, Carrito carrito) {
+        List<LineaCarritoDTO> lineas = new ArrayList<>(carrito.getNumeroLineas());
+        for (Carrito.Linea linea : carrito.getLineas()) {
+            Producto producto = this.productoService.findById(linea.idProducto()).orElse(null);
+            lineas.add(new LineaCarritoDTO(linea,
+                producto != null ? producto.getNombre() : "Producto no disponible",
+                producto != null ? producto.getImagenUrl() : null));
         }
-        List<Map<String, Object>> newCarrito = new ArrayList<>();
-        session.setAttribute("carrito", newCarrito);
-        return newCarrito;
+        Cotizacion cotizacion = PricingEngine.cotizar(carrito);
+        model.addAttribute("carrito", lineas);
+        model.addAttribute("subtotal", cotizacion.getSubtotal());
+        model.addAttribute("descuento", cotizacion.getDescuento());
+        model.addAttribute("envio", cotizacion.getEnvio());
+        model.addAttribute("igv", cotizacion.getIgv());
+        model.addAttribute("total", cotizacion.getTotal());
     }
 
     /**
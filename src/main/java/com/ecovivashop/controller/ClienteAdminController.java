@@ -1,6 +1,5 @@
 package com.ecovivashop.controller;
 
-import java.math.BigDecimal;
 import java.security.Principal;
 import java.util.HashMap;
 import java.util.List;
@@ -21,6 +20,8 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.ecovivashop.dto.EstadisticasClienteDTO;
+import com.ecovivashop.entity.Pedido;
 import com.ecovivashop.entity.TransaccionPago;
 import com.ecovivashop.entity.Usuario;
 import com.ecovivashop.repository.TransaccionPagoRepository;
@@ -77,17 +78,12 @@ public class ClienteAdminController extends BaseAdminController {
             clientes = usuarioService.obtenerClientesPaginados(pageable);
         }
         
-        // Calcular conteo de pedidos por cliente
+        // Pedidos de los clientes de la página, en una sola consulta agrupada
+        List<Integer> idsClientes = clientes.getContent().stream().map(Usuario::getIdUsuario).toList();
+        Map<Integer, EstadisticasClienteDTO> estadisticasPorCliente = pedidoService.obtenerEstadisticasClientes(idsClientes);
         Map<Integer, Long> conteoPedidosPorCliente = new HashMap<>();
-        for (Usuario cliente : clientes.getContent()) {
-            try {
-                long conteoPedidos = pedidoService.contarPedidosPorUsuario(cliente.getIdUsuario());
-                conteoPedidosPorCliente.put(cliente.getIdUsuario(), conteoPedidos);
-            } catch (RuntimeException e) {
-                // Si hay error al contar pedidos, usar 0
-                conteoPedidosPorCliente.put(cliente.getIdUsuario(), 0L);
-            }
-        }
+        estadisticasPorCliente.forEach((idCliente, estadisticas) ->
+            conteoPedidosPorCliente.put(idCliente, estadisticas.getTotalPedidos()));
         
         // Estadísticas
         long totalClientes = usuarioService.contarClientes();
@@ -97,6 +93,7 @@ public class ClienteAdminController extends BaseAdminController {
         // Agregar al modelo
         model.addAttribute("clientes", clientes);
         model.addAttribute("conteoPedidosPorCliente", conteoPedidosPorCliente);
+        model.addAttribute("estadisticasPorCliente", estadisticasPorCliente);
         model.addAttribute("currentPage", page);
         model.addAttribute("totalPages", clientes.getTotalPages());
         model.addAttribute("totalItems", clientes.getTotalElements());
@@ -260,25 +257,19 @@ public class ClienteAdminController extends BaseAdminController {
         Usuario cliente = usuarioService.findById(id)
             .orElseThrow(() -> new IllegalArgumentException("Cliente no encontrado"));
         
-        // Calcular estadísticas del cliente
-        long totalPedidos = pedidoService.contarPedidosPorUsuario(id);
-        BigDecimal totalGastado = pedidoService.calcularTotalGastadoPorUsuario(id);
-        BigDecimal promedioPedido = pedidoService.calcularPromedioPedidoPorUsuario(id);
-        java.time.LocalDateTime fechaUltimoPedido = pedidoService.obtenerFechaUltimoPedido(id);
+        // Estadísticas del cliente (una consulta agrupada)
+        EstadisticasClienteDTO estadisticas = pedidoService.obtenerEstadisticasCliente(id);
         
-        // Obtener historial de pedidos (últimos 10 pedidos)
-        List<com.ecovivashop.entity.Pedido> historialPedidos = pedidoService.obtenerPedidosPorUsuario(id);
-        // Limitar a los últimos 10 pedidos más recientes
-        if (historialPedidos.size() > 10) {
-            historialPedidos = historialPedidos.subList(0, 10);
-        }
+        // Historial: los 10 pedidos más recientes, sin cargar el resto
+        Pageable ultimos = PageRequest.of(0, 10, Sort.by("fechaPedido").descending());
+        List<Pedido> historialPedidos = pedidoService.obtenerPedidosPorUsuarioPaginado(id, ultimos).getContent();
         
         // Agregar datos al modelo
         model.addAttribute("cliente", cliente);
-        model.addAttribute("totalPedidos", totalPedidos);
-        model.addAttribute("totalGastado", totalGastado);
-        model.addAttribute("promedioPedido", promedioPedido);
-        model.addAttribute("fechaUltimoPedido", fechaUltimoPedido);
+        model.addAttribute("totalPedidos", estadisticas.getTotalPedidos());
+        model.addAttribute("totalGastado", estadisticas.getTotalGastado());
+        model.addAttribute("promedioPedido", estadisticas.getPromedioPedido());
+        model.addAttribute("fechaUltimoPedido", estadisticas.getFechaUltimoPedido());
         model.addAttribute("historialPedidos", historialPedidos);
         
         return "admin/cliente-detalle";
@@ -1,7 +1,6 @@
 package com.ecovivashop.controller;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
@@ -10,12 +9,7 @@ import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -33,9 +27,13 @@ import com.ecovivashop.entity.ImagenPerfil;
 import com.ecovivashop.entity.ImagenPerfil.TipoUsuario;
 import com.ecovivashop.entity.ImagenProducto;
 import com.ecovivashop.entity.Usuario;
+import com.ecovivashop.service.EntregaImagenService;
 import com.ecovivashop.service.ImagenService;
 import com.ecovivashop.service.UsuarioService;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
 @Controller
 @RequestMapping("/api/imagenes")
 public class ImagenController {
@@ -46,8 +44,10 @@ public class ImagenController {
     @Autowired
     private UsuarioService usuarioService;
     
-    @Value("${app.upload.path:uploads}")
-    private String uploadPath;
+    @Autowired
+    private EntregaImagenService entregaImagenService;
+    
+    private static final Path IMAGEN_PERFIL_POR_DEFECTO = Paths.get("src/main/resources/static/img/default-profile.svg");
     
     /**
      * Sube una imagen de perfil para admin
@@ -74,7 +74,7 @@ public class ImagenController {
             ImagenPerfil imagen = imagenService.guardarImagenPerfil(usuario.getIdUsuario().longValue(), TipoUsuario.ADMIN, file);
             
             // Construir URL de respuesta
-            String imageUrl = String.format("/uploads/profiles/admin/%s", imagen.getNombreArchivo());
+            String imageUrl = imagen.getUrl();
             
             response.put("success", true);
             response.put("message", "Imagen subida exitosamente");
@@ -123,7 +123,7 @@ public class ImagenController {
             ImagenPerfil imagen = imagenService.guardarImagenPerfil(usuario.getIdUsuario().longValue(), TipoUsuario.CLIENTE, file);
             
             // Construir URL de respuesta
-            String imageUrl = String.format("/uploads/profiles/cliente/%s", imagen.getNombreArchivo());
+            String imageUrl = imagen.getUrl();
             
             response.put("success", true);
             response.put("message", "Imagen subida exitosamente");
@@ -166,7 +166,7 @@ public class ImagenController {
             ImagenProducto imagen = imagenService.guardarImagenProducto(productoId, file, orden, esPrincipal, altText);
             
             // Construir URL de respuesta
-            String imageUrl = String.format("/uploads/products/%s/%s", productoId, imagen.getNombreArchivo());
+            String imageUrl = imagen.getUrl();
             
             response.put("success", true);
             response.put("message", "Imagen subida exitosamente");
@@ -272,73 +272,20 @@ public class ImagenController {
     }
     
     /**
-     * Sirve la imagen de perfil de un usuario específico
+     * Sirve la imagen de perfil de un usuario específico. La URL es la misma aunque
+     * cambie la imagen, así que el navegador revalida con el ETag y recibe 304.
      */
     @GetMapping("/perfil/{usuarioId}")
-    public ResponseEntity<Resource> servirImagenPerfil(@PathVariable Long usuarioId) {
-        try {
-            // Buscar la imagen de perfil del usuario (primero admin, luego cliente)
-            Optional<ImagenPerfil> imagenPerfilOpt = imagenService.obtenerImagenPerfil(usuarioId, TipoUsuario.ADMIN);
-            TipoUsuario tipoUsuario = TipoUsuario.ADMIN;
-            
-            if (!imagenPerfilOpt.isPresent()) {
-                // Si no es admin, buscar como cliente
-                imagenPerfilOpt = imagenService.obtenerImagenPerfil(usuarioId, TipoUsuario.CLIENTE);
-                tipoUsuario = TipoUsuario.CLIENTE;
-            }
-            
-            if (!imagenPerfilOpt.isPresent()) {
-                // Si no tiene imagen, devolver la imagen por defecto
-                Path defaultPath = Paths.get("src/main/resources/static/img/default-profile.svg");
-                Resource defaultResource = new FileSystemResource(defaultPath.toFile());
-                
-                if (defaultResource.exists()) {
-                    return ResponseEntity.ok()
-                            .contentType(MediaType.valueOf("image/svg+xml"))
-                            .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"default-profile.svg\"")
-                            .body(defaultResource);
-                }
-                
-                return ResponseEntity.notFound().build();
-            }
-            
-            ImagenPerfil imagenPerfil = imagenPerfilOpt.get();
-            
-            // Construir la ruta del archivo según el tipo de usuario
-            String directorioTipo = tipoUsuario == TipoUsuario.ADMIN ? "admin" : "cliente";
-            Path filePath = Paths.get(uploadPath, "profiles", directorioTipo, imagenPerfil.getNombreArchivo());
-            Resource resource = new FileSystemResource(filePath.toFile());
-            
-            if (!resource.exists()) {
-                // Si el archivo no existe, devolver la imagen por defecto
-                Path defaultPath = Paths.get("src/main/resources/static/img/default-profile.svg");
-                Resource defaultResource = new FileSystemResource(defaultPath.toFile());
-                
-                if (defaultResource.exists()) {
-                    return ResponseEntity.ok()
-                            .contentType(MediaType.valueOf("image/svg+xml"))
-                            .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"default-profile.svg\"")
-                            .body(defaultResource);
-                }
-                
-                return ResponseEntity.notFound().build();
-            }
-            
-            // Determinar el tipo de contenido
-            String contentType = Files.probeContentType(filePath);
-            if (contentType == null) {
-                contentType = "application/octet-stream";
-            }
-            
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + imagenPerfil.getNombreArchivo() + "\"")
-                    .body(resource);
-                    
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    public void servirImagenPerfil(@PathVariable Long usuarioId, HttpServletRequest request,
+                                   HttpServletResponse response) throws IOException {
+        Optional<Path> ruta = imagenService.obtenerRutaImagenPerfil(usuarioId);
+        if (ruta.isPresent() && entregaImagenService.entregar(ruta.get(), false, request, response)) {
+            return;
+        }
+        
+        // Sin imagen o sin archivo en disco: imagen por defecto
+        if (!entregaImagenService.entregar(IMAGEN_PERFIL_POR_DEFECTO, false, request, response)) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
         }
     }
 
@@ -346,64 +293,35 @@ public class ImagenController {
      * Sirve archivos de imágenes
      */
     @GetMapping("/uploads/{tipo}/{subtipo}/{filename:.+}")
-    public ResponseEntity<Resource> servirImagen(
+    public void servirImagen(
             @PathVariable String tipo,
             @PathVariable String subtipo,
-            @PathVariable String filename) {
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
         
-        try {
-            Path filePath = Paths.get(uploadPath, tipo, subtipo, filename);
-            Resource resource = new FileSystemResource(filePath.toFile());
-            
-            if (!resource.exists()) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            // Determinar el tipo de contenido
-            String contentType = Files.probeContentType(filePath);
-            if (contentType == null) {
-                contentType = "application/octet-stream";
-            }
-            
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                    .body(resource);
-                    
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+        servirSubida(tipo + "/" + subtipo + "/" + filename, request, response);
     }
     
     /**
      * Sirve archivos de imágenes de productos (con ID de producto)
      */
     @GetMapping("/uploads/products/{productoId}/{filename:.+}")
-    public ResponseEntity<Resource> servirImagenProducto(
+    public void servirImagenProducto(
             @PathVariable Long productoId,
-            @PathVariable String filename) {
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
         
-        try {
-            Path filePath = Paths.get(uploadPath, "products", productoId.toString(), filename);
-            Resource resource = new FileSystemResource(filePath.toFile());
-            
-            if (!resource.exists()) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            // Determinar el tipo de contenido
-            String contentType = Files.probeContentType(filePath);
-            if (contentType == null) {
-                contentType = "application/octet-stream";
-            }
-            
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                    .body(resource);
-                    
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        servirSubida("products/" + productoId + "/" + filename, request, response);
+    }
+    
+    // Los archivos subidos nunca se sobrescriben: se pueden cachear como inmutables
+    private void servirSubida(String rutaRelativa, HttpServletRequest request,
+                              HttpServletResponse response) throws IOException {
+        Optional<Path> ruta = entregaImagenService.resolverSubida(rutaRelativa);
+        if (ruta.isEmpty() || !entregaImagenService.entregar(ruta.get(), true, request, response)) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
         }
     }
 }
@@ -0,0 +1,76 @@
+package com.ecovivashop.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ecovivashop.entity.TransaccionPago;
+import com.ecovivashop.entity.TransaccionPago.EstadoTransaccion;
+import com.ecovivashop.entity.Usuario;
+import com.ecovivashop.service.CustomOAuth2User;
+import com.ecovivashop.service.PasarelaPagoService;
+import com.ecovivashop.service.UsuarioService;
+
+/**
+ * Estado de los pagos del cliente. Los pagos con tarjeta se autorizan en segundo
+ * plano: la página sondea este endpoint hasta que la transacción deja PROCESANDO.
+ */
+@RestController
+public class PagoController {
+
+    private final PasarelaPagoService pasarelaPagoService;
+    private final UsuarioService usuarioService;
+
+    public PagoController(PasarelaPagoService pasarelaPagoService, UsuarioService usuarioService) {
+        this.pasarelaPagoService = pasarelaPagoService;
+        this.usuarioService = usuarioService;
+    }
+
+    @GetMapping("/client/pagos/{transactionId}/estado")
+    public ResponseEntity<Map<String, Object>> consultarEstado(@PathVariable String transactionId,
+                                                               Authentication authentication) {
+        Usuario usuario = getUsuarioFromPrincipal(authentication);
+        TransaccionPago transaccion = this.pasarelaPagoService.consultarEstado(transactionId).orElse(null);
+
+        // Una transacción ajena se trata igual que una inexistente
+        if (usuario == null || transaccion == null || transaccion.getUsuario() == null
+                || !usuario.getIdUsuario().equals(transaccion.getUsuario().getIdUsuario())) {
+            return ResponseEntity.notFound().build();
+        }
+
+        EstadoTransaccion estado = transaccion.getEstadoTransaccion();
+        Map<String, Object> response = new HashMap<>();
+        response.put("transactionId", transactionId);
+        response.put("estado", estado.name());
+        response.put("finalizado", estado != EstadoTransaccion.PENDIENTE && estado != EstadoTransaccion.PROCESANDO);
+        response.put("exitoso", estado == EstadoTransaccion.COMPLETADA);
+        if (transaccion.getMensajeRespuesta() != null) {
+            response.put("mensaje", transaccion.getMensajeRespuesta());
+        }
+        if (transaccion.getAuthorizationCode() != null) {
+            response.put("codigoAutorizacion", transaccion.getAuthorizationCode());
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    private Usuario getUsuarioFromPrincipal(Authentication authentication) {
+        if (authentication == null) {
+            return null;
+        }
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof CustomOAuth2User oauthUser) {
+            return this.usuarioService.findById(oauthUser.getUserId()).orElse(null);
+        } else if (principal instanceof org.springframework.security.core.userdetails.User userDetails) {
+            return this.usuarioService.findByEmail(userDetails.getUsername());
+        } else if (principal instanceof String email) {
+            return this.usuarioService.findByEmail(email);
+        } else {
+            return null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.ecovivashop.controller;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.security.Principal;
 import java.time.LocalDate;
@@ -222,112 +223,125 @@ public class PedidoAdminController extends BaseAdminController {
     }
     
     /**
-     * Exportar pedidos a PDF
+     * Exportar pedidos a PDF (streaming: se escribe por lotes sobre la respuesta)
      */
     @GetMapping("/pedidos/exportar/pdf")
     @SuppressWarnings({"UseSpecificCatch", "CallToPrintStackTrace"})
-    public ResponseEntity<byte[]> exportarPedidosPDF(
+    public void exportarPedidosPDF(
             @RequestParam(required = false) String fechaInicio,
             @RequestParam(required = false) String fechaFin,
             @RequestParam(defaultValue = "todos") String estados,
-            HttpServletResponse response) {
+            HttpServletResponse response) throws IOException {
         
         try {
-            System.out.println("🔄 PASO 1: Iniciando exportación PDF con parámetros: fechaInicio=" + fechaInicio + ", fechaFin=" + fechaFin + ", estados=" + estados);
-            
-            List<Pedido> pedidos = obtenerPedidosParaExportacion(fechaInicio, fechaFin, estados);
-            System.out.println("✅ PASO 2: Pedidos obtenidos: " + pedidos.size() + " registros");
-            
-            System.out.println("🔄 PASO 3: Iniciando generación de PDF...");
-            byte[] pdfBytes = exportService.exportarPedidosPDF(pedidos, fechaInicio, fechaFin, estados);
-            System.out.println("✅ PASO 4: PDF generado correctamente. Tamaño: " + pdfBytes.length + " bytes");
+            FiltroExportacion filtro = crearFiltroExportacion(fechaInicio, fechaFin, estados);
+            long totalPedidos = pedidoService.contarPedidosParaExportacion(filtro.inicio(), filtro.fin(), filtro.estado());
             
             String filename = "pedidos_" + LocalDate.now().format(DateTimeFormatter.ofPattern("ddMMyyyy")) + ".pdf";
+            prepararDescarga(response, filename, MediaType.APPLICATION_PDF_VALUE);
             
-            // Establecer cookie de descarga completada
-            String downloadId = "download_" + System.currentTimeMillis();
-            Cookie downloadCookie = new Cookie("downloadComplete", downloadId);
-            downloadCookie.setMaxAge(30); // 30 segundos
-            downloadCookie.setPath("/");
-            response.addCookie(downloadCookie);
-            
-            System.out.println("✅ PASO 5: Enviando respuesta con archivo PDF: " + filename);
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .body(pdfBytes);
+            exportService.escribirPedidosPDF(lotesDe(filtro), totalPedidos, fechaInicio, fechaFin, estados,
+                                             response.getOutputStream());
                     
         } catch (Exception e) {
             System.err.println("❌ ERROR en exportación PDF: " + e.getClass().getSimpleName() + " - " + e.getMessage());
             e.printStackTrace();
-            return ResponseEntity.internalServerError().build();
+            responderError(response);
         }
     }
     
     /**
-     * Exportar pedidos a Excel
+     * Exportar pedidos a Excel (streaming con ventana de filas SXSSF)
      */
     @GetMapping("/pedidos/exportar/excel")
     @SuppressWarnings("UseSpecificCatch")
-    public ResponseEntity<byte[]> exportarPedidosExcel(
+    public void exportarPedidosExcel(
             @RequestParam(required = false) String fechaInicio,
             @RequestParam(required = false) String fechaFin,
             @RequestParam(defaultValue = "todos") String estados,
-            HttpServletResponse response) {
+            HttpServletResponse response) throws IOException {
         
         try {
-            List<Pedido> pedidos = obtenerPedidosParaExportacion(fechaInicio, fechaFin, estados);
-            byte[] excelBytes = exportService.exportarPedidosExcel(pedidos);
+            FiltroExportacion filtro = crearFiltroExportacion(fechaInicio, fechaFin, estados);
             
             String filename = "pedidos_" + LocalDate.now().format(DateTimeFormatter.ofPattern("ddMMyyyy")) + ".xlsx";
+            prepararDescarga(response, filename, MediaType.APPLICATION_OCTET_STREAM_VALUE);
             
-            // Establecer cookie de descarga completada
-            String downloadId = "download_" + System.currentTimeMillis();
-            Cookie downloadCookie = new Cookie("downloadComplete", downloadId);
-            downloadCookie.setMaxAge(30); // 30 segundos
-            downloadCookie.setPath("/");
-            response.addCookie(downloadCookie);
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(excelBytes);
+            exportService.escribirPedidosExcel(lotesDe(filtro), response.getOutputStream());
                     
         } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
+            responderError(response);
         }
     }
     
     /**
-     * Exportar pedidos a CSV
+     * Exportar pedidos a CSV (streaming)
      */
     @GetMapping("/pedidos/exportar/csv")
     @SuppressWarnings("UseSpecificCatch")
-    public ResponseEntity<byte[]> exportarPedidosCSV(
+    public void exportarPedidosCSV(
             @RequestParam(required = false) String fechaInicio,
             @RequestParam(required = false) String fechaFin,
-            @RequestParam(defaultValue = "todos") String estados) {
+            @RequestParam(defaultValue = "todos") String estados,
+            HttpServletResponse response) throws IOException {
         
         try {
-            List<Pedido> pedidos = obtenerPedidosParaExportacion(fechaInicio, fechaFin, estados);
-            byte[] csvBytes = exportService.exportarPedidosCSV(pedidos);
+            FiltroExportacion filtro = crearFiltroExportacion(fechaInicio, fechaFin, estados);
             
             String filename = "pedidos_" + LocalDate.now().format(DateTimeFormatter.ofPattern("ddMMyyyy")) + ".csv";
+            response.setCharacterEncoding("UTF-8");
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
             
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .contentType(MediaType.TEXT_PLAIN)
-                    .body(csvBytes);
+            exportService.escribirPedidosCSV(lotesDe(filtro), response.getOutputStream());
                     
         } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
+            responderError(response);
+        }
+    }
+    
+    /**
+     * Filtros de exportación ya interpretados
+     */
+    private record FiltroExportacion(LocalDateTime inicio, LocalDateTime fin, String estado) {}
+    
+    /**
+     * Fuente de lotes para el servicio de exportación según los filtros
+     */
+    private ExportService.LotesPedidos lotesDe(FiltroExportacion filtro) {
+        return consumidor -> pedidoService.recorrerPedidosParaExportacion(
+            filtro.inicio(), filtro.fin(), filtro.estado(), consumidor);
+    }
+    
+    /**
+     * Cabeceras de descarga y cookie de descarga completada
+     */
+    private void prepararDescarga(HttpServletResponse response, String filename, String contentType) {
+        String downloadId = "download_" + System.currentTimeMillis();
+        Cookie downloadCookie = new Cookie("downloadComplete", downloadId);
+        downloadCookie.setMaxAge(30); // 30 segundos
+        downloadCookie.setPath("/");
+        response.addCookie(downloadCookie);
+        
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+    }
+    
+    /**
+     * Si aún no se ha enviado nada al cliente, responder 500; en caso contrario
+     * la descarga ya está en curso y solo queda cortarla.
+     */
+    private void responderError(HttpServletResponse response) throws IOException {
+        if (!response.isCommitted()) {
+            response.reset();
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }
     }
     
     /**
-     * Método auxiliar para obtener pedidos según filtros
+     * Método auxiliar para interpretar los filtros de exportación
      */
-    private List<Pedido> obtenerPedidosParaExportacion(String fechaInicio, String fechaFin, String estados) {
+    private FiltroExportacion crearFiltroExportacion(String fechaInicio, String fechaFin, String estados) {
         LocalDateTime inicio = null;
         LocalDateTime fin = null;
         
@@ -360,16 +374,13 @@ public class PedidoAdminController extends BaseAdminController {
             }
         }
         
-        // Obtener pedidos según filtros
+        // Mismo orden de prioridad que antes: rango de fechas, luego estado, luego todos
         if (inicio != null && fin != null) {
-            System.out.println("Buscando pedidos entre " + inicio + " y " + fin);
-            return pedidoService.obtenerPedidosEntreFechas(inicio, fin);
+            return new FiltroExportacion(inicio, fin, null);
         } else if (estados != null && !estados.equals("todos")) {
-            System.out.println("Buscando pedidos con estado: " + estados);
-            return pedidoService.obtenerPedidosPorEstado(estados);
+            return new FiltroExportacion(null, null, estados);
         } else {
-            System.out.println("Obteniendo todos los pedidos");
-            return pedidoService.findAll();
+            return new FiltroExportacion(null, null, null);
         }
     }
     
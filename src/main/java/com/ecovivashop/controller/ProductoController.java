@@ -4,7 +4,11 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.security.Principal;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -25,31 +29,39 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import com.ecovivashop.dto.ProductoBulkUploadResult;
+import com.ecovivashop.dto.TrabajoCargaMasiva;
 import com.ecovivashop.entity.Producto;
 import com.ecovivashop.entity.Usuario;
 import com.ecovivashop.service.ExportService;
+import com.ecovivashop.service.ImagenService;
 import com.ecovivashop.service.JasperExportService;
 import com.ecovivashop.service.ProductoBulkService;
 import com.ecovivashop.service.ProductoService;
 
+import jakarta.servlet.http.HttpServletResponse;
+
 @Controller
 @RequestMapping("/admin/productos")
 public class ProductoController extends BaseAdminController {
     
+    private static final Logger logger = LoggerFactory.getLogger(ProductoController.class);
+
     private final ProductoService productoService;
     private final ProductoBulkService productoBulkService;
     private final ExportService exportService;
     private final JasperExportService jasperExportService;
+    private final ImagenService imagenService;
     
     public ProductoController(ProductoService productoService, 
                              ProductoBulkService productoBulkService,
                              ExportService exportService,
-                             JasperExportService jasperExportService) {
+                             JasperExportService jasperExportService,
+                             ImagenService imagenService) {
         this.productoService = productoService;
         this.productoBulkService = productoBulkService;
         this.exportService = exportService;
         this.jasperExportService = jasperExportService;
+        this.imagenService = imagenService;
     }
     
     /**
@@ -114,7 +126,8 @@ public class ProductoController extends BaseAdminController {
      * Página de carga masiva de productos
      */
     @GetMapping("/bulk-upload")
-    public String bulkUploadForm(Model model, Principal principal) {
+    public String bulkUploadForm(@RequestParam(required = false) String trabajo,
+                                 Model model, Principal principal) {
         if (principal != null) {
             Usuario usuario = usuarioService.findByEmail(principal.getName());
             model.addAttribute("usuario", usuario);
@@ -124,6 +137,28 @@ public class ProductoController extends BaseAdminController {
         List<String> categorias = productoService.obtenerCategoriasDisponibles();
         model.addAttribute("categorias", categorias);
         
+        // Carga en curso o terminada: la página sigue su progreso o muestra el resultado
+        if (trabajo != null) {
+            productoBulkService.obtenerTrabajo(trabajo).ifPresent(t -> {
+                model.addAttribute("trabajo", t);
+                if (t.getEstado().isFinal()) {
+                    String mensaje = String.format(
+                        "%d productos procesados exitosamente",
+                        t.getProductosGuardados()
+                    );
+                    if (t.getErrores() > 0) {
+                        mensaje += String.format(", %d errores encontrados", t.getErrores());
+                    }
+                    if (t.getEstado() == TrabajoCargaMasiva.Estado.COMPLETADO) {
+                        model.addAttribute("success", "Carga completada: " + mensaje);
+                    } else {
+                        model.addAttribute("error", "La carga masiva se interrumpió: " + mensaje);
+                    }
+                    model.addAttribute("resultado", t.getResultado());
+                }
+            });
+        }
+        
         return "admin/productos/bulk-upload";
     }
     
@@ -152,24 +187,14 @@ public class ProductoController extends BaseAdminController {
                 return "redirect:/admin/productos/bulk-upload";
             }
             
-            // Procesar archivo
+            // La carga sigue en segundo plano; la página consulta su progreso
             boolean permitirNuevasCategorias = "on".equals(crearCategorias);
-            ProductoBulkUploadResult resultado = productoBulkService.procesarArchivo(
-                archivo, permitirNuevasCategorias);
-            
-            // Preparar mensaje de resultado
-            String mensaje = String.format(
-                "Carga completada: %d productos procesados exitosamente",
-                resultado.getProductosProcesados()
-            );
-            
-            if (!resultado.getErrores().isEmpty()) {
-                mensaje += String.format(", %d errores encontrados", resultado.getErrores().size());
-            }
-            
-            redirectAttributes.addFlashAttribute("success", mensaje);
-            redirectAttributes.addFlashAttribute("resultado", resultado);
+            TrabajoCargaMasiva trabajo = productoBulkService.iniciarCarga(archivo, permitirNuevasCategorias);
+            return "redirect:/admin/productos/bulk-upload?trabajo=" + trabajo.getId();
             
+        } catch (RejectedExecutionException e) {
+            redirectAttributes.addFlashAttribute("error", 
+                "Hay demasiadas cargas masivas en curso. Inténtelo de nuevo en unos minutos");
         } catch (IOException | RuntimeException e) {
             redirectAttributes.addFlashAttribute("error", 
                 "Error al procesar la carga masiva: " + e.getMessage());
@@ -178,6 +203,40 @@ public class ProductoController extends BaseAdminController {
         return "redirect:/admin/productos/bulk-upload";
     }
     
+    /**
+     * Progreso de una carga masiva, consultado por la página mientras se procesa
+     */
+    @GetMapping("/bulk-upload/trabajos/{id}")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> progresoCargaMasiva(@PathVariable String id) {
+        return productoBulkService.obtenerTrabajo(id)
+            .map(trabajo -> ResponseEntity.ok(trabajo.getProgreso()))
+            .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Descargar el informe de errores y advertencias de una carga masiva
+     */
+    @GetMapping("/bulk-upload/trabajos/{id}/informe")
+    @ResponseBody
+    public ResponseEntity<byte[]> descargarInformeCargaMasiva(@PathVariable String id) {
+        TrabajoCargaMasiva trabajo = productoBulkService.obtenerTrabajo(id).orElse(null);
+        if (trabajo == null || !trabajo.getEstado().isFinal()) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            byte[] csvData = productoBulkService.generarInformeErrores(trabajo);
+            
+            return ResponseEntity.ok()
+                .header("Content-Disposition", "attachment; filename=errores_carga_" + id + ".csv")
+                .header("Content-Type", "text/csv; charset=UTF-8")
+                .body(csvData);
+                
+        } catch (IOException | RuntimeException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
     /**
      * Descargar plantilla CSV para carga masiva
      */
@@ -260,20 +319,26 @@ public class ProductoController extends BaseAdminController {
                                  RedirectAttributes redirectAttributes,
                                  Principal principal) {
         try {
-            // Procesar imagen si se proporcionó
-            if (imagen != null && !imagen.isEmpty()) {
-                String urlImagen = productoBulkService.procesarImagen(imagen);
-                producto.setImagenUrl(urlImagen);
+            boolean conImagen = imagen != null && !imagen.isEmpty();
+            if (conImagen && (imagen.getContentType() == null || !imagen.getContentType().startsWith("image/"))) {
+                throw new IllegalArgumentException("El archivo debe ser una imagen");
             }
             
             // Guardar producto
-            productoService.save(producto);
+            producto = productoService.save(producto);
             
             // Crear inventario inicial si es producto nuevo
             if (producto.getIdProducto() == null || producto.getInventario() == null) {
                 productoService.crearInventarioInicial(producto);
             }
             
+            // La imagen pasa a ser la principal del producto; el servicio actualiza su
+            // imagenUrl y la cambia al detalle cuando se generen los tamaños
+            if (conImagen) {
+                imagenService.guardarImagenProducto(
+                    producto.getIdProducto().longValue(), imagen, 0, true, producto.getNombre());
+            }
+            
             redirectAttributes.addFlashAttribute("success", 
                 "Producto guardado exitosamente");
                 
@@ -452,4 +517,26 @@ public class ProductoController extends BaseAdminController {
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    /**
+     * Reporte Jasper de catálogos grandes: lee los productos con un cursor y escribe
+     * el PDF en la respuesta a medida que se genera, con memoria acotada
+     */
+    @GetMapping("/exportar/jasper/pdf/grande")
+    @SuppressWarnings("UseSpecificCatch")
+    public void exportarProductosJasperPDFGrande(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.builder("attachment").filename("reporte_productos_jasper.pdf").build().toString());
+        try {
+            jasperExportService.exportarProductosJasperPDF(response.getOutputStream());
+        } catch (Exception e) {
+            logger.error("Error al generar el reporte Jasper de productos: {}", e.getMessage(), e);
+            // Si ya se envió parte del PDF solo queda cortar la descarga
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        }
+    }
 }
@@ -0,0 +1,293 @@
+package com.ecovivashop.dto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+/**
+ * Carrito de compras: por cada producto, la cantidad y el precio unitario en
+ * céntimos tomado al añadirlo. Las líneas viven en arrays de primitivos y un
+ * índice por id de producto hace que añadir, cambiar o quitar sean O(1).
+ *
+ * Se serializa en un formato binario compacto (enteros de longitud variable),
+ * de unas pocas decenas de bytes, tanto en la sesión HTTP como en base de datos.
+ */
+public class Carrito implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private static final byte VERSION_FORMATO = 1;
+    private static final int CAPACIDAD_INICIAL = 4;
+
+    /**
+     * Línea del carrito
+     */
+    public record Linea(int idProducto, int cantidad, long precioCentimos) {
+
+        public long getSubtotalCentimos() {
+            return this.cantidad * this.precioCentimos;
+        }
+    }
+
+    private transient int[] ids;
+    private transient int[] cantidades;
+    private transient long[] preciosCentimos;
+    private transient int tamano;
+    private transient Map<Integer, Integer> posiciones;
+    private transient int totalUnidades;
+    private transient long subtotalCentimos;
+    // Cada cambio sube la versión; la cotización guardada vale mientras no cambie
+    private transient int version;
+    private transient int versionCotizada;
+    private transient Cotizacion cotizacion;
+
+    public Carrito() {
+        this.inicializar(CAPACIDAD_INICIAL);
+    }
+
+    private void inicializar(int capacidad) {
+        this.ids = new int[capacidad];
+        this.cantidades = new int[capacidad];
+        this.preciosCentimos = new long[capacidad];
+        this.posiciones = new HashMap<>();
+        this.tamano = 0;
+        this.totalUnidades = 0;
+        this.subtotalCentimos = 0;
+        this.version++;
+    }
+
+    /**
+     * Añade unidades de un producto. Si ya estaba en el carrito se suman a las
+     * existentes y se conserva el precio con el que se añadió la primera vez.
+     */
+    public void agregar(int idProducto, int cantidad, long precioCentimos) {
+        if (idProducto <= 0 || cantidad <= 0 || precioCentimos <= 0) {
+            throw new IllegalArgumentException("Línea de carrito no válida: producto=" + idProducto
+                + ", cantidad=" + cantidad + ", precio=" + precioCentimos);
+        }
+        Integer posicion = this.posiciones.get(idProducto);
+        if (posicion != null) {
+            this.cambiarCantidad(posicion, this.cantidades[posicion] + cantidad);
+            return;
+        }
+        if (this.tamano == this.ids.length) {
+            int capacidad = this.ids.length * 2;
+            this.ids = Arrays.copyOf(this.ids, capacidad);
+            this.cantidades = Arrays.copyOf(this.cantidades, capacidad);
+            this.preciosCentimos = Arrays.copyOf(this.preciosCentimos, capacidad);
+        }
+        this.ids[this.tamano] = idProducto;
+        this.cantidades[this.tamano] = cantidad;
+        this.preciosCentimos[this.tamano] = precioCentimos;
+        this.posiciones.put(idProducto, this.tamano);
+        this.tamano++;
+        this.totalUnidades += cantidad;
+        this.subtotalCentimos += cantidad * precioCentimos;
+        this.version++;
+    }
+
+    /**
+     * Fija la cantidad de un producto; con 0 o menos lo quita.
+     * @return false si el producto no estaba en el carrito
+     */
+    public boolean actualizarCantidad(int idProducto, int cantidad) {
+        Integer posicion = this.posiciones.get(idProducto);
+        if (posicion == null) {
+            return false;
+        }
+        if (cantidad <= 0) {
+            this.quitar(posicion);
+        } else {
+            this.cambiarCantidad(posicion, cantidad);
+        }
+        return true;
+    }
+
+    /**
+     * @return false si el producto no estaba en el carrito
+     */
+    public boolean eliminar(int idProducto) {
+        Integer posicion = this.posiciones.get(idProducto);
+        if (posicion == null) {
+            return false;
+        }
+        this.quitar(posicion);
+        return true;
+    }
+
+    private void cambiarCantidad(int posicion, int cantidad) {
+        int diferencia = cantidad - this.cantidades[posicion];
+        this.cantidades[posicion] = cantidad;
+        this.totalUnidades += diferencia;
+        this.subtotalCentimos += diferencia * this.preciosCentimos[posicion];
+        this.version++;
+    }
+
+    // La última línea ocupa el hueco de la eliminada
+    private void quitar(int posicion) {
+        this.totalUnidades -= this.cantidades[posicion];
+        this.subtotalCentimos -= this.cantidades[posicion] * this.preciosCentimos[posicion];
+        this.posiciones.remove(this.ids[posicion]);
+
+        int ultima = this.tamano - 1;
+        if (posicion != ultima) {
+            this.ids[posicion] = this.ids[ultima];
+            this.cantidades[posicion] = this.cantidades[ultima];
+            this.preciosCentimos[posicion] = this.preciosCentimos[ultima];
+            this.posiciones.put(this.ids[posicion], posicion);
+        }
+        this.tamano = ultima;
+        this.version++;
+    }
+
+    public int getCantidad(int idProducto) {
+        Integer posicion = this.posiciones.get(idProducto);
+        return posicion == null ? 0 : this.cantidades[posicion];
+    }
+
+    public List<Linea> getLineas() {
+        List<Linea> lineas = new ArrayList<>(this.tamano);
+        for (int i = 0; i < this.tamano; i++) {
+            lineas.add(new Linea(this.ids[i], this.cantidades[i], this.preciosCentimos[i]));
+        }
+        return lineas;
+    }
+
+    public int getNumeroLineas() {
+        return this.tamano;
+    }
+
+    public boolean isVacio() {
+        return this.tamano == 0;
+    }
+
+    public int getTotalUnidades() {
+        return this.totalUnidades;
+    }
+
+    public long getSubtotalCentimos() {
+        return this.subtotalCentimos;
+    }
+
+    /**
+     * Cotización del carrito en su versión actual. Solo se calcula (a partir del
+     * subtotal en céntimos) la primera vez tras cada cambio.
+     */
+    public Cotizacion cotizacion(LongFunction<Cotizacion> calculo) {
+        if (this.cotizacion == null || this.versionCotizada != this.version) {
+            this.cotizacion = calculo.apply(this.subtotalCentimos);
+            this.versionCotizada = this.version;
+        }
+        return this.cotizacion;
+    }
+
+    public static long aCentimos(BigDecimal importe) {
+        return importe.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    public static BigDecimal desdeCentimos(long centimos) {
+        return BigDecimal.valueOf(centimos, 2);
+    }
+
+    // ========== SERIALIZACIÓN COMPACTA ==========
+
+    public byte[] aBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + this.tamano * 8);
+        try (DataOutputStream salida = new DataOutputStream(bytes)) {
+            this.escribir(salida);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Carrito desdeBytes(byte[] datos) {
+        Carrito carrito = new Carrito();
+        try (DataInputStream entrada = new DataInputStream(new ByteArrayInputStream(datos))) {
+            carrito.leer(entrada);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Carrito guardado ilegible", e);
+        }
+        return carrito;
+    }
+
+    private void escribir(DataOutputStream salida) throws IOException {
+        salida.writeByte(VERSION_FORMATO);
+        escribirVarLong(salida, this.tamano);
+        for (int i = 0; i < this.tamano; i++) {
+            escribirVarLong(salida, this.ids[i]);
+            escribirVarLong(salida, this.cantidades[i]);
+            escribirVarLong(salida, this.preciosCentimos[i]);
+        }
+    }
+
+    private void leer(DataInputStream entrada) throws IOException {
+        byte version = entrada.readByte();
+        if (version != VERSION_FORMATO) {
+            throw new IOException("Versión de carrito no soportada: " + version);
+        }
+        int lineas = (int) leerVarLong(entrada);
+        this.inicializar(Math.max(lineas, CAPACIDAD_INICIAL));
+        for (int i = 0; i < lineas; i++) {
+            int idProducto = (int) leerVarLong(entrada);
+            int cantidad = (int) leerVarLong(entrada);
+            long precio = leerVarLong(entrada);
+            this.agregar(idProducto, cantidad, precio);
+        }
+    }
+
+    // 7 bits por byte: ids, cantidades y precios habituales ocupan 1-3 bytes
+    private static void escribirVarLong(DataOutputStream salida, long valor) throws IOException {
+        while ((valor & ~0x7FL) != 0) {
+            salida.writeByte((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        salida.writeByte((int) valor);
+    }
+
+    private static long leerVarLong(DataInputStream entrada) throws IOException {
+        long valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+            byte b = entrada.readByte();
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IOException("Entero de longitud variable mal formado");
+    }
+
+    @Serial
+    private void writeObject(ObjectOutputStream salida) throws IOException {
+        salida.defaultWriteObject();
+        byte[] datos = this.aBytes();
+        salida.writeInt(datos.length);
+        salida.write(datos);
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream entrada) throws IOException, ClassNotFoundException {
+        entrada.defaultReadObject();
+        byte[] datos = new byte[entrada.readInt()];
+        entrada.readFully(datos);
+        try (DataInputStream datosEntrada = new DataInputStream(new ByteArrayInputStream(datos))) {
+            this.leer(datosEntrada);
+        }
+    }
+}
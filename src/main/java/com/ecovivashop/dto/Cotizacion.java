@@ -0,0 +1,40 @@
+package com.ecovivashop.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Importes de una compra en céntimos, calculados por PricingEngine. Es inmutable:
+ * el carrito guarda la de su versión actual y la reutilizan el carrito, el pago,
+ * el pedido y la boleta. Los getters en BigDecimal son para vistas y documentos.
+ */
+public record Cotizacion(long subtotalCentimos, long descuentoCentimos, long envioCentimos,
+                         long igvCentimos, long totalCentimos) {
+    
+    public long getBaseImponibleCentimos() {
+        return this.subtotalCentimos - this.descuentoCentimos;
+    }
+    
+    public BigDecimal getSubtotal() {
+        return Carrito.desdeCentimos(this.subtotalCentimos);
+    }
+    
+    public BigDecimal getDescuento() {
+        return Carrito.desdeCentimos(this.descuentoCentimos);
+    }
+    
+    public BigDecimal getEnvio() {
+        return Carrito.desdeCentimos(this.envioCentimos);
+    }
+    
+    public BigDecimal getBaseImponible() {
+        return Carrito.desdeCentimos(this.getBaseImponibleCentimos());
+    }
+    
+    public BigDecimal getIgv() {
+        return Carrito.desdeCentimos(this.igvCentimos);
+    }
+    
+    public BigDecimal getTotal() {
+        return Carrito.desdeCentimos(this.totalCentimos);
+    }
+}
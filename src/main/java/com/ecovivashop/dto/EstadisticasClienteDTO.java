@@ -0,0 +1,72 @@
+package com.ecovivashop.dto;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+
+/**
+ * Resumen de compras de un cliente: pedidos hechos, total gastado y promedio
+ * (solo pedidos entregados) y fecha del último pedido. Se calcula con una
+ * única consulta agrupada (PedidoRepository.obtenerEstadisticasPorUsuarios),
+ * para un cliente o para una página entera.
+ */
+public class EstadisticasClienteDTO {
+
+    private final Integer idUsuario;
+    private final long totalPedidos;
+    private final long pedidosEntregados;
+    private final BigDecimal totalGastado;
+    private final LocalDateTime fechaUltimoPedido;
+
+    public EstadisticasClienteDTO(Integer idUsuario, long totalPedidos, long pedidosEntregados,
+                                  BigDecimal totalGastado, LocalDateTime fechaUltimoPedido) {
+        this.idUsuario = idUsuario;
+        this.totalPedidos = totalPedidos;
+        this.pedidosEntregados = pedidosEntregados;
+        this.totalGastado = totalGastado;
+        this.fechaUltimoPedido = fechaUltimoPedido;
+    }
+
+    public static EstadisticasClienteDTO sinPedidos(Integer idUsuario) {
+        return new EstadisticasClienteDTO(idUsuario, 0, 0, BigDecimal.ZERO, null);
+    }
+
+    /**
+     * Fila [id usuario, pedidos, pedidos entregados, total entregado, último pedido]
+     */
+    public static EstadisticasClienteDTO desdeFila(Object[] fila) {
+        return new EstadisticasClienteDTO(
+            (Integer) fila[0],
+            ((Number) fila[1]).longValue(),
+            fila[2] != null ? ((Number) fila[2]).longValue() : 0,
+            fila[3] != null ? (BigDecimal) fila[3] : BigDecimal.ZERO,
+            (LocalDateTime) fila[4]);
+    }
+
+    public Integer getIdUsuario() {
+        return idUsuario;
+    }
+
+    public long getTotalPedidos() {
+        return totalPedidos;
+    }
+
+    public long getPedidosEntregados() {
+        return pedidosEntregados;
+    }
+
+    public BigDecimal getTotalGastado() {
+        return totalGastado;
+    }
+
+    public BigDecimal getPromedioPedido() {
+        if (this.pedidosEntregados == 0) {
+            return BigDecimal.ZERO;
+        }
+        return this.totalGastado.divide(BigDecimal.valueOf(this.pedidosEntregados), 2, RoundingMode.HALF_UP);
+    }
+
+    public LocalDateTime getFechaUltimoPedido() {
+        return fechaUltimoPedido;
+    }
+}
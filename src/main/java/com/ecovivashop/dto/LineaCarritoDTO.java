@@ -0,0 +1,44 @@
+package com.ecovivashop.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Línea del carrito tal como la pintan las vistas: la línea guardada más el
+ * nombre e imagen del producto, que no se guardan en el carrito.
+ */
+public class LineaCarritoDTO {
+    
+    private final Integer idProducto;
+    private final String nombre;
+    private final String imagen;
+    private final BigDecimal precio;
+    private final Integer cantidad;
+    
+    public LineaCarritoDTO(Carrito.Linea linea, String nombre, String imagen) {
+        this.idProducto = linea.idProducto();
+        this.nombre = nombre;
+        this.imagen = imagen;
+        this.precio = Carrito.desdeCentimos(linea.precioCentimos());
+        this.cantidad = linea.cantidad();
+    }
+    
+    public Integer getIdProducto() {
+        return idProducto;
+    }
+    
+    public String getNombre() {
+        return nombre;
+    }
+    
+    public String getImagen() {
+        return imagen;
+    }
+    
+    public BigDecimal getPrecio() {
+        return precio;
+    }
+    
+    public Integer getCantidad() {
+        return cantidad;
+    }
+}
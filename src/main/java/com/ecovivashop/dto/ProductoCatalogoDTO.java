@@ -0,0 +1,74 @@
+package com.ecovivashop.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Proyección de solo lectura con lo que pinta una tarjeta del catálogo. Se
+ * construye directamente en la consulta JPQL, sin cargar la entidad Producto.
+ */
+public class ProductoCatalogoDTO {
+    
+    // Umbral a partir del cual la tarjeta muestra "Últimas unidades"
+    public static final int STOCK_BAJO = 10;
+    
+    private final Integer idProducto;
+    private final String nombre;
+    private final String descripcion;
+    private final BigDecimal precio;
+    private final String categoria;
+    private final String imagenUrl;
+    private final BigDecimal puntuacionEco;
+    private final Integer stock;
+    
+    public ProductoCatalogoDTO(Integer idProducto, String nombre, String descripcion, BigDecimal precio,
+                               String categoria, String imagenUrl, BigDecimal puntuacionEco, Integer stock) {
+        this.idProducto = idProducto;
+        this.nombre = nombre;
+        this.descripcion = descripcion;
+        this.precio = precio;
+        this.categoria = categoria;
+        this.imagenUrl = imagenUrl;
+        this.puntuacionEco = puntuacionEco;
+        this.stock = stock;
+    }
+    
+    public boolean isTieneStock() {
+        return this.stock != null && this.stock > 0;
+    }
+    
+    public boolean isStockBajo() {
+        return this.isTieneStock() && this.stock <= STOCK_BAJO;
+    }
+    
+    public Integer getIdProducto() {
+        return idProducto;
+    }
+    
+    public String getNombre() {
+        return nombre;
+    }
+    
+    public String getDescripcion() {
+        return descripcion;
+    }
+    
+    public BigDecimal getPrecio() {
+        return precio;
+    }
+    
+    public String getCategoria() {
+        return categoria;
+    }
+    
+    public String getImagenUrl() {
+        return imagenUrl;
+    }
+    
+    public BigDecimal getPuntuacionEco() {
+        return puntuacionEco;
+    }
+    
+    public Integer getStock() {
+        return stock;
+    }
+}
@@ -0,0 +1,68 @@
+package com.ecovivashop.dto;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Conteos de la barra lateral del catálogo: productos por categoría, por marca
+ * y con stock, calculados a partir de una única consulta agrupada.
+ */
+public class ProductoFacetasDTO {
+    
+    private final Map<String, Long> categorias;
+    private final Map<String, Long> marcas;
+    private final long total;
+    private final long conStock;
+    
+    public ProductoFacetasDTO(Map<String, Long> categorias, Map<String, Long> marcas, long total, long conStock) {
+        this.categorias = Collections.unmodifiableMap(categorias);
+        this.marcas = Collections.unmodifiableMap(marcas);
+        this.total = total;
+        this.conStock = conStock;
+    }
+    
+    /**
+     * Acumular las filas [categoria, marca, total, con stock] de
+     * ProductoRepository.contarFacetas.
+     */
+    public static ProductoFacetasDTO desdeFilas(List<Object[]> filas) {
+        Map<String, Long> categorias = new TreeMap<>();
+        Map<String, Long> marcas = new TreeMap<>();
+        long total = 0;
+        long conStock = 0;
+        for (Object[] fila : filas) {
+            long cantidad = ((Number) fila[2]).longValue();
+            if (fila[0] != null) {
+                categorias.merge((String) fila[0], cantidad, Long::sum);
+            }
+            if (fila[1] != null) {
+                marcas.merge((String) fila[1], cantidad, Long::sum);
+            }
+            total += cantidad;
+            conStock += fila[3] != null ? ((Number) fila[3]).longValue() : 0;
+        }
+        return new ProductoFacetasDTO(categorias, marcas, total, conStock);
+    }
+    
+    public long getCantidadCategoria(String categoria) {
+        return this.categorias.getOrDefault(categoria, 0L);
+    }
+    
+    public Map<String, Long> getCategorias() {
+        return categorias;
+    }
+    
+    public Map<String, Long> getMarcas() {
+        return marcas;
+    }
+    
+    public long getTotal() {
+        return total;
+    }
+    
+    public long getConStock() {
+        return conStock;
+    }
+}
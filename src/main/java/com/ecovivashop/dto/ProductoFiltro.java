@@ -0,0 +1,66 @@
+package com.ecovivashop.dto;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Criterios del catálogo combinables entre sí. Los campos nulos o vacíos no
+ * filtran. Sirve también de clave de caché para los conteos por faceta.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductoFiltro {
+
+    private String busqueda;
+    private String categoria;
+    private String marca;
+    private BigDecimal precioMin;
+    private BigDecimal precioMax;
+    private BigDecimal puntuacionEcoMin;
+    private boolean soloConStock;
+
+    /**
+     * Construir el filtro a partir de los parámetros de la petición. Los precios
+     * y la puntuación con formato inválido se ignoran.
+     */
+    public static ProductoFiltro desdeParametros(String busqueda, String categoria, String marca,
+                                                 String precioMin, String precioMax,
+                                                 String puntuacionEcoMin, boolean soloConStock) {
+        return new ProductoFiltro(normalizar(busqueda), normalizar(categoria), normalizar(marca),
+                                  decimal(precioMin), decimal(precioMax), decimal(puntuacionEcoMin), soloConStock);
+    }
+
+    public boolean isVacio() {
+        return this.busqueda == null && this.categoria == null && this.marca == null
+            && this.precioMin == null && this.precioMax == null && this.puntuacionEcoMin == null
+            && !this.soloConStock;
+    }
+
+    /**
+     * Mismo filtro sin la categoría ni la marca elegidas: los conteos por faceta
+     * se calculan así para que el resto de opciones siga visible.
+     */
+    public ProductoFiltro sinFacetas() {
+        return new ProductoFiltro(this.busqueda, null, null, this.precioMin, this.precioMax,
+                                  this.puntuacionEcoMin, this.soloConStock);
+    }
+
+    private static String normalizar(String valor) {
+        return valor == null || valor.isBlank() ? null : valor.trim();
+    }
+
+    private static BigDecimal decimal(String valor) {
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(valor.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
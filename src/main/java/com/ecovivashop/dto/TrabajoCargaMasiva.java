@@ -0,0 +1,110 @@
+package com.ecovivashop.dto;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Carga masiva de productos en segundo plano. El hilo de la carga actualiza los
+ * contadores y la página los consulta mientras tanto; el resultado completo solo
+ * se lee cuando el estado ya es final.
+ */
+public class TrabajoCargaMasiva {
+
+    public enum Estado {
+        EN_COLA, EN_PROCESO, COMPLETADO, FALLIDO;
+
+        public boolean isFinal() {
+            return this == COMPLETADO || this == FALLIDO;
+        }
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String nombreArchivo;
+    private final LocalDateTime fechaInicio = LocalDateTime.now();
+    private final ProductoBulkUploadResult resultado = new ProductoBulkUploadResult();
+
+    private volatile Estado estado = Estado.EN_COLA;
+    private volatile int filasLeidas;
+    private volatile int productosGuardados;
+    private volatile int errores;
+    private volatile LocalDateTime fechaFin;
+
+    public TrabajoCargaMasiva(String nombreArchivo) {
+        this.nombreArchivo = nombreArchivo;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getNombreArchivo() {
+        return nombreArchivo;
+    }
+
+    public LocalDateTime getFechaInicio() {
+        return fechaInicio;
+    }
+
+    public LocalDateTime getFechaFin() {
+        return fechaFin;
+    }
+
+    public Estado getEstado() {
+        return estado;
+    }
+
+    public int getFilasLeidas() {
+        return filasLeidas;
+    }
+
+    public int getProductosGuardados() {
+        return productosGuardados;
+    }
+
+    public int getErrores() {
+        return errores;
+    }
+
+    /**
+     * Resultado detallado (errores y advertencias por fila). Lo escribe solo el hilo
+     * de la carga; desde fuera se lee cuando el estado es final.
+     */
+    public ProductoBulkUploadResult getResultado() {
+        return resultado;
+    }
+
+    public void iniciar() {
+        this.estado = Estado.EN_PROCESO;
+    }
+
+    public void filaLeida() {
+        this.filasLeidas++;
+    }
+
+    public void actualizarProgreso() {
+        this.productosGuardados = resultado.getProductosProcesados();
+        this.errores = resultado.getErrores().size();
+    }
+
+    public void terminar(boolean fallido) {
+        actualizarProgreso();
+        this.fechaFin = LocalDateTime.now();
+        this.estado = fallido ? Estado.FALLIDO : Estado.COMPLETADO;
+    }
+
+    /**
+     * Estado para la consulta de progreso de la página
+     */
+    public Map<String, Object> getProgreso() {
+        Map<String, Object> progreso = new LinkedHashMap<>();
+        progreso.put("id", id);
+        progreso.put("estado", estado.name());
+        progreso.put("terminado", estado.isFinal());
+        progreso.put("filasLeidas", filasLeidas);
+        progreso.put("productosGuardados", productosGuardados);
+        progreso.put("errores", errores);
+        return progreso;
+    }
+}
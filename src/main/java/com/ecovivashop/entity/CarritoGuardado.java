@@ -0,0 +1,55 @@
+package com.ecovivashop.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * Carrito guardado en base de datos (app.carrito.store=jdbc). Define la tabla;
+ * la lee y escribe JdbcCarritoStore con una sentencia por operación. Los datos
+ * son el carrito serializado en formato compacto (Carrito.aBytes()).
+ */
+@Entity
+@Table(name = "tb_carrito", indexes = {
+    @Index(name = "idx_carrito_fecha", columnList = "fecha_actualizacion")
+})
+public class CarritoGuardado {
+    
+    @Id
+    @Column(name = "id_carrito", length = 36)
+    private String idCarrito;
+    
+    @Column(name = "datos", nullable = false, length = 4096)
+    private byte[] datos;
+    
+    @Column(name = "fecha_actualizacion", nullable = false)
+    private LocalDateTime fechaActualizacion;
+    
+    public String getIdCarrito() {
+        return idCarrito;
+    }
+    
+    public void setIdCarrito(String idCarrito) {
+        this.idCarrito = idCarrito;
+    }
+    
+    public byte[] getDatos() {
+        return datos;
+    }
+    
+    public void setDatos(byte[] datos) {
+        this.datos = datos;
+    }
+    
+    public LocalDateTime getFechaActualizacion() {
+        return fechaActualizacion;
+    }
+    
+    public void setFechaActualizacion(LocalDateTime fechaActualizacion) {
+        this.fechaActualizacion = fechaActualizacion;
+    }
+}
@@ -0,0 +1,208 @@
+package com.ecovivashop.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+
+/**
+ * Correo registrado en la bandeja de salida. Se guarda en la misma transacción
+ * que la operación que lo origina y lo envía después EmailOutboxService.
+ */
+@Entity
+@Table(name = "tb_email_pendiente", indexes = {
+    @Index(name = "idx_email_pendiente_estado", columnList = "estado, proximo_intento")
+})
+public class EmailPendiente {
+    
+    public static final String ESTADO_PENDIENTE = "PENDIENTE";
+    public static final String ESTADO_ENVIANDO = "ENVIANDO";
+    public static final String ESTADO_ENVIADO = "ENVIADO";
+    public static final String ESTADO_FALLIDO = "FALLIDO";
+    
+    public static final String TIPO_CONFIRMACION_PEDIDO = "CONFIRMACION_PEDIDO";
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_email")
+    private Long idEmail;
+    
+    @Column(name = "tipo", nullable = false, length = 40)
+    private String tipo;
+    
+    // Evita registrar dos veces el mismo correo (p. ej. una confirmación por pedido)
+    @Column(name = "clave_deduplicacion", nullable = false, unique = true, length = 100)
+    private String claveDeduplicacion;
+    
+    @Column(name = "destinatario", nullable = false, length = 150)
+    private String destinatario;
+    
+    @Column(name = "nombre_destinatario", length = 200)
+    private String nombreDestinatario;
+    
+    @Column(name = "numero_pedido", length = 20)
+    private String numeroPedido;
+    
+    @Column(name = "total_pedido", length = 30)
+    private String totalPedido;
+    
+    @Column(name = "estado", nullable = false, length = 20)
+    private String estado;
+    
+    @Column(name = "intentos", nullable = false)
+    private Integer intentos;
+    
+    @Column(name = "proximo_intento", nullable = false)
+    private LocalDateTime proximoIntento;
+    
+    @Column(name = "ultimo_error", length = 500)
+    private String ultimoError;
+    
+    @Column(name = "fecha_creacion", nullable = false)
+    private LocalDateTime fechaCreacion;
+    
+    @Column(name = "fecha_envio")
+    private LocalDateTime fechaEnvio;
+    
+    @PrePersist
+    public void prePersist() {
+        LocalDateTime ahora = LocalDateTime.now();
+        if (this.estado == null) {
+            this.estado = ESTADO_PENDIENTE;
+        }
+        if (this.intentos == null) {
+            this.intentos = 0;
+        }
+        if (this.fechaCreacion == null) {
+            this.fechaCreacion = ahora;
+        }
+        if (this.proximoIntento == null) {
+            this.proximoIntento = ahora;
+        }
+    }
+    
+    public void registrarEnvio(LocalDateTime fecha) {
+        this.estado = ESTADO_ENVIADO;
+        this.fechaEnvio = fecha;
+        this.ultimoError = null;
+    }
+    
+    public void registrarFallo(String error, LocalDateTime proximo, int maxIntentos) {
+        this.intentos = this.intentos + 1;
+        this.ultimoError = error != null && error.length() > 500 ? error.substring(0, 500) : error;
+        this.estado = this.intentos >= maxIntentos ? ESTADO_FALLIDO : ESTADO_PENDIENTE;
+        this.proximoIntento = proximo;
+    }
+    
+    // ===== GETTERS AND SETTERS =====
+    
+    public Long getIdEmail() {
+        return idEmail;
+    }
+    
+    public void setIdEmail(Long idEmail) {
+        this.idEmail = idEmail;
+    }
+    
+    public String getTipo() {
+        return tipo;
+    }
+    
+    public void setTipo(String tipo) {
+        this.tipo = tipo;
+    }
+    
+    public String getClaveDeduplicacion() {
+        return claveDeduplicacion;
+    }
+    
+    public void setClaveDeduplicacion(String claveDeduplicacion) {
+        this.claveDeduplicacion = claveDeduplicacion;
+    }
+    
+    public String getDestinatario() {
+        return destinatario;
+    }
+    
+    public void setDestinatario(String destinatario) {
+        this.destinatario = destinatario;
+    }
+    
+    public String getNombreDestinatario() {
+        return nombreDestinatario;
+    }
+    
+    public void setNombreDestinatario(String nombreDestinatario) {
+        this.nombreDestinatario = nombreDestinatario;
+    }
+    
+    public String getNumeroPedido() {
+        return numeroPedido;
+    }
+    
+    public void setNumeroPedido(String numeroPedido) {
+        this.numeroPedido = numeroPedido;
+    }
+    
+    public String getTotalPedido() {
+        return totalPedido;
+    }
+    
+    public void setTotalPedido(String totalPedido) {
+        this.totalPedido = totalPedido;
+    }
+    
+    public String getEstado() {
+        return estado;
+    }
+    
+    public void setEstado(String estado) {
+        this.estado = estado;
+    }
+    
+    public Integer getIntentos() {
+        return intentos;
+    }
+    
+    public void setIntentos(Integer intentos) {
+        this.intentos = intentos;
+    }
+    
+    public LocalDateTime getProximoIntento() {
+        return proximoIntento;
+    }
+    
+    public void setProximoIntento(LocalDateTime proximoIntento) {
+        this.proximoIntento = proximoIntento;
+    }
+    
+    public String getUltimoError() {
+        return ultimoError;
+    }
+    
+    public void setUltimoError(String ultimoError) {
+        this.ultimoError = ultimoError;
+    }
+    
+    public LocalDateTime getFechaCreacion() {
+        return fechaCreacion;
+    }
+    
+    public void setFechaCreacion(LocalDateTime fechaCreacion) {
+        this.fechaCreacion = fechaCreacion;
+    }
+    
+    public LocalDateTime getFechaEnvio() {
+        return fechaEnvio;
+    }
+    
+    public void setFechaEnvio(LocalDateTime fechaEnvio) {
+        this.fechaEnvio = fechaEnvio;
+    }
+}
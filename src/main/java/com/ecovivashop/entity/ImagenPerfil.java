@@ -148,4 +148,12 @@ public class ImagenPerfil {
     public void setActivo(Boolean activo) {
         this.activo = activo;
     }
+    
+    // Las subidas por contenido ("ab/cd/<sha256>.png") cuelgan de /uploads/blobs
+    public String getUrl() {
+        if (nombreArchivo.indexOf('/') > 0) {
+            return "/uploads/blobs/" + nombreArchivo;
+        }
+        return String.format("/uploads/profiles/%s/%s", tipoUsuario == TipoUsuario.ADMIN ? "admin" : "cliente", nombreArchivo);
+    }
 }
@@ -4,6 +4,8 @@ import java.time.LocalDateTime;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -50,6 +52,52 @@ public class ImagenProducto {
     @Column(name = "alt_text")
     private String altText;
     
+    // Variantes redimensionadas, generadas en segundo plano tras la subida
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado_variantes", length = 20)
+    private EstadoVariantes estadoVariantes;
+    
+    @Column(name = "archivo_miniatura")
+    private String archivoMiniatura;
+    
+    @Column(name = "archivo_tarjeta")
+    private String archivoTarjeta;
+    
+    @Column(name = "archivo_detalle")
+    private String archivoDetalle;
+    
+    @Column(name = "archivo_tarjeta_webp")
+    private String archivoTarjetaWebp;
+    
+    /**
+     * Tamaños que se generan de cada imagen: lado máximo en píxeles y sufijo del archivo
+     */
+    public enum Variante {
+        MINIATURA(150, "mini"),
+        TARJETA(400, "card"),
+        DETALLE(1000, "detalle");
+        
+        private final int lado;
+        private final String sufijo;
+        
+        Variante(int lado, String sufijo) {
+            this.lado = lado;
+            this.sufijo = sufijo;
+        }
+        
+        public int getLado() {
+            return lado;
+        }
+        
+        public String getSufijo() {
+            return sufijo;
+        }
+    }
+    
+    public enum EstadoVariantes {
+        PENDIENTE, LISTAS, ERROR, NO_APLICA
+    }
+    
     // Constructores
     public ImagenProducto() {
         this.fechaSubida = LocalDateTime.now();
@@ -166,4 +214,93 @@ public class ImagenProducto {
     public void setAltText(String altText) {
         this.altText = altText;
     }
+    
+    public EstadoVariantes getEstadoVariantes() {
+        return estadoVariantes;
+    }
+    
+    public void setEstadoVariantes(EstadoVariantes estadoVariantes) {
+        this.estadoVariantes = estadoVariantes;
+    }
+    
+    public String getArchivoMiniatura() {
+        return archivoMiniatura;
+    }
+    
+    public void setArchivoMiniatura(String archivoMiniatura) {
+        this.archivoMiniatura = archivoMiniatura;
+    }
+    
+    public String getArchivoTarjeta() {
+        return archivoTarjeta;
+    }
+    
+    public void setArchivoTarjeta(String archivoTarjeta) {
+        this.archivoTarjeta = archivoTarjeta;
+    }
+    
+    public String getArchivoDetalle() {
+        return archivoDetalle;
+    }
+    
+    public void setArchivoDetalle(String archivoDetalle) {
+        this.archivoDetalle = archivoDetalle;
+    }
+    
+    public String getArchivoTarjetaWebp() {
+        return archivoTarjetaWebp;
+    }
+    
+    public void setArchivoTarjetaWebp(String archivoTarjetaWebp) {
+        this.archivoTarjetaWebp = archivoTarjetaWebp;
+    }
+    
+    public String getArchivoVariante(Variante variante) {
+        return switch (variante) {
+            case MINIATURA -> archivoMiniatura;
+            case TARJETA -> archivoTarjeta;
+            case DETALLE -> archivoDetalle;
+        };
+    }
+    
+    public void setArchivoVariante(Variante variante, String archivo) {
+        switch (variante) {
+            case MINIATURA -> this.archivoMiniatura = archivo;
+            case TARJETA -> this.archivoTarjeta = archivo;
+            case DETALLE -> this.archivoDetalle = archivo;
+        }
+    }
+    
+    // Las subidas por contenido ("ab/cd/<sha256>.jpg") cuelgan de /uploads/blobs
+    private String urlArchivo(String archivo) {
+        return archivo.indexOf('/') > 0
+            ? "/uploads/blobs/" + archivo
+            : String.format("/uploads/products/%s/%s", productoId, archivo);
+    }
+    
+    public String getUrl() {
+        return urlArchivo(nombreArchivo);
+    }
+    
+    // URLs públicas por tamaño; mientras la variante no exista se usa el original
+    public String getUrlVariante(Variante variante) {
+        String archivo = getArchivoVariante(variante);
+        return urlArchivo(archivo != null ? archivo : nombreArchivo);
+    }
+    
+    public String getUrlMiniatura() {
+        return getUrlVariante(Variante.MINIATURA);
+    }
+    
+    public String getUrlTarjeta() {
+        return getUrlVariante(Variante.TARJETA);
+    }
+    
+    public String getUrlDetalle() {
+        return getUrlVariante(Variante.DETALLE);
+    }
+    
+    public String getUrlTarjetaWebp() {
+        return archivoTarjetaWebp != null ? urlArchivo(archivoTarjetaWebp) : null;
+    }
 }
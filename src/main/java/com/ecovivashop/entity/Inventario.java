@@ -2,8 +2,15 @@ package com.ecovivashop.entity;
 
 import java.time.LocalDateTime;
 
+import com.ecovivashop.service.CatalogoEntityListener;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -18,6 +25,9 @@ import lombok.NoArgsConstructor;
 
 @Entity
 @Table(name = "tb_inventario")
+@EntityListeners(CatalogoEntityListener.class)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Inventario {
@@ -0,0 +1,52 @@
+package com.ecovivashop.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Último valor guardado de cada contador del panel de administración. Define la
+ * tabla; la lee y escribe MetricasStore, que mantiene los contadores en memoria
+ * y los vuelca aquí periódicamente para recuperarlos al arrancar.
+ */
+@Entity
+@Table(name = "tb_metrica_resumen")
+public class MetricaResumen {
+
+    @Id
+    @Column(name = "clave", length = 100)
+    private String clave;
+
+    @Column(name = "valor", nullable = false)
+    private Long valor;
+
+    @Column(name = "fecha_actualizacion", nullable = false)
+    private LocalDateTime fechaActualizacion;
+
+    public String getClave() {
+        return clave;
+    }
+
+    public void setClave(String clave) {
+        this.clave = clave;
+    }
+
+    public Long getValor() {
+        return valor;
+    }
+
+    public void setValor(Long valor) {
+        this.valor = valor;
+    }
+
+    public LocalDateTime getFechaActualizacion() {
+        return fechaActualizacion;
+    }
+
+    public void setFechaActualizacion(LocalDateTime fechaActualizacion) {
+        this.fechaActualizacion = fechaActualizacion;
+    }
+}
@@ -2,25 +2,34 @@ package com.ecovivashop.entity;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Map;
 import java.util.Set;
 
+import com.ecovivashop.service.MetricasEntityListener;
+
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "tb_pedido")
+@Table(name = "tb_pedido", indexes = {
+    @Index(name = "idx_pedido_usuario_fecha", columnList = "id_usuario, fecha_pedido")
+})
+@EntityListeners(MetricasEntityListener.class)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Pedido {
@@ -87,6 +96,10 @@ public class Pedido {
     @OneToMany(mappedBy = "pedido", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private Set<Pago> pagos;
 
+    // Lo que el pedido aporta a los contadores del panel según lo último leído o escrito en BD
+    @Transient
+    private Map<String, Long> metricasContadas;
+
     @PrePersist
     public void prePersist() {
         if (this.fechaPedido == null) {
@@ -116,22 +129,9 @@ public class Pedido {
     }
 
     // Métodos de utilidad
+    // Respaldo para pedidos persistidos sin pasar por NumeroPedidoGenerator: aleatorio, no depende del reloj
     private String generarNumeroPedido() {
-        return "EM" + System.currentTimeMillis();
-    }
-
-    public void calcularTotales() {
-        if (this.detalles != null && !this.detalles.isEmpty()) {
-            this.subtotal = this.detalles.stream()
-                .map(PedidoDetalle::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        }
-        
-        // Calcular impuestos (19% en Colombia)
-        this.impuestos = this.subtotal.multiply(BigDecimal.valueOf(0.19));
-        
-        // Calcular total
-        this.total = this.subtotal.add(this.impuestos).add(this.costoEnvio).subtract(this.descuento);
+        return "EM" + java.util.UUID.randomUUID().toString().replace("-", "").substring(0, 18).toUpperCase();
     }
 
     public boolean puedeSerCancelado() {
@@ -364,4 +364,12 @@ public class Pedido {
     public void setPagos(Set<Pago> pagos) {
         this.pagos = pagos;
     }
+    
+    public Map<String, Long> getMetricasContadas() {
+        return metricasContadas;
+    }
+    
+    public void setMetricasContadas(Map<String, Long> metricasContadas) {
+        this.metricasContadas = metricasContadas;
+    }
 }
@@ -0,0 +1,36 @@
+package com.ecovivashop.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.ecovivashop.entity.EmailPendiente;
+
+@Repository
+public interface EmailPendienteRepository extends JpaRepository<EmailPendiente, Long> {
+    
+    boolean existsByClaveDeduplicacion(String claveDeduplicacion);
+    
+    long countByEstado(String estado);
+    
+    // Correos listos para enviar (incluye los ENVIANDO cuyo bloqueo caducó)
+    @Query("SELECT e.idEmail FROM EmailPendiente e WHERE e.estado IN ('PENDIENTE', 'ENVIANDO') " +
+           "AND e.proximoIntento <= :ahora ORDER BY e.proximoIntento ASC")
+    List<Long> findIdsListosParaEnvio(@Param("ahora") LocalDateTime ahora, Pageable pageable);
+    
+    // Reclamar un correo para este worker; devuelve 0 si otro worker se adelantó
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailPendiente e SET e.estado = 'ENVIANDO', e.proximoIntento = :bloqueadoHasta " +
+           "WHERE e.idEmail = :idEmail AND e.estado IN ('PENDIENTE', 'ENVIANDO') AND e.proximoIntento <= :ahora")
+    int reclamar(@Param("idEmail") Long idEmail,
+                 @Param("ahora") LocalDateTime ahora,
+                 @Param("bloqueadoHasta") LocalDateTime bloqueadoHasta);
+}
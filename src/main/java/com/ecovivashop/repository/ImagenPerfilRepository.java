@@ -30,6 +30,10 @@ public interface ImagenPerfilRepository extends JpaRepository<ImagenPerfil, Long
     @Query("SELECT i FROM ImagenPerfil i WHERE i.tipoUsuario = :tipoUsuario AND i.activo = true")
     List<ImagenPerfil> findByTipoUsuarioAndActivoTrue(@Param("tipoUsuario") TipoUsuario tipoUsuario);
     
+    // Referencias a un archivo del almacén por contenido
+    @Query("SELECT COUNT(i) FROM ImagenPerfil i WHERE i.nombreArchivo = :nombreArchivo AND i.activo = true")
+    long countActivasByNombreArchivo(@Param("nombreArchivo") String nombreArchivo);
+    
     @Modifying
     @Transactional
     @Query("UPDATE ImagenPerfil i SET i.activo = false WHERE i.usuarioId = :usuarioId AND i.tipoUsuario = :tipoUsuario")
@@ -1,5 +1,6 @@
 package com.ecovivashop.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,6 +22,13 @@ public interface ImagenProductoRepository extends JpaRepository<ImagenProducto,
     @Query("SELECT i FROM ImagenProducto i WHERE i.productoId = :productoId AND i.esPrincipal = true AND i.activo = true")
     Optional<ImagenProducto> findPrincipalByProductoId(@Param("productoId") Long productoId);
     
+    @Query("SELECT i FROM ImagenProducto i WHERE i.productoId IN :productoIds AND i.esPrincipal = true AND i.activo = true")
+    List<ImagenProducto> findPrincipalesByProductoIds(@Param("productoIds") Collection<Long> productoIds);
+    
+    // Referencias a un archivo del almacén por contenido
+    @Query("SELECT COUNT(i) FROM ImagenProducto i WHERE i.nombreArchivo = :nombreArchivo AND i.activo = true")
+    long countActivasByNombreArchivo(@Param("nombreArchivo") String nombreArchivo);
+    
     @Query("SELECT i FROM ImagenProducto i WHERE i.productoId = :productoId AND i.activo = true")
     List<ImagenProducto> findByProductoIdAndActivoTrue(@Param("productoId") Long productoId);
     
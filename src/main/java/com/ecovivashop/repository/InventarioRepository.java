@@ -1,12 +1,14 @@
 package com.ecovivashop.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -15,7 +17,7 @@ import com.ecovivashop.entity.Inventario;
 import com.ecovivashop.entity.Producto;
 
 @Repository
-public interface InventarioRepository extends JpaRepository<Inventario, Integer> {
+public interface InventarioRepository extends JpaRepository<Inventario, Integer>, InventarioRepositoryCustom {
     
     // Buscar inventario por producto
     Optional<Inventario> findByProducto(Producto producto);
@@ -91,6 +93,38 @@ public interface InventarioRepository extends JpaRepository<Inventario, Integer>
            "FROM Inventario i WHERE i.producto.idProducto = :idProducto")
     Boolean verificarDisponibilidad(@Param("idProducto") Integer idProducto, @Param("cantidad") Integer cantidad);
     
+    // Descontar stock de forma atómica: solo actualiza si hay stock suficiente.
+    // Se vacía el contexto para que una lectura posterior no devuelva el stock anterior
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Inventario i SET i.stock = i.stock - :cantidad, i.fechaActualizacion = :fecha, " +
+           "i.usuarioActualizacion = :usuario WHERE i.producto.idProducto = :idProducto AND i.stock >= :cantidad")
+    int reducirStockSiDisponible(@Param("idProducto") Integer idProducto, @Param("cantidad") Integer cantidad,
+                                 @Param("fecha") LocalDateTime fecha, @Param("usuario") String usuario);
+    
+    // Aumentar stock de forma atómica (sin leer el valor actual); igual que al
+    // descontar, se vacía el contexto para no seguir viendo el stock anterior
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Inventario i SET i.stock = i.stock + :cantidad, i.fechaActualizacion = :fecha, " +
+           "i.usuarioActualizacion = :usuario WHERE i.producto.idProducto = :idProducto")
+    int aumentarStockAtomico(@Param("idProducto") Integer idProducto, @Param("cantidad") Integer cantidad,
+                             @Param("fecha") LocalDateTime fecha, @Param("usuario") String usuario);
+    
+    // Stock actual sin cargar la entidad
+    @Query("SELECT i.stock FROM Inventario i WHERE i.producto.idProducto = :idProducto")
+    Optional<Integer> findStockByProductoId(@Param("idProducto") Integer idProducto);
+    
+    // Ids de inventario de varios productos (para desalojarlos de la caché de segundo nivel)
+    @Query("SELECT i.idInventario FROM Inventario i WHERE i.producto.idProducto IN :idsProducto")
+    List<Integer> findIdsByProductoIds(@Param("idsProducto") Collection<Integer> idsProducto);
+    
+    // Stock de cada producto: id de producto, stock, stock mínimo y estado (contadores del panel)
+    @Query("SELECT i.producto.idProducto, i.stock, i.stockMinimo, i.estado FROM Inventario i")
+    List<Object[]> findEstadosStock();
+    
+    @Query("SELECT i.producto.idProducto, i.stock, i.stockMinimo, i.estado FROM Inventario i " +
+           "WHERE i.producto.idProducto IN :idsProducto")
+    List<Object[]> findEstadosStockByProductoIds(@Param("idsProducto") Collection<Integer> idsProducto);
+    
     // ========== MÉTODOS CON PAGINACIÓN ==========
     
     // Inventarios activos con paginación
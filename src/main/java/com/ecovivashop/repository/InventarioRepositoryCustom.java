@@ -0,0 +1,21 @@
+package com.ecovivashop.repository;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Operaciones de inventario que se resuelven con JDBC en lugar de JPA
+ */
+public interface InventarioRepositoryCustom {
+    
+    /**
+     * Descontar stock de varios productos en un único batch JDBC. Cada línea es un
+     * UPDATE condicional (stock >= cantidad) y las líneas se envían ordenadas por
+     * id de producto para que dos checkouts concurrentes bloqueen filas en el mismo
+     * orden.
+     *
+     * @param cantidadesPorProducto cantidad a descontar por id de producto
+     * @return ids de producto cuyo stock no alcanzó (vacío si todo se reservó)
+     */
+    List<Integer> reservarStockEnLote(Map<Integer, Integer> cantidadesPorProducto, String usuarioActualizacion);
+}
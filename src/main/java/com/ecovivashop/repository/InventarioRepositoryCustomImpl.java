@@ -0,0 +1,80 @@
+package com.ecovivashop.repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.ecovivashop.entity.Inventario;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+
+public class InventarioRepositoryCustomImpl implements InventarioRepositoryCustom {
+    
+    private static final String SQL_RESERVAR_STOCK =
+        "UPDATE tb_inventario SET stock = stock - ?, fecha_actualizacion = ?, usuario_actualizacion = ? " +
+        "WHERE id_producto = ? AND stock >= ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    
+    public InventarioRepositoryCustomImpl(JdbcTemplate jdbcTemplate, EntityManager entityManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+    }
+    
+    @Override
+    public List<Integer> reservarStockEnLote(Map<Integer, Integer> cantidadesPorProducto, String usuarioActualizacion) {
+        // Orden estable por id de producto para evitar interbloqueos entre checkouts
+        TreeMap<Integer, Integer> ordenadas = new TreeMap<>(cantidadesPorProducto);
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        
+        List<Integer> idsProducto = new ArrayList<>(ordenadas.size());
+        List<Object[]> parametros = new ArrayList<>(ordenadas.size());
+        for (Map.Entry<Integer, Integer> linea : ordenadas.entrySet()) {
+            idsProducto.add(linea.getKey());
+            parametros.add(new Object[]{linea.getValue(), ahora, usuarioActualizacion, linea.getKey(), linea.getValue()});
+        }
+        
+        // Escribir antes los cambios JPA pendientes para que el batch los vea
+        entityManager.flush();
+        int[] filasActualizadas = jdbcTemplate.batchUpdate(SQL_RESERVAR_STOCK, parametros);
+        
+        this.desalojarDeCache(idsProducto);
+        
+        List<Integer> sinStock = new ArrayList<>();
+        for (int i = 0; i < filasActualizadas.length; i++) {
+            if (filasActualizadas[i] == 0) {
+                sinStock.add(idsProducto.get(i));
+            }
+        }
+        return sinStock;
+    }
+    
+    // El UPDATE por JDBC no pasa por Hibernate: las copias en la caché de segundo nivel
+    // se desalojan ahora y otra vez al confirmar, por si otra transacción las recargó entretanto
+    private void desalojarDeCache(List<Integer> idsProducto) {
+        List<Integer> idsInventario = entityManager.createQuery(
+                "SELECT i.idInventario FROM Inventario i WHERE i.producto.idProducto IN :ids", Integer.class)
+            .setParameter("ids", idsProducto)
+            .getResultList();
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        idsInventario.forEach(id -> cache.evict(Inventario.class, id));
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    idsInventario.forEach(id -> cache.evict(Inventario.class, id));
+                }
+            });
+        }
+    }
+}
@@ -14,7 +14,7 @@ import com.ecovivashop.entity.PedidoDetalle;
 import com.ecovivashop.entity.Producto;
 
 @Repository
-public interface PedidoDetalleRepository extends JpaRepository<PedidoDetalle, Integer> {
+public interface PedidoDetalleRepository extends JpaRepository<PedidoDetalle, Integer>, PedidoDetalleRepositoryCustom {
     
     // Buscar detalles por pedido
     List<PedidoDetalle> findByPedido(Pedido pedido);
@@ -0,0 +1,21 @@
+package com.ecovivashop.repository;
+
+import java.util.List;
+
+import com.ecovivashop.entity.PedidoDetalle;
+
+/**
+ * Operaciones sobre detalles de pedido que se resuelven con JDBC en lugar de JPA
+ */
+public interface PedidoDetalleRepositoryCustom {
+    
+    /**
+     * Insertar los detalles de un pedido en un único batch JDBC. Los ids IDENTITY
+     * impiden que Hibernate agrupe los INSERT, por eso se envían directamente.
+     * Los detalles no quedan asociados al contexto de persistencia.
+     *
+     * @param idPedido pedido ya persistido al que pertenecen los detalles
+     * @param detalles detalles con producto, cantidad, precio y subtotal calculados
+     */
+    void insertarDetallesEnLote(Integer idPedido, List<PedidoDetalle> detalles);
+}
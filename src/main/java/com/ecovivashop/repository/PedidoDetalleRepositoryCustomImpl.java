@@ -0,0 +1,51 @@
+package com.ecovivashop.repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.ecovivashop.entity.PedidoDetalle;
+
+import jakarta.persistence.EntityManager;
+
+public class PedidoDetalleRepositoryCustomImpl implements PedidoDetalleRepositoryCustom {
+    
+    private static final String SQL_INSERTAR_DETALLE =
+        "INSERT INTO tb_pedido_detalle (id_pedido, id_producto, cantidad, precio_unitario, " +
+        "descuento_unitario, subtotal, notas) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    
+    public PedidoDetalleRepositoryCustomImpl(JdbcTemplate jdbcTemplate, EntityManager entityManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+    }
+    
+    @Override
+    public void insertarDetallesEnLote(Integer idPedido, List<PedidoDetalle> detalles) {
+        if (detalles.isEmpty()) {
+            return;
+        }
+        
+        List<Object[]> parametros = new ArrayList<>(detalles.size());
+        for (PedidoDetalle detalle : detalles) {
+            BigDecimal descuento = detalle.getDescuentoUnitario() != null ? detalle.getDescuentoUnitario() : BigDecimal.ZERO;
+            parametros.add(new Object[]{
+                idPedido,
+                detalle.getProducto().getIdProducto(),
+                detalle.getCantidad(),
+                detalle.getPrecioUnitario(),
+                descuento,
+                detalle.getSubtotal(),
+                detalle.getNotas()
+            });
+        }
+        
+        // El pedido debe existir en la base de datos antes de insertar sus detalles
+        entityManager.flush();
+        jdbcTemplate.batchUpdate(SQL_INSERTAR_DETALLE, parametros);
+    }
+}
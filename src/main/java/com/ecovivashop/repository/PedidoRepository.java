@@ -2,6 +2,7 @@ package com.ecovivashop.repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -75,6 +76,21 @@ public interface PedidoRepository extends JpaRepository<Pedido, Integer> {
     @Query("SELECT COUNT(p) FROM Pedido p WHERE p.estado = :estado")
     Long contarPorEstado(@Param("estado") String estado);
     
+    @Query("SELECT p.estado, COUNT(p) FROM Pedido p GROUP BY p.estado")
+    List<Object[]> contarAgrupadoPorEstado();
+    
+    // Resumen de compras por cliente: [id usuario, pedidos, entregados, total entregado, último pedido]
+    @Query("SELECT p.usuario.idUsuario, COUNT(p), " +
+           "COUNT(CASE WHEN p.estado = 'ENTREGADO' THEN 1 END), " +
+           "SUM(CASE WHEN p.estado = 'ENTREGADO' THEN p.total END), MAX(p.fechaPedido) " +
+           "FROM Pedido p WHERE p.usuario.idUsuario IN :idsUsuario GROUP BY p.usuario.idUsuario")
+    List<Object[]> obtenerEstadisticasPorUsuarios(@Param("idsUsuario") Collection<Integer> idsUsuario);
+    
+    // Ventas de todos los pedidos no cancelados hechos en [inicio, fin)
+    @Query("SELECT COALESCE(SUM(p.total), 0) FROM Pedido p WHERE p.estado <> 'CANCELADO' " +
+           "AND p.fechaPedido >= :inicio AND p.fechaPedido < :fin")
+    BigDecimal sumarVentasNoCanceladas(@Param("inicio") LocalDateTime inicio, @Param("fin") LocalDateTime fin);
+    
     @Query("SELECT COUNT(p) FROM Pedido p WHERE p.fechaPedido >= :fecha")
     Long contarPedidosDespueDe(@Param("fecha") LocalDateTime fecha);
     
@@ -149,4 +165,31 @@ public interface PedidoRepository extends JpaRepository<Pedido, Integer> {
     
     // Contar pedidos por usuario
     long countByUsuario(Usuario usuario);
+    
+    // ===== EXPORTACIÓN POR LOTES (KEYSET) =====
+    
+    // IDs del siguiente lote a partir del último ID exportado
+    @Query("SELECT p.idPedido FROM Pedido p WHERE p.idPedido > :ultimoId ORDER BY p.idPedido ASC")
+    List<Integer> findIdsSiguienteLote(@Param("ultimoId") Integer ultimoId, Pageable pageable);
+    
+    @Query("SELECT p.idPedido FROM Pedido p WHERE p.idPedido > :ultimoId " +
+           "AND p.fechaPedido BETWEEN :inicio AND :fin ORDER BY p.idPedido ASC")
+    List<Integer> findIdsSiguienteLoteEntreFechas(@Param("ultimoId") Integer ultimoId,
+                                                  @Param("inicio") LocalDateTime inicio,
+                                                  @Param("fin") LocalDateTime fin,
+                                                  Pageable pageable);
+    
+    @Query("SELECT p.idPedido FROM Pedido p WHERE p.idPedido > :ultimoId " +
+           "AND p.estado = :estado ORDER BY p.idPedido ASC")
+    List<Integer> findIdsSiguienteLotePorEstado(@Param("ultimoId") Integer ultimoId,
+                                                @Param("estado") String estado,
+                                                Pageable pageable);
+    
+    // Pedidos de un lote con usuario y detalles cargados (evita N+1 al exportar)
+    @EntityGraph(attributePaths = {"usuario", "detalles", "detalles.producto"})
+    @Query("SELECT p FROM Pedido p WHERE p.idPedido IN :ids ORDER BY p.idPedido ASC")
+    List<Pedido> findByIdsConDetalles(@Param("ids") List<Integer> ids);
+    
+    // Contar pedidos en un rango de fechas
+    long countByFechaPedidoBetween(LocalDateTime inicio, LocalDateTime fin);
 }
@@ -1,20 +1,29 @@
 package com.ecovivashop.repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.jpa.AvailableHints;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.ecovivashop.dto.ProductoCatalogoDTO;
 import com.ecovivashop.entity.Producto;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
-public interface ProductoRepository extends JpaRepository<Producto, Integer> {
+public interface ProductoRepository extends JpaRepository<Producto, Integer>, JpaSpecificationExecutor<Producto>,
+                                            ProductoRepositoryCustom {
     
     // Buscar productos activos
     List<Producto> findByEstadoTrue();
@@ -84,18 +93,27 @@ public interface ProductoRepository extends JpaRepository<Producto, Integer> {
     @Query("SELECT COUNT(p) FROM Producto p WHERE p.categoria = :categoria AND p.estado = true")
     Long contarPorCategoria(@Param("categoria") String categoria);
     
+    // Productos cuya imagen es un archivo del almacén por contenido (original o variante)
+    @Query("SELECT COUNT(p) FROM Producto p WHERE p.imagenUrl LIKE CONCAT(:prefijo, '%')")
+    long contarPorPrefijoImagenUrl(@Param("prefijo") String prefijo);
+    
     // Obtener categorías únicas
     @Query("SELECT DISTINCT p.categoria FROM Producto p WHERE p.estado = true ORDER BY p.categoria")
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     List<String> findCategorias();
     
     // Obtener marcas únicas
     @Query("SELECT DISTINCT p.marca FROM Producto p WHERE p.estado = true ORDER BY p.marca")
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     List<String> findMarcas();
     
     // Estadísticas de productos
     @Query("SELECT COUNT(p) FROM Producto p WHERE p.estado = true")
     Long contarProductosActivos();
     
+    @Query("SELECT p.idProducto FROM Producto p WHERE p.estado = true")
+    List<Integer> findIdsActivos();
+    
     @Query("SELECT AVG(p.precio) FROM Producto p WHERE p.estado = true")
     BigDecimal obtenerPrecioPromedio();
     
@@ -122,24 +140,6 @@ public interface ProductoRepository extends JpaRepository<Producto, Integer> {
     @Query("SELECT DISTINCT p.categoria FROM Producto p WHERE p.categoria IS NOT NULL ORDER BY p.categoria")
     List<String> findAllCategorias();
     
-    // ===== MÉTODOS PARA EL CATÁLOGO DEL CLIENTE =====
-    
-    // Buscar por nombre y categoría
-    Page<Producto> findByNombreContainingIgnoreCaseAndCategoriaAndEstadoTrue(
-        String nombre, String categoria, Pageable pageable);
-    
-    // Buscar por nombre, categoría y rango de precios
-    Page<Producto> findByNombreContainingIgnoreCaseAndCategoriaAndPrecioBetweenAndEstadoTrue(
-        String nombre, String categoria, BigDecimal precioMin, BigDecimal precioMax, Pageable pageable);
-    
-    // Buscar por nombre y rango de precios
-    Page<Producto> findByNombreContainingIgnoreCaseAndPrecioBetweenAndEstadoTrue(
-        String nombre, BigDecimal precioMin, BigDecimal precioMax, Pageable pageable);
-    
-    // Buscar por categoría y rango de precios
-    Page<Producto> findByCategoriaAndPrecioBetweenAndEstadoTrue(
-        String categoria, BigDecimal precioMin, BigDecimal precioMax, Pageable pageable);
-    
     // Alias para obtener categorías distintas
     @Query("SELECT DISTINCT p.categoria FROM Producto p WHERE p.categoria IS NOT NULL AND p.estado = true ORDER BY p.categoria")
     List<String> findDistinctCategorias();
@@ -155,30 +155,37 @@ public interface ProductoRepository extends JpaRepository<Producto, Integer> {
            countQuery = "SELECT COUNT(p) FROM Producto p WHERE p.estado = true")
     Page<Producto> findByEstadoTrueWithInventario(Pageable pageable);
     
-    // Cargar productos por categoría con inventario optimizado - CON PAGINACIÓN
-    @Query(value = "SELECT p FROM Producto p LEFT JOIN FETCH p.inventario WHERE p.categoria = :categoria AND p.estado = true",
-           countQuery = "SELECT COUNT(p) FROM Producto p WHERE p.categoria = :categoria AND p.estado = true")
-    Page<Producto> findByCategoriaAndEstadoTrueWithInventario(@Param("categoria") String categoria, Pageable pageable);
-    
-    // Cargar productos por rango de precio con inventario optimizado - CON PAGINACIÓN
-    @Query(value = "SELECT p FROM Producto p LEFT JOIN FETCH p.inventario WHERE p.precio BETWEEN :precioMin AND :precioMax AND p.estado = true",
-           countQuery = "SELECT COUNT(p) FROM Producto p WHERE p.precio BETWEEN :precioMin AND :precioMax AND p.estado = true")
-    Page<Producto> findByPrecioBetweenAndEstadoTrueWithInventario(@Param("precioMin") BigDecimal precioMin, @Param("precioMax") BigDecimal precioMax, Pageable pageable);
-    
-    // Búsqueda optimizada con inventario - CON PAGINACIÓN
-    @Query(value = "SELECT p FROM Producto p LEFT JOIN FETCH p.inventario WHERE p.estado = true AND (" +
-           "LOWER(p.nombre) LIKE LOWER(CONCAT('%', :busqueda, '%')) OR " +
-           "LOWER(p.descripcion) LIKE LOWER(CONCAT('%', :busqueda, '%')) OR " +
-           "LOWER(p.categoria) LIKE LOWER(CONCAT('%', :busqueda, '%')) OR " +
-           "LOWER(p.marca) LIKE LOWER(CONCAT('%', :busqueda, '%')))",
-           countQuery = "SELECT COUNT(p) FROM Producto p WHERE p.estado = true AND (" +
-           "LOWER(p.nombre) LIKE LOWER(CONCAT('%', :busqueda, '%')) OR " +
-           "LOWER(p.descripcion) LIKE LOWER(CONCAT('%', :busqueda, '%')) OR " +
-           "LOWER(p.categoria) LIKE LOWER(CONCAT('%', :busqueda, '%')) OR " +
-           "LOWER(p.marca) LIKE LOWER(CONCAT('%', :busqueda, '%')))")
-    Page<Producto> buscarProductosPaginadoWithInventario(@Param("busqueda") String busqueda, Pageable pageable);
+    // Los filtros combinados del catálogo (categoría, marca, precio, stock...) se
+    // resuelven con ProductoSpecifications vía JpaSpecificationExecutor
     
     // Buscar producto por ID con inventario cargado
     @Query("SELECT p FROM Producto p LEFT JOIN FETCH p.inventario WHERE p.idProducto = :id")
     Optional<Producto> findByIdWithInventario(@Param("id") Integer id);
+    
+    // ===== CATÁLOGO PAGINADO POR KEYSET =====
+    
+    // Tarjetas del catálogo a partir del último id mostrado (solo las columnas que se pintan)
+    @Query("SELECT new com.ecovivashop.dto.ProductoCatalogoDTO(p.idProducto, p.nombre, SUBSTRING(p.descripcion, 1, 120), " +
+           "p.precio, p.categoria, p.imagenUrl, p.puntuacionEco, i.stock) " +
+           "FROM Producto p LEFT JOIN p.inventario i " +
+           "WHERE p.estado = true AND p.idProducto > :ultimoId ORDER BY p.idProducto ASC")
+    List<ProductoCatalogoDTO> findCatalogoDespuesDe(@Param("ultimoId") Integer ultimoId, Pageable pageable);
+    
+    // Ids del catálogo en orden; con PageRequest.of(posicion, 1) devuelve el id en esa posición
+    @Query("SELECT p.idProducto FROM Producto p WHERE p.estado = true ORDER BY p.idProducto ASC")
+    List<Integer> findIdsCatalogo(Pageable pageable);
+    
+    // ===== ÍNDICE DE BÚSQUEDA =====
+    
+    // Campos indexables del siguiente lote (carga inicial del índice)
+    @Query("SELECT p.idProducto, p.nombre, p.descripcion, p.categoria, p.marca, p.estado FROM Producto p " +
+           "WHERE p.idProducto > :ultimoId ORDER BY p.idProducto ASC")
+    List<Object[]> findDocumentosBusquedaDespuesDe(@Param("ultimoId") Integer ultimoId, Pageable pageable);
+    
+    // Productos resueltos por el índice, paginados con el orden pedido
+    @Query("SELECT p FROM Producto p WHERE p.idProducto IN :ids")
+    Page<Producto> findByIdProductoIn(@Param("ids") Collection<Integer> ids, Pageable pageable);
+    
+    @Query("SELECT p FROM Producto p LEFT JOIN FETCH p.inventario WHERE p.idProducto IN :ids")
+    List<Producto> findByIdsWithInventario(@Param("ids") Collection<Integer> ids);
 }
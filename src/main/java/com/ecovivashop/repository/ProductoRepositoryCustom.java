@@ -0,0 +1,22 @@
+package com.ecovivashop.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.ecovivashop.entity.Producto;
+
+/**
+ * Consultas de productos que Spring Data no puede derivar
+ */
+public interface ProductoRepositoryCustom {
+    
+    /**
+     * Conteos para las facetas del catálogo en una sola consulta agrupada por
+     * categoría y marca.
+     *
+     * @param filtro productos a contar
+     * @return filas [categoria, marca, total, total con stock]
+     */
+    List<Object[]> contarFacetas(Specification<Producto> filtro);
+}
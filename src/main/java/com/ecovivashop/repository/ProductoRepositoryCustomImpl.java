@@ -0,0 +1,42 @@
+package com.ecovivashop.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.ecovivashop.entity.Inventario;
+import com.ecovivashop.entity.Producto;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Root;
+
+public class ProductoRepositoryCustomImpl implements ProductoRepositoryCustom {
+    
+    private final EntityManager entityManager;
+    
+    public ProductoRepositoryCustomImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+    
+    @Override
+    public List<Object[]> contarFacetas(Specification<Producto> filtro) {
+        CriteriaBuilder cb = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<Producto> root = query.from(Producto.class);
+        
+        // La especificación aplica los filtros; el join con inventario es el mismo que usa conStock()
+        query.where(filtro.toPredicate(root, query, cb));
+        Join<Producto, Inventario> inventario = ProductoSpecifications.inventario(root, query);
+        Expression<Long> conStock = cb.sum(cb.<Long>selectCase()
+            .when(cb.greaterThan(inventario.get("stock"), 0), 1L)
+            .otherwise(0L));
+        
+        query.multiselect(root.get("categoria"), root.get("marca"), cb.count(root), conStock)
+             .groupBy(root.get("categoria"), root.get("marca"));
+        return this.entityManager.createQuery(query).getResultList();
+    }
+}
@@ -0,0 +1,114 @@
+package com.ecovivashop.repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.ecovivashop.entity.Inventario;
+import com.ecovivashop.entity.Producto;
+
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Fetch;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Filtros del catálogo como {@link Specification} para combinarlos libremente
+ * con {@code and}. Todas comparten un único LEFT JOIN con el inventario, que en
+ * las consultas de entidades es un fetch join: la página trae el stock de cada
+ * producto sin consultas adicionales.
+ */
+public final class ProductoSpecifications {
+
+    private ProductoSpecifications() {
+    }
+
+    /**
+     * Productos activos con su inventario cargado. Debe ser la primera
+     * especificación de la cadena.
+     */
+    public static Specification<Producto> activosConInventario() {
+        return (root, query, cb) -> {
+            inventario(root, query);
+            return cb.isTrue(root.get("estado"));
+        };
+    }
+
+    // Más ids no caben en un IN: PostgreSQL limita los parámetros de cada consulta
+    public static final int MAX_IDS_EN_CONSULTA = 1000;
+
+    public static Specification<Producto> idEn(Collection<Integer> ids) {
+        return (root, query, cb) -> ids.isEmpty() ? cb.disjunction() : root.get("idProducto").in(ids);
+    }
+
+    /**
+     * Productos encontrados por el índice de búsqueda. Una consulta muy amplia
+     * devuelve demasiados ids para un IN; entonces se busca el texto en la base
+     * de datos, que filtra, ordena y cuenta sin pasar los ids.
+     */
+    public static Specification<Producto> coincidencias(Collection<Integer> ids, String texto) {
+        return ids.size() <= MAX_IDS_EN_CONSULTA ? idEn(ids) : textoContiene(texto);
+    }
+
+    // Búsqueda por texto en base de datos, para cuando el índice aún no está cargado
+    public static Specification<Producto> textoContiene(String texto) {
+        return (root, query, cb) -> {
+            String patron = "%" + texto.toLowerCase() + "%";
+            return cb.or(
+                cb.like(cb.lower(root.get("nombre")), patron),
+                cb.like(cb.lower(root.get("descripcion")), patron),
+                cb.like(cb.lower(root.get("categoria")), patron),
+                cb.like(cb.lower(root.get("marca")), patron));
+        };
+    }
+
+    public static Specification<Producto> categoria(String categoria) {
+        return (root, query, cb) -> cb.equal(root.get("categoria"), categoria);
+    }
+
+    public static Specification<Producto> marca(String marca) {
+        return (root, query, cb) -> cb.equal(root.get("marca"), marca);
+    }
+
+    public static Specification<Producto> precioDesde(BigDecimal precioMin) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("precio"), precioMin);
+    }
+
+    public static Specification<Producto> precioHasta(BigDecimal precioMax) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("precio"), precioMax);
+    }
+
+    public static Specification<Producto> puntuacionEcoDesde(BigDecimal puntuacionMin) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("puntuacionEco"), puntuacionMin);
+    }
+
+    public static Specification<Producto> conStock() {
+        return (root, query, cb) -> cb.greaterThan(inventario(root, query).get("stock"), 0);
+    }
+
+    /**
+     * Join con el inventario, reutilizando el que ya exista en la consulta. Solo
+     * las consultas que devuelven Producto admiten fetch; en los COUNT y en las
+     * agregaciones se usa un join normal.
+     */
+    @SuppressWarnings("unchecked")
+    static Join<Producto, Inventario> inventario(Root<Producto> root, CriteriaQuery<?> query) {
+        boolean consultaDeEntidades = query == null || Producto.class.equals(query.getResultType());
+        if (consultaDeEntidades) {
+            for (Fetch<Producto, ?> fetch : root.getFetches()) {
+                if ("inventario".equals(fetch.getAttribute().getName())) {
+                    return (Join<Producto, Inventario>) fetch;
+                }
+            }
+            return (Join<Producto, Inventario>) root.<Producto, Inventario>fetch("inventario", JoinType.LEFT);
+        }
+        for (Join<Producto, ?> join : root.getJoins()) {
+            if ("inventario".equals(join.getAttribute().getName())) {
+                return (Join<Producto, Inventario>) join;
+            }
+        }
+        return root.<Producto, Inventario>join("inventario", JoinType.LEFT);
+    }
+}
@@ -3,17 +3,23 @@ package com.ecovivashop.repository;
 import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.jpa.AvailableHints;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.ecovivashop.entity.Rol;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface RolRepository extends JpaRepository<Rol, Integer> {
     
-    // Buscar rol por nombre
+    // Buscar rol por nombre (se consulta en cada alta de usuario: resultado en caché)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
     Optional<Rol> findByNombre(String nombre);
     
     // Buscar rol por nombre ignorando mayúsculas/minúsculas
@@ -71,6 +71,9 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Integer> {
     @Query("SELECT COUNT(u) FROM Usuario u WHERE u.rol.nombre = :rolNombre")
     Long contarPorRol(@Param("rolNombre") String rolNombre);
     
+    @Query("SELECT u.rol.nombre, COUNT(u) FROM Usuario u GROUP BY u.rol.nombre")
+    List<Object[]> contarAgrupadoPorRol();
+    
     // Estadísticas de usuarios
     @Query("SELECT COUNT(u) FROM Usuario u WHERE u.estado = true")
     Long contarUsuariosActivos();
@@ -0,0 +1,319 @@
+package com.ecovivashop.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.ecovivashop.repository.ImagenPerfilRepository;
+import com.ecovivashop.repository.ImagenProductoRepository;
+import com.ecovivashop.repository.ProductoRepository;
+
+/**
+ * Almacén de archivos subidos direccionado por contenido. Cada archivo se guarda
+ * una sola vez con el SHA-256 de sus bytes como nombre, repartido en dos niveles
+ * de subdirectorios (blobs/ab/cd/abcd....jpg) para que ningún directorio crezca sin
+ * límite. Como una URL nunca cambia de contenido, se puede cachear para siempre.
+ * Los archivos derivados (variantes de tamaño, WebP) llevan el hash del original
+ * como prefijo y se borran con él.
+ *
+ * Un blob se borra en la purga nocturna cuando ninguna ImagenProducto o ImagenPerfil
+ * activa ni ningún Producto.imagenUrl lo referencia; las referencias se cuentan en
+ * la base de datos en lugar de llevar un contador aparte que pudiera desincronizarse.
+ * La réplica compartida solo se borra si su propia fecha, que ven todos los nodos,
+ * también es anterior al periodo de gracia: cada subida o reutilización la renueva.
+ *
+ * El directorio local es una caché de lectura del BlobStorage compartido: lo que se
+ * escribe aquí se replica en segundo plano y lo que falta se descarga al pedirlo,
+ * así cualquier nodo puede servir lo que subió otro.
+ */
+@Service
+public class AlmacenBlobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlmacenBlobService.class);
+
+    public static final String PREFIJO_URL = "/uploads/blobs/";
+
+    // Nombre de un original: hash completo y extensión opcional (los derivados llevan "_sufijo")
+    private static final Pattern ORIGINAL = Pattern.compile("[0-9a-f]{64}(\\.[A-Za-z0-9]+)?");
+
+    // Antigüedad mínima para purgar: una subida recién guardada aún no tiene su fila
+    private static final Duration GRACIA_PURGA = Duration.ofDays(1);
+
+    public record BlobGuardado(String nombre, Path ruta, long tamaño, boolean nuevo) {
+        public String url() {
+            return PREFIJO_URL + nombre;
+        }
+    }
+
+    private final Path directorio;
+    private final ImagenProductoRepository imagenProductoRepository;
+    private final ImagenPerfilRepository imagenPerfilRepository;
+    private final ProductoRepository productoRepository;
+    private final BlobStorage blobStorage;
+    private final Executor blobExecutor;
+
+    public AlmacenBlobService(@Value("${app.upload.path:uploads}") String uploadPath,
+                              ImagenProductoRepository imagenProductoRepository,
+                              ImagenPerfilRepository imagenPerfilRepository,
+                              ProductoRepository productoRepository,
+                              BlobStorage blobStorage,
+                              @Qualifier("blobExecutor") Executor blobExecutor) {
+        this.directorio = Paths.get(uploadPath, "blobs");
+        this.imagenProductoRepository = imagenProductoRepository;
+        this.imagenPerfilRepository = imagenPerfilRepository;
+        this.productoRepository = productoRepository;
+        this.blobStorage = blobStorage;
+        this.blobExecutor = blobExecutor;
+    }
+
+    /**
+     * Los nombres del almacén incluyen los subdirectorios ("ab/cd/hash.jpg"); los de
+     * las subidas anteriores son un nombre de archivo suelto.
+     */
+    public static boolean esBlob(String nombreArchivo) {
+        return nombreArchivo != null && nombreArchivo.indexOf('/') > 0;
+    }
+
+    public Path resolver(String nombre) {
+        return this.directorio.resolve(nombre);
+    }
+
+    /**
+     * Guarda el contenido calculando su hash mientras se escribe. Si ya existía un
+     * archivo con los mismos bytes se descarta la copia y se devuelve el existente.
+     */
+    public BlobGuardado guardar(InputStream contenido, String extension) throws IOException {
+        Files.createDirectories(this.directorio);
+        Path temporal = Files.createTempFile(this.directorio, "subida-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long tamaño;
+            try (OutputStream salida = new DigestOutputStream(Files.newOutputStream(temporal), digest)) {
+                tamaño = contenido.transferTo(salida);
+            }
+
+            String hash = HexFormat.of().formatHex(digest.digest());
+            String nombre = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + extension.toLowerCase();
+            Path destino = resolver(nombre);
+            if (Files.exists(destino)) {
+                // Se renueva la fecha para que la purga no lo borre antes de guardar su fila
+                Files.setLastModifiedTime(destino, FileTime.from(Instant.now()));
+                replicar(nombre);
+                return new BlobGuardado(nombre, destino, tamaño, false);
+            }
+
+            Files.createDirectories(destino.getParent());
+            // Mismo sistema de archivos: el blob aparece completo o no aparece
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            replicar(nombre);
+            return new BlobGuardado(nombre, destino, tamaño, true);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * Replica en el almacenamiento compartido un archivo ya escrito en la caché local
+     * (un original o un derivado). Es asíncrono: la petición no espera a la subida y,
+     * mientras tanto, este nodo lo sirve desde su copia.
+     */
+    public void publicar(String nombre) {
+        Path archivo = resolver(nombre);
+        this.blobExecutor.execute(() -> {
+            try {
+                if (Files.exists(archivo) && !this.blobStorage.existe(nombre)) {
+                    this.blobStorage.guardar(nombre, archivo);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("No se pudo replicar el blob {}: {}", nombre, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Replica un original recién guardado o reutilizado. La purga de otro nodo
+     * decide con la fecha de la réplica, así que se vuelve a subir si falta o si ya
+     * no la protege durante al menos media GRACIA_PURGA: la fila que se guardará
+     * después tiene ese margen para aparecer.
+     */
+    private void replicar(String nombre) {
+        Path archivo = resolver(nombre);
+        Instant renovarAntesDe = Instant.now().minus(GRACIA_PURGA.dividedBy(2));
+        this.blobExecutor.execute(() -> {
+            try {
+                Optional<Instant> modificado = this.blobStorage.ultimaModificacion(nombre);
+                if (Files.exists(archivo) && (modificado.isEmpty() || modificado.get().isBefore(renovarAntesDe))) {
+                    this.blobStorage.guardar(nombre, archivo);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("No se pudo replicar el blob {}: {}", nombre, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Ruta local del archivo, descargándolo del almacenamiento compartido si este nodo
+     * aún no lo tiene. Vacío si no existe en ninguno de los dos.
+     */
+    public Optional<Path> obtenerLocal(String nombre) {
+        Path ruta = resolver(nombre);
+        if (!ruta.toAbsolutePath().normalize().startsWith(this.directorio.toAbsolutePath().normalize())) {
+            return Optional.empty();
+        }
+        if (Files.isRegularFile(ruta)) {
+            return Optional.of(ruta);
+        }
+        try {
+            Optional<InputStream> remoto = this.blobStorage.abrir(nombre);
+            if (remoto.isEmpty()) {
+                return Optional.empty();
+            }
+            Files.createDirectories(ruta.getParent());
+            Path temporal = Files.createTempFile(ruta.getParent(), "descarga-", ".tmp");
+            try (InputStream contenido = remoto.get()) {
+                Files.copy(contenido, temporal, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temporal, ruta, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporal);
+            }
+            return Optional.of(ruta);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("No se pudo descargar el blob {}: {}", nombre, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Cuántas filas referencian el blob o alguno de sus derivados.
+     */
+    public long contarReferencias(String nombre) {
+        String prefijoUrl = PREFIJO_URL + sinExtension(nombre);
+        return this.imagenProductoRepository.countActivasByNombreArchivo(nombre)
+            + this.imagenPerfilRepository.countActivasByNombreArchivo(nombre)
+            + this.productoRepository.contarPorPrefijoImagenUrl(prefijoUrl);
+    }
+
+    /**
+     * Borra el blob y sus derivados si ya nada lo referencia y lleva más de
+     * GRACIA_PURGA sin usarse. Solo lo llama la purga: borrar en cuanto se desactiva
+     * una fila chocaría con una subida simultánea del mismo contenido, que reutiliza
+     * el archivo (renovando su fecha) antes de guardar su propia fila.
+     * Devuelve true si se borró.
+     */
+    private boolean borrarSiHuerfano(String nombre, Instant limite) {
+        Path original = resolver(nombre);
+        if (contarReferencias(nombre) > 0 || !modificadoAntesDe(original, limite)) {
+            return false;
+        }
+        String hash = sinExtension(original.getFileName().toString());
+        borrarRemoto(nombre, limite);
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(original.getParent(), hash + "*")) {
+            for (Path archivo : archivos) {
+                Files.deleteIfExists(archivo);
+            }
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            logger.warn("No se pudo borrar el blob {}: {}", nombre, e.getMessage());
+            return false;
+        }
+    }
+
+    // La copia local es solo caché; la réplica se conserva si otro nodo la renovó hace poco
+    private void borrarRemoto(String nombre, Instant limite) {
+        this.blobExecutor.execute(() -> {
+            try {
+                Optional<Instant> modificado = this.blobStorage.ultimaModificacion(nombre);
+                if (modificado.isPresent() && !modificado.get().isBefore(limite)) {
+                    return;
+                }
+                for (String clave : this.blobStorage.listar(sinExtension(nombre))) {
+                    this.blobStorage.eliminar(clave);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("No se pudo borrar la réplica del blob {}: {}", nombre, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Borra los blobs que se quedaron sin referencias (una imagen desactivada, un
+     * producto borrado o con otra imagen) y las copias temporales de subidas
+     * interrumpidas.
+     */
+    @Scheduled(cron = "${app.blobs.purga-cron:0 45 3 * * *}")
+    public void purgarHuerfanos() {
+        if (!Files.isDirectory(this.directorio)) {
+            return;
+        }
+        Instant limite = Instant.now().minus(GRACIA_PURGA);
+        int borrados = 0;
+        try (Stream<Path> archivos = Files.walk(this.directorio, 3)) {
+            List<Path> candidatos = archivos
+                .filter(Files::isRegularFile)
+                .filter(archivo -> modificadoAntesDe(archivo, limite))
+                .toList();
+            for (Path archivo : candidatos) {
+                String nombreArchivo = archivo.getFileName().toString();
+                if (nombreArchivo.endsWith(".tmp")) {
+                    Files.deleteIfExists(archivo);
+                } else if (ORIGINAL.matcher(nombreArchivo).matches()
+                        && borrarSiHuerfano(this.directorio.relativize(archivo).toString().replace('\\', '/'), limite)) {
+                    borrados++;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Error purgando blobs sin referencias: {}", e.getMessage());
+        }
+        if (borrados > 0) {
+            logger.info("Blobs sin referencias eliminados: {}", borrados);
+        }
+    }
+
+    private static boolean modificadoAntesDe(Path archivo, Instant limite) {
+        try {
+            return Files.getLastModifiedTime(archivo).toInstant().isBefore(limite);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String sinExtension(String nombre) {
+        int punto = nombre.lastIndexOf('.');
+        return punto > nombre.lastIndexOf('/') ? nombre.substring(0, punto) : nombre;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.ecovivashop.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Almacenamiento compartido de los archivos subidos, visto por todos los nodos. Las
+ * claves son los nombres del almacén por contenido ("ab/cd/hash.jpg"). Cada nodo
+ * guarda además una copia local en AlmacenBlobService, que hace de caché.
+ */
+public interface BlobStorage {
+
+    /**
+     * Sube el archivo local con esa clave, leyéndolo en streaming.
+     */
+    void guardar(String clave, Path archivo) throws IOException;
+
+    /**
+     * Abre el contenido en streaming, o vacío si la clave no existe. Quien lo
+     * recibe debe cerrar el stream.
+     */
+    Optional<InputStream> abrir(String clave) throws IOException;
+
+    boolean existe(String clave) throws IOException;
+
+    /**
+     * Fecha de la última escritura de la clave, la misma para todos los nodos, o
+     * vacío si no existe.
+     */
+    Optional<Instant> ultimaModificacion(String clave) throws IOException;
+
+    void eliminar(String clave) throws IOException;
+
+    /**
+     * Claves que empiezan por el prefijo (un original y sus variantes).
+     */
+    List<String> listar(String prefijo) throws IOException;
+}
@@ -0,0 +1,18 @@
+package com.ecovivashop.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Canal de difusión entre las instancias de la aplicación. Cada mensaje
+ * publicado llega a todos los suscriptores, incluido el propio nodo.
+ *
+ * La implementación por defecto es {@link CanalInvalidacionLocal}, válida para
+ * una sola instancia y para pruebas. Con varias instancias se registra un bean
+ * {@code @Primary} que implemente esta interfaz sobre el broker disponible.
+ */
+public interface CanalInvalidacionCache {
+
+    void publicar(MensajeInvalidacion mensaje);
+
+    void suscribir(Consumer<MensajeInvalidacion> suscriptor);
+}
@@ -0,0 +1,38 @@
+package com.ecovivashop.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Canal en memoria: entrega cada mensaje, en el mismo hilo, a los suscriptores
+ * de esta instancia. En las pruebas varios nodos simulados comparten una instancia.
+ */
+@Component
+public class CanalInvalidacionLocal implements CanalInvalidacionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CanalInvalidacionLocal.class);
+
+    private final List<Consumer<MensajeInvalidacion>> suscriptores = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publicar(MensajeInvalidacion mensaje) {
+        for (Consumer<MensajeInvalidacion> suscriptor : this.suscriptores) {
+            try {
+                suscriptor.accept(mensaje);
+            } catch (RuntimeException e) {
+                // Un suscriptor con errores no debe impedir que los demás reciban el mensaje
+                logger.error("Error al entregar el mensaje de invalidación {}: {}", mensaje, e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void suscribir(Consumer<MensajeInvalidacion> suscriptor) {
+        this.suscriptores.add(suscriptor);
+    }
+}
@@ -0,0 +1,26 @@
+package com.ecovivashop.service;
+
+import com.ecovivashop.dto.Carrito;
+
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * Dónde se guarda el carrito de cada visitante. Se elige con
+ * {@code app.carrito.store}: {@code sesion} (por defecto) lo guarda en la sesión
+ * HTTP y {@code jdbc} en la tabla tb_carrito, para que sobreviva a reinicios y
+ * lo compartan todas las instancias.
+ *
+ * Las implementaciones solo escriben en {@link #guardar} y {@link #vaciar}; leer
+ * el carrito no modifica la sesión.
+ */
+public interface CarritoStore {
+    
+    /**
+     * Carrito actual del visitante, vacío si todavía no tiene
+     */
+    Carrito obtener(HttpSession session);
+    
+    void guardar(HttpSession session, Carrito carrito);
+    
+    void vaciar(HttpSession session);
+}
@@ -0,0 +1,68 @@
+package com.ecovivashop.service;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.ecovivashop.entity.Inventario;
+import com.ecovivashop.entity.Producto;
+import com.ecovivashop.entity.Rol;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Publica {@link ProductoModificadoEvent} e {@link InventarioModificadoEvent}
+ * con cada alta, cambio o baja de un producto o de su inventario hecha con JPA,
+ * venga del servicio, de la carga masiva o de la inicialización. Los cambios
+ * de stock por UPDATE directo los publica {@link InventarioService}. También
+ * publica {@link RolModificadoEvent} para mantener al día la caché de roles
+ * en todos los nodos.
+ *
+ * Los suscriptores (índice de búsqueda, cachés de productos) usan
+ * {@code @TransactionalEventListener}, así que solo reaccionan si la
+ * transacción se confirma.
+ */
+public class CatalogoEntityListener {
+
+    private ObjectProvider<ApplicationEventPublisher> eventPublisher;
+
+    // Hibernate crea el listener a través de Spring mientras arranca JPA, antes que
+    // los beans que escuchan los eventos; por eso el publicador se resuelve de forma diferida
+    @Autowired
+    public void setEventPublisher(ObjectProvider<ApplicationEventPublisher> eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void entidadGuardada(Object entidad) {
+        if (entidad instanceof Producto producto) {
+            this.publicar(ProductoModificadoEvent.guardado(producto));
+        } else if (entidad instanceof Inventario inventario) {
+            this.publicar(InventarioModificadoEvent.deInventario(inventario));
+        } else if (entidad instanceof Rol rol) {
+            this.publicar(new RolModificadoEvent(rol.getIdRol()));
+        }
+    }
+
+    @PostRemove
+    public void entidadEliminada(Object entidad) {
+        if (entidad instanceof Producto producto) {
+            this.publicar(ProductoModificadoEvent.eliminado(producto.getIdProducto()));
+        } else if (entidad instanceof Inventario inventario) {
+            this.publicar(InventarioModificadoEvent.deInventario(inventario));
+        } else if (entidad instanceof Rol rol) {
+            this.publicar(new RolModificadoEvent(rol.getIdRol()));
+        }
+    }
+
+    // Sin Spring (tests unitarios de entidades) el listener no hace nada
+    private void publicar(Object evento) {
+        ApplicationEventPublisher publisher = this.eventPublisher != null ? this.eventPublisher.getIfAvailable() : null;
+        if (publisher != null && evento != null) {
+            publisher.publishEvent(evento);
+        }
+    }
+}
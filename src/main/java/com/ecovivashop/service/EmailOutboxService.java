@@ -0,0 +1,231 @@
+package com.ecovivashop.service;
+
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.ecovivashop.entity.EmailPendiente;
+import com.ecovivashop.repository.EmailPendienteRepository;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Bandeja de salida de correos transaccionales.
+ *
+ * Los correos se registran en tb_email_pendiente dentro de la transacción de
+ * negocio (si el pedido se revierte, el correo también) y un pool acotado de
+ * workers los envía después: la petición HTTP nunca espera al servidor SMTP.
+ * Cada lote se envía por una sola conexión SMTP, los fallos se reintentan con
+ * espera exponencial y cada pedido tiene como máximo una confirmación.
+ */
+@Service
+public class EmailOutboxService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxService.class);
+    
+    static final int TAMANO_LOTE = 20;
+    static final int MAX_INTENTOS = 5;
+    // Tiempo que un worker retiene un correo reclamado antes de que otro pueda reintentarlo
+    private static final long MINUTOS_BLOQUEO = 5;
+    private static final String INSERTAR_PENDIENTE = "INSERT INTO tb_email_pendiente (tipo, clave_deduplicacion, "
+        + "destinatario, nombre_destinatario, numero_pedido, total_pedido, estado, intentos, proximo_intento, "
+        + "fecha_creacion) VALUES (?, ?, ?, ?, ?, ?, ?, 0, ?, ?)";
+    
+    private final EmailPendienteRepository emailPendienteRepository;
+    private final EmailService emailService;
+    private final JdbcTemplate jdbcTemplate;
+    private final Executor emailExecutor;
+    private final long esperaBaseSegundos;
+    
+    public EmailOutboxService(EmailPendienteRepository emailPendienteRepository, EmailService emailService,
+                              JdbcTemplate jdbcTemplate, @Qualifier("emailExecutor") Executor emailExecutor,
+                              @Value("${app.email.outbox.espera-base-segundos:30}") long esperaBaseSegundos) {
+        this.emailPendienteRepository = emailPendienteRepository;
+        this.emailService = emailService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.emailExecutor = emailExecutor;
+        this.esperaBaseSegundos = esperaBaseSegundos;
+    }
+    
+    /**
+     * Registrar la confirmación de un pedido. Se une a la transacción en curso y
+     * el envío arranca cuando esta confirma. Si el pedido ya tiene confirmación
+     * registrada no se hace nada.
+     */
+    @Transactional
+    public void encolarConfirmacionPedido(String destinatario, String nombreCliente, String numeroPedido, String totalPedido) {
+        String clave = EmailPendiente.TIPO_CONFIRMACION_PEDIDO + ":" + numeroPedido;
+        if (this.emailPendienteRepository.existsByClaveDeduplicacion(clave)) {
+            logger.debug("Confirmación del pedido {} ya registrada, se omite", numeroPedido);
+            return;
+        }
+        
+        if (!insertarSiNoExiste(EmailPendiente.TIPO_CONFIRMACION_PEDIDO, clave, destinatario, nombreCliente,
+                                numeroPedido, totalPedido)) {
+            logger.debug("Confirmación del pedido {} registrada a la vez por otra transacción, se omite", numeroPedido);
+            return;
+        }
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    despertarWorker();
+                }
+            });
+        } else {
+            despertarWorker();
+        }
+    }
+    
+    /**
+     * Inserta el correo dentro de un savepoint. Si otra transacción registró la misma
+     * clave entre la comprobación y el INSERT, la clave única lo rechaza: se vuelve al
+     * savepoint y la transacción del pedido sigue adelante en lugar de revertirse.
+     */
+    private boolean insertarSiNoExiste(String tipo, String clave, String destinatario, String nombreDestinatario,
+                                       String numeroPedido, String totalPedido) {
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        return Boolean.TRUE.equals(this.jdbcTemplate.execute((ConnectionCallback<Boolean>) conexion -> {
+            // Sin transacción no hay nada que proteger ni savepoint posible
+            Savepoint savepoint = conexion.getAutoCommit() ? null : conexion.setSavepoint();
+            try {
+                this.jdbcTemplate.update(INSERTAR_PENDIENTE, tipo, clave, destinatario, nombreDestinatario,
+                                         numeroPedido, totalPedido, EmailPendiente.ESTADO_PENDIENTE, ahora, ahora);
+            } catch (DuplicateKeyException e) {
+                if (savepoint != null) {
+                    conexion.rollback(savepoint);
+                }
+                return false;
+            }
+            if (savepoint != null) {
+                conexion.releaseSavepoint(savepoint);
+            }
+            return true;
+        }));
+    }
+    
+    private void despertarWorker() {
+        this.emailExecutor.execute(this::procesarPendientes);
+    }
+    
+    /**
+     * Enviar todos los correos listos. Lo invocan los workers tras cada commit y
+     * un sondeo periódico que recoge reintentos y correos de otros nodos. Varios
+     * workers pueden ejecutarlo a la vez: cada correo se reclama con un UPDATE
+     * condicional antes de enviarlo.
+     */
+    @Scheduled(fixedDelayString = "${app.email.outbox.intervalo-ms:30000}")
+    public void procesarPendientes() {
+        while (true) {
+            LocalDateTime ahora = LocalDateTime.now();
+            List<Long> ids = this.emailPendienteRepository.findIdsListosParaEnvio(ahora, PageRequest.of(0, TAMANO_LOTE));
+            if (ids.isEmpty()) {
+                return;
+            }
+            
+            LocalDateTime bloqueadoHasta = ahora.plusMinutes(MINUTOS_BLOQUEO);
+            List<Long> reclamados = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                if (this.emailPendienteRepository.reclamar(id, ahora, bloqueadoHasta) == 1) {
+                    reclamados.add(id);
+                }
+            }
+            if (reclamados.isEmpty()) {
+                // Otro worker se llevó el lote completo
+                return;
+            }
+            
+            enviarLote(this.emailPendienteRepository.findAllById(reclamados));
+        }
+    }
+    
+    private void enviarLote(List<EmailPendiente> lote) {
+        LocalDateTime ahora = LocalDateTime.now();
+        
+        if (!this.emailService.isEnvioRealDisponible()) {
+            for (EmailPendiente email : lote) {
+                this.emailService.enviarCorreoConfirmacionPedido(email.getDestinatario(), email.getNombreDestinatario(),
+                                                                 email.getNumeroPedido(), email.getTotalPedido());
+                email.registrarEnvio(ahora);
+            }
+            this.emailPendienteRepository.saveAll(lote);
+            return;
+        }
+        
+        // Renderizar las plantillas fuera del hilo de la petición
+        Map<MimeMessage, EmailPendiente> mensajes = new IdentityHashMap<>();
+        for (EmailPendiente email : lote) {
+            try {
+                MimeMessage mensaje = this.emailService.crearMensajeConfirmacionPedido(email.getDestinatario(),
+                    email.getNombreDestinatario(), email.getNumeroPedido(), email.getTotalPedido());
+                mensajes.put(mensaje, email);
+            } catch (MessagingException | RuntimeException e) {
+                email.registrarFallo(e.getMessage(), proximoIntento(email, ahora), MAX_INTENTOS);
+            }
+        }
+        
+        // Todo el lote viaja por una sola conexión SMTP
+        Map<Object, Exception> fallidos = Map.of();
+        if (!mensajes.isEmpty()) {
+            try {
+                this.emailService.enviarMensajes(mensajes.keySet().toArray(MimeMessage[]::new));
+            } catch (MailSendException e) {
+                fallidos = e.getFailedMessages();
+                if (fallidos.isEmpty()) {
+                    fallidos = todosFallidos(mensajes, e);
+                }
+            } catch (MailException e) {
+                fallidos = todosFallidos(mensajes, e);
+            }
+        }
+        
+        for (Map.Entry<MimeMessage, EmailPendiente> entrada : mensajes.entrySet()) {
+            EmailPendiente email = entrada.getValue();
+            Exception error = fallidos.get(entrada.getKey());
+            if (error == null) {
+                email.registrarEnvio(ahora);
+            } else {
+                email.registrarFallo(error.getMessage(), proximoIntento(email, ahora), MAX_INTENTOS);
+                logger.warn("Error enviando correo {} (intento {}): {}", email.getClaveDeduplicacion(),
+                            email.getIntentos(), error.getMessage());
+            }
+        }
+        this.emailPendienteRepository.saveAll(lote);
+    }
+    
+    private static Map<Object, Exception> todosFallidos(Map<MimeMessage, EmailPendiente> mensajes, Exception error) {
+        Map<Object, Exception> fallidos = new IdentityHashMap<>();
+        for (MimeMessage mensaje : mensajes.keySet()) {
+            fallidos.put(mensaje, error);
+        }
+        return fallidos;
+    }
+    
+    // Espera exponencial: base, 2x base, 4x base...
+    private LocalDateTime proximoIntento(EmailPendiente email, LocalDateTime ahora) {
+        return ahora.plusSeconds(this.esperaBaseSegundos << Math.min(email.getIntentos(), 10));
+    }
+}
@@ -152,6 +152,41 @@ public class EmailService {
         }
     }
 
+    // ========= SOPORTE PARA LA BANDEJA DE SALIDA ==========
+
+    public boolean isEnvioRealDisponible() {
+        return this.puedeEnviarEmailReal();
+    }
+
+    // Construye el correo HTML de confirmación de pedido sin enviarlo
+    public MimeMessage crearMensajeConfirmacionPedido(String destinatario, String nombreCliente, String numeroPedido,
+                                                      String totalPedido) throws MessagingException {
+        MimeMessage mensaje = this.mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mensaje, true, "UTF-8");
+
+        helper.setFrom(this.fromEmail);
+        helper.setTo(destinatario);
+        helper.setSubject("✅ Confirmación de tu pedido #" + numeroPedido + " - EcoVivaShop");
+
+        // Preparar contexto para Thymeleaf
+        Context context = new Context();
+        context.setVariable("nombreCliente", nombreCliente);
+        context.setVariable("numeroPedido", numeroPedido);
+        context.setVariable("emailCliente", destinatario);
+        context.setVariable("totalPedido", totalPedido);
+
+        // Procesar plantilla HTML
+        String contenidoHtml = this.templateEngine.process("email/confirmacion-pedido", context);
+
+        helper.setText(contenidoHtml, true); // true indica que es HTML
+        return mensaje;
+    }
+
+    // Envía varios mensajes reutilizando una sola conexión SMTP
+    public void enviarMensajes(MimeMessage... mensajes) throws MailException {
+        this.mailSender.send(mensajes);
+    }
+
     // ========= MÉTODOS PRIVADOS ==========
 
     // Verifica si puede enviar emails reales
@@ -207,26 +242,7 @@ public class EmailService {
 
     private void enviarEmailRealPedido(String destinatario, String nombreCliente, String numeroPedido, String totalPedido) throws MailException {
         try {
-            MimeMessage mensaje = this.mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(mensaje, true, "UTF-8");
-
-            helper.setFrom(this.fromEmail);
-            helper.setTo(destinatario);
-            helper.setSubject("✅ Confirmación de tu pedido #" + numeroPedido + " - EcoVivaShop");
-
-            // Preparar contexto para Thymeleaf
-            Context context = new Context();
-            context.setVariable("nombreCliente", nombreCliente);
-            context.setVariable("numeroPedido", numeroPedido);
-            context.setVariable("emailCliente", destinatario);
-            context.setVariable("totalPedido", totalPedido);
-
-            // Procesar plantilla HTML
-            String contenidoHtml = this.templateEngine.process("email/confirmacion-pedido", context);
-
-            helper.setText(contenidoHtml, true); // true indica que es HTML
-
-            this.mailSender.send(mensaje);
+            this.mailSender.send(this.crearMensajeConfirmacionPedido(destinatario, nombreCliente, numeroPedido, totalPedido));
         } catch (MessagingException e) {
             throw new MailException("Error creando mensaje HTML", e) {};
         }
@@ -0,0 +1,199 @@
+package com.ecovivashop.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Entrega de imágenes subidas. Los metadatos de cada archivo (tipo, tamaño, fecha
+ * y hash para el ETag) se calculan una vez y quedan en memoria; cada petición solo
+ * hace un stat para detectar cambios. Las peticiones condicionales se responden con
+ * 304 y, bajo Tomcat, el cuerpo se envía con sendfile sin copiarlo a la JVM.
+ */
+@Service
+public class EntregaImagenService {
+
+    // Los archivos subidos tienen nombre único y no se sobrescriben nunca
+    static final String CACHE_INMUTABLE = "public, max-age=31536000, immutable";
+    static final String CACHE_REVALIDAR = "no-cache";
+
+    // Atributos de petición con los que Tomcat hace sendfile de un archivo
+    static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    public record MetadatosArchivo(Path ruta, MediaType tipoContenido, long longitud, long modificado, String etag) {
+    }
+
+    private final Path directorioSubidas;
+
+    private final Cache<Path, MetadatosArchivo> metadatos = CacheBuilder.newBuilder()
+            .maximumSize(10_000)
+            .build();
+
+    public EntregaImagenService(@Value("${app.upload.path:uploads}") String uploadPath) {
+        this.directorioSubidas = Paths.get(uploadPath).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Resuelve una ruta relativa al directorio de subidas. Devuelve vacío si
+     * intenta salir de él (por ejemplo con "..").
+     */
+    public Optional<Path> resolverSubida(String rutaRelativa) {
+        Path ruta = this.directorioSubidas.resolve(rutaRelativa).normalize();
+        return ruta.startsWith(this.directorioSubidas) ? Optional.of(ruta) : Optional.empty();
+    }
+
+    /**
+     * Metadatos del archivo, recalculados solo si su tamaño o fecha cambiaron.
+     */
+    public Optional<MetadatosArchivo> obtenerMetadatos(Path ruta) throws IOException {
+        Path clave = ruta.toAbsolutePath().normalize();
+        BasicFileAttributes atributos;
+        try {
+            atributos = Files.readAttributes(clave, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            this.metadatos.invalidate(clave);
+            return Optional.empty();
+        }
+        if (!atributos.isRegularFile()) {
+            return Optional.empty();
+        }
+
+        long modificado = atributos.lastModifiedTime().toMillis();
+        MetadatosArchivo cacheados = this.metadatos.getIfPresent(clave);
+        if (cacheados != null && cacheados.longitud() == atributos.size() && cacheados.modificado() == modificado) {
+            return Optional.of(cacheados);
+        }
+
+        MetadatosArchivo nuevos = new MetadatosArchivo(
+            clave,
+            MediaTypeFactory.getMediaType(clave.getFileName().toString()).orElse(MediaType.APPLICATION_OCTET_STREAM),
+            atributos.size(),
+            modificado,
+            "\"" + calcularHash(clave) + "\"");
+        this.metadatos.put(clave, nuevos);
+        return Optional.of(nuevos);
+    }
+
+    /**
+     * Escribe el archivo en la respuesta con ETag, Last-Modified y Cache-Control,
+     * respondiendo 304 o 206 cuando corresponde. Devuelve false, sin tocar la
+     * respuesta, si el archivo no existe.
+     */
+    public boolean entregar(Path ruta, boolean inmutable, HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        Optional<MetadatosArchivo> encontrado = obtenerMetadatos(ruta);
+        if (encontrado.isEmpty()) {
+            return false;
+        }
+        MetadatosArchivo archivo = encontrado.get();
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, inmutable ? CACHE_INMUTABLE : CACHE_REVALIDAR);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (new ServletWebRequest(request, response).checkNotModified(archivo.etag(), archivo.modificado())) {
+            return true;
+        }
+
+        long inicio = 0;
+        long fin = archivo.longitud();
+        HttpRange rango = rangoSolicitado(request, archivo);
+        if (rango != null) {
+            inicio = rango.getRangeStart(archivo.longitud());
+            fin = rango.getRangeEnd(archivo.longitud()) + 1;
+            if (inicio >= fin) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + archivo.longitud());
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return true;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE,
+                "bytes " + inicio + "-" + (fin - 1) + "/" + archivo.longitud());
+        }
+
+        response.setContentType(archivo.tipoContenido().toString());
+        response.setContentLengthLong(fin - inicio);
+        if ("HEAD".equals(request.getMethod())) {
+            return true;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            // Tomcat envía el archivo desde el kernel al terminar la petición
+            request.setAttribute(SENDFILE_ARCHIVO, archivo.ruta().toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIN, fin);
+            return true;
+        }
+
+        try (FileChannel canal = FileChannel.open(archivo.ruta(), StandardOpenOption.READ)) {
+            WritableByteChannel salida = Channels.newChannel(response.getOutputStream());
+            long posicion = inicio;
+            while (posicion < fin) {
+                long enviados = canal.transferTo(posicion, fin - posicion, salida);
+                if (enviados <= 0) {
+                    break;
+                }
+                posicion += enviados;
+            }
+        }
+        return true;
+    }
+
+    // Solo se atiende un rango; varios rangos o un If-Range obsoleto reciben el archivo entero
+    private HttpRange rangoSolicitado(HttpServletRequest request, MetadatosArchivo archivo) {
+        String cabecera = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (cabecera == null || (ifRange != null && !ifRange.equals(archivo.etag()))) {
+            return null;
+        }
+        try {
+            List<HttpRange> rangos = HttpRange.parseRanges(cabecera);
+            return rangos.size() == 1 ? rangos.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private String calcularHash(Path ruta) throws IOException {
+        try (InputStream entrada = Files.newInputStream(ruta)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int leidos;
+            while ((leidos = entrada.read(buffer)) != -1) {
+                digest.update(buffer, 0, leidos);
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -2,9 +2,13 @@ package com.ecovivashop.service;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.apache.poi.ss.usermodel.BorderStyle;
 import org.apache.poi.ss.usermodel.Cell;
@@ -17,9 +21,13 @@ import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.VerticalAlignment;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.stereotype.Service;
 
+import com.ecovivashop.dto.Carrito;
+import com.ecovivashop.dto.Cotizacion;
 import com.ecovivashop.entity.Inventario;
 import com.ecovivashop.entity.Pedido;
 import com.ecovivashop.entity.PedidoDetalle;
@@ -29,6 +37,7 @@ import com.itextpdf.text.Chunk;
 import com.itextpdf.text.Document;
 import com.itextpdf.text.DocumentException;
 import com.itextpdf.text.Element;
+import com.itextpdf.text.ExceptionConverter;
 import com.itextpdf.text.FontFactory;
 import com.itextpdf.text.PageSize;
 import com.itextpdf.text.Paragraph;
@@ -43,16 +52,40 @@ public class ExportService {
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     private static final DateTimeFormatter DATE_ONLY_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    // Filas que SXSSF mantiene en memoria antes de volcarlas a disco
+    private static final int FILAS_EN_MEMORIA_EXCEL = 100;
+
+    /**
+     * Fuente de pedidos entregados por lotes. Permite escribir una exportación
+     * sin materializar la lista completa de pedidos en memoria.
+     */
+    @FunctionalInterface
+    public interface LotesPedidos {
+        void recorrer(Consumer<List<Pedido>> consumidor);
+    }
 
     /**
      * Exportar pedidos a PDF
      */
     public byte[] exportarPedidosPDF(List<Pedido> pedidos, String fechaInicio, String fechaFin, String estados) 
             throws DocumentException, IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        escribirPedidosPDF(consumidor -> consumidor.accept(pedidos), pedidos.size(),
+                           fechaInicio, fechaFin, estados, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Escribir el reporte de pedidos en PDF directamente sobre el stream de salida.
+     * La tabla se marca como incompleta y se vuelca al documento tras cada lote,
+     * de modo que iText no retiene en memoria las filas ya escritas.
+     */
+    public void escribirPedidosPDF(LotesPedidos lotes, long totalPedidos, String fechaInicio, String fechaFin,
+                                   String estados, OutputStream out) throws DocumentException, IOException {
         
         Document document = new Document(PageSize.A4);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        PdfWriter.getInstance(document, baos);
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        writer.setCloseStream(false);
         
         document.open();
         
@@ -71,14 +104,16 @@ public class ExportService {
             info.add(new Chunk("Periodo: " + fechaInicio + " - " + fechaFin + "\n", infoFont));
         }
         info.add(new Chunk("Estados: " + (estados.equals("todos") ? "Todos" : estados) + "\n", infoFont));
-        info.add(new Chunk("Total de pedidos: " + pedidos.size() + "\n", infoFont));
+        info.add(new Chunk("Total de pedidos: " + totalPedidos + "\n", infoFont));
         info.setSpacingAfter(20);
         document.add(info);
         
-        // Tabla de pedidos
+        // Tabla de pedidos (incompleta hasta el último lote)
         PdfPTable table = new PdfPTable(7);
         table.setWidthPercentage(100);
         table.setWidths(new float[]{15, 25, 15, 20, 15, 15, 15});
+        table.setHeaderRows(1);
+        table.setComplete(false);
         
         // Cabeceras
         com.itextpdf.text.Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10, BaseColor.WHITE);
@@ -94,41 +129,60 @@ public class ExportService {
         
         // Datos
         com.itextpdf.text.Font dataFont = FontFactory.getFont(FontFactory.HELVETICA, 9, BaseColor.BLACK);
-        for (Pedido pedido : pedidos) {
-            table.addCell(new PdfPCell(new Phrase("#" + pedido.getNumeroPedido(), dataFont)));
-            table.addCell(new PdfPCell(new Phrase(pedido.getUsuario().getNombre() + " " + pedido.getUsuario().getApellido(), dataFont)));
-            table.addCell(new PdfPCell(new Phrase(pedido.getFechaPedido().format(DATE_ONLY_FORMATTER), dataFont)));
-            
-            // Productos
-            StringBuilder productos = new StringBuilder();
-            for (PedidoDetalle detalle : pedido.getDetalles()) {
-                productos.append(detalle.getProducto().getNombre()).append(" (").append(detalle.getCantidad()).append("), ");
-            }
-            String productosStr = productos.toString();
-            if (productosStr.length() > 2) {
-                productosStr = productosStr.substring(0, productosStr.length() - 2);
+        lotes.recorrer(pedidos -> {
+            for (Pedido pedido : pedidos) {
+                table.addCell(new PdfPCell(new Phrase("#" + pedido.getNumeroPedido(), dataFont)));
+                table.addCell(new PdfPCell(new Phrase(pedido.getUsuario().getNombre() + " " + pedido.getUsuario().getApellido(), dataFont)));
+                table.addCell(new PdfPCell(new Phrase(pedido.getFechaPedido().format(DATE_ONLY_FORMATTER), dataFont)));
+                
+                // Productos
+                StringBuilder productos = new StringBuilder();
+                for (PedidoDetalle detalle : pedido.getDetalles()) {
+                    productos.append(detalle.getProducto().getNombre()).append(" (").append(detalle.getCantidad()).append("), ");
+                }
+                String productosStr = productos.toString();
+                if (productosStr.length() > 2) {
+                    productosStr = productosStr.substring(0, productosStr.length() - 2);
+                }
+                table.addCell(new PdfPCell(new Phrase(productosStr, dataFont)));
+                
+                table.addCell(new PdfPCell(new Phrase(pedido.getEstado(), dataFont)));
+                table.addCell(new PdfPCell(new Phrase(pedido.getMetodoPago(), dataFont)));
+                table.addCell(new PdfPCell(new Phrase("S/ " + pedido.getTotal().toString(), dataFont)));
             }
-            table.addCell(new PdfPCell(new Phrase(productosStr, dataFont)));
             
-            table.addCell(new PdfPCell(new Phrase(pedido.getEstado(), dataFont)));
-            table.addCell(new PdfPCell(new Phrase(pedido.getMetodoPago(), dataFont)));
-            table.addCell(new PdfPCell(new Phrase("S/ " + pedido.getTotal().toString(), dataFont)));
-        }
+            // Volcar las filas del lote al documento
+            try {
+                document.add(table);
+            } catch (DocumentException e) {
+                throw new ExceptionConverter(e);
+            }
+        });
         
+        table.setComplete(true);
         document.add(table);
         document.close();
-        
-        return baos.toByteArray();
+        out.flush();
     }
 
     /**
      * Exportar pedidos a Excel
      */
     public byte[] exportarPedidosExcel(List<Pedido> pedidos) throws IOException {
-        try (Workbook workbook = new XSSFWorkbook();
-             ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            
-            Sheet sheet = workbook.createSheet("Pedidos");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        escribirPedidosExcel(consumidor -> consumidor.accept(pedidos), baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Escribir pedidos en Excel con SXSSF: solo las últimas filas permanecen en
+     * memoria y el resto se vuelca a un archivo temporal hasta escribir el XLSX.
+     */
+    public void escribirPedidosExcel(LotesPedidos lotes, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(FILAS_EN_MEMORIA_EXCEL);
+        try {
+            SXSSFSheet sheet = workbook.createSheet("Pedidos");
+            sheet.trackAllColumnsForAutoSizing();
         
         // Estilo para cabeceras
         CellStyle headerStyle = workbook.createCellStyle();
@@ -166,55 +220,57 @@ public class ExportService {
         }
         
         // Llenar datos
-        int rowNum = 1;
-        for (Pedido pedido : pedidos) {
-            Row row = sheet.createRow(rowNum++);
-            
-            Cell cell0 = row.createCell(0);
-            cell0.setCellValue("#" + pedido.getNumeroPedido());
-            cell0.setCellStyle(dataStyle);
-            
-            Cell cell1 = row.createCell(1);
-            cell1.setCellValue(pedido.getUsuario().getNombre() + " " + pedido.getUsuario().getApellido());
-            cell1.setCellStyle(dataStyle);
-            
-            Cell cell2 = row.createCell(2);
-            cell2.setCellValue(pedido.getUsuario().getEmail());
-            cell2.setCellStyle(dataStyle);
-            
-            Cell cell3 = row.createCell(3);
-            cell3.setCellValue(pedido.getFechaPedido().format(DATE_FORMATTER));
-            cell3.setCellStyle(dataStyle);
-            
-            Cell cell4 = row.createCell(4);
-            cell4.setCellValue(pedido.getEstado());
-            cell4.setCellStyle(dataStyle);
-            
-            Cell cell5 = row.createCell(5);
-            cell5.setCellValue(pedido.getMetodoPago());
-            cell5.setCellStyle(dataStyle);
-            
-            Cell cell6 = row.createCell(6);
-            cell6.setCellValue("S/ " + pedido.getTotal().toString());
-            cell6.setCellStyle(dataStyle);
-            
-            // Productos
-            StringBuilder productos = new StringBuilder();
-            for (PedidoDetalle detalle : pedido.getDetalles()) {
-                productos.append(detalle.getProducto().getNombre())
-                         .append(" (Cant: ").append(detalle.getCantidad())
-                         .append(", Precio: S/ ").append(detalle.getPrecioUnitario())
-                         .append("), ");
-            }
-            String productosStr = productos.toString();
-            if (productosStr.length() > 2) {
-                productosStr = productosStr.substring(0, productosStr.length() - 2);
+        int[] rowNum = {1};
+        lotes.recorrer(pedidos -> {
+            for (Pedido pedido : pedidos) {
+                Row row = sheet.createRow(rowNum[0]++);
+                
+                Cell cell0 = row.createCell(0);
+                cell0.setCellValue("#" + pedido.getNumeroPedido());
+                cell0.setCellStyle(dataStyle);
+                
+                Cell cell1 = row.createCell(1);
+                cell1.setCellValue(pedido.getUsuario().getNombre() + " " + pedido.getUsuario().getApellido());
+                cell1.setCellStyle(dataStyle);
+                
+                Cell cell2 = row.createCell(2);
+                cell2.setCellValue(pedido.getUsuario().getEmail());
+                cell2.setCellStyle(dataStyle);
+                
+                Cell cell3 = row.createCell(3);
+                cell3.setCellValue(pedido.getFechaPedido().format(DATE_FORMATTER));
+                cell3.setCellStyle(dataStyle);
+                
+                Cell cell4 = row.createCell(4);
+                cell4.setCellValue(pedido.getEstado());
+                cell4.setCellStyle(dataStyle);
+                
+                Cell cell5 = row.createCell(5);
+                cell5.setCellValue(pedido.getMetodoPago());
+                cell5.setCellStyle(dataStyle);
+                
+                Cell cell6 = row.createCell(6);
+                cell6.setCellValue("S/ " + pedido.getTotal().toString());
+                cell6.setCellStyle(dataStyle);
+                
+                // Productos
+                StringBuilder productos = new StringBuilder();
+                for (PedidoDetalle detalle : pedido.getDetalles()) {
+                    productos.append(detalle.getProducto().getNombre())
+                             .append(" (Cant: ").append(detalle.getCantidad())
+                             .append(", Precio: S/ ").append(detalle.getPrecioUnitario())
+                             .append("), ");
+                }
+                String productosStr = productos.toString();
+                if (productosStr.length() > 2) {
+                    productosStr = productosStr.substring(0, productosStr.length() - 2);
+                }
+                
+                Cell cell7 = row.createCell(7);
+                cell7.setCellValue(productosStr);
+                cell7.setCellStyle(dataStyle);
             }
-            
-            Cell cell7 = row.createCell(7);
-            cell7.setCellValue(productosStr);
-            cell7.setCellStyle(dataStyle);
-        }
+        });
         
         // Ajustar ancho de columnas
         for (int i = 0; i < headers.length; i++) {
@@ -224,24 +280,38 @@ public class ExportService {
             }
         }
         
-        workbook.write(baos);
-        return baos.toByteArray();
-        } // Cierre del try-with-resources
+        workbook.write(out);
+        out.flush();
+        } finally {
+            // Eliminar los archivos temporales de SXSSF
+            workbook.dispose();
+            workbook.close();
+        }
     }
 
     /**
      * Exportar pedidos a CSV
      */
     public byte[] exportarPedidosCSV(List<Pedido> pedidos) throws IOException {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             OutputStreamWriter osw = new OutputStreamWriter(baos, "UTF-8");
-             CSVWriter writer = new CSVWriter(osw)) {
-            
-            // Cabeceras
-            String[] headers = {"N° Pedido", "Cliente", "Email", "Fecha", "Estado", "Método Pago", "Total", "Productos"};
-            writer.writeNext(headers);
-            
-            // Datos
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        escribirPedidosCSV(consumidor -> consumidor.accept(pedidos), baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Escribir pedidos en CSV directamente sobre el stream de salida, vaciando
+     * el buffer tras cada lote.
+     */
+    public void escribirPedidosCSV(LotesPedidos lotes, OutputStream out) throws IOException {
+        OutputStreamWriter osw = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        CSVWriter writer = new CSVWriter(osw);
+        
+        // Cabeceras
+        String[] headers = {"N° Pedido", "Cliente", "Email", "Fecha", "Estado", "Método Pago", "Total", "Productos"};
+        writer.writeNext(headers);
+        
+        // Datos
+        lotes.recorrer(pedidos -> {
             for (Pedido pedido : pedidos) {
                 StringBuilder productos = new StringBuilder();
                 for (PedidoDetalle detalle : pedido.getDetalles()) {
@@ -261,10 +331,14 @@ public class ExportService {
                 };
                 writer.writeNext(data);
             }
-            
-            writer.flush();
-            return baos.toByteArray();
-        }
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        
+        writer.flush();
     }
     
     /**
@@ -756,11 +830,6 @@ public class ExportService {
         // Datos del pedido
         String numeroPedido = (String) pedido.get("numeroPedido");
         java.time.LocalDateTime fechaPedido = (java.time.LocalDateTime) pedido.get("fechaPedido");
-        double subtotal = ((Number) pedido.get("subtotal")).doubleValue();
-        double envio = ((Number) pedido.get("envio")).doubleValue();
-        double descuento = ((Number) pedido.get("descuento")).doubleValue();
-        double igv = ((Number) pedido.get("igv")).doubleValue();
-        double total = ((Number) pedido.get("total")).doubleValue();
         String metodoPago = (String) pedido.get("metodoPago");
         
         java.util.Map<String, Object> datosCliente = 
@@ -850,17 +919,22 @@ public class ExportService {
         
         // Productos
         com.itextpdf.text.Font dataFont = FontFactory.getFont(FontFactory.HELVETICA, 9);
+        long subtotalCentimos = 0;
         for (java.util.Map<String, Object> producto : productos) {
             int cantidad = (Integer) producto.get("cantidad");
             String nombre = (String) producto.get("nombre");
-            double precio = ((Number) producto.get("precio")).doubleValue();
+            long precioCentimos = Carrito.aCentimos(new java.math.BigDecimal(producto.get("precio").toString()));
+            long subtotalLinea = PricingEngine.subtotalLineaCentimos(precioCentimos, cantidad);
+            subtotalCentimos += subtotalLinea;
             
             productosTable.addCell(new PdfPCell(new Phrase(String.valueOf(cantidad), dataFont)));
             productosTable.addCell(new PdfPCell(new Phrase(nombre, dataFont)));
-            productosTable.addCell(new PdfPCell(new Phrase("S/ " + String.format("%.2f", precio), dataFont)));
+            productosTable.addCell(new PdfPCell(new Phrase("S/ " + Carrito.desdeCentimos(precioCentimos), dataFont)));
             productosTable.addCell(new PdfPCell(new Phrase("S/ 0.00", dataFont)));
-            productosTable.addCell(new PdfPCell(new Phrase("S/ " + String.format("%.2f", precio * cantidad), dataFont)));
+            productosTable.addCell(new PdfPCell(new Phrase("S/ " + Carrito.desdeCentimos(subtotalLinea), dataFont)));
         }
+        // Totales con el mismo cálculo que el carrito y el pago
+        Cotizacion cotizacion = PricingEngine.cotizar(subtotalCentimos);
         
         document.add(productosTable);
         
@@ -875,26 +949,26 @@ public class ExportService {
         
         // Subtotal
         totalesTable.addCell(new PdfPCell(new Phrase("Subtotal:", totalFont)));
-        totalesTable.addCell(new PdfPCell(new Phrase("S/ " + String.format("%.2f", subtotal), totalFont)));
+        totalesTable.addCell(new PdfPCell(new Phrase("S/ " + cotizacion.getSubtotal(), totalFont)));
         
         // Descuento
         totalesTable.addCell(new PdfPCell(new Phrase("Descuento Eco (5%):", totalFont)));
-        totalesTable.addCell(new PdfPCell(new Phrase("-S/ " + String.format("%.2f", descuento), totalFont)));
+        totalesTable.addCell(new PdfPCell(new Phrase("-S/ " + cotizacion.getDescuento(), totalFont)));
         
         // Envío
         totalesTable.addCell(new PdfPCell(new Phrase("Envío:", totalFont)));
-        totalesTable.addCell(new PdfPCell(new Phrase(envio > 0 ? "S/ " + String.format("%.2f", envio) : "GRATIS", totalFont)));
+        totalesTable.addCell(new PdfPCell(new Phrase(cotizacion.envioCentimos() > 0 ? "S/ " + cotizacion.getEnvio() : "GRATIS", totalFont)));
         
         // IGV
         totalesTable.addCell(new PdfPCell(new Phrase("IGV (18%):", totalFont)));
-        totalesTable.addCell(new PdfPCell(new Phrase("S/ " + String.format("%.2f", igv), totalFont)));
+        totalesTable.addCell(new PdfPCell(new Phrase("S/ " + cotizacion.getIgv(), totalFont)));
         
         // Total
         PdfPCell totalLabelCell = new PdfPCell(new Phrase("TOTAL:", totalBoldFont));
         totalLabelCell.setBackgroundColor(BaseColor.LIGHT_GRAY);
         totalesTable.addCell(totalLabelCell);
         
-        PdfPCell totalValueCell = new PdfPCell(new Phrase("S/ " + String.format("%.2f", total), totalBoldFont));
+        PdfPCell totalValueCell = new PdfPCell(new Phrase("S/ " + cotizacion.getTotal(), totalBoldFont));
         totalValueCell.setBackgroundColor(BaseColor.LIGHT_GRAY);
         totalesTable.addCell(totalValueCell);
         
@@ -1022,7 +1096,8 @@ public class ExportService {
         
         document.add(productosTable);
         
-        // Tabla de totales
+        // Tabla de totales (importes guardados en el pedido al confirmarlo)
+        Cotizacion cotizacion = PricingEngine.desdePedido(pedido);
         PdfPTable totalesTable = new PdfPTable(2);
         totalesTable.setWidthPercentage(50);
         totalesTable.setHorizontalAlignment(Element.ALIGN_RIGHT);
@@ -1030,25 +1105,25 @@ public class ExportService {
         
         // Subtotal
         totalesTable.addCell(new PdfPCell(new Phrase("Subtotal:", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 10))));
-        totalesTable.addCell(new PdfPCell(new Phrase("S/ " + String.format("%.2f", pedido.getSubtotal() != null ? pedido.getSubtotal() : 0.00), 
+        totalesTable.addCell(new PdfPCell(new Phrase("S/ " + cotizacion.getSubtotal(), 
             FontFactory.getFont(FontFactory.HELVETICA, 10))));
         
         // Costo de envío
         totalesTable.addCell(new PdfPCell(new Phrase("Envío:", FontFactory.getFont(FontFactory.HELVETICA, 10))));
-        totalesTable.addCell(new PdfPCell(new Phrase("S/ " + String.format("%.2f", pedido.getCostoEnvio() != null ? pedido.getCostoEnvio() : 0.00), 
+        totalesTable.addCell(new PdfPCell(new Phrase("S/ " + cotizacion.getEnvio(), 
             FontFactory.getFont(FontFactory.HELVETICA, 10))));
         
         // Descuento
-        if (pedido.getDescuento() != null && pedido.getDescuento().compareTo(java.math.BigDecimal.ZERO) > 0) {
+        if (cotizacion.descuentoCentimos() > 0) {
             totalesTable.addCell(new PdfPCell(new Phrase("Descuento:", FontFactory.getFont(FontFactory.HELVETICA, 10))));
-            totalesTable.addCell(new PdfPCell(new Phrase("-S/ " + String.format("%.2f", pedido.getDescuento()), 
+            totalesTable.addCell(new PdfPCell(new Phrase("-S/ " + cotizacion.getDescuento(), 
                 FontFactory.getFont(FontFactory.HELVETICA, 10))));
         }
         
         // IGV
-        if (pedido.getImpuestos() != null && pedido.getImpuestos().compareTo(java.math.BigDecimal.ZERO) > 0) {
+        if (cotizacion.igvCentimos() > 0) {
             totalesTable.addCell(new PdfPCell(new Phrase("IGV (18%):", FontFactory.getFont(FontFactory.HELVETICA, 10))));
-            totalesTable.addCell(new PdfPCell(new Phrase("S/ " + String.format("%.2f", pedido.getImpuestos()), 
+            totalesTable.addCell(new PdfPCell(new Phrase("S/ " + cotizacion.getIgv(), 
                 FontFactory.getFont(FontFactory.HELVETICA, 10))));
         }
         
@@ -1057,7 +1132,7 @@ public class ExportService {
         totalLabelCell.setBackgroundColor(BaseColor.LIGHT_GRAY);
         totalesTable.addCell(totalLabelCell);
         
-        PdfPCell totalValueCell = new PdfPCell(new Phrase("S/ " + String.format("%.2f", pedido.getTotal()), 
+        PdfPCell totalValueCell = new PdfPCell(new Phrase("S/ " + cotizacion.getTotal(), 
             FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12)));
         totalValueCell.setBackgroundColor(BaseColor.LIGHT_GRAY);
         totalesTable.addCell(totalValueCell);
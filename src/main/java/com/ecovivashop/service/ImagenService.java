@@ -1,37 +1,59 @@
 package com.ecovivashop.service;
 
+import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 import com.ecovivashop.entity.ImagenPerfil;
 import com.ecovivashop.entity.ImagenPerfil.TipoUsuario;
 import com.ecovivashop.entity.ImagenProducto;
+import com.ecovivashop.entity.ImagenProducto.EstadoVariantes;
+import com.ecovivashop.entity.ImagenProducto.Variante;
 import com.ecovivashop.repository.ImagenPerfilRepository;
 import com.ecovivashop.repository.ImagenProductoRepository;
+import com.ecovivashop.repository.ProductoRepository;
 
 @Service
 public class ImagenService {
     
-    @Value("${app.upload.path:uploads}")
-    private String uploadPath;
+    private static final Logger logger = LoggerFactory.getLogger(ImagenService.class);
     
     @Autowired
     private ImagenPerfilRepository imagenPerfilRepository;
@@ -39,58 +61,81 @@ public class ImagenService {
     @Autowired
     private ImagenProductoRepository imagenProductoRepository;
     
+    @Autowired
+    private ProductoRepository productoRepository;
+    
+    @Autowired
+    private AlmacenBlobService almacenBlobService;
+    
+    @Autowired
+    @Qualifier("imagenExecutor")
+    private Executor imagenExecutor;
+    
+    // Un archivo de 10 MB puede declarar cientos de megapíxeles; se rechaza por cabecera
+    @Value("${app.imagenes.max-megapixeles:50}")
+    private int maxMegapixeles = 50;
+    
+    // Imagen de perfil activa de cada usuario (vacía si no tiene); se invalida al subir o eliminar
+    private final Cache<Long, Optional<ImagenPerfil>> rutasImagenPerfil = CacheBuilder.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+    
     // Tamaños para redimensionamiento
     private static final int PROFILE_IMAGE_SIZE = 300;
-    private static final int PRODUCT_IMAGE_WIDTH = 400;
-    private static final int PRODUCT_IMAGE_HEIGHT = 400;
     
     /**
-     * Guarda una imagen de perfil
+     * Guarda una imagen de perfil en el almacén por contenido, ya redimensionada
      */
     public ImagenPerfil guardarImagenPerfil(Long usuarioId, TipoUsuario tipoUsuario, MultipartFile file) throws IOException {
         // Validar archivo
         validarArchivo(file);
         
-        // Desactivar imagen anterior si existe
+        // Desactivar imagen anterior si existe; su archivo lo borra la purga de
+        // AlmacenBlobService cuando ya nadie lo usa
         imagenPerfilRepository.deactivateByUsuarioIdAndTipoUsuario(usuarioId, tipoUsuario);
         
-        // Crear directorio si no existe
-        String directorioTipo = tipoUsuario == TipoUsuario.ADMIN ? "admin" : "cliente";
-        Path directorio = Paths.get(uploadPath, "profiles", directorioTipo);
-        Files.createDirectories(directorio);
-        
-        // Generar nombre único para el archivo
-        String extension = getFileExtension(file.getOriginalFilename());
-        String nombreArchivo = generateUniqueFileName(usuarioId, tipoUsuario.name(), extension);
-        Path rutaCompleta = directorio.resolve(nombreArchivo);
-        
         // Redimensionar y guardar imagen
+        String extension = getFileExtension(file.getOriginalFilename());
         BufferedImage imagenRedimensionada = redimensionarImagen(file, PROFILE_IMAGE_SIZE, PROFILE_IMAGE_SIZE);
         
+        AlmacenBlobService.BlobGuardado blob;
         if (imagenRedimensionada != null) {
             // Imagen redimensionada exitosamente
-            guardarImagen(imagenRedimensionada, rutaCompleta.toFile(), extension);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            if (!ImageIO.write(imagenRedimensionada, formatoEscritura(extension), bytes)) {
+                throw new IOException("No se pudo guardar la imagen en formato: " + formatoEscritura(extension));
+            }
+            blob = almacenBlobService.guardar(new ByteArrayInputStream(bytes.toByteArray()), extension);
         } else {
             // Archivo que no se puede redimensionar (ej: SVG), copiar directamente
-            Files.copy(file.getInputStream(), rutaCompleta);
+            blob = almacenBlobService.guardar(file.getInputStream(), extension);
         }
         
         // Crear y guardar registro en BD
         ImagenPerfil imagenPerfil = new ImagenPerfil(
             usuarioId,
             tipoUsuario,
-            nombreArchivo,
+            blob.nombre(),
             file.getOriginalFilename(),
-            rutaCompleta.toString(),
+            blob.ruta().toString(),
             file.getContentType(),
-            file.getSize()
+            blob.tamaño()
         );
         
-        return imagenPerfilRepository.save(imagenPerfil);
+        imagenPerfil = imagenPerfilRepository.save(imagenPerfil);
+        rutasImagenPerfil.invalidate(usuarioId);
+        return imagenPerfil;
     }
     
     /**
-     * Guarda una imagen de producto
+     * Guarda una imagen de producto. El original se guarda tal cual en el almacén
+     * por contenido (si ya estaba, no se duplica) y la petición termina; las
+     * variantes (miniatura, tarjeta, detalle) se generan en el pool de imágenes y
+     * quedan registradas en la propia ImagenProducto.
+     *
+     * Si es la principal pasa a ser la imagen del producto: mientras tanto con el
+     * original y, cuando el detalle está listo, con el detalle.
      */
     public ImagenProducto guardarImagenProducto(Long productoId, MultipartFile file, 
                                                Integer orden, Boolean esPrincipal, String altText) throws IOException {
@@ -102,40 +147,121 @@ public class ImagenService {
             imagenProductoRepository.clearPrincipalByProductoId(productoId);
         }
         
-        // Crear directorio si no existe
-        Path directorio = Paths.get(uploadPath, "products", productoId.toString());
-        Files.createDirectories(directorio);
-        
-        // Generar nombre único para el archivo
         String extension = getFileExtension(file.getOriginalFilename());
-        String nombreArchivo = generateUniqueFileName(productoId, "PRODUCT", extension);
-        Path rutaCompleta = directorio.resolve(nombreArchivo);
-        
-        // Redimensionar y guardar imagen
-        BufferedImage imagenRedimensionada = redimensionarImagen(file, PRODUCT_IMAGE_WIDTH, PRODUCT_IMAGE_HEIGHT);
-        
-        if (imagenRedimensionada != null) {
-            // Imagen redimensionada exitosamente
-            guardarImagen(imagenRedimensionada, rutaCompleta.toFile(), extension);
-        } else {
-            // Archivo que no se puede redimensionar (ej: SVG), copiar directamente
-            Files.copy(file.getInputStream(), rutaCompleta);
-        }
+        AlmacenBlobService.BlobGuardado blob = almacenBlobService.guardar(file.getInputStream(), extension);
         
         // Crear y guardar registro en BD
         ImagenProducto imagenProducto = new ImagenProducto(
             productoId,
-            nombreArchivo,
+            blob.nombre(),
             file.getOriginalFilename(),
-            rutaCompleta.toString(),
+            blob.ruta().toString(),
             file.getContentType(),
-            file.getSize(),
+            blob.tamaño(),
             orden != null ? orden : 0,
             esPrincipal != null ? esPrincipal : false,
             altText
         );
+        imagenProducto.setEstadoVariantes(admiteRedimension(extension) ? EstadoVariantes.PENDIENTE : EstadoVariantes.NO_APLICA);
+        imagenProducto = imagenProductoRepository.save(imagenProducto);
+        // Antes de encolar las variantes, para que su URL no se pise con la del original
+        if (Boolean.TRUE.equals(imagenProducto.getEsPrincipal())) {
+            actualizarImagenUrlProducto(imagenProducto, null);
+        }
         
-        return imagenProductoRepository.save(imagenProducto);
+        if (imagenProducto.getEstadoVariantes() == EstadoVariantes.PENDIENTE) {
+            Long imagenId = imagenProducto.getId();
+            // Si hay una transacción abierta, el pool no vería la fila hasta el commit
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        imagenExecutor.execute(() -> generarVariantes(imagenId));
+                    }
+                });
+            } else {
+                imagenExecutor.execute(() -> generarVariantes(imagenId));
+            }
+        }
+        
+        return imagenProducto;
+    }
+    
+    /**
+     * Genera las variantes de una imagen de producto a partir del original: se
+     * decodifica una sola vez, submuestreada al tamaño de la variante mayor, y se
+     * escala a cada tamaño. Si hay escritor WebP registrado en ImageIO se añade
+     * además la tarjeta en WebP. Las variantes van junto al original con su nombre
+     * como prefijo; si otra imagen con el mismo contenido ya las generó, se reutilizan.
+     */
+    void generarVariantes(Long imagenId) {
+        ImagenProducto imagen = imagenProductoRepository.findById(imagenId).orElse(null);
+        if (imagen == null || imagen.getEstadoVariantes() != EstadoVariantes.PENDIENTE) {
+            return;
+        }
+        
+        boolean esBlob = AlmacenBlobService.esBlob(imagen.getNombreArchivo());
+        try {
+            // En otro nodo el original puede estar solo en el almacenamiento compartido
+            Path original = esBlob
+                ? almacenBlobService.obtenerLocal(imagen.getNombreArchivo())
+                    .orElseThrow(() -> new IOException("Original no disponible: " + imagen.getNombreArchivo()))
+                : Paths.get(imagen.getRutaArchivo());
+            BufferedImage fuente = leerImagen(original.toFile(), Variante.DETALLE.getLado());
+            if (fuente == null) {
+                // Formato que ImageIO no sabe leer: se sirve siempre el original
+                imagen.setEstadoVariantes(EstadoVariantes.NO_APLICA);
+            } else {
+                String extension = getFileExtension(imagen.getNombreArchivo());
+                String base = imagen.getNombreArchivo().substring(0, imagen.getNombreArchivo().length() - extension.length());
+                Path directorio = original.getParent();
+                
+                for (Variante variante : Variante.values()) {
+                    String nombre = base + "_" + variante.getSufijo() + extension;
+                    Path destino = directorio.resolve(Paths.get(nombre).getFileName());
+                    if (!Files.exists(destino)) {
+                        guardarImagenAtomica(escalar(fuente, variante.getLado(), variante.getLado(), esJpeg(extension)),
+                                             destino, formatoEscritura(extension));
+                    }
+                    if (esBlob) {
+                        almacenBlobService.publicar(nombre);
+                    }
+                    imagen.setArchivoVariante(variante, nombre);
+                }
+                
+                if (ImageIO.getImageWritersByFormatName("webp").hasNext()) {
+                    String nombreWebp = base + "_" + Variante.TARJETA.getSufijo() + ".webp";
+                    Path destino = directorio.resolve(Paths.get(nombreWebp).getFileName());
+                    if (!Files.exists(destino)) {
+                        BufferedImage tarjeta = escalar(fuente, Variante.TARJETA.getLado(), Variante.TARJETA.getLado(), false);
+                        guardarImagenAtomica(tarjeta, destino, "webp");
+                    }
+                    if (esBlob) {
+                        almacenBlobService.publicar(nombreWebp);
+                    }
+                    imagen.setArchivoTarjetaWebp(nombreWebp);
+                }
+                imagen.setEstadoVariantes(EstadoVariantes.LISTAS);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("No se pudieron generar las variantes de la imagen {}: {}", imagenId, e.getMessage());
+            imagen.setEstadoVariantes(EstadoVariantes.ERROR);
+        }
+        imagenProductoRepository.save(imagen);
+        // Solo si el producto sigue mostrando el original de esta imagen
+        if (imagen.getEstadoVariantes() == EstadoVariantes.LISTAS && Boolean.TRUE.equals(imagen.getEsPrincipal())) {
+            actualizarImagenUrlProducto(imagen, imagen.getUrl());
+        }
+    }
+    
+    // Se guarda la entidad para que el listener avise a las cachés del catálogo
+    private void actualizarImagenUrlProducto(ImagenProducto imagen, String urlEsperada) {
+        productoRepository.findById(imagen.getProductoId().intValue()).ifPresent(producto -> {
+            if (urlEsperada == null || urlEsperada.equals(producto.getImagenUrl())) {
+                producto.setImagenUrl(imagen.getUrlDetalle());
+                productoRepository.save(producto);
+            }
+        });
     }
     
     /**
@@ -145,6 +271,35 @@ public class ImagenService {
         return imagenPerfilRepository.findByUsuarioIdAndTipoUsuarioAndActivoTrue(usuarioId, tipoUsuario);
     }
     
+    /**
+     * Ruta en disco de la imagen de perfil del usuario, buscada primero como admin
+     * y luego como cliente. La fila se cachea para no consultar la base de datos cada
+     * vez que se pinta un avatar; el archivo se trae del almacenamiento compartido si
+     * este nodo aún no lo tiene.
+     */
+    public Optional<Path> obtenerRutaImagenPerfil(Long usuarioId) {
+        Optional<ImagenPerfil> imagen;
+        try {
+            imagen = rutasImagenPerfil.get(usuarioId, () -> {
+                for (TipoUsuario tipo : List.of(TipoUsuario.ADMIN, TipoUsuario.CLIENTE)) {
+                    Optional<ImagenPerfil> activa = obtenerImagenPerfil(usuarioId, tipo);
+                    if (activa.isPresent()) {
+                        return activa;
+                    }
+                }
+                return Optional.empty();
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        return imagen.flatMap(activa -> AlmacenBlobService.esBlob(activa.getNombreArchivo())
+            ? almacenBlobService.obtenerLocal(activa.getNombreArchivo())
+            : Optional.of(Paths.get(activa.getRutaArchivo())));
+    }
+    
     /**
      * Obtiene todas las imágenes de un producto
      */
@@ -159,6 +314,20 @@ public class ImagenService {
         return imagenProductoRepository.findPrincipalByProductoId(productoId);
     }
     
+    /**
+     * Imagen principal de cada producto de la lista, con una sola consulta.
+     * Es lo que usan las páginas del catálogo para elegir el tamaño de cada imagen.
+     */
+    public Map<Integer, ImagenProducto> obtenerImagenesPrincipales(Collection<Integer> productoIds) {
+        if (productoIds.isEmpty()) {
+            return Map.of();
+        }
+        List<Long> ids = productoIds.stream().map(Integer::longValue).toList();
+        return imagenProductoRepository.findPrincipalesByProductoIds(ids).stream()
+            .collect(Collectors.toMap(imagen -> imagen.getProductoId().intValue(), Function.identity(),
+                                      (primera, segunda) -> primera));
+    }
+    
     /**
      * Elimina una imagen de perfil
      */
@@ -168,6 +337,12 @@ public class ImagenService {
             ImagenPerfil img = imagen.get();
             img.setActivo(false);
             imagenPerfilRepository.save(img);
+            rutasImagenPerfil.invalidate(usuarioId);
+            
+            // Un archivo del almacén lo borra la purga cuando ya nadie lo usa
+            if (AlmacenBlobService.esBlob(img.getNombreArchivo())) {
+                return;
+            }
             
             // Eliminar archivo físico
             try {
@@ -189,9 +364,23 @@ public class ImagenService {
             img.setActivo(false);
             imagenProductoRepository.save(img);
             
-            // Eliminar archivo físico
+            // Un archivo del almacén (y sus variantes) lo borra la purga cuando ya nadie lo usa
+            if (AlmacenBlobService.esBlob(img.getNombreArchivo())) {
+                return;
+            }
+            
+            // Eliminar archivo físico y sus variantes
             try {
-                Files.deleteIfExists(Paths.get(img.getRutaArchivo()));
+                Path original = Paths.get(img.getRutaArchivo());
+                Files.deleteIfExists(original);
+                for (Variante variante : Variante.values()) {
+                    if (img.getArchivoVariante(variante) != null) {
+                        Files.deleteIfExists(original.resolveSibling(img.getArchivoVariante(variante)));
+                    }
+                }
+                if (img.getArchivoTarjetaWebp() != null) {
+                    Files.deleteIfExists(original.resolveSibling(img.getArchivoTarjetaWebp()));
+                }
             } catch (IOException e) {
                 // Log error but don't throw exception
                 System.err.println("Error al eliminar archivo: " + e.getMessage());
@@ -212,8 +401,69 @@ public class ImagenService {
             throw new IOException("Nombre de archivo inválido");
         }
         
-        // Permitir cualquier tipo y tamaño de archivo
-        // Solo validamos que tenga un nombre válido
+        // Se admite cualquier tipo de archivo; si es una imagen, se comprueban
+        // sus dimensiones leyendo solo la cabecera, sin decodificarla
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(file.getInputStream())) {
+            ImageReader lector = abrirLector(entrada);
+            if (lector != null) {
+                try {
+                    comprobarDimensiones(lector.getWidth(0), lector.getHeight(0));
+                } finally {
+                    lector.dispose();
+                }
+            }
+        }
+    }
+    
+    private void comprobarDimensiones(int ancho, int alto) throws IOException {
+        if ((long) ancho * alto > maxMegapixeles * 1_000_000L) {
+            throw new IOException(String.format("La imagen (%dx%d) supera el máximo de %d megapíxeles",
+                                                ancho, alto, maxMegapixeles));
+        }
+    }
+    
+    /**
+     * Devuelve un lector de ImageIO ya asociado a la entrada, o null si el formato
+     * no se reconoce. Quien lo recibe debe llamar a dispose().
+     */
+    private ImageReader abrirLector(ImageInputStream entrada) {
+        if (entrada == null) {
+            return null;
+        }
+        Iterator<ImageReader> lectores = ImageIO.getImageReaders(entrada);
+        if (!lectores.hasNext()) {
+            return null;
+        }
+        ImageReader lector = lectores.next();
+        lector.setInput(entrada, true, true);
+        return lector;
+    }
+    
+    /**
+     * Decodifica una imagen submuestreada para que su lado mayor quede entre
+     * ladoObjetivo y el doble: una foto de 50 megapíxeles que acaba en 400 px se
+     * decodifica a menos de 800 px en lugar de ocupar cientos de MB de heap.
+     * Devuelve null si ImageIO no reconoce el formato.
+     */
+    private BufferedImage leerImagen(Object origen, int ladoObjetivo) throws IOException {
+        try (ImageInputStream entrada = ImageIO.createImageInputStream(origen)) {
+            ImageReader lector = abrirLector(entrada);
+            if (lector == null) {
+                return null;
+            }
+            try {
+                int ancho = lector.getWidth(0);
+                int alto = lector.getHeight(0);
+                comprobarDimensiones(ancho, alto);
+                
+                int paso = Math.max(1, Math.max(ancho, alto) / ladoObjetivo);
+                ImageReadParam parametros = lector.getDefaultReadParam();
+                parametros.setSourceSubsampling(paso, paso, 0, 0);
+                return lector.read(0, parametros);
+            } finally {
+                lector.dispose();
+            }
+        }
     }
     
     /**
@@ -224,53 +474,18 @@ public class ImagenService {
             String extension = getFileExtension(file.getOriginalFilename()).toLowerCase();
             
             // Para archivos que no son imágenes típicas, no redimensionar
-            if (extension.equals(".svg") || extension.equals(".pdf") || extension.equals(".gif")) {
+            if (!admiteRedimension(extension)) {
                 return null;
             }
             
-            BufferedImage originalImage = ImageIO.read(file.getInputStream());
+            BufferedImage originalImage = leerImagen(file.getInputStream(), Math.max(maxWidth, maxHeight));
             
             // Si no se puede leer como imagen, devolver null para guardar tal como está
             if (originalImage == null) {
                 return null;
             }
             
-            // Calcular nuevas dimensiones manteniendo proporción
-            int originalWidth = originalImage.getWidth();
-            int originalHeight = originalImage.getHeight();
-            
-            double widthRatio = (double) maxWidth / originalWidth;
-            double heightRatio = (double) maxHeight / originalHeight;
-            double ratio = Math.min(widthRatio, heightRatio);
-            
-            int newWidth = (int) (originalWidth * ratio);
-            int newHeight = (int) (originalHeight * ratio);
-            
-            // Si la imagen ya es más pequeña que el tamaño máximo, no redimensionar
-            if (newWidth >= originalWidth && newHeight >= originalHeight) {
-                return originalImage;
-            }
-            
-            // Determinar el tipo de imagen para crear la nueva imagen
-            int imageType = originalImage.getType();
-            if (imageType == BufferedImage.TYPE_CUSTOM) {
-                imageType = BufferedImage.TYPE_INT_RGB;
-            }
-            
-            // Crear nueva imagen redimensionada
-            BufferedImage resizedImage = new BufferedImage(newWidth, newHeight, imageType);
-            Graphics2D g2d = resizedImage.createGraphics();
-            
-            // Mejorar calidad de redimensionamiento
-            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
-            
-            g2d.drawImage(originalImage, 0, 0, newWidth, newHeight, null);
-            g2d.dispose();
-            
-            return resizedImage;
+            return escalar(originalImage, maxWidth, maxHeight, false);
         } catch (IOException | IllegalArgumentException e) {
             // Si hay cualquier error, devolver null para guardar el archivo original
             return null;
@@ -278,13 +493,80 @@ public class ImagenService {
     }
     
     /**
-     * Guarda una imagen en disco
+     * Escala una imagen para que quepa en maxWidth x maxHeight manteniendo la
+     * proporción. Nunca amplía. Para JPEG se dibuja sobre fondo RGB, porque el
+     * escritor JPEG no admite canal alfa.
      */
-    private void guardarImagen(BufferedImage imagen, File archivo, String extension) throws IOException {
-        String formatName = extension.substring(1).toLowerCase(); // Remover el punto
+    private BufferedImage escalar(BufferedImage originalImage, int maxWidth, int maxHeight, boolean sinAlfa) {
+        // Calcular nuevas dimensiones manteniendo proporción
+        int originalWidth = originalImage.getWidth();
+        int originalHeight = originalImage.getHeight();
+        
+        double widthRatio = (double) maxWidth / originalWidth;
+        double heightRatio = (double) maxHeight / originalHeight;
+        double ratio = Math.min(widthRatio, heightRatio);
+        
+        int newWidth = Math.max(1, (int) (originalWidth * ratio));
+        int newHeight = Math.max(1, (int) (originalHeight * ratio));
+        
+        // Si la imagen ya es más pequeña que el tamaño máximo, no redimensionar
+        if (newWidth >= originalWidth && newHeight >= originalHeight) {
+            newWidth = originalWidth;
+            newHeight = originalHeight;
+            if (!sinAlfa || !originalImage.getColorModel().hasAlpha()) {
+                return originalImage;
+            }
+        }
+        
+        // Determinar el tipo de imagen para crear la nueva imagen
+        int imageType = originalImage.getType();
+        if (sinAlfa) {
+            imageType = BufferedImage.TYPE_INT_RGB;
+        } else if (imageType == BufferedImage.TYPE_CUSTOM) {
+            imageType = originalImage.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        }
+        
+        // Crear nueva imagen redimensionada
+        BufferedImage resizedImage = new BufferedImage(newWidth, newHeight, imageType);
+        Graphics2D g2d = resizedImage.createGraphics();
+        
+        // Mejorar calidad de redimensionamiento
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
+        
+        if (sinAlfa) {
+            g2d.setColor(Color.WHITE);
+            g2d.fillRect(0, 0, newWidth, newHeight);
+        }
+        g2d.drawImage(originalImage, 0, 0, newWidth, newHeight, null);
+        g2d.dispose();
+        
+        return resizedImage;
+    }
+    
+    // Sin extensión no se sabe en qué formato escribir las variantes
+    private boolean admiteRedimension(String extension) {
+        String ext = extension.toLowerCase();
+        return !(ext.isEmpty() || ext.equals(".svg") || ext.equals(".pdf") || ext.equals(".gif"));
+    }
+    
+    private boolean esJpeg(String extension) {
+        return switch (extension.toLowerCase()) {
+            case ".jpg", ".jpeg", ".jfif", ".pjpeg", ".pjp" -> true;
+            default -> false;
+        };
+    }
+    
+    /**
+     * Formato de ImageIO con el que se escribe una imagen según su extensión
+     */
+    private String formatoEscritura(String extension) throws IOException {
+        String formatName = extension.isEmpty() ? "png" : extension.substring(1).toLowerCase(); // Remover el punto
         
         // Mapear extensiones a formatos compatibles con ImageIO
-        formatName = switch (formatName) {
+        return switch (formatName) {
             case "jpg", "jpeg", "jfif", "pjpeg", "pjp" -> "jpeg";
             case "tif" -> "tiff";
             case "svg" -> throw new IOException("SVG no requiere redimensionamiento, usar copia directa");
@@ -301,26 +583,23 @@ public class ImagenService {
                 yield supported ? formatName : "png"; // Fallback a PNG
             }
         };
-        
-        // Crear archivo padre si no existe
-        File parentDir = archivo.getParentFile();
-        if (parentDir != null && !parentDir.exists()) {
-            parentDir.mkdirs();
-        }
-        
-        // Verificar que el formato sea soportado
-        if (!ImageIO.write(imagen, formatName, archivo)) {
-            throw new IOException("No se pudo guardar la imagen en formato: " + formatName);
-        }
     }
     
     /**
-     * Genera un nombre único para el archivo
+     * Escribe la imagen en un temporal y la mueve a su sitio, para que nunca se
+     * sirva (ni se cachee para siempre) una variante a medio escribir
      */
-    private String generateUniqueFileName(Long entityId, String type, String extension) {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        String uuid = UUID.randomUUID().toString().substring(0, 8);
-        return String.format("%s_%s_%s_%s%s", type, entityId, timestamp, uuid, extension);
+    private void guardarImagenAtomica(BufferedImage imagen, Path destino, String formatName) throws IOException {
+        Path temporal = Files.createTempFile(destino.getParent(), "variante-", ".tmp");
+        try {
+            // Verificar que el formato sea soportado
+            if (!ImageIO.write(imagen, formatName, temporal.toFile())) {
+                throw new IOException("No se pudo guardar la imagen en formato: " + formatName);
+            }
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
     }
     
     /**
@@ -343,8 +622,7 @@ public class ImagenService {
     public String obtenerUrlImagenPerfil(Long usuarioId, TipoUsuario tipoUsuario) {
         Optional<ImagenPerfil> imagen = obtenerImagenPerfil(usuarioId, tipoUsuario);
         if (imagen.isPresent()) {
-            String tipoUsuarioStr = tipoUsuario == TipoUsuario.ADMIN ? "admin" : "cliente";
-            return String.format("/uploads/profiles/%s/%s", tipoUsuarioStr, imagen.get().getNombreArchivo());
+            return imagen.get().getUrl();
         }
         return "/img/default-profile.svg"; // Imagen por defecto SVG
     }
@@ -355,7 +633,7 @@ public class ImagenService {
     public String obtenerUrlImagenPrincipalProducto(Long productoId) {
         Optional<ImagenProducto> imagen = obtenerImagenPrincipalProducto(productoId);
         if (imagen.isPresent()) {
-            return String.format("/uploads/products/%s/%s", productoId, imagen.get().getNombreArchivo());
+            return imagen.get().getUrl();
         }
         return "/img/default-product.svg"; // Imagen por defecto SVG
     }
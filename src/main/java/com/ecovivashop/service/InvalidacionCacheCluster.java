@@ -0,0 +1,134 @@
+package com.ecovivashop.service;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.UUID;
+
+import org.hibernate.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.ecovivashop.entity.Inventario;
+import com.ecovivashop.entity.Producto;
+import com.ecovivashop.entity.Rol;
+import com.ecovivashop.repository.InventarioRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Mantiene coherentes entre nodos la caché de segundo nivel de Hibernate y las
+ * cachés de la aplicación.
+ *
+ * Los cambios confirmados en este nodo se reenvían por el {@link CanalInvalidacionCache}.
+ * Al recibir el cambio de otro nodo se desalojan las entradas afectadas de la caché
+ * de segundo nivel y de las consultas, y el evento se vuelve a publicar aquí para que
+ * el índice de búsqueda y las cachés de productos reaccionen como ante un cambio local.
+ * Las variaciones de las métricas del panel viajan igual, para que los contadores en
+ * memoria de cada nodo ({@link MetricasStore}) cuenten también lo ocurrido en los demás.
+ */
+@Component
+public class InvalidacionCacheCluster {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvalidacionCacheCluster.class);
+
+    // Marca los eventos que llegan de otro nodo para no reenviarlos
+    private static final ThreadLocal<Boolean> APLICANDO_REMOTO = ThreadLocal.withInitial(() -> false);
+
+    private final String nodoId = UUID.randomUUID().toString();
+    private final CanalInvalidacionCache canal;
+    private final EntityManagerFactory entityManagerFactory;
+    private final InventarioRepository inventarioRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public InvalidacionCacheCluster(CanalInvalidacionCache canal, EntityManagerFactory entityManagerFactory,
+                                    InventarioRepository inventarioRepository,
+                                    ApplicationEventPublisher eventPublisher) {
+        this.canal = canal;
+        this.entityManagerFactory = entityManagerFactory;
+        this.inventarioRepository = inventarioRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void suscribir() {
+        this.canal.suscribir(this::recibir);
+    }
+
+    public String getNodoId() {
+        return this.nodoId;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarProducto(ProductoModificadoEvent evento) {
+        this.reenviar(evento);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarInventario(InventarioModificadoEvent evento) {
+        this.reenviar(evento);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarRol(RolModificadoEvent evento) {
+        this.reenviar(evento);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alVariarMetricas(VariacionMetricasEvent evento) {
+        this.reenviar(evento);
+    }
+
+    void recibir(MensajeInvalidacion mensaje) {
+        if (this.nodoId.equals(mensaje.nodoOrigen())) {
+            return;
+        }
+        logger.debug("Invalidación recibida del nodo {}: {}", mensaje.nodoOrigen(), mensaje.evento());
+
+        Serializable evento = mensaje.evento();
+        if (evento instanceof ProductoModificadoEvent producto) {
+            this.cache().evict(Producto.class, producto.idProducto());
+            this.cache().evictQueryRegions();
+        } else if (evento instanceof InventarioModificadoEvent inventario) {
+            this.desalojarInventarios(inventario);
+        } else if (evento instanceof RolModificadoEvent rol) {
+            this.cache().evict(Rol.class, rol.idRol());
+            this.cache().evictQueryRegions();
+        } else if (evento instanceof VariacionMetricasEvent) {
+            // Nada que desalojar: basta con republicarlo
+        } else {
+            logger.warn("Mensaje de invalidación desconocido: {}", evento);
+            return;
+        }
+
+        APLICANDO_REMOTO.set(true);
+        try {
+            this.eventPublisher.publishEvent(evento);
+        } finally {
+            APLICANDO_REMOTO.remove();
+        }
+    }
+
+    private void reenviar(Serializable evento) {
+        if (!APLICANDO_REMOTO.get()) {
+            this.canal.publicar(new MensajeInvalidacion(this.nodoId, evento));
+        }
+    }
+
+    private void desalojarInventarios(InventarioModificadoEvent evento) {
+        if (evento.idsProducto().isEmpty()) {
+            return;
+        }
+        List<Integer> idsInventario = this.inventarioRepository.findIdsByProductoIds(evento.idsProducto());
+        for (Integer idInventario : idsInventario) {
+            this.cache().evict(Inventario.class, idInventario);
+        }
+    }
+
+    private Cache cache() {
+        return this.entityManagerFactory.getCache().unwrap(Cache.class);
+    }
+}
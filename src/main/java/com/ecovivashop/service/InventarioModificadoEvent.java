@@ -0,0 +1,25 @@
+package com.ecovivashop.service;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Set;
+
+import com.ecovivashop.entity.Inventario;
+
+/**
+ * Cambió el stock de uno o varios productos
+ */
+public record InventarioModificadoEvent(Set<Integer> idsProducto) implements Serializable {
+
+    public static InventarioModificadoEvent deProductos(Collection<Integer> idsProducto) {
+        return new InventarioModificadoEvent(Set.copyOf(idsProducto));
+    }
+
+    // null si el inventario aún no está asociado a un producto
+    static InventarioModificadoEvent deInventario(Inventario inventario) {
+        if (inventario.getProducto() == null || inventario.getProducto().getIdProducto() == null) {
+            return null;
+        }
+        return new InventarioModificadoEvent(Set.of(inventario.getProducto().getIdProducto()));
+    }
+}
@@ -1,9 +1,12 @@
 package com.ecovivashop.service;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -19,11 +22,14 @@ import com.ecovivashop.repository.ProductoRepository;
 public class InventarioService {
     private final InventarioRepository inventarioRepository;
     private final ProductoRepository productoRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     // Constructor manual
-    public InventarioService(InventarioRepository inventarioRepository, ProductoRepository productoRepository) {
+    public InventarioService(InventarioRepository inventarioRepository, ProductoRepository productoRepository,
+                             ApplicationEventPublisher eventPublisher) {
         this.inventarioRepository = inventarioRepository;
         this.productoRepository = productoRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     // Métodos CRUD básicos
@@ -84,56 +90,71 @@ public class InventarioService {
         this.inventarioRepository.save(inventario);
     }
     
+    /**
+     * Descontar stock con un único UPDATE condicional (stock >= cantidad). Dos
+     * checkouts concurrentes sobre el mismo producto no pueden perder
+     * actualizaciones ni dejar el stock en negativo: la base de datos serializa
+     * el UPDATE sobre la fila y el segundo simplemente no actualiza nada si ya
+     * no queda stock.
+     */
     public void reducirStock(Integer idProducto, Integer cantidad, String usuarioActualizacion) {
-        System.out.println("🔄 [SERVICE] reducirStock called - idProducto: " + idProducto + ", cantidad: " + cantidad + ", usuario: " + usuarioActualizacion);
+        if (cantidad == null || cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad a reducir debe ser mayor que cero");
+        }
 
-        Optional<Inventario> inventarioExistente = this.inventarioRepository.findByProductoId(idProducto);
+        int filas = this.inventarioRepository.reducirStockSiDisponible(idProducto, cantidad, LocalDateTime.now(), usuarioActualizacion);
+        if (filas == 1) {
+            this.publicarCambioStock(List.of(idProducto));
+            return;
+        }
 
-        if (inventarioExistente.isEmpty()) {
-            System.err.println("❌ [SERVICE] Inventario no encontrado para el producto ID: " + idProducto);
+        // Solo en el camino de error se consulta el stock para dar un mensaje preciso
+        Optional<Integer> stockActual = this.inventarioRepository.findStockByProductoId(idProducto);
+        if (stockActual.isEmpty()) {
             throw new RuntimeException("Inventario no encontrado para el producto ID: " + idProducto);
         }
+        throw new RuntimeException("Stock insuficiente. Disponible: " + stockActual.get() + ", Solicitado: " + cantidad);
+    }
 
-        System.out.println("✅ [SERVICE] Inventario encontrado, stock actual: " + inventarioExistente.get().getStock());
-
-        Inventario inventario = inventarioExistente.get();
-
-        if (inventario.getStock() < cantidad) {
-            System.err.println("❌ [SERVICE] Stock insuficiente. Disponible: " + inventario.getStock() + ", Solicitado: " + cantidad);
-            throw new RuntimeException("Stock insuficiente. Disponible: " + inventario.getStock() + ", Solicitado: " + cantidad);
+    /**
+     * Reservar el stock de todas las líneas de un carrito en un solo viaje a la
+     * base de datos. Si alguna línea no tiene stock suficiente se lanza una
+     * excepción y la transacción revierte también las líneas ya descontadas.
+     *
+     * @param cantidadesPorProducto cantidad a descontar por id de producto
+     */
+    public void reservarStock(Map<Integer, Integer> cantidadesPorProducto, String usuarioActualizacion) {
+        if (cantidadesPorProducto.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Integer, Integer> linea : cantidadesPorProducto.entrySet()) {
+            if (linea.getValue() == null || linea.getValue() <= 0) {
+                throw new IllegalArgumentException("Cantidad inválida para el producto ID: " + linea.getKey());
+            }
         }
 
-        inventario.reducirStock(cantidad);
-        inventario.setFechaActualizacion(LocalDateTime.now());
-        inventario.setUsuarioActualizacion(usuarioActualizacion);
-
-        System.out.println("🔄 [SERVICE] Saving inventario with new stock: " + inventario.getStock());
-        this.inventarioRepository.save(inventario);
-
-        System.out.println("✅ [SERVICE] reducirStock completed successfully");
+        List<Integer> sinStock = this.inventarioRepository.reservarStockEnLote(cantidadesPorProducto, usuarioActualizacion);
+        if (!sinStock.isEmpty()) {
+            throw new RuntimeException("Stock insuficiente para los productos ID: " + sinStock);
+        }
+        this.publicarCambioStock(cantidadesPorProducto.keySet());
     }
     
     public void aumentarStock(Integer idProducto, Integer cantidad, String usuarioActualizacion) {
-        System.out.println("🔄 [SERVICE] aumentarStock called - idProducto: " + idProducto + ", cantidad: " + cantidad + ", usuario: " + usuarioActualizacion);
-
-        Optional<Inventario> inventarioExistente = this.inventarioRepository.findByProductoId(idProducto);
+        if (cantidad == null || cantidad <= 0) {
+            throw new IllegalArgumentException("La cantidad a aumentar debe ser mayor que cero");
+        }
 
-        if (inventarioExistente.isEmpty()) {
-            System.err.println("❌ [SERVICE] Inventario no encontrado para el producto ID: " + idProducto);
+        int filas = this.inventarioRepository.aumentarStockAtomico(idProducto, cantidad, LocalDateTime.now(), usuarioActualizacion);
+        if (filas == 0) {
             throw new RuntimeException("Inventario no encontrado para el producto ID: " + idProducto);
         }
-
-        System.out.println("✅ [SERVICE] Inventario encontrado, stock actual: " + inventarioExistente.get().getStock());
-
-        Inventario inventario = inventarioExistente.get();
-        inventario.aumentarStock(cantidad);
-        inventario.setFechaActualizacion(LocalDateTime.now());
-        inventario.setUsuarioActualizacion(usuarioActualizacion);
-
-        System.out.println("🔄 [SERVICE] Saving inventario with new stock: " + inventario.getStock());
-        this.inventarioRepository.save(inventario);
-
-        System.out.println("✅ [SERVICE] aumentarStock completed successfully");
+        this.publicarCambioStock(List.of(idProducto));
+    }
+    
+    // Los UPDATE directos no pasan por los callbacks JPA; se avisa a las cachés de productos
+    private void publicarCambioStock(Collection<Integer> idsProducto) {
+        this.eventPublisher.publishEvent(InventarioModificadoEvent.deProductos(idsProducto));
     }
     
     public void ajustarStock(Integer idProducto, Integer cantidadAjuste, String motivo, String usuarioActualizacion) {
@@ -206,8 +227,9 @@ public class InventarioService {
     }
     
     public Integer obtenerStockDisponible(Integer idProducto) {
-        Optional<Inventario> inventario = this.inventarioRepository.findByProductoId(idProducto);
-        return inventario.map(Inventario::getStock).orElse(0);
+        // Consulta escalar: no pasa por la caché del contexto de persistencia, que
+        // puede tener una copia desactualizada tras un UPDATE atómico
+        return this.inventarioRepository.findStockByProductoId(idProducto).orElse(0);
     }
     
     public boolean necesitaReposicion(Integer idProducto) {
@@ -2,43 +2,172 @@ package com.ecovivashop.service;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.ecovivashop.entity.Producto;
 import com.ecovivashop.entity.Pedido;
 
 import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JRResultSetDataSource;
+import net.sf.jasperreports.engine.JRRuntimeException;
 import net.sf.jasperreports.engine.JasperCompileManager;
 import net.sf.jasperreports.engine.JasperExportManager;
 import net.sf.jasperreports.engine.JasperFillManager;
 import net.sf.jasperreports.engine.JasperPrint;
 import net.sf.jasperreports.engine.JasperReport;
 import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.JRSwapFile;
 
+/**
+ * Exportación a PDF con JasperReports. Compilar un JRXML cuesta mucho más que
+ * rellenar el informe, así que cada plantilla se compila una vez (al arrancar) y
+ * el JasperReport, que es inmutable y se puede usar desde varios hilos, se guarda
+ * en memoria. Solo se recompila si el JRXML cambia en disco, lo que ocurre en
+ * desarrollo; dentro del jar las plantillas no cambian.
+ *
+ * El reporte de productos tiene además un modo para catálogos grandes: lee las
+ * filas con un cursor JDBC en vez de cargar las entidades, guarda en disco las
+ * páginas ya rellenadas y escribe el PDF directamente en la respuesta.
+ */
 @Service
 public class JasperExportService {
 
+    private static final Logger logger = LoggerFactory.getLogger(JasperExportService.class);
+
+    static final String PLANTILLA_PRODUCTOS = "/reports/productos.jrxml";
+    static final String PLANTILLA_PEDIDO = "/reports/pedido.jrxml";
+
+    // Plantilla compilada y la fecha del JRXML del que salió
+    private record PlantillaCompilada(JasperReport reporte, long modificado) {}
+
+    // Solo las columnas que usa la plantilla, sin pasar por Hibernate ni sus asociaciones
+    private static final String CONSULTA_PRODUCTOS =
+        "SELECT id_producto AS idProducto, nombre, categoria, precio FROM tb_producto ORDER BY id_producto";
+    private static final int FILAS_POR_LECTURA = 500;
+    private static final int TAMANO_BLOQUE_SWAP = 4096;
+    private static final int BLOQUES_POR_AMPLIACION = 100;
+
+    private final Map<String, PlantillaCompilada> plantillas = new ConcurrentHashMap<>();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int paginasEnMemoria;
+    private final String directorioSwap;
+
+    public JasperExportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               @Value("${app.reportes.paginas-en-memoria:20}") int paginasEnMemoria,
+                               @Value("${app.reportes.directorio-swap:${java.io.tmpdir}}") String directorioSwap) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // PostgreSQL solo respeta el fetch size dentro de una transacción
+        this.transactionTemplate.setReadOnly(true);
+        this.paginasEnMemoria = paginasEnMemoria;
+        this.directorioSwap = directorioSwap;
+    }
+
+    /**
+     * Compila las plantillas al arrancar para que la primera exportación no pague
+     * la compilación. Un error aquí no impide arrancar: se repite en la primera
+     * exportación y allí se informa.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void precompilarPlantillas() {
+        for (String ruta : List.of(PLANTILLA_PRODUCTOS, PLANTILLA_PEDIDO)) {
+            try {
+                obtenerPlantilla(ruta);
+            } catch (JRException | IOException | RuntimeException e) {
+                logger.warn("No se pudo precompilar la plantilla {}: {}", ruta, e.getMessage());
+            }
+        }
+    }
+
     public byte[] exportarProductosJasperPDF(List<Producto> productos) throws JRException, IOException {
         if (productos == null) {
             productos = List.of();
         }
 
-        try (InputStream jrxmlStream = getClass().getResourceAsStream("/reports/productos.jrxml")) {
+        JasperReport jasperReport = obtenerPlantilla(PLANTILLA_PRODUCTOS);
+        JRBeanCollectionDataSource dataSource = new JRBeanCollectionDataSource(productos);
+        Map<String, Object> params = new HashMap<>();
+        JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, params, dataSource);
+        return JasperExportManager.exportReportToPdf(jasperPrint);
+    }
 
-            if (jrxmlStream == null) {
-                throw new IllegalStateException("No se encontró el template JRXML: /reports/productos.jrxml");
-            }
+    /**
+     * Reporte de todos los productos escrito directamente en {@code salida}. Las filas
+     * se leen de la base de datos a medida que se rellenan y solo
+     * {@code app.reportes.paginas-en-memoria} páginas quedan en memoria; el resto va a
+     * un archivo temporal que se borra al terminar.
+     */
+    public void exportarProductosJasperPDF(OutputStream salida) throws JRException, IOException {
+        JRSwapFileVirtualizer virtualizador = crearVirtualizador();
+        try {
+            JasperPrint jasperPrint = llenarProductosConCursor(virtualizador);
+            JasperExportManager.exportReportToPdfStream(jasperPrint, salida);
+        } finally {
+            virtualizador.cleanup();
+        }
+    }
+
+    JRSwapFileVirtualizer crearVirtualizador() {
+        JRSwapFile swap = new JRSwapFile(directorioSwap, TAMANO_BLOQUE_SWAP, BLOQUES_POR_AMPLIACION);
+        return new JRSwapFileVirtualizer(paginasEnMemoria, swap, true);
+    }
 
-            JasperReport jasperReport = JasperCompileManager.compileReport(jrxmlStream);
-            JRBeanCollectionDataSource dataSource = new JRBeanCollectionDataSource(productos);
-            Map<String, Object> params = new HashMap<>();
-            JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, params, dataSource);
-            return JasperExportManager.exportReportToPdf(jasperPrint);
+    /**
+     * Rellena el reporte de productos desde un cursor de solo avance. El cursor se
+     * cierra al terminar el relleno; las páginas quedan en el virtualizador.
+     */
+    JasperPrint llenarProductosConCursor(JRSwapFileVirtualizer virtualizador) throws JRException, IOException {
+        JasperReport jasperReport = obtenerPlantilla(PLANTILLA_PRODUCTOS);
+        JasperPrint jasperPrint;
+        try {
+            jasperPrint = transactionTemplate.execute(estado -> jdbcTemplate.execute(conexion -> {
+                PreparedStatement sentencia = conexion.prepareStatement(CONSULTA_PRODUCTOS,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                sentencia.setFetchSize(FILAS_POR_LECTURA);
+                return sentencia;
+            }, (PreparedStatement sentencia) -> {
+                try (ResultSet filas = sentencia.executeQuery()) {
+                    Map<String, Object> params = new HashMap<>();
+                    params.put(JRParameter.REPORT_VIRTUALIZER, virtualizador);
+                    return JasperFillManager.fillReport(jasperReport, params, new JRResultSetDataSource(filas));
+                } catch (JRException e) {
+                    throw new JRRuntimeException(e);
+                }
+            }));
+        } catch (JRRuntimeException e) {
+            if (e.getCause() instanceof JRException jrException) {
+                throw jrException;
+            }
+            throw e;
         }
+        // Las páginas ya no cambian: la exportación solo las lee del archivo
+        virtualizador.setReadOnly(true);
+        return jasperPrint;
     }
 
     public byte[] exportarPedidoJasperPDF(Pedido pedido) throws JRException, IOException {
@@ -46,18 +175,56 @@ public class JasperExportService {
             throw new IllegalArgumentException("Pedido no puede ser nulo");
         }
 
-        try (InputStream jrxmlStream = getClass().getResourceAsStream("/reports/pedido.jrxml")) {
+        JasperReport jasperReport = obtenerPlantilla(PLANTILLA_PEDIDO);
+        // Use a collection with a single element so fields are read from the Pedido bean
+        JRBeanCollectionDataSource dataSource = new JRBeanCollectionDataSource(List.of(pedido));
+        Map<String, Object> params = new HashMap<>();
+        JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, params, dataSource);
+        return JasperExportManager.exportReportToPdf(jasperPrint);
+    }
+
+    /**
+     * Plantilla compilada desde la caché, compilándola si aún no está o si el JRXML
+     * cambió desde la última compilación.
+     */
+    JasperReport obtenerPlantilla(String ruta) throws JRException, IOException {
+        URL url = getClass().getResource(ruta);
+        if (url == null) {
+            throw new IllegalStateException("No se encontró el template JRXML: " + ruta);
+        }
+
+        long modificado = ultimaModificacion(url);
+        PlantillaCompilada compilada = plantillas.get(ruta);
+        if (compilada != null && compilada.modificado() == modificado) {
+            return compilada.reporte();
+        }
 
-            if (jrxmlStream == null) {
-                throw new IllegalStateException("No se encontró el template JRXML: /reports/pedido.jrxml");
+        // Que varias peticiones a la vez no compilen la misma plantilla
+        synchronized (plantillas) {
+            compilada = plantillas.get(ruta);
+            if (compilada != null && compilada.modificado() == modificado) {
+                return compilada.reporte();
+            }
+            long inicio = System.nanoTime();
+            try (InputStream jrxmlStream = url.openStream()) {
+                JasperReport jasperReport = JasperCompileManager.compileReport(jrxmlStream);
+                plantillas.put(ruta, new PlantillaCompilada(jasperReport, modificado));
+                logger.info("Plantilla {} compilada en {} ms", ruta,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+                return jasperReport;
             }
+        }
+    }
 
-            JasperReport jasperReport = JasperCompileManager.compileReport(jrxmlStream);
-            // Use a collection with a single element so fields are read from the Pedido bean
-            JRBeanCollectionDataSource dataSource = new JRBeanCollectionDataSource(List.of(pedido));
-            Map<String, Object> params = new HashMap<>();
-            JasperPrint jasperPrint = JasperFillManager.fillReport(jasperReport, params, dataSource);
-            return JasperExportManager.exportReportToPdf(jasperPrint);
+    // Solo un JRXML suelto en disco puede cambiar con la aplicación en marcha
+    private static long ultimaModificacion(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return 0;
+        }
+        try {
+            return Files.getLastModifiedTime(Paths.get(url.toURI())).toMillis();
+        } catch (IOException | URISyntaxException e) {
+            return 0;
         }
     }
 }
@@ -0,0 +1,96 @@
+package com.ecovivashop.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.ecovivashop.dto.Carrito;
+
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * Carrito en la tabla tb_carrito. La sesión solo guarda el id del carrito (se
+ * fija una vez, al primer guardado), así que sobrevive al cambio de id de sesión
+ * en el login y cualquier instancia puede atender al visitante.
+ */
+@Component
+@ConditionalOnProperty(name = "app.carrito.store", havingValue = "jdbc")
+public class JdbcCarritoStore implements CarritoStore {
+    
+    private static final Logger logger = LoggerFactory.getLogger(JdbcCarritoStore.class);
+    
+    static final String ATRIBUTO_ID = "carritoId";
+    
+    private static final String SQL_LEER = "SELECT datos FROM tb_carrito WHERE id_carrito = ?";
+    private static final String SQL_ACTUALIZAR =
+        "UPDATE tb_carrito SET datos = ?, fecha_actualizacion = ? WHERE id_carrito = ?";
+    private static final String SQL_INSERTAR =
+        "INSERT INTO tb_carrito (id_carrito, datos, fecha_actualizacion) VALUES (?, ?, ?)";
+    private static final String SQL_ELIMINAR = "DELETE FROM tb_carrito WHERE id_carrito = ?";
+    private static final String SQL_PURGAR = "DELETE FROM tb_carrito WHERE fecha_actualizacion < ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final int diasRetencion;
+    
+    public JdbcCarritoStore(JdbcTemplate jdbcTemplate,
+                            @Value("${app.carrito.dias-retencion:30}") int diasRetencion) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.diasRetencion = diasRetencion;
+    }
+    
+    @Override
+    public Carrito obtener(HttpSession session) {
+        if (!(session.getAttribute(ATRIBUTO_ID) instanceof String idCarrito)) {
+            return new Carrito();
+        }
+        List<byte[]> datos = this.jdbcTemplate.query(SQL_LEER, (rs, fila) -> rs.getBytes(1), idCarrito);
+        return datos.isEmpty() ? new Carrito() : Carrito.desdeBytes(datos.get(0));
+    }
+    
+    @Override
+    public void guardar(HttpSession session, Carrito carrito) {
+        if (carrito.isVacio()) {
+            this.vaciar(session);
+            return;
+        }
+        String idCarrito = session.getAttribute(ATRIBUTO_ID) instanceof String id ? id : null;
+        if (idCarrito == null) {
+            idCarrito = UUID.randomUUID().toString();
+            session.setAttribute(ATRIBUTO_ID, idCarrito);
+        }
+        byte[] datos = carrito.aBytes();
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        if (this.jdbcTemplate.update(SQL_ACTUALIZAR, datos, ahora, idCarrito) == 0) {
+            this.jdbcTemplate.update(SQL_INSERTAR, idCarrito, datos, ahora);
+        }
+    }
+    
+    @Override
+    public void vaciar(HttpSession session) {
+        if (session.getAttribute(ATRIBUTO_ID) instanceof String idCarrito) {
+            this.jdbcTemplate.update(SQL_ELIMINAR, idCarrito);
+            session.removeAttribute(ATRIBUTO_ID);
+        }
+    }
+    
+    /**
+     * Borra los carritos que nadie ha tocado en los últimos días
+     */
+    @Scheduled(cron = "${app.carrito.purga-cron:0 30 3 * * *}")
+    public void purgarAbandonados() {
+        int borrados = this.jdbcTemplate.update(SQL_PURGAR,
+            Timestamp.valueOf(LocalDateTime.now().minusDays(this.diasRetencion)));
+        if (borrados > 0) {
+            logger.info("Carritos abandonados eliminados: {}", borrados);
+        }
+    }
+}
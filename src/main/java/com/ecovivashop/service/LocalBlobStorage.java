@@ -0,0 +1,95 @@
+package com.ecovivashop.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Almacenamiento en un directorio. Por defecto es el mismo directorio de la caché
+ * local y no hay nada que replicar; apuntado a un montaje compartido (NFS, SMB)
+ * sirve para varios nodos sin servicio de objetos.
+ */
+public class LocalBlobStorage implements BlobStorage {
+
+    private final Path directorio;
+
+    public LocalBlobStorage(Path directorio) {
+        this.directorio = directorio.toAbsolutePath().normalize();
+    }
+
+    private Path resolver(String clave) {
+        Path ruta = this.directorio.resolve(clave).normalize();
+        if (!ruta.startsWith(this.directorio)) {
+            throw new IllegalArgumentException("Clave fuera del almacenamiento: " + clave);
+        }
+        return ruta;
+    }
+
+    @Override
+    public void guardar(String clave, Path archivo) throws IOException {
+        Path destino = resolver(clave);
+        if (destino.equals(archivo.toAbsolutePath().normalize())) {
+            return;
+        }
+        Files.createDirectories(destino.getParent());
+        Path temporal = Files.createTempFile(destino.getParent(), "replica-", ".tmp");
+        try {
+            Files.copy(archivo, temporal, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    @Override
+    public Optional<InputStream> abrir(String clave) throws IOException {
+        try {
+            return Optional.of(Files.newInputStream(resolver(clave)));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public boolean existe(String clave) {
+        return Files.isRegularFile(resolver(clave));
+    }
+
+    @Override
+    public Optional<Instant> ultimaModificacion(String clave) throws IOException {
+        try {
+            return Optional.of(Files.getLastModifiedTime(resolver(clave)).toInstant());
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void eliminar(String clave) throws IOException {
+        Files.deleteIfExists(resolver(clave));
+    }
+
+    @Override
+    public List<String> listar(String prefijo) throws IOException {
+        Path base = resolver(prefijo);
+        String inicioNombre = base.getFileName().toString();
+        List<String> claves = new ArrayList<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(base.getParent(),
+                archivo -> archivo.getFileName().toString().startsWith(inicioNombre) && Files.isRegularFile(archivo))) {
+            for (Path archivo : archivos) {
+                claves.add(this.directorio.relativize(archivo).toString().replace('\\', '/'));
+            }
+        } catch (NoSuchFileException e) {
+            return List.of();
+        }
+        return claves;
+    }
+}
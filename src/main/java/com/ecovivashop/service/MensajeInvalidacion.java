@@ -0,0 +1,11 @@
+package com.ecovivashop.service;
+
+import java.io.Serializable;
+
+/**
+ * Aviso de cambio que un nodo envía a los demás: el nodo que lo originó y el
+ * evento de dominio ({@link ProductoModificadoEvent}, {@link InventarioModificadoEvent}
+ * o {@link RolModificadoEvent}) tal como se publicó en ese nodo.
+ */
+public record MensajeInvalidacion(String nodoOrigen, Serializable evento) implements Serializable {
+}
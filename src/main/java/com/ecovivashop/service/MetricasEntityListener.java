@@ -0,0 +1,83 @@
+package com.ecovivashop.service;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.ecovivashop.entity.Pedido;
+import com.ecovivashop.entity.Usuario;
+
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Publica {@link VariacionMetricasEvent} con cada alta, cambio o baja de un
+ * pedido o de un usuario.
+ *
+ * Al cargar la entidad se anota lo que aporta a los contadores (estado del
+ * pedido, ventas del mes, rol...); al guardarla se publica solo la diferencia
+ * con lo anotado, así un cambio de estado resta del estado anterior y suma al
+ * nuevo sin consultar nada. {@link MetricasStore} la aplica cuando la
+ * transacción se confirma.
+ */
+public class MetricasEntityListener {
+
+    private ObjectProvider<ApplicationEventPublisher> eventPublisher;
+
+    // Igual que en CatalogoEntityListener: Hibernate crea el listener antes que los beans que escuchan
+    @Autowired
+    public void setEventPublisher(ObjectProvider<ApplicationEventPublisher> eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostLoad
+    public void entidadCargada(Object entidad) {
+        if (entidad instanceof Pedido pedido) {
+            pedido.setMetricasContadas(MetricasStore.aportacion(pedido));
+        } else if (entidad instanceof Usuario usuario) {
+            usuario.setMetricasContadas(MetricasStore.aportacion(usuario));
+        }
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void entidadGuardada(Object entidad) {
+        if (entidad instanceof Pedido pedido) {
+            Map<String, Long> aportacion = MetricasStore.aportacion(pedido);
+            this.publicar(VariacionMetricasEvent.entre(anotada(pedido.getMetricasContadas()), aportacion));
+            pedido.setMetricasContadas(aportacion);
+        } else if (entidad instanceof Usuario usuario) {
+            Map<String, Long> aportacion = MetricasStore.aportacion(usuario);
+            this.publicar(VariacionMetricasEvent.entre(anotada(usuario.getMetricasContadas()), aportacion));
+            usuario.setMetricasContadas(aportacion);
+        }
+    }
+
+    @PostRemove
+    public void entidadEliminada(Object entidad) {
+        if (entidad instanceof Pedido pedido) {
+            this.publicar(VariacionMetricasEvent.entre(anotada(pedido.getMetricasContadas()), Map.of()));
+            pedido.setMetricasContadas(null);
+        } else if (entidad instanceof Usuario usuario) {
+            this.publicar(VariacionMetricasEvent.entre(anotada(usuario.getMetricasContadas()), Map.of()));
+            usuario.setMetricasContadas(null);
+        }
+    }
+
+    // Una entidad nueva aún no aportaba nada
+    private static Map<String, Long> anotada(Map<String, Long> metricasContadas) {
+        return metricasContadas != null ? metricasContadas : Map.of();
+    }
+
+    // Sin Spring (tests unitarios de entidades) el listener no hace nada
+    private void publicar(Object evento) {
+        ApplicationEventPublisher publisher = this.eventPublisher != null ? this.eventPublisher.getIfAvailable() : null;
+        if (publisher != null && evento != null) {
+            publisher.publishEvent(evento);
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.ecovivashop.service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntUnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.ecovivashop.dto.Carrito;
+import com.ecovivashop.entity.Pedido;
+import com.ecovivashop.entity.Usuario;
+import com.ecovivashop.repository.InventarioRepository;
+import com.ecovivashop.repository.PedidoRepository;
+import com.ecovivashop.repository.ProductoRepository;
+import com.ecovivashop.repository.UsuarioRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Contadores del panel de administración (usuarios, productos, inventario,
+ * pedidos por estado y ventas del mes) en memoria, con {@link LongAdder}.
+ * Leerlos no consulta la base de datos.
+ *
+ * Se mantienen con los eventos de cambio: {@link VariacionMetricasEvent} para
+ * pedidos y usuarios, {@link ProductoModificadoEvent} e
+ * {@link InventarioModificadoEvent} para el catálogo. Cada cierto tiempo se
+ * vuelcan a tb_metrica_resumen y al arrancar se recuperan de ahí. Si la
+ * aplicación no se detuvo limpiamente (el último volcado puede no incluir los
+ * últimos cambios) los contadores que se muestran se recalculan con unas pocas
+ * consultas agrupadas.
+ */
+@Component
+public class MetricasStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricasStore.class);
+
+    static final String USUARIOS_ACTIVOS = "usuarios.activos";
+    static final String USUARIOS_ROL = "usuarios.rol.";
+    static final String USUARIOS_REGISTRADOS = "usuarios.registrados.";
+    static final String PRODUCTOS_ACTIVOS = "productos.activos";
+    static final String INVENTARIO_CON_STOCK = "inventario.con_stock";
+    static final String INVENTARIO_AGOTADO = "inventario.agotado";
+    static final String INVENTARIO_STOCK_BAJO = "inventario.stock_bajo";
+    static final String PEDIDOS_ESTADO = "pedidos.estado.";
+    static final String VENTAS_CENTIMOS = "ventas.centimos.";
+    // 1 si el último volcado se hizo al detener la aplicación
+    static final String VOLCADO_LIMPIO = "volcado.limpio";
+
+    // Estado de cada producto, para saber qué contadores mueve un cambio
+    private static final int ACTIVO = 1;
+    private static final int CON_STOCK = 2;
+    private static final int AGOTADO = 4;
+    private static final int STOCK_BAJO = 8;
+
+    private static final String SQL_LEER = "SELECT clave, valor FROM tb_metrica_resumen";
+    private static final String SQL_ACTUALIZAR =
+        "UPDATE tb_metrica_resumen SET valor = ?, fecha_actualizacion = ? WHERE clave = ?";
+    private static final String SQL_INSERTAR =
+        "INSERT INTO tb_metrica_resumen (clave, valor, fecha_actualizacion) VALUES (?, ?, ?)";
+
+    private final ConcurrentHashMap<String, LongAdder> contadores = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Integer> estadosProducto = new ConcurrentHashMap<>();
+    // Último valor volcado de cada clave: solo se escribe lo que cambió
+    private final Map<String, Long> volcados = new HashMap<>();
+    private volatile boolean iniciado;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PedidoRepository pedidoRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final ProductoRepository productoRepository;
+    private final InventarioRepository inventarioRepository;
+
+    public MetricasStore(JdbcTemplate jdbcTemplate, PedidoRepository pedidoRepository,
+                         UsuarioRepository usuarioRepository, ProductoRepository productoRepository,
+                         InventarioRepository inventarioRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pedidoRepository = pedidoRepository;
+        this.usuarioRepository = usuarioRepository;
+        this.productoRepository = productoRepository;
+        this.inventarioRepository = inventarioRepository;
+    }
+
+    // ========== LECTURA ==========
+
+    public long valor(String clave) {
+        LongAdder contador = this.contadores.get(clave);
+        return contador == null ? 0 : contador.sum();
+    }
+
+    public long usuariosActivos() {
+        return this.valor(USUARIOS_ACTIVOS);
+    }
+
+    public long usuariosConRol(String rol) {
+        return this.valor(USUARIOS_ROL + rol);
+    }
+
+    public long usuariosRegistrados(LocalDate dia) {
+        return this.valor(USUARIOS_REGISTRADOS + dia);
+    }
+
+    public long productosActivos() {
+        return this.valor(PRODUCTOS_ACTIVOS);
+    }
+
+    public long inventarioConStock() {
+        return this.valor(INVENTARIO_CON_STOCK);
+    }
+
+    public long inventarioAgotado() {
+        return this.valor(INVENTARIO_AGOTADO);
+    }
+
+    public long inventarioStockBajo() {
+        return this.valor(INVENTARIO_STOCK_BAJO);
+    }
+
+    public long pedidosEnEstado(String estado) {
+        return this.valor(PEDIDOS_ESTADO + estado);
+    }
+
+    /**
+     * Ventas de los pedidos no cancelados hechos en el mes
+     */
+    public BigDecimal ventas(YearMonth mes) {
+        return Carrito.desdeCentimos(this.valor(VENTAS_CENTIMOS + mes));
+    }
+
+    // ========== APORTACIÓN DE CADA ENTIDAD ==========
+
+    /**
+     * Cuánto suma un pedido a cada contador: uno a su estado y, si no está
+     * cancelado, su total a las ventas del mes en que se hizo.
+     */
+    static Map<String, Long> aportacion(Pedido pedido) {
+        Map<String, Long> aportacion = new HashMap<>(4);
+        if (pedido.getEstado() != null) {
+            aportacion.put(PEDIDOS_ESTADO + pedido.getEstado(), 1L);
+        }
+        if (!"CANCELADO".equals(pedido.getEstado()) && pedido.getFechaPedido() != null && pedido.getTotal() != null) {
+            aportacion.put(VENTAS_CENTIMOS + YearMonth.from(pedido.getFechaPedido()),
+                Carrito.aCentimos(pedido.getTotal()));
+        }
+        return aportacion;
+    }
+
+    /**
+     * Cuánto suma un usuario a cada contador: activos, su rol y el día en que se registró
+     */
+    static Map<String, Long> aportacion(Usuario usuario) {
+        Map<String, Long> aportacion = new HashMap<>(4);
+        if (Boolean.TRUE.equals(usuario.getEstado())) {
+            aportacion.put(USUARIOS_ACTIVOS, 1L);
+        }
+        if (usuario.getRol() != null && usuario.getRol().getNombre() != null) {
+            aportacion.put(USUARIOS_ROL + usuario.getRol().getNombre(), 1L);
+        }
+        if (usuario.getFechaRegistro() != null) {
+            aportacion.put(USUARIOS_REGISTRADOS + usuario.getFechaRegistro().toLocalDate(), 1L);
+        }
+        return aportacion;
+    }
+
+    // ========== EVENTOS DE CAMBIO ==========
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alVariarMetricas(VariacionMetricasEvent evento) {
+        evento.variaciones().forEach(this::sumar);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarProducto(ProductoModificadoEvent evento) {
+        if (evento.idProducto() == null) {
+            return;
+        }
+        boolean activo = !evento.eliminado() && evento.activo();
+        this.cambiarEstadoProducto(evento.idProducto(), estado -> activo ? estado | ACTIVO : estado & ~ACTIVO);
+    }
+
+    /**
+     * El evento solo trae los ids: el stock actual se lee en una consulta
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarInventario(InventarioModificadoEvent evento) {
+        if (evento.idsProducto().isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> estadosStock = new HashMap<>();
+        for (Object[] fila : this.inventarioRepository.findEstadosStockByProductoIds(evento.idsProducto())) {
+            estadosStock.put((Integer) fila[0], estadoStock(fila));
+        }
+        for (Integer idProducto : evento.idsProducto()) {
+            int stock = estadosStock.getOrDefault(idProducto, 0);
+            this.cambiarEstadoProducto(idProducto, estado -> (estado & ACTIVO) | stock);
+        }
+    }
+
+    private void cambiarEstadoProducto(Integer idProducto, IntUnaryOperator cambio) {
+        int[] antesDespues = new int[2];
+        this.estadosProducto.compute(idProducto, (id, estado) -> {
+            antesDespues[0] = estado == null ? 0 : estado;
+            antesDespues[1] = cambio.applyAsInt(antesDespues[0]);
+            return antesDespues[1] == 0 ? null : antesDespues[1];
+        });
+        this.sumarSiCambia(antesDespues[0], antesDespues[1], ACTIVO, PRODUCTOS_ACTIVOS);
+        this.sumarSiCambia(antesDespues[0], antesDespues[1], CON_STOCK, INVENTARIO_CON_STOCK);
+        this.sumarSiCambia(antesDespues[0], antesDespues[1], AGOTADO, INVENTARIO_AGOTADO);
+        this.sumarSiCambia(antesDespues[0], antesDespues[1], STOCK_BAJO, INVENTARIO_STOCK_BAJO);
+    }
+
+    private void sumarSiCambia(int antes, int despues, int bit, String clave) {
+        if ((antes & bit) != (despues & bit)) {
+            this.sumar(clave, (despues & bit) != 0 ? 1 : -1);
+        }
+    }
+
+    // Mismos criterios que InventarioRepository.contarConStock, contarAgotados y contarConStockBajo
+    private static int estadoStock(Object[] fila) {
+        int stock = fila[1] == null ? 0 : (Integer) fila[1];
+        int stockMinimo = fila[2] == null ? 0 : (Integer) fila[2];
+        if (!Boolean.TRUE.equals(fila[3])) {
+            return 0;
+        }
+        int estado = stock > 0 ? CON_STOCK : AGOTADO;
+        return stock <= stockMinimo ? estado | STOCK_BAJO : estado;
+    }
+
+    private void sumar(String clave, long cantidad) {
+        this.contadores.computeIfAbsent(clave, k -> new LongAdder()).add(cantidad);
+    }
+
+    private void establecer(String clave, long valor) {
+        LongAdder contador = this.contadores.computeIfAbsent(clave, k -> new LongAdder());
+        contador.reset();
+        contador.add(valor);
+    }
+
+    // ========== ARRANQUE Y VOLCADO ==========
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void arrancar() {
+        Map<String, Long> guardados = new HashMap<>();
+        this.jdbcTemplate.query(SQL_LEER, rs -> {
+            guardados.put(rs.getString(1), rs.getLong(2));
+        });
+        boolean limpio = Long.valueOf(1).equals(guardados.remove(VOLCADO_LIMPIO));
+        // Se suma: lo que ya haya cambiado desde que arrancó el contexto se conserva
+        guardados.forEach(this::sumar);
+        synchronized (this.volcados) {
+            this.volcados.putAll(guardados);
+        }
+
+        if (!limpio) {
+            logger.info("Sin volcado limpio de métricas ({} claves guardadas): se recalculan", guardados.size());
+            this.recalcularPedidosYUsuarios();
+        }
+        this.cargarEstadosProducto();
+
+        // Hasta el próximo cierre ordenado, el volcado guardado puede quedarse atrás
+        this.escribir(VOLCADO_LIMPIO, 0, Timestamp.valueOf(LocalDateTime.now()));
+        this.iniciado = true;
+    }
+
+    /**
+     * Recalcula los contadores que muestra el panel. Los meses y días anteriores
+     * se quedan con el último volcado.
+     */
+    private void recalcularPedidosYUsuarios() {
+        this.ponerACero(PEDIDOS_ESTADO);
+        for (Object[] fila : this.pedidoRepository.contarAgrupadoPorEstado()) {
+            this.establecer(PEDIDOS_ESTADO + fila[0], (Long) fila[1]);
+        }
+        YearMonth mes = YearMonth.now();
+        BigDecimal ventas = this.pedidoRepository.sumarVentasNoCanceladas(
+            mes.atDay(1).atStartOfDay(), mes.plusMonths(1).atDay(1).atStartOfDay());
+        this.establecer(VENTAS_CENTIMOS + mes, Carrito.aCentimos(ventas));
+
+        this.ponerACero(USUARIOS_ROL);
+        for (Object[] fila : this.usuarioRepository.contarAgrupadoPorRol()) {
+            this.establecer(USUARIOS_ROL + fila[0], (Long) fila[1]);
+        }
+        this.establecer(USUARIOS_ACTIVOS, this.usuarioRepository.contarUsuariosActivos());
+        LocalDate hoy = LocalDate.now();
+        this.establecer(USUARIOS_REGISTRADOS + hoy,
+            this.usuarioRepository.contarUsuariosRegistradosDespueDe(hoy.atStartOfDay()));
+    }
+
+    private void ponerACero(String prefijo) {
+        this.contadores.forEach((clave, contador) -> {
+            if (clave.startsWith(prefijo)) {
+                contador.reset();
+            }
+        });
+    }
+
+    // Productos e inventario se cargan siempre: hace falta el estado de cada producto
+    private void cargarEstadosProducto() {
+        Map<Integer, Integer> estados = new HashMap<>();
+        for (Integer idProducto : this.productoRepository.findIdsActivos()) {
+            estados.put(idProducto, ACTIVO);
+        }
+        for (Object[] fila : this.inventarioRepository.findEstadosStock()) {
+            estados.merge((Integer) fila[0], estadoStock(fila), (a, b) -> a | b);
+        }
+        estados.values().removeIf(estado -> estado == 0);
+
+        this.estadosProducto.clear();
+        this.estadosProducto.putAll(estados);
+        long[] totales = new long[STOCK_BAJO + 1];
+        for (int estado : estados.values()) {
+            for (int bit = ACTIVO; bit <= STOCK_BAJO; bit <<= 1) {
+                if ((estado & bit) != 0) {
+                    totales[bit]++;
+                }
+            }
+        }
+        this.establecer(PRODUCTOS_ACTIVOS, totales[ACTIVO]);
+        this.establecer(INVENTARIO_CON_STOCK, totales[CON_STOCK]);
+        this.establecer(INVENTARIO_AGOTADO, totales[AGOTADO]);
+        this.establecer(INVENTARIO_STOCK_BAJO, totales[STOCK_BAJO]);
+    }
+
+    @Scheduled(fixedDelayString = "${app.metricas.volcado-ms:30000}",
+               initialDelayString = "${app.metricas.volcado-ms:30000}")
+    public void volcar() {
+        this.volcar(false);
+    }
+
+    @PreDestroy
+    public void detener() {
+        this.volcar(true);
+    }
+
+    void volcar(boolean limpio) {
+        if (!this.iniciado) {
+            return;
+        }
+        try {
+            synchronized (this.volcados) {
+                Map<String, Long> cambiados = new HashMap<>();
+                this.contadores.forEach((clave, contador) -> {
+                    long valor = contador.sum();
+                    if (!Long.valueOf(valor).equals(this.volcados.get(clave))) {
+                        cambiados.put(clave, valor);
+                    }
+                });
+                if (limpio) {
+                    cambiados.put(VOLCADO_LIMPIO, 1L);
+                }
+                this.escribir(cambiados, Timestamp.valueOf(LocalDateTime.now()));
+                cambiados.remove(VOLCADO_LIMPIO);
+                this.volcados.putAll(cambiados);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("No se pudieron volcar las métricas del panel: {}", e.getMessage());
+        }
+    }
+
+    private void escribir(String clave, long valor, Timestamp ahora) {
+        this.escribir(Map.of(clave, valor), ahora);
+    }
+
+    private void escribir(Map<String, Long> valores, Timestamp ahora) {
+        if (valores.isEmpty()) {
+            return;
+        }
+        List<Object[]> filas = new ArrayList<>(valores.size());
+        valores.forEach((clave, valor) -> filas.add(new Object[] {valor, ahora, clave}));
+        int[] actualizadas = this.jdbcTemplate.batchUpdate(SQL_ACTUALIZAR, filas);
+
+        List<Object[]> nuevas = new ArrayList<>();
+        for (int i = 0; i < actualizadas.length; i++) {
+            if (actualizadas[i] == 0) {
+                Object[] fila = filas.get(i);
+                nuevas.add(new Object[] {fila[2], fila[0], ahora});
+            }
+        }
+        if (!nuevas.isEmpty()) {
+            this.jdbcTemplate.batchUpdate(SQL_INSERTAR, nuevas);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.ecovivashop.service;
+
+/**
+ * Estrategia para asignar números de pedido únicos. La implementación por
+ * defecto es {@link SnowflakeNumeroPedidoGenerator}; para reemplazarla basta con
+ * declarar otro bean de este tipo marcado con @Primary.
+ */
+public interface NumeroPedidoGenerator {
+    
+    /**
+     * Generar el siguiente número de pedido. Debe ser seguro entre hilos y no
+     * repetirse entre instancias de la aplicación.
+     */
+    String generar();
+}
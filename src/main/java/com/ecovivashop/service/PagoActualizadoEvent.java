@@ -0,0 +1,11 @@
+package com.ecovivashop.service;
+
+import com.ecovivashop.entity.TransaccionPago.EstadoTransaccion;
+
+/**
+ * Una transacción de pago llegó a su estado final (COMPLETADA, RECHAZADA o ERROR)
+ * después de que procesarPago respondiera. idSuscripcion es null si el pago no es
+ * de una suscripción.
+ */
+public record PagoActualizadoEvent(String transactionId, EstadoTransaccion estado, Long idSuscripcion) {
+}
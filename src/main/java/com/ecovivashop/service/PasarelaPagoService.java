@@ -6,9 +6,20 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.ecovivashop.entity.TransaccionPago;
 import com.ecovivashop.entity.TransaccionPago.EstadoTransaccion;
@@ -16,13 +27,29 @@ import com.ecovivashop.entity.TransaccionPago.MetodoPago;
 import com.ecovivashop.entity.TransaccionPago.PasarelaPago;
 import com.ecovivashop.entity.Usuario;
 import com.ecovivashop.repository.TransaccionPagoRepository;
+import com.ecovivashop.service.ProcesadorPago.ResultadoAutorizacion;
 
 @Service
 public class PasarelaPagoService {
     
+    private static final Logger logger = LoggerFactory.getLogger(PasarelaPagoService.class);
+    
     @Autowired
     private TransaccionPagoRepository transaccionRepository;
     
+    @Autowired
+    private ProcesadorPago procesadorPago;
+    
+    @Autowired
+    @Qualifier("procesadorPagoExecutor")
+    private Executor procesadorPagoExecutor;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
     /**
      * Procesa un pago según el método seleccionado
      */
@@ -76,42 +103,105 @@ public class PasarelaPagoService {
     }
     
     /**
-     * Procesa pago con tarjeta de crédito/débito
+     * Consulta el estado actual de una transacción. Es lo que sondea el cliente
+     * mientras un pago con tarjeta está en PROCESANDO.
+     */
+    public Optional<TransaccionPago> consultarEstado(String transactionId) {
+        return transaccionRepository.findByTransactionId(transactionId);
+    }
+    
+    /**
+     * Procesa pago con tarjeta de crédito/débito. No espera a la entidad bancaria:
+     * deja la transacción en PROCESANDO, responde con su transactionId y la
+     * autorización se completa en el pool de pagos, que publica PagoActualizadoEvent.
      */
-    @SuppressWarnings("UseSpecificCatch")
     private RespuestaPago procesarPagoTarjeta(TransaccionPago transaccion, SolicitudPago solicitud) {
+        // Validar datos de tarjeta
+        if (!validarTarjeta(solicitud.getNumeroTarjeta(), solicitud.getCvv(), 
+                           solicitud.getMesVencimiento(), solicitud.getAnoVencimiento())) {
+            return RespuestaPago.error("Datos de tarjeta inválidos");
+        }
+        
+        String transactionId = "TARJETA_" + UUID.randomUUID().toString().substring(0, 12).toUpperCase();
+        transaccion.setTransactionId(transactionId);
+        transaccion.setEstadoTransaccion(EstadoTransaccion.PROCESANDO);
+        transaccion = transaccionRepository.save(transaccion);
+        
+        // Si hay una transacción abierta, el pool no vería la fila hasta el commit
+        Long idTransaccion = transaccion.getIdTransaccion();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    encolarAutorizacion(idTransaccion);
+                }
+            });
+        } else if (!encolarAutorizacion(idTransaccion)) {
+            return RespuestaPago.error("La pasarela de pagos está saturada, intenta nuevamente en unos segundos");
+        }
+        
+        Map<String, Object> datosExtra = new HashMap<>();
+        datosExtra.put("estado", EstadoTransaccion.PROCESANDO.name());
+        datosExtra.put("urlEstado", "/client/pagos/" + transactionId + "/estado");
+        
+        return RespuestaPago.pendiente("Pago con tarjeta en proceso de autorización", transactionId, datosExtra);
+    }
+    
+    /**
+     * Entrega la autorización al pool de pagos. Si la cola está llena la transacción
+     * pasa a ERROR en vez de esperar: devuelve false.
+     */
+    private boolean encolarAutorizacion(Long idTransaccion) {
+        try {
+            procesadorPagoExecutor.execute(() -> autorizarPagoTarjeta(idTransaccion));
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.warn("Pool de pagos lleno, transacción {} no encolada", idTransaccion);
+            // Puede llegar desde afterCommit, donde la transacción del llamador ya terminó:
+            // el ERROR y el evento van en una transacción propia para que se confirmen
+            TransactionTemplate nuevaTransaccion = new TransactionTemplate(transactionManager);
+            nuevaTransaccion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            nuevaTransaccion.executeWithoutResult(estado ->
+                transaccionRepository.findById(idTransaccion).ifPresent(transaccion -> {
+                    transaccion.setEstadoTransaccion(EstadoTransaccion.ERROR);
+                    transaccion.setMensajeRespuesta("Pasarela de pagos saturada");
+                    transaccionRepository.save(transaccion);
+                    eventPublisher.publishEvent(new PagoActualizadoEvent(
+                        transaccion.getTransactionId(), EstadoTransaccion.ERROR, transaccion.getIdSuscripcion()));
+                }));
+            return false;
+        }
+    }
+    
+    /**
+     * Llama al procesador y guarda su respuesta. Se ejecuta en el pool de pagos.
+     */
+    void autorizarPagoTarjeta(Long idTransaccion) {
+        TransaccionPago transaccion = transaccionRepository.findById(idTransaccion).orElse(null);
+        if (transaccion == null || transaccion.getEstadoTransaccion() != EstadoTransaccion.PROCESANDO) {
+            return;
+        }
+        
+        ResultadoAutorizacion resultado;
         try {
-            // Validar datos de tarjeta
-            if (!validarTarjeta(solicitud.getNumeroTarjeta(), solicitud.getCvv(), 
-                               solicitud.getMesVencimiento(), solicitud.getAnoVencimiento())) {
-                return RespuestaPago.error("Datos de tarjeta inválidos");
-            }
-            
-            // Simular procesamiento de tarjeta
-            Thread.sleep(3000); // Simular tiempo de procesamiento
-            
             // En una implementación real, aquí se haría la llamada a Culqi o Visa
-            boolean pagoExitoso = Math.random() > 0.1; // 90% de éxito
-            
-            if (pagoExitoso) {
-                transaccion.setEstadoTransaccion(EstadoTransaccion.COMPLETADA);
-                transaccion.setAuthorizationCode(generarCodigoConfirmacion());
-                transaccion.setFechaTransaccion(LocalDateTime.now());
-                transaccionRepository.save(transaccion);
-                
-                return RespuestaPago.exitoso("Pago con tarjeta procesado exitosamente", 
-                                           transaccion.getAuthorizationCode());
-            } else {
-                transaccion.setEstadoTransaccion(EstadoTransaccion.RECHAZADA);
-                transaccionRepository.save(transaccion);
-                return RespuestaPago.error("Pago rechazado por la entidad bancaria");
-            }
-            
-        } catch (Exception e) {
-            transaccion.setEstadoTransaccion(EstadoTransaccion.ERROR);
-            transaccionRepository.save(transaccion);
-            return RespuestaPago.error("Error procesando pago con tarjeta: " + e.getMessage());
+            resultado = procesadorPago.autorizar(transaccion);
+        } catch (RuntimeException e) {
+            logger.error("Error autorizando la transacción {}", transaccion.getTransactionId(), e);
+            resultado = ResultadoAutorizacion.error("Error procesando pago con tarjeta: " + e.getMessage());
+        }
+        
+        transaccion.setEstadoTransaccion(resultado.estado());
+        transaccion.setMensajeRespuesta(resultado.mensaje());
+        if (resultado.aprobado()) {
+            transaccion.setAuthorizationCode(resultado.codigoAutorizacion());
+            transaccion.setFechaAutorizacion(LocalDateTime.now());
+            transaccion.setFechaTransaccion(LocalDateTime.now());
         }
+        transaccionRepository.save(transaccion);
+        
+        eventPublisher.publishEvent(new PagoActualizadoEvent(
+            transaccion.getTransactionId(), resultado.estado(), transaccion.getIdSuscripcion()));
     }
     
     /**
@@ -270,6 +360,8 @@ public class PasarelaPagoService {
         transaccion.setMetodoPago(solicitud.getMetodoPago());
         transaccion.setPasarelaPago(determinarPasarela(solicitud.getMetodoPago()));
         transaccion.setUsuario(solicitud.getUsuario());
+        transaccion.setEsSuscripcion(solicitud.getIdSuscripcion() != null);
+        transaccion.setIdSuscripcion(solicitud.getIdSuscripcion());
         
         // Datos del cliente
         transaccion.setClienteNombres(solicitud.getNombres());
@@ -356,6 +448,7 @@ public class PasarelaPagoService {
         private BigDecimal monto;
         private MetodoPago metodoPago;
         private Usuario usuario;
+        private Long idSuscripcion;
         
         // Datos del cliente
         private String nombres;
@@ -416,6 +509,9 @@ public class PasarelaPagoService {
         public Usuario getUsuario() { return usuario; }
         public void setUsuario(Usuario usuario) { this.usuario = usuario; }
         
+        public Long getIdSuscripcion() { return idSuscripcion; }
+        public void setIdSuscripcion(Long idSuscripcion) { this.idSuscripcion = idSuscripcion; }
+        
         public String getNombres() { return nombres; }
         public void setNombres(String nombres) { this.nombres = nombres; }
         
@@ -467,6 +563,7 @@ public class PasarelaPagoService {
     
     public static class RespuestaPago {
         private boolean exitoso;
+        private boolean pendiente;
         private String mensaje;
         private String transactionId;
         private String codigoConfirmacion;
@@ -514,10 +611,22 @@ public class PasarelaPagoService {
             return new RespuestaPago(false, mensaje, (String) null);
         }
         
+        /**
+         * Solicitud aceptada cuyo resultado llega después (consultarEstado o PagoActualizadoEvent)
+         */
+        public static RespuestaPago pendiente(String mensaje, String transactionId, Map<String, Object> datosExtra) {
+            RespuestaPago respuesta = new RespuestaPago(true, mensaje, transactionId, null, datosExtra);
+            respuesta.setPendiente(true);
+            return respuesta;
+        }
+        
         // Getters y Setters
         public boolean isExitoso() { return exitoso; }
         public void setExitoso(boolean exitoso) { this.exitoso = exitoso; }
         
+        public boolean isPendiente() { return pendiente; }
+        public void setPendiente(boolean pendiente) { this.pendiente = pendiente; }
+        
         public String getMensaje() { return mensaje; }
         public void setMensaje(String mensaje) { this.mensaje = mensaje; }
         
@@ -2,15 +2,26 @@ package com.ecovivashop.service;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.Arrays;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.ecovivashop.dto.Carrito;
+import com.ecovivashop.dto.Cotizacion;
+import com.ecovivashop.dto.EstadisticasClienteDTO;
 import com.ecovivashop.entity.Pedido;
 import com.ecovivashop.entity.PedidoDetalle;
 import com.ecovivashop.entity.Producto;
@@ -20,26 +31,38 @@ import com.ecovivashop.repository.PedidoRepository;
 import com.ecovivashop.repository.ProductoRepository;
 import com.ecovivashop.repository.UsuarioRepository;
 
+import jakarta.persistence.EntityManager;
+
 @Service
 @Transactional
 public class PedidoService {
+    private static final Logger logger = LoggerFactory.getLogger(PedidoService.class);
+    
+    // Tamaño de lote para exportaciones en streaming
+    private static final int TAMANO_LOTE_EXPORTACION = 500;
+    
     private final PedidoRepository pedidoRepository;
     private final PedidoDetalleRepository pedidoDetalleRepository;
     private final ProductoRepository productoRepository;
     private final UsuarioRepository usuarioRepository;
     private final InventarioService inventarioService;
-    private final EmailService emailService;
+    private final EmailOutboxService emailOutboxService;
+    private final EntityManager entityManager;
+    private final NumeroPedidoGenerator numeroPedidoGenerator;
 
     // Constructor manual
     public PedidoService(PedidoRepository pedidoRepository, PedidoDetalleRepository pedidoDetalleRepository,
                         ProductoRepository productoRepository, UsuarioRepository usuarioRepository,
-                        InventarioService inventarioService, EmailService emailService) {
+                        InventarioService inventarioService, EmailOutboxService emailOutboxService,
+                        EntityManager entityManager, NumeroPedidoGenerator numeroPedidoGenerator) {
         this.pedidoRepository = pedidoRepository;
         this.pedidoDetalleRepository = pedidoDetalleRepository;
         this.productoRepository = productoRepository;
         this.usuarioRepository = usuarioRepository;
         this.inventarioService = inventarioService;
-        this.emailService = emailService;
+        this.emailOutboxService = emailOutboxService;
+        this.entityManager = entityManager;
+        this.numeroPedidoGenerator = numeroPedidoGenerator;
     }
 
     // Métodos CRUD básicos
@@ -119,6 +142,7 @@ public class PedidoService {
         }
         
         Pedido pedido = new Pedido();
+        pedido.setNumeroPedido(this.numeroPedidoGenerator.generar());
         pedido.setUsuario(usuario.get());
         pedido.setDireccionEnvio(direccionEnvio);
         pedido.setTelefonoContacto(telefonoContacto);
@@ -139,9 +163,8 @@ public class PedidoService {
             subtotal = subtotal.add(detalle.getSubtotal());
         }
         
-        // Actualizar totales del pedido
-        pedidoGuardado.setSubtotal(subtotal);
-        pedidoGuardado.calcularTotales();
+        // Mismos importes que el carrito, el pago y la boleta
+        aplicarCotizacion(pedidoGuardado, PricingEngine.cotizar(Carrito.aCentimos(subtotal)));
         
         pedidoGuardado = this.pedidoRepository.save(pedidoGuardado);
         
@@ -149,17 +172,22 @@ public class PedidoService {
         for (ItemPedido item : items) {
             this.inventarioService.reducirStock(item.getIdProducto(), item.getCantidad(), "Venta - Pedido " + pedidoGuardado.getNumeroPedido());
         }
-          // Enviar email de confirmación
-        try {
-            this.emailService.enviarCorreoConfirmacionPedido(usuario.get().getEmail(), usuario.get().getNombreCompleto(), 
-                                                pedidoGuardado.getNumeroPedido(), pedidoGuardado.getTotal().toString());
-        } catch (Exception e) {
-            System.err.println("Error enviando confirmación de pedido: " + e.getMessage());
-        }
+        // Registrar email de confirmación (se envía tras el commit)
+        this.emailOutboxService.encolarConfirmacionPedido(usuario.get().getEmail(), usuario.get().getNombreCompleto(), 
+                                                          pedidoGuardado.getNumeroPedido(), pedidoGuardado.getTotal().toString());
         
         return pedidoGuardado;
     }
     
+    // Los importes de un pedido salen siempre de PricingEngine
+    private static void aplicarCotizacion(Pedido pedido, Cotizacion cotizacion) {
+        pedido.setSubtotal(cotizacion.getSubtotal());
+        pedido.setCostoEnvio(cotizacion.getEnvio());
+        pedido.setDescuento(cotizacion.getDescuento());
+        pedido.setImpuestos(cotizacion.getIgv());
+        pedido.setTotal(cotizacion.getTotal());
+    }
+    
     private PedidoDetalle crearDetallePedido(Pedido pedido, ItemPedido item) {
         Optional<Producto> producto = this.productoRepository.findById(item.getIdProducto());
         if (producto.isEmpty()) {
@@ -188,19 +216,9 @@ public class PedidoService {
         pedido.confirmar();
         this.pedidoRepository.save(pedido);
         
-        // Enviar email de confirmación al cliente
-        try {
-            String emailCliente = pedido.getUsuario().getEmail();
-            String nombreCliente = pedido.getUsuario().getNombre();
-            String numeroPedido = pedido.getNumeroPedido();
-            String totalPedido = pedido.getTotal().toString();
-            
-            this.emailService.enviarCorreoConfirmacionPedido(emailCliente, nombreCliente, numeroPedido, totalPedido);
-            System.out.println("? Email de confirmación enviado para pedido: " + numeroPedido);
-        } catch (Exception e) {
-            System.err.println("⚠️ Error enviando email de confirmación para pedido " + idPedido + ": " + e.getMessage());
-            // No fallar la confirmación del pedido por error de email
-        }
+        // Registrar email de confirmación; si ya se envió al crear el pedido no se repite
+        this.emailOutboxService.encolarConfirmacionPedido(pedido.getUsuario().getEmail(), pedido.getUsuario().getNombre(),
+                                                          pedido.getNumeroPedido(), pedido.getTotal().toString());
     }
     
     public void enviarPedido(Integer idPedido, String numeroSeguimiento, String transportadora) {
@@ -345,6 +363,57 @@ public class PedidoService {
         return pedidoRepository.findByEstado(estado);
     }
     
+    /**
+     * Contar los pedidos que entrarán en una exportación con los filtros dados.
+     * Mismas reglas que el recorrido: rango de fechas, luego estado, luego todos.
+     */
+    @Transactional(readOnly = true)
+    public long contarPedidosParaExportacion(LocalDateTime inicio, LocalDateTime fin, String estado) {
+        if (inicio != null && fin != null) {
+            return pedidoRepository.countByFechaPedidoBetween(inicio, fin);
+        }
+        if (estado != null) {
+            return pedidoRepository.countByEstado(estado);
+        }
+        return pedidoRepository.count();
+    }
+    
+    /**
+     * Recorrer los pedidos a exportar en lotes de tamaño fijo usando paginación por
+     * keyset sobre id_pedido. Cada lote llega con usuario y detalles ya cargados y
+     * se desacopla del contexto de persistencia tras consumirse, de modo que la
+     * memoria usada no depende del número total de pedidos.
+     */
+    @Transactional(readOnly = true)
+    public void recorrerPedidosParaExportacion(LocalDateTime inicio, LocalDateTime fin, String estado,
+                                               Consumer<List<Pedido>> consumidor) {
+        Pageable lote = Pageable.ofSize(TAMANO_LOTE_EXPORTACION);
+        Integer ultimoId = 0;
+        
+        while (true) {
+            List<Integer> ids;
+            if (inicio != null && fin != null) {
+                ids = pedidoRepository.findIdsSiguienteLoteEntreFechas(ultimoId, inicio, fin, lote);
+            } else if (estado != null) {
+                ids = pedidoRepository.findIdsSiguienteLotePorEstado(ultimoId, estado, lote);
+            } else {
+                ids = pedidoRepository.findIdsSiguienteLote(ultimoId, lote);
+            }
+            
+            if (ids.isEmpty()) {
+                return;
+            }
+            
+            consumidor.accept(pedidoRepository.findByIdsConDetalles(ids));
+            entityManager.clear();
+            
+            if (ids.size() < TAMANO_LOTE_EXPORTACION) {
+                return;
+            }
+            ultimoId = ids.get(ids.size() - 1);
+        }
+    }
+    
     /**
      * Eliminar pedido (admin only)
      */
@@ -388,7 +457,8 @@ public class PedidoService {
             restaurarInventarioPedido(pedido);
         }
         
-        pedidoRepository.save(pedido);
+        // Reponer stock vacía el contexto de persistencia; se sigue con la instancia gestionada
+        pedido = pedidoRepository.save(pedido);
         
         // Enviar email de notificación al cliente
         try {
@@ -425,7 +495,8 @@ public class PedidoService {
         // Restaurar inventario
         restaurarInventarioPedido(pedido);
         
-        pedidoRepository.save(pedido);
+        // Reponer stock vacía el contexto de persistencia; se sigue con la instancia gestionada
+        pedido = pedidoRepository.save(pedido);
         
         // Enviar email de notificación
         try {
@@ -512,15 +583,39 @@ public class PedidoService {
     }
 
     /**
-     * Crear pedido desde carrito de compras
+     * Crear pedido desde carrito de compras. Los productos se cargan con una sola
+     * consulta, el stock se reserva en un batch y los detalles se insertan en otro,
+     * de modo que el número de viajes a la base de datos no depende del tamaño del carrito.
+     * Los importes son los de la cotización del carrito que vio el cliente y la
+     * confirmación va al email y nombre indicados en el checkout.
      */
     @Transactional
-    @SuppressWarnings("UseSpecificCatch")
-    public Pedido crearPedidoDesdeCarro(Usuario usuario, java.util.List<java.util.Map<String, Object>> carrito, 
-                                        String numeroPedido, String metodoPago, String direccionEnvio, 
-                                        BigDecimal subtotal, BigDecimal costoEnvio, BigDecimal descuento, 
-                                        BigDecimal impuestos, BigDecimal total) {
+    public Pedido crearPedidoDesdeCarro(Usuario usuario, Carrito carrito, String numeroPedido,
+                                        String metodoPago, String direccionEnvio,
+                                        String emailConfirmacion, String nombreConfirmacion) {
         try {
+            List<Carrito.Linea> lineas = carrito.getLineas();
+            Cotizacion cotizacion = PricingEngine.cotizar(carrito);
+
+            // Cargar todos los productos del carrito en una sola consulta
+            Map<Integer, Integer> cantidadesPorProducto = new LinkedHashMap<>();
+            for (Carrito.Linea linea : lineas) {
+                cantidadesPorProducto.put(linea.idProducto(), linea.cantidad());
+            }
+            Map<Integer, Producto> productos = new HashMap<>();
+            for (Producto producto : productoRepository.findAllById(cantidadesPorProducto.keySet())) {
+                productos.put(producto.getIdProducto(), producto);
+            }
+            for (Integer idProducto : cantidadesPorProducto.keySet()) {
+                if (!productos.containsKey(idProducto)) {
+                    throw new RuntimeException("Producto no encontrado con ID: " + idProducto);
+                }
+            }
+
+            // Reservar el stock de todo el carrito antes de escribir el pedido
+            String usuarioActualizacion = usuario.getEmail() + " - Pedido " + numeroPedido;
+            inventarioService.reservarStock(cantidadesPorProducto, usuarioActualizacion);
+
             // Crear pedido principal
             Pedido pedido = new Pedido();
             pedido.setUsuario(usuario);
@@ -529,228 +624,91 @@ public class PedidoService {
             pedido.setEstado("PENDIENTE");
             pedido.setMetodoPago(metodoPago);
             pedido.setDireccionEnvio(direccionEnvio);
-            pedido.setSubtotal(subtotal);
-            pedido.setCostoEnvio(costoEnvio);
-            pedido.setDescuento(descuento);
-            pedido.setImpuestos(impuestos);
-            pedido.setTotal(total);
-            
-            // Guardar pedido
+            aplicarCotizacion(pedido, cotizacion);
             Pedido pedidoGuardado = pedidoRepository.save(pedido);
-            System.out.println("✅ Pedido guardado con ID: " + pedidoGuardado.getIdPedido());
 
-            // Crear detalles del pedido
-            for (java.util.Map<String, Object> item : carrito) {
-                try {
-                    // Validaciones más robustas - buscar tanto "idProducto" como "productoId"
-                    Object idProductoObj = item.get("idProducto");
-                    if (idProductoObj == null) {
-                        idProductoObj = item.get("productoId"); // Fallback para compatibilidad
-                    }
-                    Object cantidadObj = item.get("cantidad");
-                    Object precioObj = item.get("precio");
-                    
-                    System.out.println("🔍 Procesando item del carrito:");
-                    System.out.println("  - idProducto: " + idProductoObj + " (tipo: " + (idProductoObj != null ? idProductoObj.getClass().getSimpleName() : "null") + ")");
-                    System.out.println("  - cantidad: " + cantidadObj + " (tipo: " + (cantidadObj != null ? cantidadObj.getClass().getSimpleName() : "null") + ")");
-                    System.out.println("  - precio: " + precioObj + " (tipo: " + (precioObj != null ? precioObj.getClass().getSimpleName() : "null") + ")");
-                    System.out.println("  - Claves disponibles en item: " + item.keySet());
-                    
-                    if (idProductoObj == null) {
-                        System.err.println("❌ ID del producto es null, saltando item");
-                        continue;
-                    }
-                    
-                    if (cantidadObj == null) {
-                        System.err.println("❌ Cantidad es null, saltando item");
-                        continue;
-                    }
-                    
-                    if (precioObj == null) {
-                        System.err.println("❌ Precio es null, saltando item");
-                        continue;
-                    }
-                    
-                    Integer idProducto;
-                    Integer cantidad;
-                    Double precio;
-                    
-                    // Conversiones seguras
-                    try {
-                        idProducto = (Integer) idProductoObj;
-                    } catch (ClassCastException e) {
-                        System.err.println("❌ Error al convertir idProducto: " + e.getMessage());
-                        continue;
-                    }
-                    
-                    try {
-                        cantidad = (Integer) cantidadObj;
-                    } catch (ClassCastException e) {
-                        System.err.println("❌ Error al convertir cantidad: " + e.getMessage());
-                        continue;
-                    }
-                    
-                    try {
-                        precio = ((Number) precioObj).doubleValue();
-                    } catch (ClassCastException e) {
-                        System.err.println("❌ Error al convertir precio: " + e.getMessage());
-                        continue;
-                    }
-                    
-                    // Validar valores
-                    if (idProducto <= 0) {
-                        System.err.println("❌ ID del producto inválido: " + idProducto);
-                        continue;
-                    }
-                    
-                    if (cantidad <= 0) {
-                        System.err.println("❌ Cantidad inválida: " + cantidad);
-                        continue;
-                    }
-                    
-                    if (precio <= 0) {
-                        System.err.println("❌ Precio inválido: " + precio);
-                        continue;
-                    }
-
-                    // Buscar el producto
-                    Optional<Producto> productoOpt = productoRepository.findById(idProducto);
-                    if (productoOpt.isPresent()) {
-                        Producto producto = productoOpt.get();
-
-                        // Crear detalle del pedido
-                        PedidoDetalle detalle = new PedidoDetalle();
-                        detalle.setPedido(pedidoGuardado);
-                        detalle.setProducto(producto);
-                        detalle.setCantidad(cantidad);
-                        detalle.setPrecioUnitario(BigDecimal.valueOf(precio));
-                        detalle.setDescuentoUnitario(BigDecimal.ZERO);
-                        detalle.setSubtotal(BigDecimal.valueOf(precio * cantidad));
-
-                        // Guardar detalle
-                        pedidoDetalleRepository.save(detalle);
-                        System.out.println("✅ Detalle guardado para producto: " + producto.getNombre());
-
-                        // Actualizar inventario
-                        try {
-                            String usuarioActualizacion = usuario.getEmail() + " - Pedido " + numeroPedido;
-                            inventarioService.reducirStock(idProducto, cantidad, usuarioActualizacion);
-                            System.out.println("✅ Stock actualizado para producto: " + producto.getNombre());
-                        } catch (Exception e) {
-                            System.err.println("⚠️ Error al actualizar stock para producto " + producto.getNombre() + ": " + e.getMessage());
-                            // No lanzamos excepción aquí para no romper todo el pedido
-                        }
-                    } else {
-                        System.err.println("❌ Producto no encontrado con ID: " + idProducto);
-                        // Consideramos este un error crítico que debe fallar la transacción
-                        throw new RuntimeException("Producto no encontrado con ID: " + idProducto);
-                    }
-                } catch (Exception e) {
-                    System.err.println("❌ Error al procesar item del carrito: " + e.getMessage());
-                    System.err.println("❌ Tipo de error: " + e.getClass().getSimpleName());
-                    // Si es un error crítico, lanzamos la excepción para fallar la transacción
-                    if (e instanceof RuntimeException && e.getMessage().contains("Producto no encontrado")) {
-                        throw e;
-                    }
-                    // Para otros errores, continuamos pero los registramos
-                }
+            // Crear detalles del pedido en un único batch
+            List<PedidoDetalle> detalles = new ArrayList<>(lineas.size());
+            for (Carrito.Linea linea : lineas) {
+                detalles.add(new PedidoDetalle(pedidoGuardado, productos.get(linea.idProducto()),
+                                               linea.cantidad(), Carrito.desdeCentimos(linea.precioCentimos())));
             }
+            pedidoDetalleRepository.insertarDetallesEnLote(pedidoGuardado.getIdPedido(), detalles);
 
-            System.out.println("✅ Pedido completo creado exitosamente: " + numeroPedido);
+            // Registrar email de confirmación en la misma transacción
+            emailOutboxService.encolarConfirmacionPedido(emailConfirmacion, nombreConfirmacion,
+                                                         numeroPedido, cotizacion.getTotal().toString());
+
+            logger.debug("Pedido {} creado con {} líneas", numeroPedido, detalles.size());
             return pedidoGuardado;
 
-        } catch (Exception e) {
-            System.err.println("❌ Error al crear pedido desde carrito: " + e.getMessage());
-            System.err.println("❌ Tipo de error: " + e.getClass().getSimpleName());
+        } catch (RuntimeException e) {
+            logger.error("Error al crear pedido {} desde carrito: {}", numeroPedido, e.getMessage());
             throw new RuntimeException("Error al crear pedido", e);
         }
     }
 
     /**
-     * Calcular ventas del mes actual (todos los pedidos no cancelados)
+     * Calcular ventas del mes actual (todos los pedidos no cancelados). El panel
+     * de administración las lee ya calculadas de MetricasStore.
      */
     public BigDecimal calcularVentasMesActual() {
-        LocalDateTime ahora = LocalDateTime.now();
-        LocalDateTime inicioMes = ahora.withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
-        LocalDateTime finMes = inicioMes.plusMonths(1).minusSeconds(1);
-
-        System.out.println("🔍 PedidoService.calcularVentasMesActual():");
-        System.out.println("  - Fecha actual: " + ahora);
-        System.out.println("  - Inicio del mes: " + inicioMes);
-        System.out.println("  - Fin del mes: " + finMes);
+        YearMonth mes = YearMonth.now();
+        return this.pedidoRepository.sumarVentasNoCanceladas(
+            mes.atDay(1).atStartOfDay(), mes.plusMonths(1).atDay(1).atStartOfDay());
+    }
 
-        // Calcular ventas de todos los pedidos del mes que no estén cancelados
-        List<Pedido> pedidosMes = this.pedidoRepository.findByFechaPedidoBetween(inicioMes, finMes);
-        System.out.println("  - Total de pedidos encontrados en el rango: " + pedidosMes.size());
+    /**
+     * Resumen de compras de un cliente con una sola consulta agrupada
+     */
+    public EstadisticasClienteDTO obtenerEstadisticasCliente(Integer idUsuario) {
+        return this.obtenerEstadisticasClientes(List.of(idUsuario)).get(idUsuario);
+    }
 
-        for (Pedido p : pedidosMes) {
-            System.out.println("    - Pedido ID " + p.getIdPedido() + ": estado='" + p.getEstado() + "', total=" + p.getTotal() + ", fecha=" + p.getFechaPedido());
+    /**
+     * Resumen de compras de varios clientes (una página del listado) con una sola
+     * consulta agrupada. Los clientes sin pedidos también aparecen, con ceros.
+     */
+    public Map<Integer, EstadisticasClienteDTO> obtenerEstadisticasClientes(Collection<Integer> idsUsuario) {
+        Map<Integer, EstadisticasClienteDTO> estadisticas = new HashMap<>();
+        if (idsUsuario.isEmpty()) {
+            return estadisticas;
         }
-
-        BigDecimal ventasTotales = pedidosMes.stream()
-            .filter(p -> !Arrays.asList("CANCELADO").contains(p.getEstado())) // Excluir solo cancelados
-            .peek(p -> System.out.println("    - Incluyendo pedido " + p.getIdPedido() + " con total " + p.getTotal()))
-            .map(Pedido::getTotal)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        System.out.println("  - Ventas totales calculadas: " + ventasTotales);
-        return ventasTotales;
+        for (Object[] fila : this.pedidoRepository.obtenerEstadisticasPorUsuarios(idsUsuario)) {
+            EstadisticasClienteDTO dto = EstadisticasClienteDTO.desdeFila(fila);
+            estadisticas.put(dto.getIdUsuario(), dto);
+        }
+        for (Integer idUsuario : idsUsuario) {
+            estadisticas.computeIfAbsent(idUsuario, EstadisticasClienteDTO::sinPedidos);
+        }
+        return estadisticas;
     }
 
     /**
      * Calcular total gastado por un usuario (solo pedidos entregados)
      */
     public BigDecimal calcularTotalGastadoPorUsuario(Integer idUsuario) {
-        Optional<Usuario> usuario = this.usuarioRepository.findById(idUsuario);
-        if (usuario.isEmpty()) {
-            throw new RuntimeException("Usuario no encontrado con ID: " + idUsuario);
-        }
-
-        List<Pedido> pedidos = this.pedidoRepository.findByUsuarioOrderByFechaPedidoDesc(usuario.get());
-        return pedidos.stream()
-            .filter(p -> "ENTREGADO".equals(p.getEstado()))
-            .map(Pedido::getTotal)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return this.estadisticasDeUsuarioExistente(idUsuario).getTotalGastado();
     }
 
     /**
      * Calcular promedio de pedido por usuario (solo pedidos entregados)
      */
     public BigDecimal calcularPromedioPedidoPorUsuario(Integer idUsuario) {
-        Optional<Usuario> usuario = this.usuarioRepository.findById(idUsuario);
-        if (usuario.isEmpty()) {
-            throw new RuntimeException("Usuario no encontrado con ID: " + idUsuario);
-        }
-
-        List<Pedido> pedidos = this.pedidoRepository.findByUsuarioOrderByFechaPedidoDesc(usuario.get());
-        List<Pedido> pedidosEntregados = pedidos.stream()
-            .filter(p -> "ENTREGADO".equals(p.getEstado()))
-            .toList();
-
-        if (pedidosEntregados.isEmpty()) {
-            return BigDecimal.ZERO;
-        }
-
-        BigDecimal total = pedidosEntregados.stream()
-            .map(Pedido::getTotal)
-            .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        return total.divide(BigDecimal.valueOf(pedidosEntregados.size()), 2, java.math.RoundingMode.HALF_UP);
+        return this.estadisticasDeUsuarioExistente(idUsuario).getPromedioPedido();
     }
 
     /**
      * Obtener fecha del último pedido de un usuario
      */
-    public java.time.LocalDateTime obtenerFechaUltimoPedido(Integer idUsuario) {
-        Optional<Usuario> usuario = this.usuarioRepository.findById(idUsuario);
-        if (usuario.isEmpty()) {
+    public LocalDateTime obtenerFechaUltimoPedido(Integer idUsuario) {
+        return this.estadisticasDeUsuarioExistente(idUsuario).getFechaUltimoPedido();
+    }
+
+    private EstadisticasClienteDTO estadisticasDeUsuarioExistente(Integer idUsuario) {
+        if (!this.usuarioRepository.existsById(idUsuario)) {
             throw new RuntimeException("Usuario no encontrado con ID: " + idUsuario);
         }
-
-        List<Pedido> pedidos = this.pedidoRepository.findByUsuarioOrderByFechaPedidoDesc(usuario.get());
-        return pedidos.stream()
-            .findFirst()
-            .map(Pedido::getFechaPedido)
-            .orElse(null);
+        return this.obtenerEstadisticasCliente(idUsuario);
     }
 }
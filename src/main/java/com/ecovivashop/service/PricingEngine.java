@@ -0,0 +1,84 @@
+package com.ecovivashop.service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+import com.ecovivashop.dto.Carrito;
+import com.ecovivashop.dto.Cotizacion;
+import com.ecovivashop.entity.Pedido;
+import com.ecovivashop.entity.PedidoDetalle;
+
+/**
+ * Cálculo único de los importes de una compra: descuento eco del 5% sobre el
+ * subtotal, envío gratis e IGV del 18% sobre la base (subtotal menos descuento).
+ *
+ * Todo se calcula con long en céntimos y redondeo half-up de cada importe, sin
+ * BigDecimal ni double; la única reserva de memoria es la Cotizacion resultante,
+ * que el carrito guarda mientras no cambia.
+ */
+public final class PricingEngine {
+    
+    // Porcentajes en puntos básicos (1% = 100)
+    public static final long DESCUENTO_ECO_PUNTOS_BASICOS = 500;
+    public static final long IGV_PUNTOS_BASICOS = 1800;
+    public static final long ENVIO_CENTIMOS = 0;
+    
+    private static final long ESCALA_PUNTOS_BASICOS = 10_000;
+    
+    private PricingEngine() {
+    }
+    
+    public static Cotizacion cotizar(long subtotalCentimos) {
+        long descuento = porcentaje(subtotalCentimos, DESCUENTO_ECO_PUNTOS_BASICOS);
+        long baseImponible = subtotalCentimos - descuento;
+        long igv = porcentaje(baseImponible, IGV_PUNTOS_BASICOS);
+        return new Cotizacion(subtotalCentimos, descuento, ENVIO_CENTIMOS, igv,
+                              baseImponible + ENVIO_CENTIMOS + igv);
+    }
+    
+    /**
+     * Cotización del carrito; se recalcula solo si el carrito cambió desde la última
+     */
+    public static Cotizacion cotizar(Carrito carrito) {
+        return carrito.cotizacion(PricingEngine::cotizar);
+    }
+    
+    /**
+     * Cotización a partir de las líneas de un pedido ya guardado
+     */
+    public static Cotizacion cotizar(Collection<PedidoDetalle> detalles) {
+        long subtotal = 0;
+        for (PedidoDetalle detalle : detalles) {
+            subtotal += subtotalLineaCentimos(Carrito.aCentimos(detalle.getPrecioUnitario()), detalle.getCantidad());
+        }
+        return cotizar(subtotal);
+    }
+    
+    /**
+     * Importes guardados en el pedido al confirmarlo. Los pedidos antiguos sin
+     * importes guardados (total nulo o cero con líneas) se recalculan desde sus líneas.
+     */
+    public static Cotizacion desdePedido(Pedido pedido) {
+        boolean sinImportes = pedido.getSubtotal() == null || pedido.getTotal() == null
+            || pedido.getTotal().signum() == 0;
+        if (sinImportes && pedido.getDetalles() != null && !pedido.getDetalles().isEmpty()) {
+            return cotizar(pedido.getDetalles());
+        }
+        return new Cotizacion(centimos(pedido.getSubtotal()), centimos(pedido.getDescuento()),
+                              centimos(pedido.getCostoEnvio()), centimos(pedido.getImpuestos()),
+                              centimos(pedido.getTotal()));
+    }
+    
+    public static long subtotalLineaCentimos(long precioCentimos, int cantidad) {
+        return Math.multiplyExact(precioCentimos, cantidad);
+    }
+    
+    // importe * puntos / 10000 redondeado half-up (importes no negativos)
+    static long porcentaje(long importeCentimos, long puntosBasicos) {
+        return (Math.multiplyExact(importeCentimos, puntosBasicos) + ESCALA_PUNTOS_BASICOS / 2) / ESCALA_PUNTOS_BASICOS;
+    }
+    
+    private static long centimos(BigDecimal importe) {
+        return importe == null ? 0 : Carrito.aCentimos(importe);
+    }
+}
@@ -0,0 +1,37 @@
+package com.ecovivashop.service;
+
+import com.ecovivashop.entity.TransaccionPago;
+import com.ecovivashop.entity.TransaccionPago.EstadoTransaccion;
+
+/**
+ * Entidad que autoriza los cobros con tarjeta (Culqi, Visa...). La llamada es
+ * bloqueante y puede tardar segundos: PasarelaPagoService la hace siempre desde
+ * su pool propio, nunca desde el hilo de la petición.
+ */
+public interface ProcesadorPago {
+
+    ResultadoAutorizacion autorizar(TransaccionPago transaccion);
+
+    /**
+     * Respuesta de la entidad: COMPLETADA con su código de autorización,
+     * RECHAZADA o ERROR con el motivo.
+     */
+    record ResultadoAutorizacion(EstadoTransaccion estado, String codigoAutorizacion, String mensaje) {
+
+        public static ResultadoAutorizacion aprobada(String codigoAutorizacion) {
+            return new ResultadoAutorizacion(EstadoTransaccion.COMPLETADA, codigoAutorizacion, "Pago aprobado");
+        }
+
+        public static ResultadoAutorizacion rechazada(String mensaje) {
+            return new ResultadoAutorizacion(EstadoTransaccion.RECHAZADA, null, mensaje);
+        }
+
+        public static ResultadoAutorizacion error(String mensaje) {
+            return new ResultadoAutorizacion(EstadoTransaccion.ERROR, null, mensaje);
+        }
+
+        public boolean aprobado() {
+            return this.estado == EstadoTransaccion.COMPLETADA;
+        }
+    }
+}
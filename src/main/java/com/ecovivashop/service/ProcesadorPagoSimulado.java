@@ -0,0 +1,41 @@
+package com.ecovivashop.service;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.ecovivashop.entity.TransaccionPago;
+
+/**
+ * Procesador local mientras no haya integración con Culqi: espera la latencia
+ * configurada, como haría la llamada real, y aprueba el porcentaje indicado.
+ */
+@Component
+public class ProcesadorPagoSimulado implements ProcesadorPago {
+
+    private final long latenciaMs;
+    private final double tasaAprobacion;
+
+    public ProcesadorPagoSimulado(@Value("${app.pagos.simulador.latencia-ms:3000}") long latenciaMs,
+                                  @Value("${app.pagos.simulador.tasa-aprobacion:0.9}") double tasaAprobacion) {
+        this.latenciaMs = latenciaMs;
+        this.tasaAprobacion = tasaAprobacion;
+    }
+
+    @Override
+    public ResultadoAutorizacion autorizar(TransaccionPago transaccion) {
+        try {
+            Thread.sleep(this.latenciaMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResultadoAutorizacion.error("Autorización interrumpida");
+        }
+
+        if (ThreadLocalRandom.current().nextDouble() < this.tasaAprobacion) {
+            return ResultadoAutorizacion.aprobada("CONF_" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
+        }
+        return ResultadoAutorizacion.rechazada("Pago rechazado por la entidad bancaria");
+    }
+}
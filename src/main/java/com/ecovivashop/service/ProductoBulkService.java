@@ -6,43 +6,111 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.hibernate.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 import com.ecovivashop.dto.ProductoBulkUploadResult;
+import com.ecovivashop.dto.TrabajoCargaMasiva;
 import com.ecovivashop.entity.Inventario;
 import com.ecovivashop.entity.Producto;
+import com.google.common.cache.CacheBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
 import com.opencsv.exceptions.CsvValidationException;
 
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Carga masiva de productos desde CSV o Excel. La carga es un trabajo en segundo
+ * plano con id propio: el archivo se lee en streaming (CSV fila a fila, XLSX con el
+ * modelo de eventos de POI, sin cargar el libro en memoria), las filas se validan
+ * en paralelo por lotes y cada lote se inserta con JDBC batch en su propia
+ * transacción. Si un lote falla en la base de datos se reintenta fila a fila para
+ * que una fila mala no tumbe las demás.
+ *
+ * Los trabajos viven en memoria del nodo que recibió el archivo.
+ */
 @Service
 public class ProductoBulkService {
     
+    private static final Logger logger = LoggerFactory.getLogger(ProductoBulkService.class);
+    
+    private static final String SQL_INSERTAR_PRODUCTO =
+        "INSERT INTO tb_producto (nombre, descripcion, precio, categoria, marca, modelo, color, peso, "
+        + "dimensiones, material, garantia_meses, eficiencia_energetica, impacto_ambiental, puntuacion_eco, "
+        + "imagen_url, estado, fecha_creacion) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_INSERTAR_INVENTARIO =
+        "INSERT INTO tb_inventario (id_producto, stock, stock_minimo, stock_maximo, estado, fecha_actualizacion) "
+        + "VALUES (?, ?, ?, ?, ?, ?)";
+    
     private final ProductoService productoService;
-    private final InventarioService inventarioService;
+    private final AlmacenBlobService almacenBlobService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManagerFactory entityManagerFactory;
+    private final Executor cargaMasivaExecutor;
+    private final int tamañoLote;
     
-    @Value("${app.upload.dir:uploads/}")
-    private String uploadDir;
+    // Trabajos recientes para consultar su progreso y descargar el informe de errores
+    private final com.google.common.cache.Cache<String, TrabajoCargaMasiva> trabajos = CacheBuilder.newBuilder()
+            .maximumSize(100)
+            .expireAfterAccess(2, TimeUnit.HOURS)
+            .build();
     
     // Encabezados esperados para CSV/Excel
     private static final String[] HEADERS = {
-        "nombre", "descripcion", "precio", "categoria", "marca", "modelo", 
+        "nombre", "descripcion", "precio", "categoria", "marca", "modelo",
         "color", "peso", "dimensiones", "material", "garantia_meses",
         "eficiencia_energetica", "impacto_ambiental", "puntuacion_eco",
         "imagen_url", "stock_inicial", "stock_minimo", "stock_maximo"
@@ -53,155 +121,454 @@ public class ProductoBulkService {
         "nombre", "descripcion", "precio", "categoria"
     );
     
-    public ProductoBulkService(ProductoService productoService, InventarioService inventarioService) {
+    public ProductoBulkService(ProductoService productoService, AlmacenBlobService almacenBlobService,
+                               JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               ApplicationEventPublisher eventPublisher, EntityManagerFactory entityManagerFactory,
+                               @Qualifier("cargaMasivaExecutor") Executor cargaMasivaExecutor,
+                               @Value("${app.productos.carga-masiva.lote:500}") int tamañoLote) {
         this.productoService = productoService;
-        this.inventarioService = inventarioService;
+        this.almacenBlobService = almacenBlobService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.entityManagerFactory = entityManagerFactory;
+        this.cargaMasivaExecutor = cargaMasivaExecutor;
+        this.tamañoLote = tamañoLote;
+    }
+    
+    /**
+     * Encola la carga de un archivo y devuelve el trabajo para seguir su progreso.
+     * El archivo se copia antes de volver porque el temporal de la subida se borra
+     * al terminar la petición.
+     */
+    public TrabajoCargaMasiva iniciarCarga(MultipartFile archivo, boolean permitirNuevasCategorias) throws IOException {
+        String nombreArchivo = archivo.getOriginalFilename();
+        TrabajoCargaMasiva trabajo = new TrabajoCargaMasiva(nombreArchivo);
+        if (nombreArchivo == null) {
+            trabajo.getResultado().agregarError("Nombre de archivo no válido");
+            trabajo.terminar(true);
+            trabajos.put(trabajo.getId(), trabajo);
+            return trabajo;
+        }
+        
+        Path copia = Files.createTempFile("carga-productos-", extensionDe(nombreArchivo));
+        try {
+            archivo.transferTo(copia);
+            trabajos.put(trabajo.getId(), trabajo);
+            cargaMasivaExecutor.execute(() -> {
+                try {
+                    procesar(copia, nombreArchivo, permitirNuevasCategorias, trabajo);
+                } finally {
+                    borrarTemporal(copia);
+                }
+            });
+        } catch (IOException | RejectedExecutionException e) {
+            trabajos.invalidate(trabajo.getId());
+            borrarTemporal(copia);
+            throw e;
+        }
+        return trabajo;
+    }
+    
+    public Optional<TrabajoCargaMasiva> obtenerTrabajo(String id) {
+        return Optional.ofNullable(trabajos.getIfPresent(id));
     }
     
     /**
-     * Procesa un archivo de carga masiva (CSV o Excel)
+     * Procesa un archivo de carga masiva (CSV o Excel) en el hilo actual
      */
-    public ProductoBulkUploadResult procesarArchivo(MultipartFile archivo, boolean permitirNuevasCategorias) 
+    public ProductoBulkUploadResult procesarArchivo(MultipartFile archivo, boolean permitirNuevasCategorias)
             throws IOException {
         
-        ProductoBulkUploadResult resultado = new ProductoBulkUploadResult();
         String nombreArchivo = archivo.getOriginalFilename();
-        
+        TrabajoCargaMasiva trabajo = new TrabajoCargaMasiva(nombreArchivo);
         if (nombreArchivo == null) {
-            resultado.agregarError("Nombre de archivo no válido");
-            return resultado;
+            trabajo.getResultado().agregarError("Nombre de archivo no válido");
+            return trabajo.getResultado();
         }
         
+        Path copia = Files.createTempFile("carga-productos-", extensionDe(nombreArchivo));
         try {
-            if (nombreArchivo.toLowerCase().endsWith(".csv")) {
-                procesarCSV(archivo.getInputStream(), resultado, permitirNuevasCategorias);
-            } else if (nombreArchivo.toLowerCase().endsWith(".xlsx") || 
-                      nombreArchivo.toLowerCase().endsWith(".xls")) {
-                procesarExcel(archivo.getInputStream(), resultado, permitirNuevasCategorias);
+            archivo.transferTo(copia);
+            procesar(copia, nombreArchivo, permitirNuevasCategorias, trabajo);
+        } finally {
+            borrarTemporal(copia);
+        }
+        return trabajo.getResultado();
+    }
+    
+    private void procesar(Path archivo, String nombreArchivo, boolean permitirNuevasCategorias,
+                          TrabajoCargaMasiva trabajo) {
+        trabajo.iniciar();
+        ProductoBulkUploadResult resultado = trabajo.getResultado();
+        boolean fallido = false;
+        long inicio = System.nanoTime();
+        try {
+            Carga carga = new Carga(trabajo, permitirNuevasCategorias);
+            String nombre = nombreArchivo.toLowerCase();
+            if (nombre.endsWith(".csv")) {
+                leerCSV(archivo, carga);
+            } else if (nombre.endsWith(".xlsx") || nombre.endsWith(".xls")) {
+                leerExcel(archivo, carga);
             } else {
                 resultado.agregarError("Formato de archivo no soportado");
+                return;
             }
+            carga.terminar();
         } catch (IOException | CsvValidationException | RuntimeException e) {
+            logger.warn("Carga masiva {} interrumpida: {}", trabajo.getId(), e.getMessage());
             resultado.agregarError("Error al procesar archivo: " + e.getMessage());
+            fallido = true;
+        } finally {
+            trabajo.terminar(fallido);
+            logger.info("Carga masiva {} ({}): {} filas, {} productos, {} errores en {} ms", trabajo.getId(),
+                nombreArchivo, trabajo.getFilasLeidas(), trabajo.getProductosGuardados(), trabajo.getErrores(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
         }
-        
-        return resultado;
     }
     
     /**
-     * Procesa archivo CSV
+     * Lee el CSV fila a fila
      */
-    private void procesarCSV(InputStream inputStream, ProductoBulkUploadResult resultado, 
-                           boolean permitirNuevasCategorias) throws IOException, CsvValidationException {
+    private void leerCSV(Path archivo, Carga carga) throws IOException, CsvValidationException {
         
         // Leer con BOM handling
-        try (InputStreamReader isr = new InputStreamReader(inputStream, java.nio.charset.StandardCharsets.UTF_8);
+        try (InputStreamReader isr = new InputStreamReader(Files.newInputStream(archivo), StandardCharsets.UTF_8);
              CSVReader reader = new CSVReader(isr)) {
             
-            String[] headers = reader.readNext();
-            
-            if (headers == null) {
-                resultado.agregarError("El archivo está vacío");
+            String[] linea;
+            int numeroFila = 1;
+            while ((linea = reader.readNext()) != null && carga.fila(numeroFila, linea)) {
+                numeroFila++;
+            }
+        }
+    }
+    
+    /**
+     * Lee la primera hoja del Excel con el modelo de eventos (SAX) de POI: solo se
+     * mantiene en memoria la fila actual y la tabla de textos compartidos
+     */
+    private void leerExcel(Path archivo, Carga carga) throws IOException {
+        try (OPCPackage paquete = OPCPackage.open(archivo.toFile(), PackageAccess.READ)) {
+            XSSFReader lector = new XSSFReader(paquete);
+            ReadOnlySharedStringsTable textos = new ReadOnlySharedStringsTable(paquete);
+            XSSFReader.SheetIterator hojas = (XSSFReader.SheetIterator) lector.getSheetsData();
+            if (!hojas.hasNext()) {
                 return;
             }
             
-            // Limpiar el primer header del posible BOM
-            if (headers.length > 0 && headers[0].startsWith("\uFEFF")) {
-                headers[0] = headers[0].substring(1);
+            try (InputStream hoja = hojas.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(lector.getStylesTable(), null, textos,
+                    new LectorFilasExcel(carga), new DataFormatter(), false));
+                parser.parse(new InputSource(hoja));
             }
-            
-            // Validar encabezados
-            if (!validarEncabezados(headers, resultado)) {
-                return;
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            if (e instanceof SAXException && e.getCause() instanceof RuntimeException causa) {
+                throw causa;
             }
-            
-            String[] linea;
-            int numeroFila = 2; // Empezar desde la fila 2 (después del header)
-            
-            while ((linea = reader.readNext()) != null) {
-                try {
-                    procesarFilaProducto(headers, linea, numeroFila, resultado, permitirNuevasCategorias);
-                } catch (Exception e) {
-                    resultado.agregarError(numeroFila, "Error al procesar fila: " + e.getMessage());
-                }
-                numeroFila++;
+            throw new IOException("El archivo no es un Excel (.xlsx) válido: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Junta las celdas de cada fila del Excel; las celdas vacías no llegan, así que
+     * la columna sale de la referencia de la celda
+     */
+    private static final class LectorFilasExcel implements XSSFSheetXMLHandler.SheetContentsHandler {
+        
+        private final Carga carga;
+        private final List<String> celdas = new ArrayList<>();
+        private boolean detenido;
+        
+        LectorFilasExcel(Carga carga) {
+            this.carga = carga;
+        }
+        
+        @Override
+        public void startRow(int numeroFila) {
+            celdas.clear();
+        }
+        
+        @Override
+        public void cell(String referencia, String valor, XSSFComment comentario) {
+            int columna = referencia != null ? new CellReference(referencia).getCol() : celdas.size();
+            while (celdas.size() < columna) {
+                celdas.add("");
+            }
+            celdas.add(valor != null ? valor.trim() : "");
+        }
+        
+        @Override
+        public void endRow(int numeroFila) {
+            if (!detenido && !carga.fila(numeroFila + 1, celdas.toArray(String[]::new))) {
+                detenido = true;
             }
         }
     }
     
     /**
-     * Procesa archivo Excel
+     * Estado de una carga: encabezados, categorías conocidas y el lote de filas
+     * pendientes de validar e insertar. Solo la usa el hilo que lee el archivo.
      */
-    private void procesarExcel(InputStream inputStream, ProductoBulkUploadResult resultado, 
-                             boolean permitirNuevasCategorias) throws IOException {
+    private final class Carga {
+        
+        private final TrabajoCargaMasiva trabajo;
+        private final ProductoBulkUploadResult resultado;
+        private final boolean permitirNuevasCategorias;
+        private final List<String> categoriasExistentes;
+        private final Set<String> categorias;
+        private final List<FilaLeida> pendientes = new ArrayList<>();
+        private String[] headers;
+        private boolean encabezadosValidos;
+        
+        Carga(TrabajoCargaMasiva trabajo, boolean permitirNuevasCategorias) {
+            this.trabajo = trabajo;
+            this.resultado = trabajo.getResultado();
+            this.permitirNuevasCategorias = permitirNuevasCategorias;
+            // Una sola consulta por carga en lugar de una por fila
+            this.categoriasExistentes = productoService.obtenerCategoriasDisponibles();
+            this.categorias = new HashSet<>(categoriasExistentes);
+        }
         
-        try (Workbook workbook = new XSSFWorkbook(inputStream)) {
-            Sheet sheet = workbook.getSheetAt(0);
-            
-            if (sheet.getPhysicalNumberOfRows() == 0) {
-                resultado.agregarError("La hoja de Excel está vacía");
-                return;
+        /**
+         * Recibe una fila leída; la primera son los encabezados. Devuelve false si
+         * ya no tiene sentido seguir leyendo.
+         */
+        boolean fila(int numeroFila, String[] datos) {
+            if (headers == null) {
+                headers = normalizarEncabezados(datos);
+                encabezadosValidos = validarEncabezados(headers, resultado);
+                return encabezadosValidos;
             }
-            
-            // Leer encabezados
-            Row headerRow = sheet.getRow(0);
-            if (headerRow == null) {
-                resultado.agregarError("No se encontraron encabezados en la hoja");
+            if (!encabezadosValidos) {
+                return false;
+            }
+            trabajo.filaLeida();
+            pendientes.add(new FilaLeida(numeroFila, datos));
+            if (pendientes.size() >= tamañoLote) {
+                procesarLote();
+            }
+            return true;
+        }
+        
+        void terminar() {
+            if (headers == null) {
+                resultado.agregarError("El archivo está vacío");
                 return;
             }
-            
-            String[] headers = new String[headerRow.getPhysicalNumberOfCells()];
-            for (int i = 0; i < headers.length; i++) {
-                headers[i] = headerRow.getCell(i).getStringCellValue().trim().toLowerCase();
+            if (encabezadosValidos) {
+                procesarLote();
             }
-            
-            // Validar encabezados
-            if (!validarEncabezados(headers, resultado)) {
+        }
+        
+        private void procesarLote() {
+            if (pendientes.isEmpty()) {
                 return;
             }
+            // Validar es CPU pura e independiente por fila; el orden del resultado se conserva
+            String[] encabezados = headers;
+            List<FilaValidada> validadas = pendientes.parallelStream()
+                .map(fila -> validarFila(encabezados, fila.datos(), fila.numeroFila()))
+                .toList();
+            pendientes.clear();
             
-            // Procesar filas de datos
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) continue;
+            List<FilaValidada> aGuardar = new ArrayList<>();
+            for (FilaValidada fila : validadas) {
+                if (fila == null) {
+                    continue; // Fila vacía
+                }
+                fila.advertencias.forEach(advertencia -> resultado.agregarAdvertencia(fila.numeroFila, advertencia));
+                if (fila.error != null) {
+                    resultado.agregarError(fila.numeroFila, fila.error);
+                    continue;
+                }
                 
-                String[] datos = new String[headers.length];
-                for (int j = 0; j < headers.length; j++) {
-                    if (row.getCell(j) != null) {
-                        datos[j] = row.getCell(j).toString().trim();
-                    } else {
-                        datos[j] = "";
+                // Verificar si la categoría existe o crearla si se permite
+                String categoria = fila.producto.getCategoria();
+                if (!categorias.contains(categoria)) {
+                    if (!permitirNuevasCategorias) {
+                        resultado.agregarError(fila.numeroFila, "Categoría no existe: " + categoria
+                            + ". Categorías disponibles: " + String.join(", ", categoriasExistentes));
+                        continue;
                     }
+                    categorias.add(categoria);
+                    resultado.agregarCategoriaCreada(categoria);
+                    resultado.agregarAdvertencia(fila.numeroFila, "Se creará nueva categoría: " + categoria);
+                }
+                aGuardar.add(fila);
+            }
+            
+            guardarLote(aGuardar, resultado);
+            trabajo.actualizarProgreso();
+        }
+    }
+    
+    private record FilaLeida(int numeroFila, String[] datos) {}
+    
+    /**
+     * Producto e inventario de una fila ya validada, o el error que la descarta
+     */
+    static final class FilaValidada {
+        final int numeroFila;
+        final Producto producto = new Producto();
+        final Inventario inventario = new Inventario();
+        final List<String> advertencias = new ArrayList<>();
+        String error;
+        
+        FilaValidada(int numeroFila) {
+            this.numeroFila = numeroFila;
+        }
+        
+        FilaValidada error(String mensaje) {
+            this.error = mensaje;
+            return this;
+        }
+        
+        void advertencia(String mensaje) {
+            this.advertencias.add(mensaje);
+        }
+    }
+    
+    /**
+     * Inserta el lote en una transacción. Si la base de datos rechaza alguna fila se
+     * deshace el lote y se reintenta fila a fila para señalar solo las culpables.
+     */
+    private void guardarLote(List<FilaValidada> filas, ProductoBulkUploadResult resultado) {
+        if (filas.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(estado -> insertarLote(filas));
+            filas.forEach(fila -> resultado.incrementarProductosProcesados());
+        } catch (DataAccessException e) {
+            if (filas.size() == 1) {
+                resultado.agregarError(filas.get(0).numeroFila,
+                    "Error al guardar producto: " + e.getMostSpecificCause().getMessage());
+                return;
+            }
+            for (FilaValidada fila : filas) {
+                guardarLote(List.of(fila), resultado);
+            }
+            return;
+        }
+        // Los INSERT por JDBC no invalidan la caché de consultas de Hibernate
+        entityManagerFactory.getCache().unwrap(Cache.class).evictQueryRegions();
+    }
+    
+    private void insertarLote(List<FilaValidada> filas) {
+        Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+        GeneratedKeyHolder claves = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+            conexion -> conexion.prepareStatement(SQL_INSERTAR_PRODUCTO, new String[] {"id_producto"}),
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    Producto producto = filas.get(i).producto;
+                    ps.setString(1, producto.getNombre());
+                    ps.setString(2, producto.getDescripcion());
+                    ps.setBigDecimal(3, producto.getPrecio());
+                    ps.setString(4, producto.getCategoria());
+                    ps.setString(5, producto.getMarca());
+                    ps.setString(6, producto.getModelo());
+                    ps.setString(7, producto.getColor());
+                    ps.setBigDecimal(8, producto.getPeso());
+                    ps.setString(9, producto.getDimensiones());
+                    ps.setString(10, producto.getMaterial());
+                    ps.setObject(11, producto.getGarantiaMeses(), Types.INTEGER);
+                    ps.setString(12, producto.getEficienciaEnergetica());
+                    ps.setString(13, producto.getImpactoAmbiental());
+                    ps.setBigDecimal(14, producto.getPuntuacionEco());
+                    ps.setString(15, producto.getImagenUrl());
+                    ps.setBoolean(16, true);
+                    ps.setTimestamp(17, ahora);
                 }
                 
-                try {
-                    procesarFilaProducto(headers, datos, i + 1, resultado, permitirNuevasCategorias);
-                } catch (Exception e) {
-                    resultado.agregarError(i + 1, "Error al procesar fila: " + e.getMessage());
+                @Override
+                public int getBatchSize() {
+                    return filas.size();
                 }
-            }
+            },
+            claves);
+        
+        List<Map<String, Object>> idsGenerados = claves.getKeyList();
+        List<Object[]> inventarios = new ArrayList<>(filas.size());
+        List<Integer> idsProducto = new ArrayList<>(filas.size());
+        for (int i = 0; i < filas.size(); i++) {
+            Producto producto = filas.get(i).producto;
+            Inventario inventario = filas.get(i).inventario;
+            producto.setIdProducto(((Number) idsGenerados.get(i).values().iterator().next()).intValue());
+            producto.setEstado(true);
+            idsProducto.add(producto.getIdProducto());
+            inventarios.add(new Object[] {
+                producto.getIdProducto(),
+                inventario.getStock() != null ? inventario.getStock() : 0,
+                inventario.getStockMinimo() != null ? inventario.getStockMinimo() : 5,
+                inventario.getStockMaximo(),
+                true,
+                ahora
+            });
+        }
+        jdbcTemplate.batchUpdate(SQL_INSERTAR_INVENTARIO, inventarios,
+            new int[] {Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.BOOLEAN, Types.TIMESTAMP});
+        
+        // Lo que harían los callbacks JPA: índice de búsqueda y cachés se enteran al confirmar
+        for (FilaValidada fila : filas) {
+            eventPublisher.publishEvent(ProductoModificadoEvent.guardado(fila.producto));
         }
+        eventPublisher.publishEvent(InventarioModificadoEvent.deProductos(idsProducto));
     }
     
     /**
-     * Valida que los encabezados contengan los campos obligatorios
+     * Informe descargable con los errores y advertencias de la carga, uno por línea
      */
-    private boolean validarEncabezados(String[] headers, ProductoBulkUploadResult resultado) {
-        List<String> headersEncontrados = new ArrayList<>();
+    public byte[] generarInformeErrores(TrabajoCargaMasiva trabajo) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
         
-        // Debug: Log headers originales
-        System.out.println("=== DEBUG HEADERS ===");
-        for (int i = 0; i < headers.length; i++) {
-            String header = headers[i];
-            System.out.println("Header[" + i + "]: '" + header + "' (length: " + header.length() + ")");
-            // Limpiar header: trim, lowercase y remover caracteres invisibles
-            String headerLimpio = header.trim().toLowerCase().replaceAll("[\\p{Cntrl}\\p{Space}]", "");
-            headersEncontrados.add(headerLimpio);
-            System.out.println("  -> Limpio: '" + headerLimpio + "'");
+        try (OutputStreamWriter writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+             CSVWriter csvWriter = new CSVWriter(writer)) {
+            
+            csvWriter.writeNext(new String[] {"tipo", "detalle"});
+            for (String error : trabajo.getResultado().getErrores()) {
+                csvWriter.writeNext(new String[] {"ERROR", error});
+            }
+            for (String advertencia : trabajo.getResultado().getAdvertencias()) {
+                csvWriter.writeNext(new String[] {"ADVERTENCIA", advertencia});
+            }
         }
         
-        System.out.println("Headers encontrados: " + headersEncontrados);
-        System.out.println("Headers obligatorios: " + HEADERS_OBLIGATORIOS);
+        return outputStream.toByteArray();
+    }
+    
+    private static String extensionDe(String nombreArchivo) {
+        int punto = nombreArchivo.lastIndexOf('.');
+        return punto >= 0 ? nombreArchivo.substring(punto).toLowerCase() : ".tmp";
+    }
+    
+    private static void borrarTemporal(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            logger.warn("No se pudo borrar el temporal de la carga {}: {}", archivo, e.getMessage());
+        }
+    }
+    
+    // Encabezados en minúsculas y sin BOM ni caracteres invisibles
+    private static String[] normalizarEncabezados(String[] headers) {
+        String[] normalizados = new String[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            String header = headers[i] != null ? headers[i] : "";
+            normalizados[i] = header.replace("\uFEFF", "").trim().toLowerCase().replaceAll("[\\p{Cntrl}\\p{Space}]", "");
+        }
+        return normalizados;
+    }
+    
+    /**
+     * Valida que los encabezados contengan los campos obligatorios
+     */
+    private boolean validarEncabezados(String[] headers, ProductoBulkUploadResult resultado) {
+        List<String> headersEncontrados = Arrays.asList(headers);
+        logger.debug("Encabezados encontrados: {}", headersEncontrados);
         
         List<String> faltantes = new ArrayList<>();
         for (String obligatorio : HEADERS_OBLIGATORIOS) {
@@ -220,11 +587,11 @@ public class ProductoBulkService {
     }
     
     /**
-     * Procesa una fila individual del archivo
+     * Valida y convierte una fila. No toca la base de datos ni estado compartido,
+     * así que se puede llamar en paralelo. Devuelve null si la fila está vacía.
      */
     @SuppressWarnings("EnhancedSwitchMigration")
-    private void procesarFilaProducto(String[] headers, String[] datos, int numeroFila, 
-                                    ProductoBulkUploadResult resultado, boolean permitirNuevasCategorias) {
+    FilaValidada validarFila(String[] headers, String[] datos, int numeroFila) {
         
         // Validar que la fila no esté vacía
         boolean filaVacia = true;
@@ -236,191 +603,155 @@ public class ProductoBulkService {
         }
         
         if (filaVacia) {
-            return; // Saltar fila vacía silenciosamente
+            return null; // Saltar fila vacía silenciosamente
         }
         
-        try {
-            Producto producto = new Producto();
-            Inventario inventario = new Inventario();
+        FilaValidada fila = new FilaValidada(numeroFila);
+        Producto producto = fila.producto;
+        Inventario inventario = fila.inventario;
+        
+        for (int i = 0; i < headers.length && i < datos.length; i++) {
+            String header = headers[i];
+            String valor = datos[i] != null ? datos[i].trim() : "";
             
             // Mapear datos según encabezados
-            for (int i = 0; i < headers.length && i < datos.length; i++) {
-                String header = headers[i].trim().toLowerCase();
-                String valor = datos[i] != null ? datos[i].trim() : "";
-                
-                // Mapear datos según encabezados
-                switch (header) {
-                    case "nombre" -> {
-                        if (valor.isEmpty()) {
-                            resultado.agregarError(numeroFila, "El nombre es obligatorio");
-                            return;
-                        }
-                        producto.setNombre(valor);
+            switch (header) {
+                case "nombre" -> {
+                    if (valor.isEmpty()) {
+                        return fila.error("El nombre es obligatorio");
                     }
-                    case "descripcion" -> {
-                        if (valor.isEmpty()) {
-                            resultado.agregarError(numeroFila, "La descripción es obligatoria");
-                            return;
-                        }
-                        producto.setDescripcion(valor);
+                    producto.setNombre(valor);
+                }
+                case "descripcion" -> {
+                    if (valor.isEmpty()) {
+                        return fila.error("La descripción es obligatoria");
                     }
-                    case "precio" -> {
-                        if (valor.isEmpty()) {
-                            resultado.agregarError(numeroFila, "El precio es obligatorio");
-                            return;
+                    producto.setDescripcion(valor);
+                }
+                case "precio" -> {
+                    if (valor.isEmpty()) {
+                        return fila.error("El precio es obligatorio");
+                    }
+                    try {
+                        // Limpiar formato de precio (quitar S/, comas, etc.)
+                        String precioLimpio = valor.replaceAll("[^\\d.,]", "").replace(",", ".");
+                        BigDecimal precio = new BigDecimal(precioLimpio);
+                        if (precio.compareTo(BigDecimal.ZERO) <= 0) {
+                            return fila.error("El precio debe ser mayor a 0");
+                        }
+                        // Validar precisión (10,2) y truncar si es necesario
+                        if (!validarPrecisionBigDecimal(precio, 10, 2)) {
+                            precio = truncarBigDecimal(precio, 10, 2);
+                            fila.advertencia("Precio truncado para cumplir restricciones de BD: " + precio);
                         }
+                        producto.setPrecio(precio);
+                    } catch (NumberFormatException e) {
+                        return fila.error("Formato de precio inválido: " + valor);
+                    }
+                }
+                case "categoria" -> {
+                    if (valor.isEmpty()) {
+                        return fila.error("La categoría es obligatoria");
+                    }
+                    producto.setCategoria(valor);
+                }
+                case "marca" -> producto.setMarca(valor.isEmpty() ? null : valor);
+                case "modelo" -> producto.setModelo(valor.isEmpty() ? null : valor);
+                case "color" -> producto.setColor(valor.isEmpty() ? null : valor);
+                case "peso" -> {
+                    if (!valor.isEmpty()) {
                         try {
-                            // Limpiar formato de precio (quitar S/, comas, etc.)
-                            String precioLimpio = valor.replaceAll("[^\\d.,]", "").replace(",", ".");
-                            BigDecimal precio = new BigDecimal(precioLimpio);
-                            if (precio.compareTo(BigDecimal.ZERO) <= 0) {
-                                resultado.agregarError(numeroFila, "El precio debe ser mayor a 0");
-                                return;
+                            String pesoLimpio = valor.replaceAll("[^\\d.,]", "").replace(",", ".");
+                            BigDecimal peso = new BigDecimal(pesoLimpio);
+                            if (peso.compareTo(BigDecimal.ZERO) < 0) {
+                                return fila.error("El peso no puede ser negativo");
                             }
-                            // Validar precisión (10,2) y truncar si es necesario
-                            if (!validarPrecisionBigDecimal(precio, 10, 2)) {
-                                precio = truncarBigDecimal(precio, 10, 2);
-                                resultado.agregarAdvertencia(numeroFila, "Precio truncado para cumplir restricciones de BD: " + precio);
+                            // Validar precisión (8,2) y truncar si es necesario
+                            if (!validarPrecisionBigDecimal(peso, 8, 2)) {
+                                peso = truncarBigDecimal(peso, 8, 2);
+                                fila.advertencia("Peso truncado para cumplir restricciones de BD: " + peso);
                             }
-                            producto.setPrecio(precio);
+                            producto.setPeso(peso);
                         } catch (NumberFormatException e) {
-                            resultado.agregarError(numeroFila, "Formato de precio inválido: " + valor);
-                            return;
+                            return fila.error("Formato de peso inválido: " + valor);
                         }
                     }
-                    case "categoria" -> {
-                        if (valor.isEmpty()) {
-                            resultado.agregarError(numeroFila, "La categoría es obligatoria");
-                            return;
-                        }
-
-                        // Verificar si la categoría existe o crearla si se permite
-                        List<String> categoriasExistentes = productoService.obtenerCategoriasDisponibles();
-                        if (!categoriasExistentes.contains(valor)) {
-                            if (permitirNuevasCategorias) {
-                                resultado.agregarCategoriaCreada(valor);
-                                resultado.agregarAdvertencia(numeroFila,
-                                        "Se creará nueva categoría: " + valor);
-                            } else {
-                                resultado.agregarError(numeroFila,
-                                        "Categoría no existe: " + valor + ". Categorías disponibles: " +
-                                                String.join(", ", categoriasExistentes));
-                                return;
-                            }
-                        }
-                        producto.setCategoria(valor);
-                    }
-                    case "marca" -> producto.setMarca(valor.isEmpty() ? null : valor);
-                    case "modelo" -> producto.setModelo(valor.isEmpty() ? null : valor);
-                    case "color" -> producto.setColor(valor.isEmpty() ? null : valor);
-                    case "peso" -> {
-                        if (!valor.isEmpty()) {
-                            try {
-                                String pesoLimpio = valor.replaceAll("[^\\d.,]", "").replace(",", ".");
-                                BigDecimal peso = new BigDecimal(pesoLimpio);
-                                if (peso.compareTo(BigDecimal.ZERO) < 0) {
-                                    resultado.agregarError(numeroFila, "El peso no puede ser negativo");
-                                    return;
-                                }
-                                // Validar precisión (8,2) y truncar si es necesario
-                                if (!validarPrecisionBigDecimal(peso, 8, 2)) {
-                                    peso = truncarBigDecimal(peso, 8, 2);
-                                    resultado.agregarAdvertencia(numeroFila, "Peso truncado para cumplir restricciones de BD: " + peso);
-                                }
-                                producto.setPeso(peso);
-                            } catch (NumberFormatException e) {
-                                resultado.agregarError(numeroFila, "Formato de peso inválido: " + valor);
-                                return;
-                            }
+                }
+                case "dimensiones" -> producto.setDimensiones(valor.isEmpty() ? null : valor);
+                case "material" -> producto.setMaterial(valor.isEmpty() ? null : valor);
+                case "garantia_meses" -> {
+                    if (!valor.isEmpty()) {
+                        try {
+                            producto.setGarantiaMeses(Integer.valueOf(valor));
+                        } catch (NumberFormatException e) {
+                            fila.advertencia("Formato de garantía inválido: " + valor);
                         }
                     }
-                    case "dimensiones" -> producto.setDimensiones(valor.isEmpty() ? null : valor);
-                    case "material" -> producto.setMaterial(valor.isEmpty() ? null : valor);
-                    case "garantia_meses" -> {
-                        if (!valor.isEmpty()) {
-                            try {
-                                producto.setGarantiaMeses(Integer.valueOf(valor));
-                            } catch (NumberFormatException e) {
-                                resultado.agregarAdvertencia(numeroFila, "Formato de garantía inválido: " + valor);
+                }
+                case "eficiencia_energetica" -> producto.setEficienciaEnergetica(valor.isEmpty() ? null : valor);
+                case "impacto_ambiental" -> producto.setImpactoAmbiental(valor.isEmpty() ? null : valor);
+                case "puntuacion_eco" -> {
+                    if (!valor.isEmpty()) {
+                        try {
+                            String puntuacionLimpia = valor.replace(",", ".");
+                            BigDecimal puntuacion = new BigDecimal(puntuacionLimpia);
+                            if (puntuacion.compareTo(BigDecimal.ZERO) < 0) {
+                                return fila.error("La puntuación eco no puede ser negativa");
                             }
-                        }
-                    }
-                    case "eficiencia_energetica" -> producto.setEficienciaEnergetica(valor.isEmpty() ? null : valor);
-                    case "impacto_ambiental" -> producto.setImpactoAmbiental(valor.isEmpty() ? null : valor);
-                    case "puntuacion_eco" -> {
-                        if (!valor.isEmpty()) {
-                            try {
-                                String puntuacionLimpia = valor.replace(",", ".");
-                                BigDecimal puntuacion = new BigDecimal(puntuacionLimpia);
-                                if (puntuacion.compareTo(BigDecimal.ZERO) < 0) {
-                                    resultado.agregarError(numeroFila, "La puntuación eco no puede ser negativa");
-                                    return;
-                                }
-                                // Validar precisión (3,2) y truncar si es necesario
-                                if (!validarPrecisionBigDecimal(puntuacion, 3, 2)) {
-                                    puntuacion = truncarBigDecimal(puntuacion, 3, 2);
-                                    resultado.agregarAdvertencia(numeroFila, "Puntuación eco truncada para cumplir restricciones de BD: " + puntuacion);
-                                }
-                                producto.setPuntuacionEco(puntuacion);
-                            } catch (NumberFormatException e) {
-                                resultado.agregarError(numeroFila, "Formato de puntuación eco inválido: " + valor);
-                                return;
+                            // Validar precisión (3,2) y truncar si es necesario
+                            if (!validarPrecisionBigDecimal(puntuacion, 3, 2)) {
+                                puntuacion = truncarBigDecimal(puntuacion, 3, 2);
+                                fila.advertencia("Puntuación eco truncada para cumplir restricciones de BD: " + puntuacion);
                             }
+                            producto.setPuntuacionEco(puntuacion);
+                        } catch (NumberFormatException e) {
+                            return fila.error("Formato de puntuación eco inválido: " + valor);
                         }
                     }
-                    case "imagen_url" -> producto.setImagenUrl(valor.isEmpty() ? null : valor);
-
-                    // Campos de inventario
-                    case "stock_inicial" -> {
-                        if (!valor.isEmpty()) {
-                            try {
-                                inventario.setStock(Integer.valueOf(valor));
-                            } catch (NumberFormatException e) {
-                                resultado.agregarAdvertencia(numeroFila,
-                                        "Formato de stock inicial inválido: " + valor);
-                                inventario.setStock(0);
-                            }
-                        } else {
+                }
+                case "imagen_url" -> producto.setImagenUrl(valor.isEmpty() ? null : valor);
+                
+                // Campos de inventario
+                case "stock_inicial" -> {
+                    if (!valor.isEmpty()) {
+                        try {
+                            inventario.setStock(Integer.valueOf(valor));
+                        } catch (NumberFormatException e) {
+                            fila.advertencia("Formato de stock inicial inválido: " + valor);
                             inventario.setStock(0);
                         }
+                    } else {
+                        inventario.setStock(0);
                     }
-                    case "stock_minimo" -> {
-                        if (!valor.isEmpty()) {
-                            try {
-                                inventario.setStockMinimo(Integer.valueOf(valor));
-                            } catch (NumberFormatException e) {
-                                resultado.agregarAdvertencia(numeroFila,
-                                        "Formato de stock mínimo inválido: " + valor);
-                                inventario.setStockMinimo(5);
-                            }
-                        } else {
+                }
+                case "stock_minimo" -> {
+                    if (!valor.isEmpty()) {
+                        try {
+                            inventario.setStockMinimo(Integer.valueOf(valor));
+                        } catch (NumberFormatException e) {
+                            fila.advertencia("Formato de stock mínimo inválido: " + valor);
                             inventario.setStockMinimo(5);
                         }
+                    } else {
+                        inventario.setStockMinimo(5);
                     }
-                    case "stock_maximo" -> {
-                        if (!valor.isEmpty()) {
-                            try {
-                                inventario.setStockMaximo(Integer.valueOf(valor));
-                            } catch (NumberFormatException e) {
-                                resultado.agregarAdvertencia(numeroFila,
-                                        "Formato de stock máximo inválido: " + valor);
-                                inventario.setStockMaximo(100);
-                            }
-                        } else {
+                }
+                case "stock_maximo" -> {
+                    if (!valor.isEmpty()) {
+                        try {
+                            inventario.setStockMaximo(Integer.valueOf(valor));
+                        } catch (NumberFormatException e) {
+                            fila.advertencia("Formato de stock máximo inválido: " + valor);
                             inventario.setStockMaximo(100);
                         }
+                    } else {
+                        inventario.setStockMaximo(100);
                     }
                 }
             }
-            
-            // Solo guardar si no hay errores en esta fila
-            if (resultado.getErrores().stream().noneMatch(error -> error.contains("Fila " + numeroFila))) {
-                guardarProductoConInventario(producto, inventario, numeroFila, resultado);
-            }
-            
-        } catch (Exception e) {
-            resultado.agregarError(numeroFila, "Error al procesar fila: " + e.getMessage());
         }
+        
+        return fila;
     }
     
     /**
@@ -515,7 +846,8 @@ public class ProductoBulkService {
     }
     
     /**
-     * Procesa y guarda una imagen subida
+     * Procesa y guarda una imagen subida en el almacén por contenido: la misma foto
+     * subida dos veces comparte archivo y URL
      */
     public String procesarImagen(MultipartFile imagen) throws IOException {
         if (imagen.isEmpty()) {
@@ -528,72 +860,13 @@ public class ProductoBulkService {
             throw new IllegalArgumentException("El archivo debe ser una imagen");
         }
         
-        // Generar nombre único
         String nombreOriginal = imagen.getOriginalFilename();
         String extension = nombreOriginal != null && nombreOriginal.contains(".") 
             ? nombreOriginal.substring(nombreOriginal.lastIndexOf("."))
             : ".jpg";
-        String nombreUnico = UUID.randomUUID().toString() + extension;
-        
-        // Crear directorio si no existe
-        Path directorioUpload = Paths.get(uploadDir);
-        if (!Files.exists(directorioUpload)) {
-            Files.createDirectories(directorioUpload);
-        }
-        
-        // Guardar archivo
-        Path rutaArchivo = directorioUpload.resolve(nombreUnico);
-        Files.copy(imagen.getInputStream(), rutaArchivo, StandardCopyOption.REPLACE_EXISTING);
         
         // Retornar URL relativa
-        return "/uploads/" + nombreUnico;
-    }
-    
-    /**
-     * Guarda un producto individual sin transacciones globales
-     */
-    private Producto guardarProductoIndividual(Producto producto) {
-        try {
-            return productoService.save(producto);
-        } catch (Exception e) {
-            throw new RuntimeException("Error al guardar producto: " + e.getMessage(), e);
-        }
-    }
-    
-    /**
-     * Guarda un inventario individual sin transacciones globales
-     */
-    private void guardarInventarioIndividual(Inventario inventario) {
-        try {
-            inventarioService.save(inventario);
-        } catch (Exception e) {
-            throw new RuntimeException("Error al guardar inventario: " + e.getMessage(), e);
-        }
-    }
-    
-    /**
-     * Guarda un producto con su inventario en una sola operación
-     */
-    private void guardarProductoConInventario(Producto producto, Inventario inventario, 
-                                            int numeroFila, ProductoBulkUploadResult resultado) {
-        try {
-            // Configurar valores por defecto
-            producto.setEstado(true);
-            producto.setFechaCreacion(LocalDateTime.now());
-            
-            // Guardar producto
-            Producto productoGuardado = guardarProductoIndividual(producto);
-            
-            // Configurar y guardar inventario
-            inventario.setProducto(productoGuardado);
-            inventario.setFechaActualizacion(LocalDateTime.now());
-            guardarInventarioIndividual(inventario);
-            
-            resultado.incrementarProductosProcesados();
-            
-        } catch (Exception e) {
-            resultado.agregarError(numeroFila, "Error al guardar producto: " + e.getMessage());
-        }
+        return almacenBlobService.guardar(imagen.getInputStream(), extension).url();
     }
     
     /**
@@ -0,0 +1,24 @@
+package com.ecovivashop.service;
+
+import java.io.Serializable;
+
+import com.ecovivashop.entity.Producto;
+
+/**
+ * Un producto se creó, cambió o eliminó. Lleva una copia de los campos que
+ * necesitan los suscriptores, tomada en el momento del cambio. Es serializable
+ * para poder reenviarse a los demás nodos.
+ */
+public record ProductoModificadoEvent(Integer idProducto, boolean eliminado, String nombre, String descripcion,
+                                      String categoria, String marca, boolean activo) implements Serializable {
+
+    public static ProductoModificadoEvent guardado(Producto producto) {
+        return new ProductoModificadoEvent(producto.getIdProducto(), false, producto.getNombre(),
+            producto.getDescripcion(), producto.getCategoria(), producto.getMarca(),
+            Boolean.TRUE.equals(producto.getEstado()));
+    }
+
+    public static ProductoModificadoEvent eliminado(Integer idProducto) {
+        return new ProductoModificadoEvent(idProducto, true, null, null, null, null, false);
+    }
+}
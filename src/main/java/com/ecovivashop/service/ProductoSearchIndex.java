@@ -0,0 +1,353 @@
+package com.ecovivashop.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.ecovivashop.repository.ProductoRepository;
+
+/**
+ * Índice invertido en memoria para la búsqueda de productos.
+ *
+ * Sustituye a los LIKE '%x%' sobre nombre, descripción, categoría y marca: una
+ * consulta se resuelve en memoria, sin tocar la base de datos. El análisis pasa
+ * a minúsculas, quita tildes, descarta palabras vacías del español y reduce los
+ * plurales, así que "LÁMPARAS" encuentra "lampara". Cada término de la consulta
+ * admite prefijos ("refri" encuentra "refrigerador") y errores de una letra (dos
+ * en palabras largas). Los resultados se ordenan por relevancia: pesa más el
+ * nombre que la categoría o la marca, y estos más que la descripción.
+ *
+ * El índice se construye al arrancar la aplicación y se mantiene al día con
+ * los {@link ProductoModificadoEvent} que se publican al guardar o eliminar un
+ * producto, una vez confirmada la transacción.
+ */
+@Component
+public class ProductoSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductoSearchIndex.class);
+
+    private static final int TAMANO_LOTE_CARGA = 1000;
+    private static final int MAX_EXPANSIONES_PREFIJO = 50;
+
+    private static final float PESO_NOMBRE = 3.0f;
+    private static final float PESO_CATEGORIA = 2.0f;
+    private static final float PESO_MARCA = 2.0f;
+    private static final float PESO_DESCRIPCION = 1.0f;
+    private static final float FACTOR_PREFIJO = 0.7f;
+    private static final float FACTOR_APROXIMADO = 0.5f;
+
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+        "a", "al", "con", "de", "del", "el", "en", "es", "la", "las", "lo", "los", "o",
+        "para", "por", "se", "sin", "su", "sus", "un", "una", "unas", "unos", "y");
+
+    /** Datos indexables de un producto */
+    public record DocumentoProducto(Integer idProducto, String nombre, String descripcion,
+                                    String categoria, String marca, boolean activo) {
+    }
+
+    private final ProductoRepository productoRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // término -> (id producto -> peso); ordenado para resolver prefijos por rango
+    private final TreeMap<String, Map<Integer, Float>> postings = new TreeMap<>();
+    // id producto -> términos indexados, para poder reindexar o eliminar
+    private final Map<Integer, Set<String>> terminosPorProducto = new HashMap<>();
+    private final Set<Integer> activos = new HashSet<>();
+    private volatile boolean listo;
+
+    public ProductoSearchIndex(ProductoRepository productoRepository) {
+        this.productoRepository = productoRepository;
+    }
+
+    /**
+     * Indica si el índice ya se cargó. Mientras tanto los servicios usan la
+     * búsqueda en base de datos.
+     */
+    public boolean isListo() {
+        return this.listo;
+    }
+
+    /**
+     * Cargar el índice completo leyendo los productos por lotes (keyset).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        Map<Integer, DocumentoProducto> documentos = new HashMap<>();
+        int ultimoId = 0;
+        List<Object[]> lote;
+        do {
+            lote = this.productoRepository.findDocumentosBusquedaDespuesDe(ultimoId, Pageable.ofSize(TAMANO_LOTE_CARGA));
+            for (Object[] fila : lote) {
+                DocumentoProducto documento = new DocumentoProducto((Integer) fila[0], (String) fila[1], (String) fila[2],
+                    (String) fila[3], (String) fila[4], Boolean.TRUE.equals(fila[5]));
+                documentos.put(documento.idProducto(), documento);
+                ultimoId = documento.idProducto();
+            }
+        } while (lote.size() == TAMANO_LOTE_CARGA);
+
+        this.lock.writeLock().lock();
+        try {
+            this.postings.clear();
+            this.terminosPorProducto.clear();
+            this.activos.clear();
+            documentos.values().forEach(this::indexarSinBloqueo);
+            this.listo = true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        logger.info("Índice de búsqueda cargado: {} productos, {} términos en {} ms",
+                    documentos.size(), this.postings.size(), System.currentTimeMillis() - inicio);
+    }
+
+    /**
+     * Añadir o reemplazar un producto en el índice.
+     */
+    public void indexar(DocumentoProducto documento) {
+        this.lock.writeLock().lock();
+        try {
+            this.indexarSinBloqueo(documento);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarProducto(ProductoModificadoEvent evento) {
+        if (evento.eliminado()) {
+            this.eliminar(evento.idProducto());
+        } else {
+            this.indexar(new DocumentoProducto(evento.idProducto(), evento.nombre(), evento.descripcion(),
+                                               evento.categoria(), evento.marca(), evento.activo()));
+        }
+    }
+
+    public void eliminar(Integer idProducto) {
+        this.lock.writeLock().lock();
+        try {
+            this.eliminarSinBloqueo(idProducto);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Todas las coincidencias ordenadas por relevancia, sin límite. Es lo que
+     * necesita una búsqueda paginada para que el total sea exacto.
+     */
+    public List<Integer> buscar(String consulta, boolean soloActivos) {
+        return this.buscar(consulta, soloActivos, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Buscar productos. Todos los términos de la consulta deben aparecer (de
+     * forma exacta, como prefijo o con un error tipográfico).
+     *
+     * @param consulta texto escrito por el usuario
+     * @param soloActivos excluir productos con estado = false
+     * @param limite número máximo de resultados
+     * @return ids de producto ordenados por relevancia
+     */
+    public List<Integer> buscar(String consulta, boolean soloActivos, int limite) {
+        List<String> terminos = analizar(consulta);
+        if (terminos.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, Float> puntuaciones = null;
+        this.lock.readLock().lock();
+        try {
+            int totalDocumentos = Math.max(this.terminosPorProducto.size(), 1);
+            for (String termino : terminos) {
+                Map<Integer, Float> coincidencias = this.puntuarTermino(termino, totalDocumentos);
+                if (puntuaciones == null) {
+                    puntuaciones = coincidencias;
+                } else {
+                    Map<Integer, Float> interseccion = new HashMap<>();
+                    for (Map.Entry<Integer, Float> entrada : puntuaciones.entrySet()) {
+                        Float puntuacion = coincidencias.get(entrada.getKey());
+                        if (puntuacion != null) {
+                            interseccion.put(entrada.getKey(), entrada.getValue() + puntuacion);
+                        }
+                    }
+                    puntuaciones = interseccion;
+                }
+                if (puntuaciones.isEmpty()) {
+                    return List.of();
+                }
+            }
+            if (soloActivos) {
+                puntuaciones.keySet().retainAll(this.activos);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+
+        final Map<Integer, Float> resultado = puntuaciones;
+        return resultado.keySet().stream()
+            .sorted(Comparator.comparing((Integer id) -> resultado.get(id)).reversed().thenComparing(id -> id))
+            .limit(limite)
+            .toList();
+    }
+
+    // Mejor puntuación de cada producto para un término: exacto, prefijo o aproximado
+    private Map<Integer, Float> puntuarTermino(String termino, int totalDocumentos) {
+        Map<Integer, Float> puntuaciones = new HashMap<>();
+
+        Map<Integer, Float> exactos = this.postings.get(termino);
+        if (exactos != null) {
+            acumular(puntuaciones, exactos, idf(exactos.size(), totalDocumentos));
+        }
+
+        int expansiones = 0;
+        for (Map.Entry<String, Map<Integer, Float>> entrada : this.postings.subMap(termino, false, termino + Character.MAX_VALUE, false).entrySet()) {
+            if (++expansiones > MAX_EXPANSIONES_PREFIJO) {
+                break;
+            }
+            acumular(puntuaciones, entrada.getValue(), FACTOR_PREFIJO * idf(entrada.getValue().size(), totalDocumentos));
+        }
+
+        // Tolerancia a errores solo si no hubo coincidencias directas
+        int distanciaMaxima = termino.length() >= 8 ? 2 : (termino.length() >= 4 ? 1 : 0);
+        if (puntuaciones.isEmpty() && distanciaMaxima > 0) {
+            // Se asume correcta la primera letra para acotar los candidatos
+            String primeraLetra = termino.substring(0, 1);
+            NavigableMap<String, Map<Integer, Float>> candidatos =
+                this.postings.subMap(primeraLetra, true, primeraLetra + Character.MAX_VALUE, false);
+            for (Map.Entry<String, Map<Integer, Float>> entrada : candidatos.entrySet()) {
+                String candidato = entrada.getKey();
+                if (Math.abs(candidato.length() - termino.length()) <= distanciaMaxima
+                        && distancia(termino, candidato, distanciaMaxima) <= distanciaMaxima) {
+                    acumular(puntuaciones, entrada.getValue(), FACTOR_APROXIMADO * idf(entrada.getValue().size(), totalDocumentos));
+                }
+            }
+        }
+        return puntuaciones;
+    }
+
+    private static void acumular(Map<Integer, Float> puntuaciones, Map<Integer, Float> postingsTermino, float factor) {
+        for (Map.Entry<Integer, Float> posting : postingsTermino.entrySet()) {
+            puntuaciones.merge(posting.getKey(), posting.getValue() * factor, Math::max);
+        }
+    }
+
+    private static float idf(int frecuenciaDocumental, int totalDocumentos) {
+        return (float) Math.log(1.0 + (double) totalDocumentos / frecuenciaDocumental);
+    }
+
+    private void indexarSinBloqueo(DocumentoProducto documento) {
+        this.eliminarSinBloqueo(documento.idProducto());
+
+        Map<String, Float> pesos = new HashMap<>();
+        sumarPesos(pesos, documento.nombre(), PESO_NOMBRE);
+        sumarPesos(pesos, documento.categoria(), PESO_CATEGORIA);
+        sumarPesos(pesos, documento.marca(), PESO_MARCA);
+        sumarPesos(pesos, documento.descripcion(), PESO_DESCRIPCION);
+
+        for (Map.Entry<String, Float> peso : pesos.entrySet()) {
+            this.postings.computeIfAbsent(peso.getKey(), t -> new HashMap<>()).put(documento.idProducto(), peso.getValue());
+        }
+        this.terminosPorProducto.put(documento.idProducto(), pesos.keySet());
+        if (documento.activo()) {
+            this.activos.add(documento.idProducto());
+        }
+    }
+
+    private void eliminarSinBloqueo(Integer idProducto) {
+        Set<String> terminos = this.terminosPorProducto.remove(idProducto);
+        if (terminos != null) {
+            for (String termino : terminos) {
+                Map<Integer, Float> postingsTermino = this.postings.get(termino);
+                if (postingsTermino != null) {
+                    postingsTermino.remove(idProducto);
+                    if (postingsTermino.isEmpty()) {
+                        this.postings.remove(termino);
+                    }
+                }
+            }
+        }
+        this.activos.remove(idProducto);
+    }
+
+    // Un término repetido en un campo no suma más que el peso del campo
+    private static void sumarPesos(Map<String, Float> pesos, String texto, float pesoCampo) {
+        for (String termino : new HashSet<>(analizar(texto))) {
+            pesos.merge(termino, pesoCampo, Float::sum);
+        }
+    }
+
+    /**
+     * Normalizar un texto en términos: minúsculas, sin tildes, sin palabras
+     * vacías y sin plurales regulares.
+     */
+    static List<String> analizar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return List.of();
+        }
+        String normalizado = DIACRITICOS.matcher(Normalizer.normalize(texto.toLowerCase(), Normalizer.Form.NFD)).replaceAll("");
+        List<String> terminos = new ArrayList<>();
+        for (String token : SEPARADORES.split(normalizado)) {
+            if (token.isEmpty() || PALABRAS_VACIAS.contains(token)) {
+                continue;
+            }
+            terminos.add(singular(token));
+        }
+        return terminos;
+    }
+
+    // Reducción mínima de plurales: "lamparas" -> "lampara", "paneles" -> "panel"
+    private static String singular(String token) {
+        int longitud = token.length();
+        if (longitud > 4 && token.endsWith("es") && "aeiou".indexOf(token.charAt(longitud - 3)) < 0) {
+            return token.substring(0, longitud - 2);
+        }
+        if (longitud > 3 && token.endsWith("s") && !token.endsWith("ss")) {
+            return token.substring(0, longitud - 1);
+        }
+        return token;
+    }
+
+    // Distancia de Levenshtein con corte temprano al superar el máximo
+    static int distancia(String a, String b, int maximo) {
+        int[] anterior = new int[b.length() + 1];
+        int[] actual = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            anterior[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            actual[0] = i;
+            int minimoFila = actual[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int coste = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                actual[j] = Math.min(Math.min(actual[j - 1] + 1, anterior[j] + 1), anterior[j - 1] + coste);
+                minimoFila = Math.min(minimoFila, actual[j]);
+            }
+            if (minimoFila > maximo) {
+                return maximo + 1;
+            }
+            int[] temporal = anterior;
+            anterior = actual;
+            actual = temporal;
+        }
+        return anterior[b.length()];
+    }
+}
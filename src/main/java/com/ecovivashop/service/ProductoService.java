@@ -2,23 +2,48 @@ package com.ecovivashop.service;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import com.ecovivashop.dto.ProductoCatalogoDTO;
+import com.ecovivashop.dto.ProductoFacetasDTO;
+import com.ecovivashop.dto.ProductoFiltro;
 import com.ecovivashop.entity.Inventario;
 import com.ecovivashop.entity.Producto;
 import com.ecovivashop.repository.InventarioRepository;
 import com.ecovivashop.repository.ProductoRepository;
+import com.ecovivashop.repository.ProductoSpecifications;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 
 @Service
 @Transactional
@@ -27,23 +52,87 @@ public class ProductoService {
     
     private final ProductoRepository productoRepository;
     private final InventarioRepository inventarioRepository;
-    
-    // Cache usando Google Guava para productos activos
-    private final Cache<String, List<Producto>> productosActivosCache = CacheBuilder.newBuilder()
-            .maximumSize(100)
-            .expireAfterWrite(10, TimeUnit.MINUTES)
+    private final ProductoSearchIndex productoSearchIndex;
+    
+    // Cache de la lista de productos activos y de productos por ID (con inventario).
+    // Se invalidan con los eventos de cambio de producto o de stock; además, pasado
+    // un minuto la siguiente lectura recarga la entrada en segundo plano y mientras
+    // tanto sirve el valor anterior, así una clave muy consultada nunca provoca una
+    // ráfaga de consultas a la base de datos
+    private final LoadingCache<String, List<Producto>> productosActivosCache;
+    private final LoadingCache<Integer, Optional<Producto>> productoCache;
+    private static final String CLAVE_ACTIVOS = "activos";
+
+    // Tamaño máximo de página del catálogo, para que ninguna petición cargue el catálogo entero
+    static final int TAMANO_MAXIMO_PAGINA_CATALOGO = 48;
+
+    // Las páginas numeradas sin cursor localizan su inicio con un OFFSET; solo se admiten hasta
+    // esta profundidad y más allá se navega con el cursor del enlace "siguiente"
+    public static final int PAGINA_MAXIMA_SIN_CURSOR = 50;
+
+    // Cache por página del catálogo (clave: "ultimoId:tamaño"); expira pronto para reflejar cambios de stock
+    private final Cache<String, List<ProductoCatalogoDTO>> paginasCatalogoCache = CacheBuilder.newBuilder()
+            .maximumSize(500)
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+
+    // Id donde empieza cada página numerada y total de productos del catálogo
+    private final Cache<String, Integer> inicioPaginaCatalogoCache = CacheBuilder.newBuilder()
+            .maximumSize(500)
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .build();
+    private final Cache<String, Long> totalCatalogoCache = CacheBuilder.newBuilder()
+            .maximumSize(1)
+            .expireAfterWrite(1, TimeUnit.MINUTES)
             .build();
 
-    // Cache para almacenar productos por ID
-    private final Cache<Integer, Producto> productoCache = CacheBuilder.newBuilder()
-            .expireAfterWrite(10, TimeUnit.MINUTES)
-            .maximumSize(100)
+    // Conteos por faceta para cada combinación de filtros (sin categoría ni marca)
+    private final Cache<ProductoFiltro, ProductoFacetasDTO> facetasCache = CacheBuilder.newBuilder()
+            .maximumSize(200)
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .recordStats()
             .build();
 
+    private final Counter invalidacionesPorProducto;
+    private final Counter invalidacionesPorStock;
+
     // Constructor manual
-    public ProductoService(ProductoRepository productoRepository, InventarioRepository inventarioRepository) {
+    public ProductoService(ProductoRepository productoRepository, InventarioRepository inventarioRepository,
+                           ProductoSearchIndex productoSearchIndex,
+                           @Qualifier("cacheExecutor") Executor cacheExecutor, MeterRegistry meterRegistry) {
         this.productoRepository = productoRepository;
         this.inventarioRepository = inventarioRepository;
+        this.productoSearchIndex = productoSearchIndex;
+
+        this.productosActivosCache = CacheBuilder.newBuilder()
+                .maximumSize(1)
+                .refreshAfterWrite(1, TimeUnit.MINUTES)
+                .expireAfterWrite(10, TimeUnit.MINUTES)
+                .recordStats()
+                .build(CacheLoader.asyncReloading(
+                    CacheLoader.from(clave -> productoRepository.findByEstadoTrue()), cacheExecutor));
+        this.productoCache = CacheBuilder.newBuilder()
+                .maximumSize(1000)
+                .refreshAfterWrite(1, TimeUnit.MINUTES)
+                .expireAfterWrite(10, TimeUnit.MINUTES)
+                .recordStats()
+                .build(CacheLoader.asyncReloading(
+                    CacheLoader.from(productoRepository::findByIdWithInventario), cacheExecutor));
+
+        // Aciertos, fallos, cargas y expulsiones de cada cache (cache.gets, cache.evictions...)
+        GuavaCacheMetrics.monitor(meterRegistry, this.productosActivosCache, "productosActivos");
+        GuavaCacheMetrics.monitor(meterRegistry, this.productoCache, "producto");
+        GuavaCacheMetrics.monitor(meterRegistry, this.paginasCatalogoCache, "catalogoPaginas");
+        GuavaCacheMetrics.monitor(meterRegistry, this.facetasCache, "catalogoFacetas");
+        this.invalidacionesPorProducto = Counter.builder("productos.cache.invalidaciones")
+                .description("Invalidaciones de las caches de productos por evento")
+                .tag("evento", "producto")
+                .register(meterRegistry);
+        this.invalidacionesPorStock = Counter.builder("productos.cache.invalidaciones")
+                .description("Invalidaciones de las caches de productos por evento")
+                .tag("evento", "inventario")
+                .register(meterRegistry);
     }
 
     // Métodos CRUD básicos
@@ -52,21 +141,11 @@ public class ProductoService {
     }
     
     public Optional<Producto> findById(Integer id) {
-        // Intentar obtener el producto del caché
-        Producto productoCacheado = productoCache.getIfPresent(id);
-        if (productoCacheado != null) {
-            return Optional.of(productoCacheado);
-        }
-        
-        // Si no está en caché, buscar en la base de datos
-        Optional<Producto> productoBD = this.productoRepository.findByIdWithInventario(id);
-        
-        // Si se encuentra en la base de datos, almacenar en caché antes de devolver
-        productoBD.ifPresent(producto -> productoCache.put(id, producto));
-        
-        return productoBD;
+        // Desde el caché; si no está, una sola consulta aunque lleguen varias peticiones a la vez
+        return this.productoCache.getUnchecked(id);
     }
     
+    // Las caches se invalidan con ProductoModificadoEvent al confirmar la transacción
     public Producto save(Producto producto) {
         return this.productoRepository.save(producto);
     }
@@ -75,6 +154,40 @@ public class ProductoService {
         this.productoRepository.deleteById(id);
     }
     
+    /**
+     * Un producto cambió: se descarta su entrada, la lista de activos y el
+     * catálogo, que pueden mostrar su nombre, precio o estado.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void alModificarProducto(ProductoModificadoEvent evento) {
+        this.productoCache.invalidate(evento.idProducto());
+        this.productosActivosCache.invalidateAll();
+        this.invalidarCacheCatalogo();
+        this.invalidacionesPorProducto.increment();
+    }
+    
+    /**
+     * Cambió el stock de algunos productos: se descartan solo sus entradas y las
+     * páginas del catálogo que los muestran. Las facetas incluyen el conteo con
+     * stock, así que también se recalculan. La lista de activos, que también
+     * lleva el inventario, se recarga en segundo plano en vez de descartarse:
+     * cada venta cambia el stock y no debe dejar la lista vacía para todos.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void alModificarInventario(InventarioModificadoEvent evento) {
+        Set<Integer> ids = evento.idsProducto();
+        this.productoCache.invalidateAll(ids);
+        this.paginasCatalogoCache.asMap().values().removeIf(
+            tarjetas -> tarjetas.stream().anyMatch(tarjeta -> ids.contains(tarjeta.getIdProducto())));
+        this.facetasCache.invalidateAll();
+        if (this.productosActivosCache.asMap().containsKey(CLAVE_ACTIVOS)) {
+            this.productosActivosCache.refresh(CLAVE_ACTIVOS);
+        }
+        this.invalidacionesPorStock.increment();
+    }
+    
     // Métodos de negocio
     /**
      * Obtiene la lista de productos activos utilizando caché de Google Guava.
@@ -83,27 +196,16 @@ public class ProductoService {
      *
      * El método implementa un patrón de caché con las siguientes características:
      * - Cache hit: Retorna productos desde memoria sin consultar BD
-     * - Cache miss: Consulta BD y almacena resultado en caché por 10 minutos
-     * - Máximo 100 entradas en caché para evitar consumo excesivo de memoria
+     * - Cache miss: Consulta BD una sola vez aunque lleguen varias peticiones a la vez
+     * - Recarga en segundo plano pasado un minuto, expiración a los 10 minutos
+     * - Invalidación inmediata cuando se modifica cualquier producto
      *
      * @return Lista de productos activos (estado = true)
      */
     public List<Producto> obtenerProductosActivos() {
-        // Intentar obtener del caché usando Google Guava
-        List<Producto> productosCacheados = productosActivosCache.getIfPresent("activos");
-        if (productosCacheados != null) {
-            logger.info("Cache hit: Productos activos obtenidos del caché (Google Guava) - {} productos disponibles", productosCacheados.size());
-            return productosCacheados;
-        }
-
-        // Si no está en caché, consultar la base de datos
-        logger.info("Cache miss: Consultando productos activos desde la base de datos");
-        List<Producto> productosBD = this.productoRepository.findByEstadoTrue();
-
-        // Almacenar en caché antes de devolver
-        productosActivosCache.put("activos", productosBD);
-        logger.info("Productos activos almacenados en caché (Google Guava) - {} productos, expiración en 10 minutos", productosBD.size());
-        return productosBD;
+        List<Producto> productos = this.productosActivosCache.getUnchecked(CLAVE_ACTIVOS);
+        logger.debug("Productos activos desde caché (Google Guava) - {} productos", productos.size());
+        return productos;
     }
     
     public List<Producto> obtenerPorCategoria(String categoria) {
@@ -126,12 +228,73 @@ public class ProductoService {
         return this.productoRepository.findByPrecioBetweenAndEstadoTrue(precioMin, precioMax, pageable);
     }
     
+    /**
+     * Buscar productos (activos e inactivos) ordenados por relevancia.
+     * Usa el índice en memoria y, mientras no esté cargado, la consulta LIKE.
+     */
     public List<Producto> buscarProductos(String busqueda) {
-        return this.productoRepository.buscarProductos(busqueda);
+        if (!this.usarIndiceBusqueda(busqueda)) {
+            return this.productoRepository.buscarProductos(busqueda);
+        }
+        List<Integer> ids = this.productoSearchIndex.buscar(busqueda, false);
+        return this.cargarEnOrden(ids);
     }
     
     public Page<Producto> buscarProductosPaginado(String busqueda, Pageable pageable) {
-        return this.productoRepository.buscarProductosPaginado(busqueda, pageable);
+        if (!this.usarIndiceBusqueda(busqueda)) {
+            return this.productoRepository.buscarProductosPaginado(busqueda, pageable);
+        }
+        List<Integer> ids = this.productoSearchIndex.buscar(busqueda, true);
+        return this.paginarResultadosBusqueda(busqueda, ids, pageable);
+    }
+    
+    private boolean usarIndiceBusqueda(String busqueda) {
+        return busqueda != null && !busqueda.isBlank() && this.productoSearchIndex.isListo();
+    }
+    
+    /**
+     * Página de resultados del índice. Sin orden explícito se respeta la
+     * relevancia y solo se cargan los productos de la página; con orden
+     * (nombre, precio...) lo aplica la base de datos sobre los ids encontrados,
+     * o sobre el texto si son demasiados para pasarlos en la consulta.
+     */
+    private Page<Producto> paginarResultadosBusqueda(String busqueda, List<Integer> ids, Pageable pageable) {
+        if (ids.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(this.cargarEnOrden(ids));
+        }
+        if (pageable.getSort().isSorted()) {
+            return ids.size() <= ProductoSpecifications.MAX_IDS_EN_CONSULTA
+                ? this.productoRepository.findByIdProductoIn(ids, pageable)
+                : this.productoRepository.buscarProductosPaginado(busqueda, pageable);
+        }
+        int desde = (int) Math.min(pageable.getOffset(), ids.size());
+        int hasta = Math.min(desde + pageable.getPageSize(), ids.size());
+        return new PageImpl<>(this.cargarEnOrden(ids.subList(desde, hasta)), pageable, ids.size());
+    }
+    
+    // Cargar productos por id (con inventario) manteniendo el orden de relevancia,
+    // en lotes que quepan en un IN
+    private List<Producto> cargarEnOrden(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, Producto> porId = new HashMap<>();
+        for (List<Integer> lote : Lists.partition(ids, ProductoSpecifications.MAX_IDS_EN_CONSULTA)) {
+            for (Producto producto : this.productoRepository.findByIdsWithInventario(lote)) {
+                porId.put(producto.getIdProducto(), producto);
+            }
+        }
+        List<Producto> resultado = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Producto producto = porId.get(id);
+            if (producto != null) {
+                resultado.add(producto);
+            }
+        }
+        return resultado;
     }
     
     public List<Producto> obtenerProductosEcoAmigables() {
@@ -314,6 +477,65 @@ public class ProductoService {
         return this.productoRepository.findByEstadoTrueWithInventario(pageable);
     }
     
+    /**
+     * Página del catálogo de clientes. Se pagina por keyset sobre el id del
+     * producto y se lee una proyección con solo las columnas de la tarjeta, así
+     * que el coste de cada página no depende del tamaño del catálogo.
+     *
+     * Sin cursor, el inicio de la página se localiza con un OFFSET acotado a
+     * {@value #PAGINA_MAXIMA_SIN_CURSOR} páginas; las más profundas solo se
+     * alcanzan con el cursor y sin él se devuelven vacías.
+     *
+     * @param pagina número de página, usado para mostrar y para localizar su inicio si no hay cursor
+     * @param tamano productos por página (se limita a {@value #TAMANO_MAXIMO_PAGINA_CATALOGO})
+     * @param ultimoId id del último producto de la página anterior, o null
+     */
+    public Page<ProductoCatalogoDTO> obtenerPaginaCatalogo(int pagina, int tamano, Integer ultimoId) {
+        int paginaValida = Math.max(pagina, 0);
+        int tamanoValido = Math.min(Math.max(tamano, 1), TAMANO_MAXIMO_PAGINA_CATALOGO);
+        int desde = ultimoId != null ? ultimoId : this.resolverInicioPagina(paginaValida, tamanoValido);
+        
+        List<ProductoCatalogoDTO> contenido = cargar(this.paginasCatalogoCache, desde + ":" + tamanoValido,
+            () -> this.productoRepository.findCatalogoDespuesDe(desde, Pageable.ofSize(tamanoValido)));
+        Long total = cargar(this.totalCatalogoCache, "total", this.productoRepository::countByEstadoTrue);
+        return new PageImpl<>(contenido, PageRequest.of(paginaValida, tamanoValido), total);
+    }
+    
+    // Id del último producto de la página anterior a la indicada (0 para la primera)
+    private int resolverInicioPagina(int pagina, int tamano) {
+        if (pagina == 0) {
+            return 0;
+        }
+        if (pagina > PAGINA_MAXIMA_SIN_CURSOR) {
+            // Salto directo demasiado profundo: no se lanza el OFFSET y la página queda vacía
+            return Integer.MAX_VALUE;
+        }
+        return cargar(this.inicioPaginaCatalogoCache, pagina + ":" + tamano, () -> {
+            List<Integer> ids = this.productoRepository.findIdsCatalogo(PageRequest.of(pagina * tamano - 1, 1));
+            // Más allá del final del catálogo: la página queda vacía
+            return ids.isEmpty() ? Integer.MAX_VALUE : ids.get(0);
+        });
+    }
+    
+    // Leer del caché o cargar; peticiones simultáneas de la misma clave esperan a una única carga
+    private static <K, V> V cargar(Cache<K, V> cache, K clave, Callable<V> cargador) {
+        try {
+            return cache.get(clave, cargador);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+    
+    public void invalidarCacheCatalogo() {
+        this.paginasCatalogoCache.invalidateAll();
+        this.inicioPaginaCatalogoCache.invalidateAll();
+        this.totalCatalogoCache.invalidateAll();
+        this.facetasCache.invalidateAll();
+    }
+    
     public List<String> obtenerCategoriasDisponibles() {
         return this.productoRepository.findCategorias();
     }
@@ -371,63 +593,68 @@ public class ProductoService {
     public Page<Producto> buscarProductosConFiltros(String busqueda, String categoria, 
                                                    String minPrecio, String maxPrecio, 
                                                    Pageable pageable) {
-        
-        BigDecimal precioMin = null;
-        BigDecimal precioMax = null;
-        
-        try {
-            if (minPrecio != null && !minPrecio.trim().isEmpty()) {
-                precioMin = new BigDecimal(minPrecio);
-            }
-            if (maxPrecio != null && !maxPrecio.trim().isEmpty()) {
-                precioMax = new BigDecimal(maxPrecio);
-            }
-        } catch (NumberFormatException e) {
-            // Ignorar errores de formato y usar valores null
+        return this.buscarProductos(
+            ProductoFiltro.desdeParametros(busqueda, categoria, null, minPrecio, maxPrecio, null, false), pageable);
+    }
+    
+    /**
+     * Productos activos que cumplen cualquier combinación de filtros, con el
+     * inventario cargado en la misma consulta.
+     */
+    public Page<Producto> buscarProductos(ProductoFiltro filtro, Pageable pageable) {
+        return this.productoRepository.findAll(this.especificacion(filtro), pageable);
+    }
+    
+    /**
+     * Página del catálogo filtrado con las mismas tarjetas que el catálogo sin filtros
+     */
+    public Page<ProductoCatalogoDTO> buscarCatalogo(ProductoFiltro filtro, Pageable pageable) {
+        if (pageable.getPageSize() > TAMANO_MAXIMO_PAGINA_CATALOGO) {
+            pageable = PageRequest.of(pageable.getPageNumber(), TAMANO_MAXIMO_PAGINA_CATALOGO, pageable.getSort());
         }
-        
-        // Si no hay filtros específicos, devolver todos los productos activos CON INVENTARIO OPTIMIZADO
-        if ((busqueda == null || busqueda.trim().isEmpty()) && 
-            (categoria == null || categoria.trim().isEmpty()) &&
-            precioMin == null && precioMax == null) {
-            return productoRepository.findByEstadoTrueWithInventario(pageable);
+        return this.buscarProductos(filtro, pageable).map(producto -> new ProductoCatalogoDTO(
+            producto.getIdProducto(), producto.getNombre(), producto.getDescripcion(), producto.getPrecio(),
+            producto.getCategoria(), producto.getImagenUrl(), producto.getPuntuacionEco(),
+            producto.getStockDisponible()));
+    }
+    
+    /**
+     * Conteos por categoría, marca y stock para la barra lateral. Se ignoran la
+     * categoría y la marca elegidas para seguir mostrando las alternativas.
+     */
+    public ProductoFacetasDTO obtenerFacetas(ProductoFiltro filtro) {
+        ProductoFiltro clave = filtro.sinFacetas();
+        return cargar(this.facetasCache, clave,
+            () -> ProductoFacetasDTO.desdeFilas(this.productoRepository.contarFacetas(this.especificacion(clave))));
+    }
+    
+    private Specification<Producto> especificacion(ProductoFiltro filtro) {
+        Specification<Producto> especificacion = ProductoSpecifications.activosConInventario();
+        if (filtro.getBusqueda() != null) {
+            especificacion = especificacion.and(this.usarIndiceBusqueda(filtro.getBusqueda())
+                ? ProductoSpecifications.coincidencias(this.productoSearchIndex.buscar(filtro.getBusqueda(), true),
+                                                       filtro.getBusqueda())
+                : ProductoSpecifications.textoContiene(filtro.getBusqueda()));
         }
-        
-        // Aplicar filtros específicos
-        if (busqueda != null && !busqueda.trim().isEmpty()) {
-            if (categoria != null && !categoria.trim().isEmpty()) {
-                // Busqueda + categoria
-                if (precioMin != null && precioMax != null) {
-                    return productoRepository.findByNombreContainingIgnoreCaseAndCategoriaAndPrecioBetweenAndEstadoTrue(
-                        busqueda, categoria, precioMin, precioMax, pageable);
-                } else {
-                    return productoRepository.findByNombreContainingIgnoreCaseAndCategoriaAndEstadoTrue(
-                        busqueda, categoria, pageable);
-                }
-            } else {
-                // Solo busqueda
-                if (precioMin != null && precioMax != null) {
-                    return productoRepository.findByNombreContainingIgnoreCaseAndPrecioBetweenAndEstadoTrue(
-                        busqueda, precioMin, precioMax, pageable);
-                } else {
-                    return productoRepository.buscarProductosPaginadoWithInventario(busqueda, pageable);
-                }
-            }
-        } else if (categoria != null && !categoria.trim().isEmpty()) {
-            // Solo categoria
-            if (precioMin != null && precioMax != null) {
-                return productoRepository.findByCategoriaAndPrecioBetweenAndEstadoTrue(
-                    categoria, precioMin, precioMax, pageable);
-            } else {
-                return productoRepository.findByCategoriaAndEstadoTrueWithInventario(categoria, pageable);
-            }
-        } else if (precioMin != null && precioMax != null) {
-            // Solo rango de precios - OPTIMIZADO
-            return productoRepository.findByPrecioBetweenAndEstadoTrueWithInventario(precioMin, precioMax, pageable);
+        if (filtro.getCategoria() != null) {
+            especificacion = especificacion.and(ProductoSpecifications.categoria(filtro.getCategoria()));
         }
-        
-        // Fallback - OPTIMIZADO
-        return productoRepository.findByEstadoTrueWithInventario(pageable);
+        if (filtro.getMarca() != null) {
+            especificacion = especificacion.and(ProductoSpecifications.marca(filtro.getMarca()));
+        }
+        if (filtro.getPrecioMin() != null) {
+            especificacion = especificacion.and(ProductoSpecifications.precioDesde(filtro.getPrecioMin()));
+        }
+        if (filtro.getPrecioMax() != null) {
+            especificacion = especificacion.and(ProductoSpecifications.precioHasta(filtro.getPrecioMax()));
+        }
+        if (filtro.getPuntuacionEcoMin() != null) {
+            especificacion = especificacion.and(ProductoSpecifications.puntuacionEcoDesde(filtro.getPuntuacionEcoMin()));
+        }
+        if (filtro.isSoloConStock()) {
+            especificacion = especificacion.and(ProductoSpecifications.conStock());
+        }
+        return especificacion;
     }
     
     /**
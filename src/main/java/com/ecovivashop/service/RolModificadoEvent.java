@@ -0,0 +1,9 @@
+package com.ecovivashop.service;
+
+import java.io.Serializable;
+
+/**
+ * Un rol se creó, cambió o eliminó
+ */
+public record RolModificadoEvent(Integer idRol) implements Serializable {
+}
@@ -0,0 +1,301 @@
+package com.ecovivashop.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Almacenamiento en un servicio compatible con S3 (AWS S3, MinIO, Ceph...). Habla
+ * el API REST con el HttpClient del JDK, sin SDK, y firma cada petición con AWS
+ * Signature V4. El cuerpo no se firma (UNSIGNED-PAYLOAD) para poder subir el
+ * archivo en streaming sin leerlo dos veces. Usa direcciones de tipo ruta
+ * (endpoint/bucket/clave), que aceptan todos los compatibles.
+ */
+public class S3BlobStorage implements BlobStorage {
+
+    private static final String ALGORITMO = "AWS4-HMAC-SHA256";
+    private static final String CUERPO_SIN_FIRMA = "UNSIGNED-PAYLOAD";
+    private static final DateTimeFormatter FECHA_HORA =
+        DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final Pattern CLAVE = Pattern.compile("<Key>(.*?)</Key>");
+    private static final Pattern SIGUIENTE = Pattern.compile("<NextContinuationToken>(.*?)</NextContinuationToken>");
+
+    private final URI endpoint;
+    private final String bucket;
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+    private final HttpClient httpClient;
+
+    public S3BlobStorage(String endpoint, String bucket, String region, String accessKey, String secretKey) {
+        this.endpoint = URI.create(endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint);
+        this.bucket = bucket;
+        this.region = region;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    }
+
+    @Override
+    public void guardar(String clave, Path archivo) throws IOException {
+        HttpResponse<Void> respuesta = enviar("PUT", clave, Map.of(),
+            HttpRequest.BodyPublishers.ofFile(archivo), HttpResponse.BodyHandlers.discarding());
+        comprobar(respuesta.statusCode(), "PUT", clave);
+    }
+
+    @Override
+    public Optional<InputStream> abrir(String clave) throws IOException {
+        HttpResponse<InputStream> respuesta = enviar("GET", clave, Map.of(),
+            HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofInputStream());
+        if (respuesta.statusCode() == 200) {
+            return Optional.of(respuesta.body());
+        }
+        respuesta.body().close();
+        if (respuesta.statusCode() == 404) {
+            return Optional.empty();
+        }
+        comprobar(respuesta.statusCode(), "GET", clave);
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean existe(String clave) throws IOException {
+        HttpResponse<Void> respuesta = enviar("HEAD", clave, Map.of(),
+            HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding());
+        if (respuesta.statusCode() == 404) {
+            return false;
+        }
+        comprobar(respuesta.statusCode(), "HEAD", clave);
+        return true;
+    }
+
+    @Override
+    public Optional<Instant> ultimaModificacion(String clave) throws IOException {
+        HttpResponse<Void> respuesta = enviar("HEAD", clave, Map.of(),
+            HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding());
+        if (respuesta.statusCode() == 404) {
+            return Optional.empty();
+        }
+        comprobar(respuesta.statusCode(), "HEAD", clave);
+        String fecha = respuesta.headers().firstValue("Last-Modified")
+            .orElseThrow(() -> new IOException("S3 no devolvió Last-Modified para " + clave));
+        try {
+            return Optional.of(ZonedDateTime.parse(fecha, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new IOException("Last-Modified no válido para " + clave + ": " + fecha, e);
+        }
+    }
+
+    @Override
+    public void eliminar(String clave) throws IOException {
+        HttpResponse<Void> respuesta = enviar("DELETE", clave, Map.of(),
+            HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.discarding());
+        if (respuesta.statusCode() != 404) {
+            comprobar(respuesta.statusCode(), "DELETE", clave);
+        }
+    }
+
+    @Override
+    public List<String> listar(String prefijo) throws IOException {
+        List<String> claves = new ArrayList<>();
+        String continuacion = null;
+        do {
+            Map<String, String> parametros = new TreeMap<>();
+            parametros.put("list-type", "2");
+            parametros.put("prefix", prefijo);
+            if (continuacion != null) {
+                parametros.put("continuation-token", continuacion);
+            }
+            HttpResponse<String> respuesta = enviar("GET", "", parametros,
+                HttpRequest.BodyPublishers.noBody(), HttpResponse.BodyHandlers.ofString());
+            comprobar(respuesta.statusCode(), "LIST", prefijo);
+
+            Matcher clave = CLAVE.matcher(respuesta.body());
+            while (clave.find()) {
+                claves.add(desescaparXml(clave.group(1)));
+            }
+            Matcher siguiente = SIGUIENTE.matcher(respuesta.body());
+            continuacion = siguiente.find() ? desescaparXml(siguiente.group(1)) : null;
+        } while (continuacion != null);
+        return claves;
+    }
+
+    private <T> HttpResponse<T> enviar(String metodo, String clave, Map<String, String> parametros,
+                                       HttpRequest.BodyPublisher cuerpo,
+                                       HttpResponse.BodyHandler<T> manejador) throws IOException {
+        String ruta = this.endpoint.getRawPath() + "/" + codificar(this.bucket, false)
+            + (clave.isEmpty() ? "" : "/" + codificar(clave, true));
+        String consulta = parametros.entrySet().stream()
+            .map(parametro -> codificar(parametro.getKey(), false) + "=" + codificar(parametro.getValue(), false))
+            .collect(Collectors.joining("&"));
+        URI uri = URI.create(this.endpoint.getScheme() + "://" + this.endpoint.getRawAuthority() + ruta
+            + (consulta.isEmpty() ? "" : "?" + consulta));
+
+        Instant ahora = Instant.now();
+        SortedMap<String, String> cabeceras = new TreeMap<>();
+        cabeceras.put("host", cabeceraHost(uri));
+        cabeceras.put("x-amz-content-sha256", CUERPO_SIN_FIRMA);
+        cabeceras.put("x-amz-date", FECHA_HORA.format(ahora));
+        String autorizacion = firmar(metodo, ruta, consulta, cabeceras, CUERPO_SIN_FIRMA, ahora,
+                                     this.region, this.accessKey, this.secretKey);
+
+        HttpRequest peticion = HttpRequest.newBuilder(uri)
+            .timeout(Duration.ofMinutes(2))
+            .method(metodo, cuerpo)
+            .header("x-amz-content-sha256", CUERPO_SIN_FIRMA)
+            .header("x-amz-date", cabeceras.get("x-amz-date"))
+            .header("Authorization", autorizacion)
+            .build();
+        try {
+            try {
+                return this.httpClient.send(peticion, manejador);
+            } catch (IOException e) {
+                // Una conexión reutilizada que el servidor ya cerró falla sin respuesta;
+                // todas estas operaciones son idempotentes, así que se reintenta una vez.
+                // Un timeout no se reintenta: el servidor pudo estar procesándola
+                if (!conexionCerradaSinRespuesta(e)) {
+                    throw e;
+                }
+                return this.httpClient.send(peticion, manejador);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Petición a S3 interrumpida", e);
+        }
+    }
+
+    static boolean conexionCerradaSinRespuesta(IOException e) {
+        if (e instanceof HttpTimeoutException) {
+            return false;
+        }
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof HttpTimeoutException) {
+                return false;
+            }
+            if (causa instanceof EOFException || causa instanceof SocketException) {
+                return true;
+            }
+            String mensaje = causa.getMessage();
+            if (mensaje != null && (mensaje.contains("header parser received no bytes")
+                                    || mensaje.contains("Connection reset")
+                                    || mensaje.contains("connection closed"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void comprobar(int estado, String operacion, String clave) throws IOException {
+        if (estado / 100 != 2) {
+            throw new IOException("S3 respondió " + estado + " a " + operacion + " " + clave);
+        }
+    }
+
+    // El HttpClient omite el puerto en Host cuando es el de su esquema
+    private static String cabeceraHost(URI uri) {
+        int puerto = uri.getPort();
+        boolean puertoPorDefecto = puerto == -1
+            || ("http".equals(uri.getScheme()) && puerto == 80)
+            || ("https".equals(uri.getScheme()) && puerto == 443);
+        return puertoPorDefecto ? uri.getHost() : uri.getHost() + ":" + puerto;
+    }
+
+    /**
+     * Cabecera Authorization de AWS Signature V4 para el servicio s3. Las cabeceras
+     * van en minúsculas y ordenadas; todas se firman.
+     */
+    static String firmar(String metodo, String rutaCanonica, String consultaCanonica,
+                         SortedMap<String, String> cabeceras, String hashCuerpo, Instant instante,
+                         String region, String accessKey, String secretKey) {
+        String fechaHora = FECHA_HORA.format(instante);
+        String fecha = fechaHora.substring(0, 8);
+
+        StringBuilder cabecerasCanonicas = new StringBuilder();
+        cabeceras.forEach((nombre, valor) -> cabecerasCanonicas.append(nombre).append(':').append(valor.trim()).append('\n'));
+        String cabecerasFirmadas = String.join(";", cabeceras.keySet());
+        String peticionCanonica = metodo + "\n" + rutaCanonica + "\n" + consultaCanonica + "\n"
+            + cabecerasCanonicas + "\n" + cabecerasFirmadas + "\n" + hashCuerpo;
+
+        String ambito = fecha + "/" + region + "/s3/aws4_request";
+        String textoAFirmar = ALGORITMO + "\n" + fechaHora + "\n" + ambito + "\n"
+            + HexFormat.of().formatHex(sha256(peticionCanonica));
+
+        byte[] clave = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), fecha);
+        clave = hmac(clave, region);
+        clave = hmac(clave, "s3");
+        clave = hmac(clave, "aws4_request");
+        String firma = HexFormat.of().formatHex(hmac(clave, textoAFirmar));
+
+        return ALGORITMO + " Credential=" + accessKey + "/" + ambito
+            + ", SignedHeaders=" + cabecerasFirmadas + ", Signature=" + firma;
+    }
+
+    // Codificación de URI de SigV4: todo salvo A-Z a-z 0-9 - _ . ~ (y "/" en rutas)
+    static String codificar(String texto, boolean mantenerBarras) {
+        StringBuilder codificado = new StringBuilder();
+        for (byte b : texto.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (c == '/' && mantenerBarras)) {
+                codificado.append(c);
+            } else {
+                codificado.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return codificado.toString();
+    }
+
+    private static String desescaparXml(String texto) {
+        return texto.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+            .replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    private static byte[] sha256(String texto) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(texto.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] clave, String texto) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(clave, "HmacSHA256"));
+            return mac.doFinal(texto.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.ecovivashop.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.ecovivashop.dto.Carrito;
+
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * Carrito en un atributo de la sesión HTTP. Solo se vuelve a fijar el atributo
+ * cuando el carrito cambia, así la sesión se replica únicamente tras una modificación.
+ */
+@Component
+@ConditionalOnProperty(name = "app.carrito.store", havingValue = "sesion", matchIfMissing = true)
+public class SesionCarritoStore implements CarritoStore {
+    
+    static final String ATRIBUTO = "carrito";
+    
+    @Override
+    public Carrito obtener(HttpSession session) {
+        return session.getAttribute(ATRIBUTO) instanceof Carrito carrito ? carrito : new Carrito();
+    }
+    
+    @Override
+    public void guardar(HttpSession session, Carrito carrito) {
+        if (carrito.isVacio()) {
+            session.removeAttribute(ATRIBUTO);
+        } else {
+            session.setAttribute(ATRIBUTO, carrito);
+        }
+    }
+    
+    @Override
+    public void vaciar(HttpSession session) {
+        session.removeAttribute(ATRIBUTO);
+    }
+}
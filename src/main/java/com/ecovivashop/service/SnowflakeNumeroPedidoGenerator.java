@@ -0,0 +1,100 @@
+package com.ecovivashop.service;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.ecovivashop.config.AppProperties;
+
+/**
+ * Generador de números de pedido al estilo Snowflake, sin consultas a la base de datos.
+ *
+ * Cada número es un entero de 63 bits: 41 bits de milisegundos desde 2024-01-01,
+ * 10 bits de nodo y 12 bits de secuencia (4096 números por milisegundo y nodo).
+ * El estado (milisegundo + secuencia) vive en un único AtomicLong que se avanza
+ * con CAS, así que no hay bloqueos. Si la secuencia se agota o el reloj retrocede,
+ * el generador sigue avanzando sobre su propio reloj lógico: los números de un
+ * nodo son siempre crecientes.
+ *
+ * El número se escribe en base 36 con ancho fijo (13 caracteres), de modo que el
+ * orden alfabético coincide con el orden de generación y "ECO-" + número cabe en
+ * la columna numero_pedido (20 caracteres).
+ *
+ * Los números solo son únicos si cada instancia tiene su propio
+ * app.pedidos.nodo-id; sin él la aplicación no arranca.
+ */
+@Service
+public class SnowflakeNumeroPedidoGenerator implements NumeroPedidoGenerator {
+    
+    static final long EPOCA = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    static final int BITS_NODO = 10;
+    static final int BITS_SECUENCIA = 12;
+    static final long MAX_NODO = (1L << BITS_NODO) - 1;
+    private static final int ANCHO_NUMERO = 13;
+    private static final int LONGITUD_MAXIMA = 20;
+    
+    private final String prefijo;
+    private final long nodo;
+    private final LongSupplier reloj;
+    // Milisegundos desde EPOCA desplazados BITS_SECUENCIA bits, más la secuencia
+    private final AtomicLong ultimoEstado = new AtomicLong();
+    
+    @Autowired
+    public SnowflakeNumeroPedidoGenerator(AppProperties appProperties) {
+        this(appProperties.getPedidos().getPrefijo(),
+             resolverNodo(appProperties.getPedidos().getNodoId()),
+             System::currentTimeMillis);
+    }
+    
+    SnowflakeNumeroPedidoGenerator(String prefijo, long nodo, LongSupplier reloj) {
+        if (nodo < 0 || nodo > MAX_NODO) {
+            throw new IllegalArgumentException("El nodo debe estar entre 0 y " + MAX_NODO + ": " + nodo);
+        }
+        if (prefijo == null || prefijo.length() + ANCHO_NUMERO > LONGITUD_MAXIMA) {
+            throw new IllegalArgumentException("Prefijo de pedido inválido: " + prefijo);
+        }
+        this.prefijo = prefijo;
+        this.nodo = nodo;
+        this.reloj = reloj;
+    }
+    
+    @Override
+    public String generar() {
+        String numero = Long.toString(siguienteId(), Character.MAX_RADIX).toUpperCase();
+        StringBuilder resultado = new StringBuilder(prefijo.length() + ANCHO_NUMERO).append(prefijo);
+        for (int i = numero.length(); i < ANCHO_NUMERO; i++) {
+            resultado.append('0');
+        }
+        return resultado.append(numero).toString();
+    }
+    
+    long siguienteId() {
+        long ahora = (reloj.getAsLong() - EPOCA) << BITS_SECUENCIA;
+        long anterior;
+        long siguiente;
+        do {
+            anterior = ultimoEstado.get();
+            siguiente = Math.max(anterior + 1, ahora);
+        } while (!ultimoEstado.compareAndSet(anterior, siguiente));
+        
+        long milisegundos = siguiente >>> BITS_SECUENCIA;
+        long secuencia = siguiente & ((1L << BITS_SECUENCIA) - 1);
+        return (milisegundos << (BITS_NODO + BITS_SECUENCIA)) | (nodo << BITS_SECUENCIA) | secuencia;
+    }
+    
+    long getNodo() {
+        return nodo;
+    }
+    
+    private static long resolverNodo(Integer nodoConfigurado) {
+        // Un nodo derivado puede coincidir en dos instancias y repetir números de pedido
+        if (nodoConfigurado == null) {
+            throw new IllegalStateException("app.pedidos.nodo-id no está configurado; "
+                + "cada instancia necesita un nodo distinto entre 0 y " + MAX_NODO);
+        }
+        return nodoConfigurado;
+    }
+}
@@ -1,13 +1,16 @@
 package com.ecovivashop.service;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import com.ecovivashop.entity.Suscripcion;
 import com.ecovivashop.entity.TransaccionPago;
@@ -88,9 +91,14 @@ public class SuscripcionService {
             transaccion.setIdSuscripcion(suscripcion.getIdSuscripcion().longValue());
             
             // Procesar pago
+            solicitudPago.setIdSuscripcion(suscripcion.getIdSuscripcion().longValue());
             PasarelaPagoService.RespuestaPago respuestaPago = pasarelaPagoService.procesarPago(solicitudPago);
             
-            if (respuestaPago.isExitoso()) {
+            if (respuestaPago.isPendiente()) {
+                // Se activa o se elimina cuando llegue la respuesta del banco (alActualizarPago)
+                return new ResultadoSuscripcion(true, "Suscripción registrada, pago en proceso", 
+                                              suscripcion, null);
+            } else if (respuestaPago.isExitoso()) {
                 // Activar suscripción si el pago fue exitoso
                 suscripcion.setEstado(true);
                 suscripcionRepository.save(suscripcion);
@@ -138,9 +146,14 @@ public class SuscripcionService {
             transaccion.setIdSuscripcion(suscripcion.getIdSuscripcion().longValue());
             
             // Procesar pago de renovación
+            solicitudPago.setIdSuscripcion(suscripcion.getIdSuscripcion().longValue());
             PasarelaPagoService.RespuestaPago respuestaPago = pasarelaPagoService.procesarPago(solicitudPago);
             
-            if (respuestaPago.isExitoso()) {
+            if (respuestaPago.isPendiente()) {
+                // La fecha de fin se extiende cuando llegue la respuesta del banco (alActualizarPago)
+                return new ResultadoSuscripcion(true, "Renovación registrada, pago en proceso", 
+                                              suscripcion, null);
+            } else if (respuestaPago.isExitoso()) {
                 // Extender fecha de fin
                 if (suscripcion.getFechaFin() == null || suscripcion.getFechaFin().isBefore(LocalDateTime.now())) {
                     suscripcion.setFechaFin(LocalDateTime.now().plusMonths(mesesExtension));
@@ -162,6 +175,44 @@ public class SuscripcionService {
         }
     }
     
+    /**
+     * Resultado de un pago con tarjeta de suscripción. Una suscripción inactiva es
+     * una alta: se activa si el pago se completó y se elimina si no. Una activa es
+     * una renovación: se extiende por los meses que cubre el monto cobrado.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void alActualizarPago(PagoActualizadoEvent evento) {
+        if (evento.idSuscripcion() == null) {
+            return;
+        }
+        Optional<Suscripcion> optSuscripcion = suscripcionRepository.findById(evento.idSuscripcion().intValue());
+        if (optSuscripcion.isEmpty()) {
+            return;
+        }
+        
+        Suscripcion suscripcion = optSuscripcion.get();
+        boolean completado = evento.estado() == TransaccionPago.EstadoTransaccion.COMPLETADA;
+        if (!Boolean.TRUE.equals(suscripcion.getEstado())) {
+            if (completado) {
+                suscripcion.setEstado(true);
+                suscripcionRepository.save(suscripcion);
+            } else {
+                suscripcionRepository.delete(suscripcion);
+            }
+        } else if (completado) {
+            transaccionPagoRepository.findByTransactionId(evento.transactionId()).ifPresent(transaccion -> {
+                int meses = transaccion.getMonto().divide(suscripcion.getPrecioMensual(), 0, RoundingMode.HALF_UP).intValue();
+                if (suscripcion.getFechaFin() == null || suscripcion.getFechaFin().isBefore(LocalDateTime.now())) {
+                    suscripcion.setFechaFin(LocalDateTime.now().plusMonths(meses));
+                } else {
+                    suscripcion.setFechaFin(suscripcion.getFechaFin().plusMonths(meses));
+                }
+                suscripcionRepository.save(suscripcion);
+            });
+        }
+    }
+    
     /**
      * Cancelar suscripción
      */
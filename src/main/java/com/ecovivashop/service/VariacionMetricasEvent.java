@@ -0,0 +1,27 @@
+package com.ecovivashop.service;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cambio en los contadores del panel por el alta, cambio o baja de un pedido o
+ * de un usuario: cuánto sube o baja cada clave de {@link MetricasStore}.
+ */
+public record VariacionMetricasEvent(Map<String, Long> variaciones) implements Serializable {
+
+    public VariacionMetricasEvent {
+        variaciones = Map.copyOf(variaciones);
+    }
+
+    /**
+     * Diferencia entre lo que aportaba una entidad a los contadores y lo que aporta ahora.
+     * @return null si no cambia ningún contador
+     */
+    public static VariacionMetricasEvent entre(Map<String, Long> antes, Map<String, Long> despues) {
+        Map<String, Long> variaciones = new HashMap<>(despues);
+        antes.forEach((clave, valor) -> variaciones.merge(clave, -valor, Long::sum));
+        variaciones.values().removeIf(valor -> valor == 0);
+        return variaciones.isEmpty() ? null : new VariacionMetricasEvent(variaciones);
+    }
+}
@@ -0,0 +1,41 @@
+package com.ecovivashop.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+class AsyncConfigTest {
+
+    private static Thread hiloDeTarea(ThreadPoolTaskExecutor executor) throws Exception {
+        try {
+            return CompletableFuture.supplyAsync(Thread::currentThread, executor).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static boolean esVirtual(Thread hilo) {
+        return hilo.getClass().getName().equals("java.lang.VirtualThread");
+    }
+
+    @Test
+    void testModoVirtual_UsaHilosVirtualesSoloSiLaJvmLosTiene() throws Exception {
+        Thread hilo = hiloDeTarea(new AsyncConfig(true).emailExecutor(2));
+
+        // En Java 17 el modo se ignora y el pool sigue con hilos de plataforma
+        assertEquals(AsyncConfig.hilosVirtualesDisponibles(), esVirtual(hilo));
+        assertTrue(hilo.getName().startsWith("email-outbox-"));
+    }
+
+    @Test
+    void testModoDesactivado_MantieneHilosDePlataforma() throws Exception {
+        assertFalse(esVirtual(hiloDeTarea(new AsyncConfig(false).emailExecutor(2))));
+        assertFalse(esVirtual(hiloDeTarea(new AsyncConfig(false).cacheExecutor())));
+    }
+}
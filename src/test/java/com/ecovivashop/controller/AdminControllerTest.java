@@ -26,7 +26,7 @@ import com.ecovivashop.entity.Usuario;
 import com.ecovivashop.repository.RolRepository;
 import com.ecovivashop.repository.UsuarioRepository;
 import com.ecovivashop.service.ImagenService;
-import com.ecovivashop.service.PedidoService;
+import com.ecovivashop.service.MetricasStore;
 import com.ecovivashop.service.UsuarioService;
 
 @WebMvcTest(AdminController.class)
@@ -45,7 +45,7 @@ class AdminControllerTest {
 
     @MockBean
     @SuppressWarnings({"removal", "unused"})
-    private PedidoService pedidoService;
+    private MetricasStore metricasStore;
 
     @Test
     @WithMockUser(username = "admin@example.com", roles = {"ADMIN"})
@@ -0,0 +1,76 @@
+package com.ecovivashop.controller;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.ecovivashop.dto.EstadisticasClienteDTO;
+import com.ecovivashop.entity.Usuario;
+import com.ecovivashop.repository.TransaccionPagoRepository;
+import com.ecovivashop.service.PedidoService;
+import com.ecovivashop.service.UsuarioService;
+
+@ExtendWith(MockitoExtension.class)
+class ClienteAdminControllerTest {
+
+    @Mock
+    private UsuarioService usuarioService;
+
+    @Mock
+    private PedidoService pedidoService;
+
+    @Mock
+    private TransaccionPagoRepository transaccionPagoRepository;
+
+    @InjectMocks
+    private ClienteAdminController clienteAdminController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(clienteAdminController).build();
+    }
+
+    private Usuario cliente(int id) {
+        Usuario usuario = new Usuario();
+        usuario.setIdUsuario(id);
+        usuario.setNombre("Cliente " + id);
+        return usuario;
+    }
+
+    @Test
+    void testGestionClientes_CuentaLosPedidosDeLaPaginaEnUnaConsulta() throws Exception {
+        when(usuarioService.obtenerClientesPaginados(any()))
+            .thenReturn(new PageImpl<>(List.of(cliente(1), cliente(2))));
+        when(pedidoService.obtenerEstadisticasClientes(List.of(1, 2))).thenReturn(Map.of(
+            1, new EstadisticasClienteDTO(1, 4, 3, new BigDecimal("300.00"), null),
+            2, EstadisticasClienteDTO.sinPedidos(2)));
+
+        mockMvc.perform(get("/admin/clientes"))
+            .andExpect(status().isOk())
+            .andExpect(view().name("admin/clientes"))
+            .andExpect(model().attribute("conteoPedidosPorCliente", Map.of(1, 4L, 2, 0L)));
+
+        verify(pedidoService, never()).contarPedidosPorUsuario(anyInt());
+    }
+}
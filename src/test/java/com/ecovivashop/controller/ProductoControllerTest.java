@@ -1,11 +1,13 @@
 package com.ecovivashop.controller;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +25,7 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.http.HttpHeaders;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -64,6 +67,10 @@ class ProductoControllerTest {
     @MockBean
     private com.ecovivashop.service.JasperExportService jasperExportService;
 
+    @SuppressWarnings("unused")
+    @MockBean
+    private com.ecovivashop.service.ImagenService imagenService;
+
     @SuppressWarnings("unused")
     @MockBean
     private UsuarioService usuarioService;
@@ -152,6 +159,21 @@ class ProductoControllerTest {
             .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"reporte_productos_jasper.pdf\""));
     }
 
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void testExportarProductosJasperPDFGrande_EscribeEnLaRespuesta() throws Exception {
+        doAnswer(invocacion -> {
+            invocacion.getArgument(0, OutputStream.class).write(new byte[]{1, 2, 3});
+            return null;
+        }).when(jasperExportService).exportarProductosJasperPDF(any(OutputStream.class));
+
+        mockMvc.perform(get("/admin/productos/exportar/jasper/pdf/grande"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/pdf"))
+            .andExpect(content().bytes(new byte[]{1, 2, 3}))
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"reporte_productos_jasper.pdf\""));
+    }
+
     // Método helper para crear productos de prueba
     private Producto crearProducto(Integer id, String nombre, BigDecimal precio) {
         Producto producto = new Producto();
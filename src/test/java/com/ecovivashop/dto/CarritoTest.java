@@ -0,0 +1,96 @@
+package com.ecovivashop.dto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class CarritoTest {
+
+    @Test
+    void testAgregar_SumaUnidadesYConservaPrecio() {
+        Carrito carrito = new Carrito();
+        carrito.agregar(1, 2, 1990);
+        carrito.agregar(2, 1, 500);
+        carrito.agregar(1, 3, 2500);
+
+        assertEquals(2, carrito.getNumeroLineas());
+        assertEquals(5, carrito.getCantidad(1));
+        assertEquals(6, carrito.getTotalUnidades());
+        assertEquals(5 * 1990 + 500, carrito.getSubtotalCentimos());
+        assertThrows(IllegalArgumentException.class, () -> carrito.agregar(3, 0, 100));
+        assertThrows(IllegalArgumentException.class, () -> carrito.agregar(3, 1, 0));
+    }
+
+    @Test
+    void testActualizarYEliminar_MantienenTotales() {
+        Carrito carrito = new Carrito();
+        for (int id = 1; id <= 6; id++) {
+            carrito.agregar(id, id, 100L * id);
+        }
+
+        assertTrue(carrito.actualizarCantidad(2, 10));
+        assertTrue(carrito.eliminar(1));
+        assertTrue(carrito.actualizarCantidad(4, 0));
+        assertFalse(carrito.eliminar(1));
+        assertFalse(carrito.actualizarCantidad(99, 1));
+
+        assertEquals(4, carrito.getNumeroLineas());
+        assertEquals(0, carrito.getCantidad(4));
+        assertEquals(10 + 3 + 5 + 6, carrito.getTotalUnidades());
+        assertEquals(10 * 200 + 3 * 300 + 5 * 500 + 6 * 600, carrito.getSubtotalCentimos());
+        // El índice sigue apuntando bien tras mover líneas
+        assertEquals(6, carrito.getCantidad(6));
+        assertTrue(carrito.eliminar(6));
+        assertEquals(List.of(5, 2, 3), carrito.getLineas().stream().map(Carrito.Linea::idProducto).toList());
+    }
+
+    @Test
+    void testBytes_FormatoCompactoReversible() {
+        Carrito carrito = new Carrito();
+        carrito.agregar(12345, 2, 129_990);
+        carrito.agregar(7, 1, 4550);
+
+        byte[] datos = carrito.aBytes();
+        Carrito copia = Carrito.desdeBytes(datos);
+
+        assertTrue(datos.length <= 16, "ocupa " + datos.length + " bytes");
+        assertEquals(carrito.getLineas(), copia.getLineas());
+        assertEquals(carrito.getSubtotalCentimos(), copia.getSubtotalCentimos());
+        assertEquals(3, copia.getTotalUnidades());
+    }
+
+    @Test
+    void testSerializacionJava_ParaReplicarLaSesion() throws Exception {
+        Carrito carrito = new Carrito();
+        carrito.agregar(1, 4, 2000);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream salida = new ObjectOutputStream(bytes)) {
+            salida.writeObject(carrito);
+        }
+        Carrito copia;
+        try (ObjectInputStream entrada = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copia = (Carrito) entrada.readObject();
+        }
+
+        assertEquals(carrito.getLineas(), copia.getLineas());
+        copia.agregar(1, 1, 2000);
+        assertEquals(5, copia.getCantidad(1));
+    }
+
+    @Test
+    void testCentimos() {
+        assertEquals(1999, Carrito.aCentimos(new BigDecimal("19.99")));
+        assertEquals(2000, Carrito.aCentimos(new BigDecimal("19.995")));
+        assertEquals(0, new BigDecimal("19.99").compareTo(Carrito.desdeCentimos(1999)));
+    }
+}
@@ -125,43 +125,6 @@ class PedidoTest {
         assertEquals(BigDecimal.ZERO, nuevoPedido.getTotal());
     }
 
-    @Test
-    void testCalcularTotales() {
-        Pedido pedido = new Pedido();
-        // Create mock pedido detalles
-        Set<PedidoDetalle> detalles = new HashSet<>();
-
-        PedidoDetalle detalle1 = new PedidoDetalle();
-        detalle1.setIdDetalle(1); // Set unique ID
-        detalle1.setCantidad(2);
-        detalle1.setPrecioUnitario(BigDecimal.valueOf(25.00)); // 2 * 25.00 = 50.00
-        detalle1.setDescuentoUnitario(BigDecimal.ZERO);
-        detalle1.calcularSubtotal(); // This should set subtotal to 50.00
-
-        PedidoDetalle detalle2 = new PedidoDetalle();
-        detalle2.setIdDetalle(2); // Set unique ID
-        detalle2.setCantidad(1);
-        detalle2.setPrecioUnitario(BigDecimal.valueOf(30.00)); // 1 * 30.00 = 30.00
-        detalle2.setDescuentoUnitario(BigDecimal.ZERO);
-        detalle2.calcularSubtotal(); // This should set subtotal to 30.00
-
-        detalles.add(detalle1);
-        detalles.add(detalle2);
-
-        pedido.setDetalles(detalles);
-        pedido.setCostoEnvio(BigDecimal.valueOf(10.00));
-        pedido.setDescuento(BigDecimal.valueOf(5.00));
-
-        pedido.calcularTotales();
-
-        // subtotal = 50.00 + 30.00 = 80.00
-        // impuestos = 80.00 * 0.19 = 15.200
-        // total = 80.00 + 15.200 + 10.00 - 5.00 = 100.200
-        assertEquals(0, BigDecimal.valueOf(80.00).compareTo(pedido.getSubtotal()));
-        assertEquals(0, BigDecimal.valueOf(15.200).compareTo(pedido.getImpuestos()));
-        assertEquals(0, BigDecimal.valueOf(100.200).compareTo(pedido.getTotal()));
-    }
-
     @Test
     void testPuedeSerCancelado() {
         Pedido pedido = new Pedido();
@@ -0,0 +1,177 @@
+package com.ecovivashop.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ecovivashop.entity.Inventario;
+import com.ecovivashop.entity.Producto;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InventarioRepositoryTest {
+
+    @Autowired
+    private InventarioRepository inventarioRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    // Requerido por el CommandLineRunner de datos iniciales
+    @TestConfiguration
+    static class PasswordEncoderConfig {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+    }
+
+    @AfterEach
+    void limpiar() {
+        inventarioRepository.deleteAll();
+        productoRepository.deleteAll();
+    }
+
+    private Integer crearProductoConStock(String nombre, int stock) {
+        Producto producto = new Producto();
+        producto.setNombre(nombre);
+        producto.setPrecio(BigDecimal.TEN);
+        producto.setCategoria("Test");
+        producto.setEstado(true);
+        producto = productoRepository.save(producto);
+
+        Inventario inventario = new Inventario();
+        inventario.setProducto(producto);
+        inventario.setStock(stock);
+        inventarioRepository.save(inventario);
+        return producto.getIdProducto();
+    }
+
+    @Test
+    void testReducirStockSiDisponible_NoPermiteSobreventaConcurrente() throws Exception {
+        Integer idProducto = crearProductoConStock("Producto concurrido", 50);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Callable<Integer>> compras = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            compras.add(() -> tx.execute(status ->
+                inventarioRepository.reducirStockSiDisponible(idProducto, 1, LocalDateTime.now(), "test")));
+        }
+        int exitosas = 0;
+        for (Future<Integer> resultado : pool.invokeAll(compras)) {
+            exitosas += resultado.get();
+        }
+        pool.shutdown();
+
+        assertEquals(50, exitosas);
+        assertEquals(0, inventarioRepository.findStockByProductoId(idProducto).orElseThrow());
+    }
+
+    @Test
+    void testReducirStockSiDisponible_LecturaPosteriorVeElNuevoStock() {
+        Integer idProducto = crearProductoConStock("Leído antes", 5);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        Integer stockLeido = tx.execute(status -> {
+            // La entidad queda en el contexto de persistencia antes del UPDATE
+            assertEquals(5, inventarioRepository.findByProductoId(idProducto).orElseThrow().getStock());
+            inventarioRepository.reducirStockSiDisponible(idProducto, 2, LocalDateTime.now(), "test");
+            return inventarioRepository.findByProductoId(idProducto).orElseThrow().getStock();
+        });
+
+        assertEquals(3, stockLeido);
+    }
+
+    @Test
+    void testAumentarStockAtomico_LecturaPosteriorVeElNuevoStock() {
+        Integer idProducto = crearProductoConStock("Repuesto leído antes", 5);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        Integer stockLeido = tx.execute(status -> {
+            assertEquals(5, inventarioRepository.findByProductoId(idProducto).orElseThrow().getStock());
+            inventarioRepository.aumentarStockAtomico(idProducto, 4, LocalDateTime.now(), "test");
+            return inventarioRepository.findByProductoId(idProducto).orElseThrow().getStock();
+        });
+
+        assertEquals(9, stockLeido);
+    }
+
+    @Test
+    void testReservarStockEnLote_DevuelveLineasSinStock() {
+        Integer conStock = crearProductoConStock("Con stock", 10);
+        Integer sinStock = crearProductoConStock("Sin stock", 1);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        List<Integer> fallidos = tx.execute(status ->
+            inventarioRepository.reservarStockEnLote(Map.of(conStock, 4, sinStock, 2), "test"));
+
+        assertEquals(List.of(sinStock), fallidos);
+        assertEquals(6, inventarioRepository.findStockByProductoId(conStock).orElseThrow());
+        assertEquals(1, inventarioRepository.findStockByProductoId(sinStock).orElseThrow());
+    }
+
+    @Test
+    void testCacheSegundoNivel_ReservaEnLoteNoDejaStockObsoleto() {
+        Integer idProducto = crearProductoConStock("En caché", 10);
+        Integer idInventario = inventarioRepository.findByProductoId(idProducto).orElseThrow().getIdInventario();
+        Cache cache = entityManagerFactory.getCache();
+
+        assertEquals(10, inventarioRepository.findById(idInventario).orElseThrow().getStock());
+        productoRepository.findById(idProducto);
+        assertTrue(cache.contains(Inventario.class, idInventario));
+        assertTrue(cache.contains(Producto.class, idProducto));
+
+        new TransactionTemplate(transactionManager).execute(status ->
+            inventarioRepository.reservarStockEnLote(Map.of(idProducto, 3), "test"));
+
+        assertFalse(cache.contains(Inventario.class, idInventario));
+        assertEquals(7, inventarioRepository.findById(idInventario).orElseThrow().getStock());
+    }
+
+    @Test
+    void testAumentarStockAtomico() {
+        Integer idProducto = crearProductoConStock("Reposición", 3);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        Integer filas = tx.execute(status ->
+            inventarioRepository.aumentarStockAtomico(idProducto, 7, LocalDateTime.now(), "test"));
+
+        assertEquals(1, filas);
+        assertEquals(10, inventarioRepository.findStockByProductoId(idProducto).orElseThrow());
+    }
+}
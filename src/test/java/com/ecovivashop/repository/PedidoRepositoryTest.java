@@ -0,0 +1,90 @@
+package com.ecovivashop.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.ecovivashop.dto.EstadisticasClienteDTO;
+import com.ecovivashop.entity.Pedido;
+import com.ecovivashop.entity.Rol;
+import com.ecovivashop.entity.Usuario;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class PedidoRepositoryTest {
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private RolRepository rolRepository;
+
+    // Requerido por el CommandLineRunner de datos iniciales
+    @TestConfiguration
+    static class PasswordEncoderConfig {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+    }
+
+    private Usuario crearCliente(String email) {
+        Rol rol = rolRepository.findByNombre("ROLE_CLIENTE")
+            .orElseGet(() -> rolRepository.save(new Rol("ROLE_CLIENTE", "Cliente")));
+        return usuarioRepository.save(new Usuario("Cliente", "Prueba", email, "secreto", null, null, rol));
+    }
+
+    private void crearPedido(Usuario usuario, String estado, String total, LocalDateTime fecha) {
+        Pedido pedido = new Pedido(usuario, "ECO-R-" + System.nanoTime() % 1_000_000, estado);
+        pedido.setTotal(new BigDecimal(total));
+        pedido.setFechaPedido(fecha);
+        pedido.setDireccionEnvio("Av. Lima 1");
+        pedido.setMetodoPago("TARJETA");
+        pedidoRepository.save(pedido);
+    }
+
+    @Test
+    void testObtenerEstadisticasPorUsuarios_AgrupaPorCliente() {
+        LocalDateTime ahora = LocalDateTime.now().withNano(0);
+        Usuario ana = crearCliente("ana@test.com");
+        Usuario luis = crearCliente("luis@test.com");
+        Usuario sinPedidos = crearCliente("eva@test.com");
+        crearPedido(ana, "ENTREGADO", "100.00", ahora.minusDays(3));
+        crearPedido(ana, "ENTREGADO", "50.00", ahora.minusDays(2));
+        crearPedido(ana, "PENDIENTE", "999.00", ahora);
+        crearPedido(luis, "CANCELADO", "30.00", ahora.minusDays(1));
+
+        List<Object[]> filas = pedidoRepository.obtenerEstadisticasPorUsuarios(
+            List.of(ana.getIdUsuario(), luis.getIdUsuario(), sinPedidos.getIdUsuario()));
+
+        assertEquals(2, filas.size());
+        for (Object[] fila : filas) {
+            EstadisticasClienteDTO estadisticas = EstadisticasClienteDTO.desdeFila(fila);
+            if (estadisticas.getIdUsuario().equals(ana.getIdUsuario())) {
+                assertEquals(3, estadisticas.getTotalPedidos());
+                assertEquals(0, new BigDecimal("150.00").compareTo(estadisticas.getTotalGastado()));
+                assertEquals(new BigDecimal("75.00"), estadisticas.getPromedioPedido());
+                assertEquals(ahora, estadisticas.getFechaUltimoPedido());
+            } else {
+                assertEquals(luis.getIdUsuario(), estadisticas.getIdUsuario());
+                assertEquals(1, estadisticas.getTotalPedidos());
+                assertTrue(BigDecimal.ZERO.compareTo(estadisticas.getTotalGastado()) == 0);
+            }
+        }
+    }
+}
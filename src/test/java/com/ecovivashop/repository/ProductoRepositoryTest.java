@@ -0,0 +1,140 @@
+package com.ecovivashop.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.ecovivashop.dto.ProductoFacetasDTO;
+import com.ecovivashop.entity.Inventario;
+import com.ecovivashop.entity.Producto;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class ProductoRepositoryTest {
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    // Requerido por el CommandLineRunner de datos iniciales
+    @TestConfiguration
+    static class PasswordEncoderConfig {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        productoRepository.deleteAll();
+        crearProducto("Lámpara solar", "Iluminación", "EcoLuz", "40.00", "8.5", 12, true);
+        crearProducto("Farol solar", "Iluminación", "SunPower", "25.00", "6.0", 0, true);
+        crearProducto("Panel solar", "Energía", "SunPower", "300.00", "9.0", 3, true);
+        crearProducto("Panel descatalogado", "Energía", "SunPower", "150.00", "9.0", 5, false);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void crearProducto(String nombre, String categoria, String marca, String precio,
+                               String puntuacionEco, int stock, boolean activo) {
+        Producto producto = new Producto();
+        producto.setNombre(nombre);
+        producto.setCategoria(categoria);
+        producto.setMarca(marca);
+        producto.setPrecio(new BigDecimal(precio));
+        producto.setPuntuacionEco(new BigDecimal(puntuacionEco));
+        producto.setEstado(activo);
+        entityManager.persist(producto);
+
+        Inventario inventario = new Inventario();
+        inventario.setProducto(producto);
+        inventario.setStock(stock);
+        entityManager.persist(inventario);
+    }
+
+    @Test
+    void testFiltrosCombinados_CarganInventarioEnLaMismaConsulta() {
+        Specification<Producto> filtro = ProductoSpecifications.activosConInventario()
+            .and(ProductoSpecifications.marca("SunPower"))
+            .and(ProductoSpecifications.precioHasta(new BigDecimal("500")))
+            .and(ProductoSpecifications.conStock());
+
+        Page<Producto> pagina = productoRepository.findAll(filtro, PageRequest.of(0, 10, Sort.by("nombre")));
+
+        assertEquals(1, pagina.getTotalElements());
+        Producto panel = pagina.getContent().get(0);
+        assertEquals("Panel solar", panel.getNombre());
+        assertTrue(Hibernate.isInitialized(panel.getInventario()));
+        assertEquals(3, panel.getStockDisponible());
+    }
+
+    @Test
+    void testFiltrosCombinados_TextoCategoriaYPuntuacion() {
+        Specification<Producto> filtro = ProductoSpecifications.activosConInventario()
+            .and(ProductoSpecifications.textoContiene("SOLAR"))
+            .and(ProductoSpecifications.categoria("Iluminación"))
+            .and(ProductoSpecifications.puntuacionEcoDesde(new BigDecimal("7")));
+
+        List<Producto> productos = productoRepository.findAll(filtro);
+
+        assertEquals(1, productos.size());
+        assertEquals("Lámpara solar", productos.get(0).getNombre());
+        assertEquals(0, productoRepository.findAll(ProductoSpecifications.activosConInventario()
+            .and(ProductoSpecifications.idEn(List.of()))).size());
+    }
+
+    @Test
+    void testCoincidencias_DemasiadosIdsFiltraPorTexto() {
+        Integer lampara = productoRepository.findAll(ProductoSpecifications.textoContiene("lámpara")).get(0).getIdProducto();
+        assertEquals(List.of(lampara), productoRepository.findAll(ProductoSpecifications.activosConInventario()
+            .and(ProductoSpecifications.coincidencias(List.of(lampara), "solar")))
+            .stream().map(Producto::getIdProducto).toList());
+
+        // Más ids de los que admite un IN: la base de datos busca el texto
+        List<Integer> ids = IntStream.rangeClosed(1, 70_000).boxed().toList();
+        List<Producto> productos = productoRepository.findAll(ProductoSpecifications.activosConInventario()
+            .and(ProductoSpecifications.coincidencias(ids, "panel")));
+
+        assertEquals(1, productos.size());
+        assertEquals("Panel solar", productos.get(0).getNombre());
+    }
+
+    @Test
+    void testContarFacetas_UnaConsultaAgrupada() {
+        ProductoFacetasDTO facetas = ProductoFacetasDTO.desdeFilas(
+            productoRepository.contarFacetas(ProductoSpecifications.activosConInventario()));
+
+        assertEquals(3, facetas.getTotal());
+        assertEquals(2, facetas.getConStock());
+        assertEquals(2L, facetas.getCantidadCategoria("Iluminación"));
+        assertEquals(1L, facetas.getCantidadCategoria("Energía"));
+        assertEquals(2L, facetas.getMarcas().get("SunPower"));
+
+        ProductoFacetasDTO conStock = ProductoFacetasDTO.desdeFilas(productoRepository.contarFacetas(
+            ProductoSpecifications.activosConInventario().and(ProductoSpecifications.conStock())));
+        assertEquals(2, conStock.getTotal());
+        assertEquals(1L, conStock.getMarcas().get("SunPower"));
+    }
+}
@@ -0,0 +1,167 @@
+package com.ecovivashop.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ecovivashop.repository.ImagenPerfilRepository;
+import com.ecovivashop.repository.ImagenProductoRepository;
+import com.ecovivashop.repository.ProductoRepository;
+
+class AlmacenBlobServiceTest {
+
+    @TempDir
+    Path directorioSubidas;
+
+    private AlmacenBlobService almacenBlobService;
+    private ProductoRepository productoRepository;
+    private BlobStorage compartido;
+
+    @BeforeEach
+    void setUp() {
+        productoRepository = mock(ProductoRepository.class);
+        compartido = new LocalBlobStorage(directorioSubidas.resolve("compartido"));
+        almacenBlobService = nodo("nodo1");
+    }
+
+    // Cada nodo tiene su caché local; todos comparten el mismo almacenamiento
+    private AlmacenBlobService nodo(String nombre) {
+        return new AlmacenBlobService(directorioSubidas.resolve(nombre).toString(),
+            mock(ImagenProductoRepository.class), mock(ImagenPerfilRepository.class), productoRepository,
+            compartido, Runnable::run);
+    }
+
+    private AlmacenBlobService.BlobGuardado guardar(String contenido) throws IOException {
+        return almacenBlobService.guardar(new ByteArrayInputStream(contenido.getBytes()), ".JPG");
+    }
+
+    private void envejecer(Path archivo) throws IOException {
+        Files.setLastModifiedTime(archivo, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+    }
+
+    // La copia local y la réplica compartida, como un blob subido hace días
+    private void envejecerConReplica(AlmacenBlobService.BlobGuardado blob) throws IOException {
+        envejecer(blob.ruta());
+        envejecer(directorioSubidas.resolve("compartido").resolve(blob.nombre()));
+    }
+
+    @Test
+    void testGuardar_DeduplicaPorContenido() throws IOException {
+        AlmacenBlobService.BlobGuardado primero = guardar("foto");
+        AlmacenBlobService.BlobGuardado repetido = guardar("foto");
+        AlmacenBlobService.BlobGuardado otro = guardar("otra foto");
+
+        assertTrue(primero.nuevo());
+        assertFalse(repetido.nuevo());
+        assertEquals(primero.nombre(), repetido.nombre());
+        assertTrue(primero.nombre().endsWith(".jpg"));
+        assertEquals("/uploads/blobs/" + primero.nombre(), primero.url());
+        assertTrue(otro.nuevo());
+        // Sin temporales sueltos en la raíz del almacén
+        try (var archivos = Files.list(directorioSubidas.resolve("nodo1/blobs"))) {
+            assertTrue(archivos.allMatch(Files::isDirectory));
+        }
+    }
+
+    @Test
+    void testPurgarHuerfanos_ProductoQueUsaUnaVarianteLoConserva() throws IOException {
+        AlmacenBlobService.BlobGuardado blob = guardar("foto");
+        envejecerConReplica(blob);
+        String prefijo = blob.url().substring(0, blob.url().lastIndexOf('.'));
+        when(productoRepository.contarPorPrefijoImagenUrl(prefijo)).thenReturn(1L);
+
+        almacenBlobService.purgarHuerfanos();
+        assertTrue(Files.exists(blob.ruta()));
+
+        when(productoRepository.contarPorPrefijoImagenUrl(prefijo)).thenReturn(0L);
+        almacenBlobService.purgarHuerfanos();
+        assertFalse(Files.exists(blob.ruta()));
+        assertFalse(compartido.existe(blob.nombre()));
+    }
+
+    @Test
+    void testGuardar_ReutilizarUnBlobAntiguoLoProtegeDeLaPurga() throws IOException {
+        // Una subida que reutiliza el archivo aún no guardó su fila: la purga no debe borrarlo
+        AlmacenBlobService.BlobGuardado blob = guardar("foto");
+        envejecer(blob.ruta());
+        guardar("foto");
+
+        almacenBlobService.purgarHuerfanos();
+
+        assertTrue(Files.exists(blob.ruta()));
+    }
+
+    @Test
+    void testPurgarHuerfanos_NoBorraLaReplicaQueOtroNodoAcabaDeReutilizar() throws IOException {
+        AlmacenBlobService.BlobGuardado blob = guardar("foto");
+        envejecerConReplica(blob);
+
+        // Otro nodo sube el mismo contenido; su fila aún no está guardada
+        AlmacenBlobService otroNodo = nodo("nodo2");
+        otroNodo.guardar(new ByteArrayInputStream("foto".getBytes()), ".jpg");
+        almacenBlobService.purgarHuerfanos();
+
+        // Este nodo descarta su caché, pero la réplica que usará el otro sigue ahí
+        assertFalse(Files.exists(blob.ruta()));
+        assertTrue(compartido.existe(blob.nombre()));
+    }
+
+    @Test
+    void testGuardar_ReutilizarRenuevaLaReplicaAntigua() throws IOException {
+        AlmacenBlobService.BlobGuardado blob = guardar("foto");
+        envejecerConReplica(blob);
+
+        guardar("foto");
+
+        Instant limite = Instant.now().minus(Duration.ofDays(1));
+        assertTrue(compartido.ultimaModificacion(blob.nombre()).orElseThrow().isAfter(limite));
+    }
+
+    @Test
+    void testObtenerLocal_OtroNodoLoDescargaDelAlmacenamientoCompartido() throws IOException {
+        AlmacenBlobService.BlobGuardado blob = guardar("foto");
+        assertTrue(compartido.existe(blob.nombre()));
+
+        AlmacenBlobService otroNodo = nodo("nodo2");
+        Path copia = otroNodo.obtenerLocal(blob.nombre()).orElseThrow();
+
+        assertEquals(directorioSubidas.resolve("nodo2/blobs").resolve(blob.nombre()), copia);
+        assertEquals("foto", Files.readString(copia));
+        assertTrue(otroNodo.obtenerLocal("ab/cd/" + "0".repeat(64) + ".jpg").isEmpty());
+        assertTrue(otroNodo.obtenerLocal("../../nodo1/blobs/" + blob.nombre()).isEmpty());
+    }
+
+    @Test
+    void testPurgarHuerfanos_SoloLosAntiguosSinReferencias() throws IOException {
+        AlmacenBlobService.BlobGuardado antiguo = guardar("antiguo");
+        Path variante = antiguo.ruta().resolveSibling(antiguo.ruta().getFileName().toString().replace(".jpg", "_mini.jpg"));
+        Files.writeString(variante, "mini");
+        Path temporal = directorioSubidas.resolve("nodo1/blobs/subida-1.tmp");
+        Files.writeString(temporal, "a medias");
+        envejecer(antiguo.ruta());
+        envejecer(variante);
+        envejecer(temporal);
+        AlmacenBlobService.BlobGuardado reciente = guardar("reciente");
+
+        almacenBlobService.purgarHuerfanos();
+
+        assertFalse(Files.exists(antiguo.ruta()));
+        assertFalse(Files.exists(variante));
+        assertFalse(Files.exists(temporal));
+        assertTrue(Files.exists(reciente.ruta()));
+    }
+}
@@ -0,0 +1,183 @@
+package com.ecovivashop.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.ecovivashop.config.AsyncConfig;
+import com.ecovivashop.entity.TransaccionPago;
+import com.ecovivashop.entity.TransaccionPago.EstadoTransaccion;
+import com.ecovivashop.entity.TransaccionPago.MetodoPago;
+import com.ecovivashop.repository.TransaccionPagoRepository;
+
+/**
+ * Prueba de carga del checkout con tarjeta: 2.000 pagos simultáneos contra el
+ * procesador simulado, atendidos como los atendería Tomcat. No es un test; se
+ * ejecuta a mano tras compilar los tests:
+ *
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *     com.ecovivashop.service.CheckoutCargaBenchmark [plataforma|virtual] [latencia-ms] [hilos-pago]
+ * </pre>
+ *
+ * Compara el pago bloqueante anterior (el hilo de la petición espera al banco)
+ * con la pasarela asíncrona. En modo plataforma las peticiones van a un pool fijo
+ * de 200 hilos, el máximo por defecto de Tomcat; en modo virtual cada petición
+ * tiene su hilo virtual, como con spring.threads.virtual.enabled=true. En Java 17
+ * el modo virtual no existe y se mide el de plataforma. El repositorio está en
+ * memoria, así que con pocos núcleos la sobrecarga propia del proceso pesa en las
+ * respuestas del modo asíncrono; lo que interesa es la diferencia con el bloqueante.
+ */
+public class CheckoutCargaBenchmark {
+
+    private static final int PAGOS = 2_000;
+    private static final int HILOS_TOMCAT = 200;
+    private static final int RONDAS = 3;
+
+    private static long inicioCarga;
+
+    public static void main(String[] args) throws Exception {
+        boolean virtual = args.length > 0 && "virtual".equals(args[0]);
+        long latenciaMs = args.length > 1 ? Long.parseLong(args[1]) : 200;
+        int hilosPago = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        if (virtual && !AsyncConfig.hilosVirtualesDisponibles()) {
+            System.out.println("Java " + Runtime.version().feature() + " no tiene hilos virtuales: se mide con hilos de plataforma");
+            virtual = false;
+        }
+        System.out.printf("%d pagos simultáneos, latencia del banco %d ms, peticiones en hilos %s%n%n",
+            PAGOS, latenciaMs, virtual ? "virtuales" : "de plataforma (" + HILOS_TOMCAT + ")");
+
+        ProcesadorPagoSimulado procesador = new ProcesadorPagoSimulado(latenciaMs, 1.0);
+
+        // La primera ronda sirve de calentamiento
+        for (int ronda = 1; ronda <= RONDAS; ronda++) {
+            System.out.println("Ronda " + ronda);
+
+            // Antes: la petición no responde hasta que el banco autoriza
+            medir("Bloqueante", virtual, () -> procesador.autorizar(new TransaccionPago()), null);
+
+            // Ahora: la petición responde con el pago en PROCESANDO y el pool de pagos lo completa
+            CountDownLatch autorizados = new CountDownLatch(PAGOS);
+            ThreadPoolTaskExecutor poolPagos = new AsyncConfig(virtual).procesadorPagoExecutor(hilosPago, PAGOS);
+            PasarelaPagoService pasarela = crearPasarela(procesador, poolPagos, autorizados);
+            medir("Asíncrono (" + hilosPago + " hilos de pago)", virtual,
+                () -> pasarela.procesarPago(solicitudTarjeta()), autorizados);
+            poolPagos.shutdown();
+        }
+    }
+
+    private static void medir(String nombre, boolean virtual, Runnable checkout, CountDownLatch autorizados)
+            throws InterruptedException {
+        Executor peticiones = virtual
+            ? new VirtualThreadTaskExecutor("peticion-")
+            : Executors.newFixedThreadPool(HILOS_TOMCAT);
+        long[] respuestasNs = new long[PAGOS];
+        AtomicInteger errores = new AtomicInteger();
+        CountDownLatch salida = new CountDownLatch(1);
+        CountDownLatch respondidos = new CountDownLatch(PAGOS);
+
+        for (int i = 0; i < PAGOS; i++) {
+            int indice = i;
+            peticiones.execute(() -> {
+                try {
+                    salida.await();
+                    checkout.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    errores.incrementAndGet();
+                }
+                // Tiempo desde que llegan todas las peticiones hasta que esta responde
+                respuestasNs[indice] = System.nanoTime() - inicioCarga;
+                respondidos.countDown();
+            });
+        }
+
+        inicioCarga = System.nanoTime();
+        salida.countDown();
+        respondidos.await();
+        long respuestaTotalNs = System.nanoTime() - inicioCarga;
+        if (autorizados != null) {
+            autorizados.await(5, TimeUnit.MINUTES);
+        }
+        long autorizacionTotalNs = System.nanoTime() - inicioCarga;
+        if (peticiones instanceof ExecutorService pool) {
+            pool.shutdown();
+        }
+
+        Arrays.sort(respuestasNs);
+        System.out.printf("%s%n  respuestas: %.0f checkouts/s, p50 %d ms, p99 %d ms%n  todos autorizados en %d ms, errores %d%n%n",
+            nombre,
+            PAGOS / (respuestaTotalNs / 1e9),
+            respuestasNs[PAGOS / 2] / 1_000_000,
+            respuestasNs[PAGOS * 99 / 100] / 1_000_000,
+            autorizacionTotalNs / 1_000_000,
+            errores.get());
+    }
+
+    // Misma pasarela que en producción, con el repositorio en memoria
+    private static PasarelaPagoService crearPasarela(ProcesadorPago procesador, ThreadPoolTaskExecutor poolPagos,
+                                                     CountDownLatch autorizados) {
+        Map<Long, TransaccionPago> transacciones = new ConcurrentHashMap<>();
+        AtomicLong secuencia = new AtomicLong();
+        // stubOnly: sin registrar invocaciones, que serializarían los hilos
+        TransaccionPagoRepository repository = mock(TransaccionPagoRepository.class, withSettings().stubOnly());
+        when(repository.save(any(TransaccionPago.class))).thenAnswer(invocation -> {
+            TransaccionPago transaccion = invocation.getArgument(0);
+            if (transaccion.getIdTransaccion() == null) {
+                transaccion.setIdTransaccion(secuencia.incrementAndGet());
+            }
+            transacciones.put(transaccion.getIdTransaccion(), transaccion);
+            return transaccion;
+        });
+        when(repository.findById(anyLong()))
+            .thenAnswer(invocation -> Optional.ofNullable(transacciones.get(invocation.<Long>getArgument(0))));
+        when(repository.findByTransactionId(anyString())).thenReturn(Optional.empty());
+
+        PasarelaPagoService pasarela = new PasarelaPagoService();
+        ReflectionTestUtils.setField(pasarela, "transaccionRepository", repository);
+        ReflectionTestUtils.setField(pasarela, "procesadorPago", procesador);
+        ReflectionTestUtils.setField(pasarela, "procesadorPagoExecutor", poolPagos);
+        ReflectionTestUtils.setField(pasarela, "eventPublisher",
+            (ApplicationEventPublisher) evento -> {
+                if (evento instanceof PagoActualizadoEvent pago && pago.estado() != EstadoTransaccion.PROCESANDO) {
+                    autorizados.countDown();
+                }
+            });
+        return pasarela;
+    }
+
+    private static PasarelaPagoService.SolicitudPago solicitudTarjeta() {
+        PasarelaPagoService.SolicitudPago solicitud = new PasarelaPagoService.SolicitudPago(
+            "ECO-C-" + System.nanoTime(), new BigDecimal("89.90"), MetodoPago.TARJETA_CREDITO, null);
+        solicitud.setNumeroTarjeta("4111111111111111");
+        solicitud.setNombreTarjeta("ANA RIOS");
+        solicitud.setCvv("123");
+        solicitud.setMesVencimiento("12");
+        solicitud.setAnoVencimiento("2030");
+        return solicitud;
+    }
+}
@@ -0,0 +1,217 @@
+package com.ecovivashop.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import com.ecovivashop.entity.EmailPendiente;
+import com.ecovivashop.repository.EmailPendienteRepository;
+
+class EmailOutboxServiceTest {
+
+    private SmtpServidorPrueba servidorSmtp;
+    private EmailPendienteRepository emailPendienteRepository;
+    private EmailService emailService;
+    private EmailOutboxService emailOutboxService;
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        servidorSmtp = new SmtpServidorPrueba();
+
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(servidorSmtp.getPuerto());
+        mailSender.getJavaMailProperties().put("mail.smtp.connectiontimeout", "2000");
+        mailSender.getJavaMailProperties().put("mail.smtp.timeout", "2000");
+
+        TemplateEngine templateEngine = mock(TemplateEngine.class);
+        when(templateEngine.process(eq("email/confirmacion-pedido"), any(Context.class))).thenReturn("<p>Pedido</p>");
+
+        emailService = new EmailService();
+        ReflectionTestUtils.setField(emailService, "mailSender", mailSender);
+        ReflectionTestUtils.setField(emailService, "templateEngine", templateEngine);
+        ReflectionTestUtils.setField(emailService, "fromEmail", "tienda@ecovivashop.com");
+
+        // La bandeja se inserta por JDBC: tabla real en una base en memoria
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:outbox" + System.nanoTime(), "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE tb_email_pendiente (id_email BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "tipo VARCHAR(40) NOT NULL, clave_deduplicacion VARCHAR(100) NOT NULL UNIQUE, "
+            + "destinatario VARCHAR(150) NOT NULL, nombre_destinatario VARCHAR(200), numero_pedido VARCHAR(20), "
+            + "total_pedido VARCHAR(30), estado VARCHAR(20) NOT NULL, intentos INT NOT NULL, "
+            + "proximo_intento TIMESTAMP NOT NULL, ultimo_error VARCHAR(500), fecha_creacion TIMESTAMP NOT NULL, "
+            + "fecha_envio TIMESTAMP)");
+
+        emailPendienteRepository = mock(EmailPendienteRepository.class);
+        // Ejecutor en el mismo hilo para que la prueba sea determinista
+        emailOutboxService = new EmailOutboxService(emailPendienteRepository, emailService, jdbcTemplate, Runnable::run, 30);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        servidorSmtp.close();
+        dataSource.destroy();
+    }
+
+    private int contarPendientes() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_email_pendiente", Integer.class);
+    }
+
+    private EmailPendiente crearPendiente(long id, String destinatario) {
+        EmailPendiente email = new EmailPendiente();
+        email.setIdEmail(id);
+        email.setTipo(EmailPendiente.TIPO_CONFIRMACION_PEDIDO);
+        email.setClaveDeduplicacion(EmailPendiente.TIPO_CONFIRMACION_PEDIDO + ":ECO-" + id);
+        email.setDestinatario(destinatario);
+        email.setNombreDestinatario("Cliente " + id);
+        email.setNumeroPedido("ECO-" + id);
+        email.setTotalPedido("100.00");
+        email.prePersist();
+        return email;
+    }
+
+    private void prepararLote(List<EmailPendiente> lote) {
+        List<Long> ids = lote.stream().map(EmailPendiente::getIdEmail).toList();
+        when(emailPendienteRepository.findIdsListosParaEnvio(any(LocalDateTime.class), any(Pageable.class)))
+            .thenReturn(ids)
+            .thenReturn(List.of());
+        when(emailPendienteRepository.reclamar(any(), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(1);
+        when(emailPendienteRepository.findAllById(ids)).thenReturn(lote);
+    }
+
+    @Test
+    void testProcesarPendientes_LoteEnUnaSolaConexion() {
+        List<EmailPendiente> lote = List.of(
+            crearPendiente(1L, "ana@test.com"),
+            crearPendiente(2L, "luis@test.com"),
+            crearPendiente(3L, "eva@test.com"));
+        prepararLote(lote);
+
+        emailOutboxService.procesarPendientes();
+
+        assertEquals(1, servidorSmtp.getConexiones());
+        assertEquals(3, servidorSmtp.getDestinatariosRecibidos().size());
+        assertTrue(servidorSmtp.getDestinatariosRecibidos().containsAll(List.of("ana@test.com", "luis@test.com", "eva@test.com")));
+        for (EmailPendiente email : lote) {
+            assertEquals(EmailPendiente.ESTADO_ENVIADO, email.getEstado());
+        }
+        verify(emailPendienteRepository).saveAll(lote);
+    }
+
+    @Test
+    void testProcesarPendientes_FalloSeReprogramaConEspera() {
+        EmailPendiente aceptado = crearPendiente(1L, "ana@test.com");
+        EmailPendiente rechazado = crearPendiente(2L, "rechazado@test.com");
+        prepararLote(List.of(aceptado, rechazado));
+        LocalDateTime antes = LocalDateTime.now();
+
+        emailOutboxService.procesarPendientes();
+
+        assertEquals(EmailPendiente.ESTADO_ENVIADO, aceptado.getEstado());
+        assertEquals(EmailPendiente.ESTADO_PENDIENTE, rechazado.getEstado());
+        assertEquals(1, rechazado.getIntentos());
+        assertTrue(rechazado.getProximoIntento().isAfter(antes.plusSeconds(29)));
+        assertEquals(List.of("ana@test.com"), servidorSmtp.getDestinatariosRecibidos());
+    }
+
+    @Test
+    void testProcesarPendientes_AgotaIntentos() {
+        EmailPendiente rechazado = crearPendiente(1L, "rechazado@test.com");
+        rechazado.setIntentos(EmailOutboxService.MAX_INTENTOS - 1);
+        prepararLote(List.of(rechazado));
+
+        emailOutboxService.procesarPendientes();
+
+        assertEquals(EmailPendiente.ESTADO_FALLIDO, rechazado.getEstado());
+    }
+
+    @Test
+    void testProcesarPendientes_ReclamadoPorOtroWorker() {
+        when(emailPendienteRepository.findIdsListosParaEnvio(any(LocalDateTime.class), any(Pageable.class)))
+            .thenReturn(List.of(1L));
+        when(emailPendienteRepository.reclamar(eq(1L), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(0);
+
+        emailOutboxService.procesarPendientes();
+
+        verify(emailPendienteRepository, never()).findAllById(any());
+        assertEquals(0, servidorSmtp.getConexiones());
+    }
+
+    @Test
+    void testProcesarPendientes_ModoSimulacion() {
+        ReflectionTestUtils.setField(emailService, "fromEmail", "");
+        EmailPendiente email = crearPendiente(1L, "ana@test.com");
+        prepararLote(List.of(email));
+
+        emailOutboxService.procesarPendientes();
+
+        assertEquals(EmailPendiente.ESTADO_ENVIADO, email.getEstado());
+        assertEquals(0, servidorSmtp.getConexiones());
+    }
+
+    @Test
+    void testEncolarConfirmacionPedido_RegistraYDespiertaWorker() {
+        when(emailPendienteRepository.existsByClaveDeduplicacion("CONFIRMACION_PEDIDO:ECO-9")).thenReturn(false);
+        when(emailPendienteRepository.findIdsListosParaEnvio(any(LocalDateTime.class), any(Pageable.class)))
+            .thenReturn(List.of());
+
+        emailOutboxService.encolarConfirmacionPedido("ana@test.com", "Ana", "ECO-9", "50.00");
+
+        assertEquals("ana@test.com", jdbcTemplate.queryForObject(
+            "SELECT destinatario FROM tb_email_pendiente WHERE clave_deduplicacion = 'CONFIRMACION_PEDIDO:ECO-9'",
+            String.class));
+        // Sin transacción activa el worker arranca de inmediato
+        verify(emailPendienteRepository, times(1)).findIdsListosParaEnvio(any(LocalDateTime.class), any(Pageable.class));
+    }
+
+    @Test
+    void testEncolarConfirmacionPedido_DeduplicaPorPedido() {
+        when(emailPendienteRepository.existsByClaveDeduplicacion("CONFIRMACION_PEDIDO:ECO-9")).thenReturn(true);
+
+        emailOutboxService.encolarConfirmacionPedido("ana@test.com", "Ana", "ECO-9", "50.00");
+
+        assertEquals(0, contarPendientes());
+        verify(emailPendienteRepository, never()).findIdsListosParaEnvio(any(LocalDateTime.class), any(Pageable.class));
+    }
+
+    @Test
+    void testEncolarConfirmacionPedido_DuplicadoSimultaneoNoRevierteElPedido() {
+        // Otra transacción registró la confirmación después de la comprobación
+        when(emailPendienteRepository.existsByClaveDeduplicacion("CONFIRMACION_PEDIDO:ECO-9")).thenReturn(false);
+        when(emailPendienteRepository.findIdsListosParaEnvio(any(LocalDateTime.class), any(Pageable.class)))
+            .thenReturn(List.of());
+        emailOutboxService.encolarConfirmacionPedido("ana@test.com", "Ana", "ECO-9", "50.00");
+        jdbcTemplate.execute("CREATE TABLE tb_pedido_prueba (numero VARCHAR(20))");
+
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource)).executeWithoutResult(estado -> {
+            jdbcTemplate.update("INSERT INTO tb_pedido_prueba (numero) VALUES ('ECO-9')");
+            emailOutboxService.encolarConfirmacionPedido("ana@test.com", "Ana", "ECO-9", "50.00");
+        });
+
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_pedido_prueba", Integer.class));
+        assertEquals(1, contarPendientes());
+    }
+}
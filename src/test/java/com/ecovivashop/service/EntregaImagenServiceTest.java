@@ -0,0 +1,120 @@
+package com.ecovivashop.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class EntregaImagenServiceTest {
+
+    @TempDir
+    Path directorioSubidas;
+
+    private EntregaImagenService entregaImagenService;
+    private Path imagen;
+    private final byte[] contenido = "0123456789abcdef".getBytes();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        entregaImagenService = new EntregaImagenService(directorioSubidas.toString());
+        imagen = directorioSubidas.resolve("products/7/PRODUCT_7_foto.png");
+        Files.createDirectories(imagen.getParent());
+        Files.write(imagen, contenido);
+    }
+
+    private MockHttpServletResponse entregar(MockHttpServletRequest request, boolean inmutable) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(entregaImagenService.entregar(imagen, inmutable, request, response));
+        return response;
+    }
+
+    @Test
+    void testEntregar_CabecerasDeCache() throws IOException {
+        MockHttpServletResponse response = entregar(new MockHttpServletRequest("GET", "/uploads/x"), true);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("image/png", response.getContentType());
+        assertEquals(contenido.length, response.getContentLengthLong());
+        assertArrayEquals(contenido, response.getContentAsByteArray());
+        assertEquals(EntregaImagenService.CACHE_INMUTABLE, response.getHeader(HttpHeaders.CACHE_CONTROL));
+        assertNotNull(response.getHeader(HttpHeaders.ETAG));
+        assertNotNull(response.getHeader(HttpHeaders.LAST_MODIFIED));
+    }
+
+    @Test
+    void testPeticionCondicional_Responde304SinCuerpo() throws IOException {
+        String etag = entregar(new MockHttpServletRequest("GET", "/uploads/x"), false).getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletRequest condicional = new MockHttpServletRequest("GET", "/uploads/x");
+        condicional.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        MockHttpServletResponse response = entregar(condicional, false);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(EntregaImagenService.CACHE_REVALIDAR, response.getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    void testRango_Responde206ConLaParte() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/uploads/x");
+        request.addHeader(HttpHeaders.RANGE, "bytes=4-7");
+        MockHttpServletResponse response = entregar(request, true);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 4-7/16", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("4567", response.getContentAsString());
+
+        MockHttpServletRequest fueraDeRango = new MockHttpServletRequest("GET", "/uploads/x");
+        fueraDeRango.addHeader(HttpHeaders.RANGE, "bytes=100-");
+        assertEquals(416, entregar(fueraDeRango, true).getStatus());
+    }
+
+    @Test
+    void testTomcatConSendfile_NoSeCopiaElCuerpo() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/uploads/x");
+        request.setAttribute(EntregaImagenService.SENDFILE_SOPORTADO, Boolean.TRUE);
+        MockHttpServletResponse response = entregar(request, true);
+
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(contenido.length, response.getContentLengthLong());
+        assertEquals(imagen.toAbsolutePath().toString(), request.getAttribute(EntregaImagenService.SENDFILE_ARCHIVO));
+        assertEquals(0L, request.getAttribute(EntregaImagenService.SENDFILE_INICIO));
+        assertEquals((long) contenido.length, request.getAttribute(EntregaImagenService.SENDFILE_FIN));
+    }
+
+    @Test
+    void testMetadatos_SeCacheanHastaQueCambiaElArchivo() throws IOException {
+        EntregaImagenService.MetadatosArchivo primeros = entregaImagenService.obtenerMetadatos(imagen).orElseThrow();
+        assertSame(primeros, entregaImagenService.obtenerMetadatos(imagen).orElseThrow());
+
+        Files.write(imagen, "otro contenido".getBytes());
+        Files.setLastModifiedTime(imagen, FileTime.fromMillis(primeros.modificado() + 5000));
+        assertNotEquals(primeros.etag(), entregaImagenService.obtenerMetadatos(imagen).orElseThrow().etag());
+
+        Files.delete(imagen);
+        assertFalse(entregaImagenService.entregar(imagen, true,
+            new MockHttpServletRequest("GET", "/uploads/x"), new MockHttpServletResponse()));
+    }
+
+    @Test
+    void testResolverSubida_NoSaleDelDirectorio() {
+        assertTrue(entregaImagenService.resolverSubida("products/7/PRODUCT_7_foto.png").isPresent());
+        assertTrue(entregaImagenService.resolverSubida("../application.properties").isEmpty());
+        assertTrue(entregaImagenService.resolverSubida("products/../../secreto.txt").isEmpty());
+    }
+}
@@ -0,0 +1,232 @@
+package com.ecovivashop.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.ecovivashop.entity.ImagenPerfil.TipoUsuario;
+import com.ecovivashop.entity.ImagenProducto;
+import com.ecovivashop.entity.ImagenProducto.EstadoVariantes;
+import com.ecovivashop.entity.ImagenProducto.Variante;
+import com.ecovivashop.entity.Producto;
+import com.ecovivashop.repository.ImagenPerfilRepository;
+import com.ecovivashop.repository.ImagenProductoRepository;
+import com.ecovivashop.repository.ProductoRepository;
+
+class ImagenServiceTest {
+
+    @TempDir
+    Path directorioSubidas;
+
+    private ImagenService imagenService;
+    private AlmacenBlobService almacenBlobService;
+    private ProductoRepository productoRepository;
+    private final Producto producto = new Producto();
+    private final Map<Long, ImagenProducto> imagenes = new HashMap<>();
+    // Las tareas del pool se guardan para ejecutarlas cuando la prueba lo decida
+    private final List<Runnable> tareasPendientes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ImagenProductoRepository repository = mock(ImagenProductoRepository.class);
+        when(repository.save(any(ImagenProducto.class))).thenAnswer(invocation -> {
+            ImagenProducto imagen = invocation.getArgument(0);
+            if (imagen.getId() == null) {
+                imagen.setId((long) imagenes.size() + 1);
+            }
+            imagenes.put(imagen.getId(), imagen);
+            return imagen;
+        });
+        when(repository.findById(anyLong()))
+            .thenAnswer(invocation -> Optional.ofNullable(imagenes.get(invocation.<Long>getArgument(0))));
+        when(repository.countActivasByNombreArchivo(anyString())).thenAnswer(invocation -> imagenes.values().stream()
+            .filter(imagen -> imagen.getActivo() && imagen.getNombreArchivo().equals(invocation.getArgument(0)))
+            .count());
+
+        almacenBlobService = new AlmacenBlobService(directorioSubidas.toString(), repository,
+            mock(ImagenPerfilRepository.class), mock(ProductoRepository.class),
+            new LocalBlobStorage(directorioSubidas.resolve("blobs")), Runnable::run);
+        productoRepository = mock(ProductoRepository.class);
+        producto.setIdProducto(7);
+        when(productoRepository.findById(7)).thenReturn(Optional.of(producto));
+        imagenService = new ImagenService();
+        ReflectionTestUtils.setField(imagenService, "productoRepository", productoRepository);
+        ReflectionTestUtils.setField(imagenService, "almacenBlobService", almacenBlobService);
+        ReflectionTestUtils.setField(imagenService, "imagenProductoRepository", repository);
+        ReflectionTestUtils.setField(imagenService, "imagenExecutor", (java.util.concurrent.Executor) tareasPendientes::add);
+    }
+
+    private MockMultipartFile png(String nombre, int ancho, int alto) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_ARGB), "png", salida);
+        return new MockMultipartFile("imagen", nombre, "image/png", salida.toByteArray());
+    }
+
+    private void ejecutarPool() {
+        tareasPendientes.forEach(Runnable::run);
+        tareasPendientes.clear();
+    }
+
+    @Test
+    void testGuardarImagenProducto_RespondeAntesDeRedimensionar() throws IOException {
+        ImagenProducto imagen = imagenService.guardarImagenProducto(7L, png("botella.png", 2000, 1000), 0, true, "Botella");
+
+        // El original queda guardado tal cual y las variantes están encoladas
+        assertEquals(EstadoVariantes.PENDIENTE, imagen.getEstadoVariantes());
+        assertEquals(1, tareasPendientes.size());
+        assertEquals(2000, ImageIO.read(Path.of(imagen.getRutaArchivo()).toFile()).getWidth());
+        assertEquals("/uploads/blobs/" + imagen.getNombreArchivo(), imagen.getUrlTarjeta());
+    }
+
+    @Test
+    void testGenerarVariantes_UnArchivoPorTamañoSinAmpliar() throws IOException {
+        ImagenProducto imagen = imagenService.guardarImagenProducto(7L, png("botella.png", 2000, 1000), 0, true, "Botella");
+        ejecutarPool();
+
+        assertEquals(EstadoVariantes.LISTAS, imagen.getEstadoVariantes());
+        assertEquals(150, ImageIO.read(almacenBlobService.resolver(imagen.getArchivoMiniatura()).toFile()).getWidth());
+        assertEquals(400, ImageIO.read(almacenBlobService.resolver(imagen.getArchivoTarjeta()).toFile()).getWidth());
+        BufferedImage detalle = ImageIO.read(almacenBlobService.resolver(imagen.getArchivoDetalle()).toFile());
+        assertEquals(1000, detalle.getWidth());
+        assertEquals(500, detalle.getHeight());
+        assertEquals("/uploads/blobs/" + imagen.getArchivoTarjeta(), imagen.getUrlTarjeta());
+
+        // Una imagen pequeña no se amplía
+        ImagenProducto pequeña = imagenService.guardarImagenProducto(7L, png("icono.png", 120, 80), 1, false, null);
+        ejecutarPool();
+        Path detallePequeña = almacenBlobService.resolver(pequeña.getArchivoVariante(Variante.DETALLE));
+        assertEquals(120, ImageIO.read(detallePequeña.toFile()).getWidth());
+    }
+
+    @Test
+    void testImagenPrincipal_ProductoPasaAlDetalleCuandoEstaListo() throws IOException {
+        ImagenProducto imagen = imagenService.guardarImagenProducto(7L, png("botella.png", 2000, 1000), 0, true, "Botella");
+
+        // Mientras se generan las variantes el producto muestra el original
+        assertEquals(imagen.getUrl(), producto.getImagenUrl());
+
+        ejecutarPool();
+        assertEquals("/uploads/blobs/" + imagen.getArchivoDetalle(), producto.getImagenUrl());
+        verify(productoRepository, times(2)).save(producto);
+    }
+
+    @Test
+    void testImagenPrincipal_NoPisaUnaImagenElegidaDespues() throws IOException {
+        imagenService.guardarImagenProducto(7L, png("botella.png", 2000, 1000), 0, true, "Botella");
+        producto.setImagenUrl("/img/productos/otra.jpg");
+
+        ejecutarPool();
+        assertEquals("/img/productos/otra.jpg", producto.getImagenUrl());
+        verify(productoRepository, times(1)).save(producto);
+    }
+
+    @Test
+    void testGenerarVariantes_ArchivoNoLegibleSeSirveOriginal() throws IOException {
+        MockMultipartFile corrupto = new MockMultipartFile("imagen", "foto.jpg", "image/jpeg", new byte[] {1, 2, 3});
+        ImagenProducto imagen = imagenService.guardarImagenProducto(7L, corrupto, 0, false, null);
+        ejecutarPool();
+
+        assertEquals(EstadoVariantes.NO_APLICA, imagen.getEstadoVariantes());
+        assertNull(imagen.getArchivoTarjeta());
+        assertTrue(Files.exists(Path.of(imagen.getRutaArchivo())));
+        assertEquals("/uploads/blobs/" + imagen.getNombreArchivo(), imagen.getUrlDetalle());
+    }
+
+    @Test
+    void testSvg_NoSeEncolaRedimension() throws IOException {
+        MockMultipartFile svg = new MockMultipartFile("imagen", "logo.svg", "image/svg+xml", "<svg/>".getBytes());
+        ImagenProducto imagen = imagenService.guardarImagenProducto(7L, svg, 0, false, null);
+
+        assertEquals(EstadoVariantes.NO_APLICA, imagen.getEstadoVariantes());
+        assertTrue(tareasPendientes.isEmpty());
+    }
+
+    @Test
+    void testImagenDemasiadoGrande_SeRechazaPorCabecera() throws IOException {
+        ReflectionTestUtils.setField(imagenService, "maxMegapixeles", 1);
+        MockMultipartFile grande = png("panoramica.png", 2000, 1000);
+
+        IOException error = assertThrows(IOException.class,
+            () -> imagenService.guardarImagenProducto(7L, grande, 0, true, null));
+        assertTrue(error.getMessage().contains("2000x1000"));
+        assertThrows(IOException.class,
+            () -> imagenService.guardarImagenPerfil(3L, TipoUsuario.CLIENTE, grande));
+
+        // No se guarda nada ni se encola trabajo
+        assertTrue(imagenes.isEmpty());
+        assertTrue(tareasPendientes.isEmpty());
+        assertTrue(Files.notExists(directorioSubidas.resolve("blobs")));
+    }
+
+    @Test
+    void testGenerarVariantes_SubmuestreoConservaProporcion() throws IOException {
+        // 2600 px de lado mayor: se decodifica a 1300 px y se escala a 1000
+        ImagenProducto imagen = imagenService.guardarImagenProducto(7L, png("alta.png", 1300, 2600), 0, true, null);
+        ejecutarPool();
+
+        BufferedImage detalle = ImageIO.read(almacenBlobService.resolver(imagen.getArchivoDetalle()).toFile());
+        assertEquals(500, detalle.getWidth());
+        assertEquals(1000, detalle.getHeight());
+        assertEquals(75, ImageIO.read(almacenBlobService.resolver(imagen.getArchivoMiniatura()).toFile()).getWidth());
+    }
+
+    @Test
+    void testMismaFotoEnDosProductos_UnSoloArchivo() throws IOException {
+        MockMultipartFile foto = png("botella.png", 800, 600);
+        ImagenProducto primera = imagenService.guardarImagenProducto(7L, foto, 0, true, null);
+        ImagenProducto segunda = imagenService.guardarImagenProducto(8L, foto, 0, true, null);
+        ejecutarPool();
+
+        // Mismo contenido, mismo archivo repartido por hash: ab/cd/abcd...png
+        assertEquals(primera.getNombreArchivo(), segunda.getNombreArchivo());
+        assertTrue(primera.getNombreArchivo().matches("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}\\.png"));
+        assertEquals(primera.getUrlTarjeta(), segunda.getUrlTarjeta());
+        Path original = almacenBlobService.resolver(primera.getNombreArchivo());
+        try (var archivos = Files.list(original.getParent())) {
+            assertEquals(1 + Variante.values().length, archivos.count());
+        }
+
+        // Eliminar las imágenes no borra el archivo; lo hace la purga cuando ya nadie lo usa
+        imagenService.eliminarImagenProducto(primera.getId());
+        imagenService.eliminarImagenProducto(segunda.getId());
+        assertTrue(Files.exists(original));
+        try (var archivos = Files.list(original.getParent())) {
+            for (Path archivo : archivos.toList()) {
+                Files.setLastModifiedTime(archivo, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+            }
+        }
+        almacenBlobService.purgarHuerfanos();
+        assertTrue(Files.notExists(original));
+        assertTrue(Files.notExists(almacenBlobService.resolver(segunda.getArchivoTarjeta())));
+    }
+}
@@ -0,0 +1,109 @@
+package com.ecovivashop.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.ecovivashop.entity.Inventario;
+import com.ecovivashop.entity.Producto;
+import com.ecovivashop.entity.Rol;
+import com.ecovivashop.repository.InventarioRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+class InvalidacionCacheClusterTest {
+
+    private CanalInvalidacionLocal canal;
+    private Nodo nodoA;
+    private Nodo nodoB;
+
+    // Un nodo simulado: su propia caché de segundo nivel y su propio publicador de eventos
+    private record Nodo(InvalidacionCacheCluster cluster, org.hibernate.Cache cache,
+                        InventarioRepository inventarioRepository, ApplicationEventPublisher publisher) {
+    }
+
+    private Nodo crearNodo() {
+        org.hibernate.Cache cache = mock(org.hibernate.Cache.class);
+        jakarta.persistence.Cache cacheJpa = mock(jakarta.persistence.Cache.class);
+        when(cacheJpa.unwrap(org.hibernate.Cache.class)).thenReturn(cache);
+        EntityManagerFactory emf = mock(EntityManagerFactory.class);
+        when(emf.getCache()).thenReturn(cacheJpa);
+        InventarioRepository inventarioRepository = mock(InventarioRepository.class);
+        ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+
+        InvalidacionCacheCluster cluster = new InvalidacionCacheCluster(canal, emf, inventarioRepository, publisher);
+        cluster.suscribir();
+        return new Nodo(cluster, cache, inventarioRepository, publisher);
+    }
+
+    @BeforeEach
+    void setUp() {
+        canal = new CanalInvalidacionLocal();
+        nodoA = crearNodo();
+        nodoB = crearNodo();
+    }
+
+    @Test
+    void testCambioDeProducto_DesalojaYRepublicaEnElOtroNodo() {
+        ProductoModificadoEvent evento = new ProductoModificadoEvent(7, false, "Panel", null, "Energía", null, true);
+
+        nodoA.cluster().alModificarProducto(evento);
+
+        verify(nodoB.cache()).evict(Producto.class, 7);
+        verify(nodoB.cache()).evictQueryRegions();
+        verify(nodoB.publisher()).publishEvent((Object) evento);
+        // El nodo de origen ya tiene su caché al día
+        verify(nodoA.cache(), never()).evict(any(Class.class), any());
+        verify(nodoA.publisher(), never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void testCambioDeInventario_DesalojaEnElOtroNodo() {
+        when(nodoB.inventarioRepository().findIdsByProductoIds(Set.of(3))).thenReturn(List.of(30));
+
+        nodoA.cluster().alModificarInventario(InventarioModificadoEvent.deProductos(List.of(3)));
+
+        verify(nodoA.inventarioRepository(), never()).findIdsByProductoIds(any());
+        verify(nodoB.cache()).evict(Inventario.class, 30);
+        verify(nodoB.publisher()).publishEvent((Object) InventarioModificadoEvent.deProductos(List.of(3)));
+    }
+
+    @Test
+    void testVariacionDeMetricas_SeRepublicaSinDesalojar() {
+        VariacionMetricasEvent evento = new VariacionMetricasEvent(Map.of("pedidos.estado.PENDIENTE", 1L));
+
+        nodoA.cluster().alVariarMetricas(evento);
+
+        verify(nodoB.publisher()).publishEvent((Object) evento);
+        verify(nodoB.cache(), never()).evictQueryRegions();
+    }
+
+    @Test
+    void testEventoRepublicado_NoSeReenvia() {
+        // El publicador del nodo B entrega el evento a sus listeners, como haría Spring
+        CanalInvalidacionCache canalEspia = mock(CanalInvalidacionCache.class);
+        canal.suscribir(canalEspia::publicar);
+        doAnswer(invocacion -> {
+            nodoB.cluster().alModificarRol((RolModificadoEvent) invocacion.getArgument(0));
+            return null;
+        }).when(nodoB.publisher()).publishEvent(any(Object.class));
+
+        nodoA.cluster().alModificarRol(new RolModificadoEvent(2));
+
+        verify(nodoB.cache()).evict(Rol.class, 2);
+        // Solo llega al canal el mensaje original del nodo A
+        verify(canalEspia).publicar(any(MensajeInvalidacion.class));
+        assertNotEquals(nodoA.cluster().getNodoId(), nodoB.cluster().getNodoId());
+    }
+}
@@ -7,13 +7,16 @@ import static org.mockito.Mockito.*;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import com.ecovivashop.entity.Inventario;
 import com.ecovivashop.entity.Producto;
@@ -29,6 +32,9 @@ class InventarioServiceTest {
     @Mock
     private ProductoRepository productoRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private InventarioService inventarioService;
 
@@ -139,107 +145,142 @@ class InventarioServiceTest {
     @Test
     void testReducirStock_InventarioExiste_StockSuficiente() {
         // Given
-        Inventario inventario = crearInventario(1, 10);
-        when(inventarioRepository.findByProductoId(1)).thenReturn(Optional.of(inventario));
-        when(inventarioRepository.save(any(Inventario.class))).thenReturn(inventario);
+        when(inventarioRepository.reducirStockSiDisponible(eq(1), eq(5), any(LocalDateTime.class), eq("usuario")))
+            .thenReturn(1);
 
         // When
         inventarioService.reducirStock(1, 5, "usuario");
 
         // Then
-        assertEquals(5, inventario.getStock());
-        assertEquals("usuario", inventario.getUsuarioActualizacion());
-        verify(inventarioRepository).findByProductoId(1);
-        verify(inventarioRepository).save(inventario);
+        verify(inventarioRepository).reducirStockSiDisponible(eq(1), eq(5), any(LocalDateTime.class), eq("usuario"));
+        verify(inventarioRepository, never()).findByProductoId(anyInt());
+        verify(inventarioRepository, never()).save(any(Inventario.class));
     }
 
     @Test
     void testReducirStock_InventarioNoExiste() {
         // Given
-        when(inventarioRepository.findByProductoId(1)).thenReturn(Optional.empty());
+        when(inventarioRepository.reducirStockSiDisponible(eq(1), eq(5), any(LocalDateTime.class), eq("usuario")))
+            .thenReturn(0);
+        when(inventarioRepository.findStockByProductoId(1)).thenReturn(Optional.empty());
 
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class, () ->
             inventarioService.reducirStock(1, 5, "usuario"));
         assertEquals("Inventario no encontrado para el producto ID: 1", exception.getMessage());
-        verify(inventarioRepository).findByProductoId(1);
         verify(inventarioRepository, never()).save(any(Inventario.class));
     }
 
     @Test
     void testReducirStock_StockInsuficiente() {
         // Given
-        Inventario inventario = crearInventario(1, 3);
-        when(inventarioRepository.findByProductoId(1)).thenReturn(Optional.of(inventario));
+        when(inventarioRepository.reducirStockSiDisponible(eq(1), eq(5), any(LocalDateTime.class), eq("usuario")))
+            .thenReturn(0);
+        when(inventarioRepository.findStockByProductoId(1)).thenReturn(Optional.of(3));
 
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class, () ->
             inventarioService.reducirStock(1, 5, "usuario"));
         assertEquals("Stock insuficiente. Disponible: 3, Solicitado: 5", exception.getMessage());
-        verify(inventarioRepository).findByProductoId(1);
         verify(inventarioRepository, never()).save(any(Inventario.class));
     }
 
+    @Test
+    void testReducirStock_CantidadInvalida() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () ->
+            inventarioService.reducirStock(1, 0, "usuario"));
+        verify(inventarioRepository, never()).reducirStockSiDisponible(anyInt(), anyInt(), any(), anyString());
+    }
+
+    @Test
+    void testReservarStock_TodasLasLineasConStock() {
+        // Given
+        Map<Integer, Integer> carrito = Map.of(1, 2, 2, 3);
+        when(inventarioRepository.reservarStockEnLote(carrito, "usuario")).thenReturn(List.of());
+
+        // When
+        inventarioService.reservarStock(carrito, "usuario");
+
+        // Then
+        verify(inventarioRepository).reservarStockEnLote(carrito, "usuario");
+        verify(inventarioRepository, never()).reducirStockSiDisponible(anyInt(), anyInt(), any(), anyString());
+        verify(eventPublisher).publishEvent(new InventarioModificadoEvent(Set.of(1, 2)));
+    }
+
+    @Test
+    void testReservarStock_LineaSinStock() {
+        // Given
+        Map<Integer, Integer> carrito = Map.of(1, 2, 2, 30);
+        when(inventarioRepository.reservarStockEnLote(carrito, "usuario")).thenReturn(List.of(2));
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class, () ->
+            inventarioService.reservarStock(carrito, "usuario"));
+        assertEquals("Stock insuficiente para los productos ID: [2]", exception.getMessage());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
     @Test
     void testAumentarStock_InventarioExiste() {
         // Given
-        Inventario inventario = crearInventario(1, 10);
-        when(inventarioRepository.findByProductoId(1)).thenReturn(Optional.of(inventario));
-        when(inventarioRepository.save(any(Inventario.class))).thenReturn(inventario);
+        when(inventarioRepository.aumentarStockAtomico(eq(1), eq(5), any(LocalDateTime.class), eq("usuario")))
+            .thenReturn(1);
 
         // When
         inventarioService.aumentarStock(1, 5, "usuario");
 
         // Then
-        assertEquals(15, inventario.getStock());
-        assertEquals("usuario", inventario.getUsuarioActualizacion());
-        verify(inventarioRepository).findByProductoId(1);
-        verify(inventarioRepository).save(inventario);
+        verify(inventarioRepository).aumentarStockAtomico(eq(1), eq(5), any(LocalDateTime.class), eq("usuario"));
+        verify(inventarioRepository, never()).save(any(Inventario.class));
+    }
+
+    @Test
+    void testAumentarStock_CantidadNoPositiva() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () ->
+            inventarioService.aumentarStock(1, 0, "usuario"));
+        assertEquals("La cantidad a aumentar debe ser mayor que cero", exception.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> inventarioService.aumentarStock(1, -2, "usuario"));
+        verify(inventarioRepository, never()).aumentarStockAtomico(anyInt(), anyInt(), any(LocalDateTime.class), anyString());
     }
 
     @Test
     void testAumentarStock_InventarioNoExiste() {
         // Given
-        when(inventarioRepository.findByProductoId(1)).thenReturn(Optional.empty());
+        when(inventarioRepository.aumentarStockAtomico(eq(1), eq(5), any(LocalDateTime.class), eq("usuario")))
+            .thenReturn(0);
 
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class, () ->
             inventarioService.aumentarStock(1, 5, "usuario"));
         assertEquals("Inventario no encontrado para el producto ID: 1", exception.getMessage());
-        verify(inventarioRepository).findByProductoId(1);
         verify(inventarioRepository, never()).save(any(Inventario.class));
     }
 
     @Test
     void testAjustarStock_Aumento() {
         // Given
-        Inventario inventario = crearInventario(1, 10);
-        when(inventarioRepository.findByProductoId(1)).thenReturn(Optional.of(inventario));
-        when(inventarioRepository.save(any(Inventario.class))).thenReturn(inventario);
+        when(inventarioRepository.aumentarStockAtomico(eq(1), eq(5), any(LocalDateTime.class), eq("usuario - motivo")))
+            .thenReturn(1);
 
         // When
         inventarioService.ajustarStock(1, 5, "motivo", "usuario");
 
         // Then
-        assertEquals(15, inventario.getStock());
-        verify(inventarioRepository).findByProductoId(1);
-        verify(inventarioRepository).save(inventario);
+        verify(inventarioRepository).aumentarStockAtomico(eq(1), eq(5), any(LocalDateTime.class), eq("usuario - motivo"));
     }
 
     @Test
     void testAjustarStock_Reduccion() {
         // Given
-        Inventario inventario = crearInventario(1, 10);
-        when(inventarioRepository.findByProductoId(1)).thenReturn(Optional.of(inventario));
-        when(inventarioRepository.save(any(Inventario.class))).thenReturn(inventario);
+        when(inventarioRepository.reducirStockSiDisponible(eq(1), eq(3), any(LocalDateTime.class), eq("usuario - motivo")))
+            .thenReturn(1);
 
         // When
         inventarioService.ajustarStock(1, -3, "motivo", "usuario");
 
         // Then
-        assertEquals(7, inventario.getStock());
-        verify(inventarioRepository).findByProductoId(1);
-        verify(inventarioRepository).save(inventario);
+        verify(inventarioRepository).reducirStockSiDisponible(eq(1), eq(3), any(LocalDateTime.class), eq("usuario - motivo"));
     }
 
     @Test
@@ -341,28 +382,27 @@ class InventarioServiceTest {
     @Test
     void testObtenerStockDisponible_InventarioExiste() {
         // Given
-        Inventario inventario = crearInventario(1, 15);
-        when(inventarioRepository.findByProductoId(1)).thenReturn(Optional.of(inventario));
+        when(inventarioRepository.findStockByProductoId(1)).thenReturn(Optional.of(15));
 
         // When
         Integer result = inventarioService.obtenerStockDisponible(1);
 
         // Then
         assertEquals(15, result);
-        verify(inventarioRepository).findByProductoId(1);
+        verify(inventarioRepository).findStockByProductoId(1);
     }
 
     @Test
     void testObtenerStockDisponible_InventarioNoExiste() {
         // Given
-        when(inventarioRepository.findByProductoId(1)).thenReturn(Optional.empty());
+        when(inventarioRepository.findStockByProductoId(1)).thenReturn(Optional.empty());
 
         // When
         Integer result = inventarioService.obtenerStockDisponible(1);
 
         // Then
         assertEquals(0, result);
-        verify(inventarioRepository).findByProductoId(1);
+        verify(inventarioRepository).findStockByProductoId(1);
     }
 
     @Test
@@ -0,0 +1,115 @@
+package com.ecovivashop.service;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import com.ecovivashop.entity.Pedido;
+import com.ecovivashop.entity.Producto;
+import com.ecovivashop.entity.Usuario;
+
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperExportManager;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+
+/**
+ * Latencia de rellenar y exportar a PDF: compilando el JRXML en cada petición, como
+ * hacía JasperExportService, frente a la plantilla compilada en caché. No es un
+ * test; se ejecuta a mano tras compilar los tests:
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     com.ecovivashop.service.JasperExportBenchmark
+ * </pre>
+ *
+ * El proyecto no incluye JMH, así que hace su propio calentamiento y consume los
+ * PDF generados para que el JIT no elimine el trabajo.
+ */
+public class JasperExportBenchmark {
+
+    private static final int PRODUCTOS = 200;
+    private static final int ITERACIONES = 30;
+    private static final int CALENTAMIENTO = 20;
+    private static final int RONDAS = 5;
+
+    private static long sumidero;
+
+    @FunctionalInterface
+    private interface Exportacion {
+        byte[] ejecutar() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        JasperExportService servicio = new JasperExportService(null, null, 20, System.getProperty("java.io.tmpdir"));
+        List<Producto> productos = crearProductos();
+        Pedido pedido = crearPedido();
+
+        Exportacion pedidoAnterior = () -> exportarCompilando(JasperExportService.PLANTILLA_PEDIDO, List.of(pedido));
+        Exportacion pedidoEnCache = () -> servicio.exportarPedidoJasperPDF(pedido);
+        Exportacion productosAnterior = () -> exportarCompilando(JasperExportService.PLANTILLA_PRODUCTOS, productos);
+        Exportacion productosEnCache = () -> servicio.exportarProductosJasperPDF(productos);
+
+        for (Exportacion exportacion : List.of(pedidoAnterior, pedidoEnCache, productosAnterior, productosEnCache)) {
+            for (int i = 0; i < CALENTAMIENTO; i++) {
+                sumidero += exportacion.ejecutar().length;
+            }
+        }
+
+        for (int ronda = 1; ronda <= RONDAS; ronda++) {
+            System.out.printf("Ronda %d: pedido anterior %.2f ms | en caché %.2f ms"
+                + " || %d productos anterior %.2f ms | en caché %.2f ms%n", ronda,
+                medir(pedidoAnterior), medir(pedidoEnCache),
+                PRODUCTOS, medir(productosAnterior), medir(productosEnCache));
+        }
+        System.out.println("(sumidero " + sumidero + ")");
+    }
+
+    private static double medir(Exportacion exportacion) throws Exception {
+        long inicio = System.nanoTime();
+        long acumulado = 0;
+        for (int i = 0; i < ITERACIONES; i++) {
+            acumulado += exportacion.ejecutar().length;
+        }
+        sumidero += acumulado;
+        return (System.nanoTime() - inicio) / 1_000_000.0 / ITERACIONES;
+    }
+
+    // Copia de lo que hacía JasperExportService antes de la caché
+    private static byte[] exportarCompilando(String ruta, List<?> datos) throws Exception {
+        try (InputStream jrxmlStream = JasperExportBenchmark.class.getResourceAsStream(ruta)) {
+            JasperReport jasperReport = JasperCompileManager.compileReport(jrxmlStream);
+            return JasperExportManager.exportReportToPdf(JasperFillManager.fillReport(
+                jasperReport, new HashMap<>(), new JRBeanCollectionDataSource(datos)));
+        }
+    }
+
+    private static List<Producto> crearProductos() {
+        List<Producto> productos = new ArrayList<>();
+        for (int i = 1; i <= PRODUCTOS; i++) {
+            Producto producto = new Producto();
+            producto.setIdProducto(i);
+            producto.setNombre("Producto " + i);
+            producto.setCategoria("Categoria" + i % 7);
+            producto.setPrecio(new BigDecimal(i + ".90"));
+            productos.add(producto);
+        }
+        return productos;
+    }
+
+    private static Pedido crearPedido() {
+        Pedido pedido = new Pedido();
+        pedido.setIdPedido(1);
+        pedido.setNumeroPedido("ORD-12345");
+        pedido.setTotal(new BigDecimal("150.00"));
+        Usuario usuario = new Usuario();
+        usuario.setNombre("John");
+        usuario.setApellido("Doe");
+        pedido.setUsuario(usuario);
+        return pedido;
+    }
+}
@@ -1,22 +1,46 @@
 package com.ecovivashop.service;
 
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 import com.ecovivashop.entity.Producto;
 import com.ecovivashop.entity.Pedido;
 import com.ecovivashop.entity.Usuario;
 
+import net.sf.jasperreports.engine.JRPrintText;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+
 class JasperExportServiceTest {
 
+    @TempDir
+    Path directorioSwap;
+
+    // Los reportes a partir de una lista o un pedido no usan la base de datos
+    private JasperExportService servicioSinBaseDeDatos() {
+        return new JasperExportService(null, null, 20, directorioSwap.toString());
+    }
+
     @Test
     void testExportarProductosJasperPDF() throws Exception {
-        JasperExportService jasperExportService = new JasperExportService();
+        JasperExportService jasperExportService = servicioSinBaseDeDatos();
 
         Producto p1 = new Producto();
         p1.setIdProducto(1);
@@ -38,7 +62,7 @@ class JasperExportServiceTest {
 
     @Test
     void testExportarPedidoJasperPDF() throws Exception {
-        JasperExportService jasperExportService = new JasperExportService();
+        JasperExportService jasperExportService = servicioSinBaseDeDatos();
 
         Pedido pedido = new Pedido();
         pedido.setIdPedido(1);
@@ -52,4 +76,56 @@ class JasperExportServiceTest {
         byte[] pdfBytes = jasperExportService.exportarPedidoJasperPDF(pedido);
         assertTrue(pdfBytes != null && pdfBytes.length > 0, "El PDF de pedido generado no debe ser vacío");
     }
+
+    @Test
+    void testObtenerPlantilla_SeCompilaUnaVezYSeRecompilaSiCambia() throws Exception {
+        JasperExportService jasperExportService = servicioSinBaseDeDatos();
+
+        JasperReport primera = jasperExportService.obtenerPlantilla(JasperExportService.PLANTILLA_PEDIDO);
+        assertSame(primera, jasperExportService.obtenerPlantilla(JasperExportService.PLANTILLA_PEDIDO));
+
+        // En los tests la plantilla es un archivo de target/classes
+        Path jrxml = Paths.get(getClass().getResource(JasperExportService.PLANTILLA_PEDIDO).toURI());
+        FileTime original = Files.getLastModifiedTime(jrxml);
+        try {
+            Files.setLastModifiedTime(jrxml, FileTime.fromMillis(original.toMillis() + 60_000));
+            JasperReport recompilada = jasperExportService.obtenerPlantilla(JasperExportService.PLANTILLA_PEDIDO);
+            assertNotSame(primera, recompilada);
+            assertSame(recompilada, jasperExportService.obtenerPlantilla(JasperExportService.PLANTILLA_PEDIDO));
+        } finally {
+            Files.setLastModifiedTime(jrxml, original);
+        }
+    }
+
+    @Test
+    void testLlenarProductosConCursor_PaginasFueraDeMemoria() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:reporte_productos;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE tb_producto (id_producto INT PRIMARY KEY, nombre VARCHAR(100), "
+            + "categoria VARCHAR(50), precio DECIMAL(10,2), descripcion VARCHAR(1000))");
+        jdbcTemplate.batchUpdate("INSERT INTO tb_producto (id_producto, nombre, categoria, precio) VALUES (?, ?, ?, ?)",
+            IntStream.rangeClosed(1, 2000)
+                .mapToObj(i -> new Object[] {i, "Producto " + i, "Categoria" + i % 5, new BigDecimal(i + ".50")})
+                .toList());
+
+        // Solo dos páginas en memoria para que el resto tenga que ir al archivo
+        JasperExportService jasperExportService = new JasperExportService(jdbcTemplate,
+            new DataSourceTransactionManager(dataSource), 2, directorioSwap.toString());
+        JRSwapFileVirtualizer virtualizador = jasperExportService.crearVirtualizador();
+        try {
+            JasperPrint jasperPrint = jasperExportService.llenarProductosConCursor(virtualizador);
+
+            assertTrue(jasperPrint.getPages().size() > 2, "El reporte debe tener más páginas de las que caben en memoria");
+            // Las páginas que salieron de memoria se recuperan del archivo con su contenido
+            String ultimaPagina = jasperPrint.getPages().get(jasperPrint.getPages().size() - 1).getElements().stream()
+                .filter(JRPrintText.class::isInstance)
+                .map(elemento -> ((JRPrintText) elemento).getFullText())
+                .reduce("", String::concat);
+            assertTrue(ultimaPagina.contains("Producto 2000"));
+        } finally {
+            virtualizador.cleanup();
+            jdbcTemplate.execute("DROP TABLE tb_producto");
+        }
+    }
 }
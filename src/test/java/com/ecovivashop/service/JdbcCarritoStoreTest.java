@@ -0,0 +1,77 @@
+package com.ecovivashop.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import com.ecovivashop.dto.Carrito;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(JdbcCarritoStore.class)
+@TestPropertySource(properties = "app.carrito.store=jdbc")
+class JdbcCarritoStoreTest {
+
+    @Autowired
+    private JdbcCarritoStore carritoStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Requerido por el CommandLineRunner de datos iniciales
+    @TestConfiguration
+    static class PasswordEncoderConfig {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+    }
+
+    @Test
+    void testGuardarYObtener_SobreviveAOtraSesionConElMismoId() {
+        MockHttpSession session = new MockHttpSession();
+        assertTrue(carritoStore.obtener(session).isVacio());
+        assertNull(session.getAttribute(JdbcCarritoStore.ATRIBUTO_ID));
+
+        Carrito carrito = new Carrito();
+        carrito.agregar(3, 2, 1500);
+        carritoStore.guardar(session, carrito);
+        carrito.agregar(4, 1, 990);
+        carritoStore.guardar(session, carrito);
+
+        // Otra instancia atiende la siguiente petición con la sesión replicada
+        MockHttpSession replica = new MockHttpSession();
+        replica.setAttribute(JdbcCarritoStore.ATRIBUTO_ID, session.getAttribute(JdbcCarritoStore.ATRIBUTO_ID));
+        Carrito leido = carritoStore.obtener(replica);
+
+        assertEquals(carrito.getLineas(), leido.getLineas());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_carrito", Integer.class));
+    }
+
+    @Test
+    void testVaciar_BorraLaFila() {
+        MockHttpSession session = new MockHttpSession();
+        Carrito carrito = new Carrito();
+        carrito.agregar(1, 1, 100);
+        carritoStore.guardar(session, carrito);
+
+        carritoStore.vaciar(session);
+
+        assertNull(session.getAttribute(JdbcCarritoStore.ATRIBUTO_ID));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_carrito", Integer.class));
+        assertTrue(carritoStore.obtener(session).isVacio());
+    }
+}
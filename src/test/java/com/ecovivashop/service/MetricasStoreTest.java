@@ -0,0 +1,186 @@
+package com.ecovivashop.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ecovivashop.entity.Inventario;
+import com.ecovivashop.entity.Pedido;
+import com.ecovivashop.entity.Producto;
+import com.ecovivashop.entity.Rol;
+import com.ecovivashop.entity.Usuario;
+import com.ecovivashop.repository.InventarioRepository;
+import com.ecovivashop.repository.PedidoRepository;
+import com.ecovivashop.repository.ProductoRepository;
+import com.ecovivashop.repository.RolRepository;
+import com.ecovivashop.repository.UsuarioRepository;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(MetricasStore.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MetricasStoreTest {
+
+    @Autowired
+    private MetricasStore metricasStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private RolRepository rolRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private InventarioRepository inventarioRepository;
+
+    // Requerido por el CommandLineRunner de datos iniciales
+    @TestConfiguration
+    static class PasswordEncoderConfig {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+    }
+
+    // Se parte sin los datos iniciales (roles y usuario de prueba) para contar desde cero
+    @BeforeEach
+    void setUp() {
+        limpiar();
+        metricasStore.arrancar();
+    }
+
+    @AfterEach
+    void limpiar() {
+        pedidoRepository.deleteAll();
+        usuarioRepository.deleteAll();
+        rolRepository.deleteAll();
+        inventarioRepository.deleteAll();
+        productoRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM tb_metrica_resumen");
+    }
+
+    private Usuario crearCliente() {
+        Rol rol = rolRepository.save(new Rol("ROLE_CLIENTE", "Cliente"));
+        return usuarioRepository.save(
+            new Usuario("Ana", "Ríos", "ana@test.com", "secreto", "999888777", "Av. Lima 1", rol));
+    }
+
+    private Pedido crearPedido(Usuario usuario, String total) {
+        Pedido pedido = new Pedido(usuario, "ECO-T-" + System.nanoTime() % 1_000_000, "PENDIENTE");
+        pedido.setTotal(new BigDecimal(total));
+        pedido.setDireccionEnvio("Av. Lima 1");
+        pedido.setMetodoPago("TARJETA");
+        return pedidoRepository.save(pedido);
+    }
+
+    private MetricasStore otraInstancia() {
+        MetricasStore instancia = new MetricasStore(jdbcTemplate, pedidoRepository, usuarioRepository,
+            productoRepository, inventarioRepository);
+        instancia.arrancar();
+        return instancia;
+    }
+
+    @Test
+    void testCambiosConfirmados_MuevenLosContadoresSinConsultar() {
+        Usuario cliente = crearCliente();
+        Integer idPedido = crearPedido(cliente, "100.50").getIdPedido();
+
+        assertEquals(1, metricasStore.usuariosActivos());
+        assertEquals(1, metricasStore.usuariosConRol("ROLE_CLIENTE"));
+        assertEquals(1, metricasStore.usuariosRegistrados(LocalDate.now()));
+        assertEquals(1, metricasStore.pedidosEnEstado("PENDIENTE"));
+        assertEquals(new BigDecimal("100.50"), metricasStore.ventas(YearMonth.now()));
+
+        // El cambio de estado resta del anterior y suma al nuevo
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(estado ->
+            pedidoRepository.findById(idPedido).orElseThrow().setEstado("CANCELADO"));
+
+        assertEquals(0, metricasStore.pedidosEnEstado("PENDIENTE"));
+        assertEquals(1, metricasStore.pedidosEnEstado("CANCELADO"));
+        assertEquals(new BigDecimal("0.00"), metricasStore.ventas(YearMonth.now()));
+
+        // Lo que se deshace no cuenta
+        tx.executeWithoutResult(estado -> {
+            pedidoRepository.findById(idPedido).orElseThrow().setEstado("ENTREGADO");
+            pedidoRepository.flush();
+            estado.setRollbackOnly();
+        });
+
+        assertEquals(1, metricasStore.pedidosEnEstado("CANCELADO"));
+        assertEquals(0, metricasStore.pedidosEnEstado("ENTREGADO"));
+    }
+
+    @Test
+    void testInventario_CuentaAgotadosYStockBajo() {
+        Producto producto = new Producto();
+        producto.setNombre("Botella reutilizable");
+        producto.setPrecio(BigDecimal.TEN);
+        producto.setCategoria("Hogar");
+        producto.setEstado(true);
+        producto = productoRepository.save(producto);
+        Inventario inventario = new Inventario(producto, 3, 5, 100);
+        inventario = inventarioRepository.save(inventario);
+
+        assertEquals(1, metricasStore.productosActivos());
+        assertEquals(1, metricasStore.inventarioConStock());
+        assertEquals(1, metricasStore.inventarioStockBajo());
+        assertEquals(0, metricasStore.inventarioAgotado());
+
+        inventario.setStock(0);
+        inventarioRepository.save(inventario);
+
+        assertEquals(0, metricasStore.inventarioConStock());
+        assertEquals(1, metricasStore.inventarioAgotado());
+        assertEquals(1, metricasStore.inventarioStockBajo());
+        assertEquals(metricasStore.inventarioAgotado(), inventarioRepository.contarAgotados());
+    }
+
+    @Test
+    void testArranque_UsaElVolcadoLimpioYRecalculaSiNoLoHay() {
+        crearPedido(crearCliente(), "20.00");
+        metricasStore.volcar(true);
+
+        // Tras un cierre ordenado se confía en lo volcado, sin recalcular
+        jdbcTemplate.update("UPDATE tb_metrica_resumen SET valor = 42 WHERE clave = ?",
+            MetricasStore.PEDIDOS_ESTADO + "PENDIENTE");
+        assertEquals(42, otraInstancia().pedidosEnEstado("PENDIENTE"));
+
+        // La instancia anterior no se detuvo: el volcado no es fiable y se recalcula
+        MetricasStore trasCaida = otraInstancia();
+        assertEquals(1, trasCaida.pedidosEnEstado("PENDIENTE"));
+        assertEquals(new BigDecimal("20.00"), trasCaida.ventas(YearMonth.now()));
+        assertEquals(1, trasCaida.usuariosConRol("ROLE_CLIENTE"));
+    }
+}
@@ -0,0 +1,234 @@
+package com.ecovivashop.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ecovivashop.config.AsyncConfig;
+import com.ecovivashop.entity.TransaccionPago;
+import com.ecovivashop.entity.TransaccionPago.EstadoTransaccion;
+import com.ecovivashop.entity.TransaccionPago.MetodoPago;
+import com.ecovivashop.repository.TransaccionPagoRepository;
+
+class PasarelaPagoServiceTest {
+
+    private PasarelaPagoService pasarelaPagoService;
+    private ApplicationEventPublisher eventPublisher;
+    private ThreadPoolTaskExecutor executor;
+    private PlatformTransactionManager transactionManager;
+    private final Map<Long, TransaccionPago> transacciones = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        // Repositorio en memoria: el pool de pagos lee y escribe desde otros hilos
+        AtomicLong secuencia = new AtomicLong();
+        TransaccionPagoRepository repository = mock(TransaccionPagoRepository.class);
+        when(repository.save(any(TransaccionPago.class))).thenAnswer(invocation -> {
+            TransaccionPago transaccion = invocation.getArgument(0);
+            if (transaccion.getIdTransaccion() == null) {
+                transaccion.setIdTransaccion(secuencia.incrementAndGet());
+            }
+            transacciones.put(transaccion.getIdTransaccion(), transaccion);
+            return transaccion;
+        });
+        when(repository.findById(anyLong()))
+            .thenAnswer(invocation -> Optional.ofNullable(transacciones.get(invocation.<Long>getArgument(0))));
+        when(repository.findByTransactionId(anyString())).thenAnswer(invocation -> transacciones.values().stream()
+            .filter(t -> invocation.getArgument(0).equals(t.getTransactionId()))
+            .findFirst());
+
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        executor = new AsyncConfig(false).procesadorPagoExecutor(20, 100);
+
+        pasarelaPagoService = new PasarelaPagoService();
+        ReflectionTestUtils.setField(pasarelaPagoService, "transaccionRepository", repository);
+        ReflectionTestUtils.setField(pasarelaPagoService, "eventPublisher", eventPublisher);
+        transactionManager = new DataSourceTransactionManager(
+            new DriverManagerDataSource("jdbc:h2:mem:pasarela;DB_CLOSE_DELAY=-1", "sa", ""));
+        ReflectionTestUtils.setField(pasarelaPagoService, "transactionManager", transactionManager);
+        usarProcesador(new ProcesadorPagoSimulado(50, 1.0), executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    private void usarProcesador(ProcesadorPago procesador, Executor ejecutor) {
+        ReflectionTestUtils.setField(pasarelaPagoService, "procesadorPago", procesador);
+        ReflectionTestUtils.setField(pasarelaPagoService, "procesadorPagoExecutor", ejecutor);
+    }
+
+    private PasarelaPagoService.SolicitudPago solicitudTarjeta() {
+        PasarelaPagoService.SolicitudPago solicitud = new PasarelaPagoService.SolicitudPago(
+            "ECO-P-" + System.nanoTime(), new BigDecimal("89.90"), MetodoPago.TARJETA_CREDITO, null);
+        solicitud.setNumeroTarjeta("4111111111111111");
+        solicitud.setNombreTarjeta("ANA RIOS");
+        solicitud.setCvv("123");
+        solicitud.setMesVencimiento("12");
+        solicitud.setAnoVencimiento("2030");
+        return solicitud;
+    }
+
+    @Test
+    void testPagoTarjeta_RespondeSinEsperarAlProcesador() {
+        usarProcesador(new ProcesadorPagoSimulado(1000, 1.0), executor);
+
+        long inicio = System.nanoTime();
+        PasarelaPagoService.RespuestaPago respuesta = pasarelaPagoService.procesarPago(solicitudTarjeta());
+        long milisegundos = (System.nanoTime() - inicio) / 1_000_000;
+
+        assertTrue(respuesta.isExitoso());
+        assertTrue(respuesta.isPendiente());
+        assertTrue(milisegundos < 1000, "procesarPago esperó " + milisegundos + " ms al procesador");
+        String transactionId = respuesta.getTransactionId();
+        assertEquals(EstadoTransaccion.PROCESANDO,
+            pasarelaPagoService.consultarEstado(transactionId).orElseThrow().getEstadoTransaccion());
+
+        verify(eventPublisher, timeout(5000))
+            .publishEvent(new PagoActualizadoEvent(transactionId, EstadoTransaccion.COMPLETADA, null));
+        TransaccionPago transaccion = pasarelaPagoService.consultarEstado(transactionId).orElseThrow();
+        assertEquals(EstadoTransaccion.COMPLETADA, transaccion.getEstadoTransaccion());
+        assertNotNull(transaccion.getAuthorizationCode());
+        assertNotNull(transaccion.getFechaAutorizacion());
+    }
+
+    @Test
+    void testPagoTarjeta_RechazoSePublica() {
+        usarProcesador(new ProcesadorPagoSimulado(10, 0.0), executor);
+
+        String transactionId = pasarelaPagoService.procesarPago(solicitudTarjeta()).getTransactionId();
+
+        verify(eventPublisher, timeout(5000))
+            .publishEvent(new PagoActualizadoEvent(transactionId, EstadoTransaccion.RECHAZADA, null));
+        TransaccionPago transaccion = pasarelaPagoService.consultarEstado(transactionId).orElseThrow();
+        assertEquals("Pago rechazado por la entidad bancaria", transaccion.getMensajeRespuesta());
+    }
+
+    @Test
+    void testVeintePagosConcurrentes_SeAutorizanEnParalelo() {
+        usarProcesador(new ProcesadorPagoSimulado(300, 1.0), executor);
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(pasarelaPagoService.procesarPago(solicitudTarjeta()).isPendiente());
+        }
+
+        // En serie serían 6 segundos; con el pool terminan en torno a la latencia de uno
+        verify(eventPublisher, timeout(3000).times(20)).publishEvent(any(PagoActualizadoEvent.class));
+        assertTrue(transacciones.values().stream()
+            .allMatch(t -> t.getEstadoTransaccion() == EstadoTransaccion.COMPLETADA));
+    }
+
+    @Test
+    void testPagoTarjeta_PoolLlenoRespondeError() {
+        usarProcesador(new ProcesadorPagoSimulado(10, 1.0), tarea -> {
+            throw new RejectedExecutionException("cola llena");
+        });
+
+        PasarelaPagoService.RespuestaPago respuesta = pasarelaPagoService.procesarPago(solicitudTarjeta());
+
+        assertFalse(respuesta.isExitoso());
+        assertEquals(1, transacciones.size());
+        assertEquals(EstadoTransaccion.ERROR, transacciones.values().iterator().next().getEstadoTransaccion());
+        verify(eventPublisher, times(1)).publishEvent(any(PagoActualizadoEvent.class));
+    }
+
+    @Test
+    void testPagoTarjeta_PoolLlenoDentroDeTransaccionConfirmaElError() {
+        usarProcesador(new ProcesadorPagoSimulado(10, 1.0), tarea -> {
+            throw new RejectedExecutionException("cola llena");
+        });
+        // Como un @TransactionalEventListener: el ERROR y el evento solo cuentan si su
+        // transacción llega a confirmarse después de guardarlos
+        AtomicBoolean errorConfirmado = new AtomicBoolean();
+        AtomicBoolean eventoEntregado = new AtomicBoolean();
+        TransaccionPagoRepository repository =
+            (TransaccionPagoRepository) ReflectionTestUtils.getField(pasarelaPagoService, "transaccionRepository");
+        when(repository.save(any(TransaccionPago.class))).thenAnswer(invocation -> {
+            TransaccionPago transaccion = invocation.getArgument(0);
+            if (transaccion.getIdTransaccion() == null) {
+                transaccion.setIdTransaccion((long) transacciones.size() + 1);
+            }
+            if (transaccion.getEstadoTransaccion() == EstadoTransaccion.ERROR) {
+                alConfirmar(errorConfirmado);
+            }
+            transacciones.put(transaccion.getIdTransaccion(), transaccion);
+            return transaccion;
+        });
+        doAnswer(invocation -> {
+            alConfirmar(eventoEntregado);
+            return null;
+        }).when(eventPublisher).publishEvent(any(PagoActualizadoEvent.class));
+
+        // Como desde SuscripcionService: el encolado se hace en afterCommit de la transacción del llamador
+        PasarelaPagoService.SolicitudPago solicitud = solicitudTarjeta();
+        PasarelaPagoService.RespuestaPago respuesta = new TransactionTemplate(transactionManager)
+            .execute(estado -> pasarelaPagoService.procesarPago(solicitud));
+
+        assertTrue(respuesta.isPendiente());
+        String transactionId = respuesta.getTransactionId();
+        assertEquals(EstadoTransaccion.ERROR,
+            pasarelaPagoService.consultarEstado(transactionId).orElseThrow().getEstadoTransaccion());
+        assertTrue(errorConfirmado.get(), "El ERROR debe guardarse en una transacción que se confirme");
+        assertTrue(eventoEntregado.get(), "El evento debe publicarse dentro de esa transacción");
+        verify(eventPublisher, times(1))
+            .publishEvent(new PagoActualizadoEvent(transactionId, EstadoTransaccion.ERROR, null));
+    }
+
+    private static void alConfirmar(AtomicBoolean confirmado) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    confirmado.set(true);
+                }
+            });
+        }
+    }
+
+    @Test
+    void testPagoTarjeta_DatosInvalidosNoLleganAlProcesador() {
+        ProcesadorPago procesador = mock(ProcesadorPago.class);
+        usarProcesador(procesador, executor);
+        PasarelaPagoService.SolicitudPago solicitud = solicitudTarjeta();
+        solicitud.setCvv("1");
+
+        PasarelaPagoService.RespuestaPago respuesta = pasarelaPagoService.procesarPago(solicitud);
+
+        assertFalse(respuesta.isExitoso());
+        assertEquals("Datos de tarjeta inválidos", respuesta.getMensaje());
+        verify(procesador, times(0)).autorizar(any());
+    }
+}
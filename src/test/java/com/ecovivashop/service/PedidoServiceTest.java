@@ -2,14 +2,18 @@ package com.ecovivashop.service;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
@@ -17,6 +21,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import static org.mockito.Mockito.doNothing;
@@ -30,14 +36,19 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
+import com.ecovivashop.dto.Carrito;
+import com.ecovivashop.dto.EstadisticasClienteDTO;
 import com.ecovivashop.entity.Pedido;
 import com.ecovivashop.entity.PedidoDetalle;
 import com.ecovivashop.entity.Producto;
 import com.ecovivashop.entity.Usuario;
 import com.ecovivashop.repository.PedidoDetalleRepository;
 import com.ecovivashop.repository.PedidoRepository;
+import com.ecovivashop.repository.ProductoRepository;
 import com.ecovivashop.repository.UsuarioRepository;
 
+import jakarta.persistence.EntityManager;
+
 @ExtendWith(MockitoExtension.class)
 class PedidoServiceTest {
 
@@ -47,6 +58,9 @@ class PedidoServiceTest {
     @Mock
     private PedidoDetalleRepository pedidoDetalleRepository;
 
+    @Mock
+    private ProductoRepository productoRepository;
+
     @Mock
     private UsuarioRepository usuarioRepository;
 
@@ -54,7 +68,13 @@ class PedidoServiceTest {
     private InventarioService inventarioService;
 
     @Mock
-    private EmailService emailService;
+    private EmailOutboxService emailOutboxService;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private NumeroPedidoGenerator numeroPedidoGenerator;
 
     @InjectMocks
     private PedidoService pedidoService;
@@ -311,14 +331,11 @@ class PedidoServiceTest {
         when(pedidoRepository.findById(1)).thenReturn(Optional.of(pedido));
         when(pedidoRepository.save(any(Pedido.class))).thenReturn(pedido);
 
-        // Configurar email service para no hacer nada
-        doNothing().when(emailService).enviarCorreoConfirmacionPedido(anyString(), anyString(), anyString(), anyString());
-
         assertDoesNotThrow(() -> pedidoService.confirmarPedido(1));
 
         verify(pedidoRepository, times(1)).findById(1);
         verify(pedidoRepository, times(1)).save(any(Pedido.class));
-        verify(emailService, times(1)).enviarCorreoConfirmacionPedido(anyString(), anyString(), anyString(), anyString());
+        verify(emailOutboxService, times(1)).encolarConfirmacionPedido(anyString(), anyString(), anyString(), anyString());
     }
 
     @Test
@@ -357,6 +374,26 @@ class PedidoServiceTest {
         verify(pedidoRepository, times(1)).save(any(Pedido.class));
     }
 
+    @Test
+    void testCrearPedido_ImportesDePricingEngine() {
+        when(usuarioRepository.findById(1)).thenReturn(Optional.of(createTestUsuario()));
+        when(inventarioService.verificarDisponibilidad(1, 2)).thenReturn(true);
+        when(numeroPedidoGenerator.generar()).thenReturn("ECO-1");
+        when(productoRepository.findById(1)).thenReturn(Optional.of(createTestProducto()));
+        when(pedidoRepository.save(any(Pedido.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(pedidoDetalleRepository.save(any(PedidoDetalle.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Pedido pedido = pedidoService.crearPedido(1, "Av. Siempre Viva 123", "999888777", "TARJETA", null,
+                                                  List.of(new PedidoService.ItemPedido(1, 2)));
+
+        // 200.00 - 5% eco = 190.00 de base; IGV 18% = 34.20
+        assertEquals(new BigDecimal("200.00"), pedido.getSubtotal());
+        assertEquals(new BigDecimal("10.00"), pedido.getDescuento());
+        assertEquals(new BigDecimal("34.20"), pedido.getImpuestos());
+        assertEquals(new BigDecimal("224.20"), pedido.getTotal());
+        assertEquals(PricingEngine.cotizar(20_000).getTotal(), pedido.getTotal());
+    }
+
     @Test
     void testCancelarPedido_Success() {
         Pedido pedido = createTestPedido();
@@ -577,4 +614,130 @@ class PedidoServiceTest {
         verify(pedidoRepository, times(1)).findById(1);
         verify(pedidoRepository, never()).delete(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testRecorrerPedidosParaExportacion_PorLotesKeyset() {
+        List<Integer> primerLote = IntStream.rangeClosed(1, 500).boxed().toList();
+        List<Integer> segundoLote = List.of(501);
+        when(pedidoRepository.findIdsSiguienteLote(0, Pageable.ofSize(500))).thenReturn(primerLote);
+        when(pedidoRepository.findIdsSiguienteLote(500, Pageable.ofSize(500))).thenReturn(segundoLote);
+        when(pedidoRepository.findByIdsConDetalles(primerLote)).thenReturn(createTestPedidos());
+        when(pedidoRepository.findByIdsConDetalles(segundoLote)).thenReturn(createTestPedidos());
+
+        List<List<Pedido>> lotes = new ArrayList<>();
+        pedidoService.recorrerPedidosParaExportacion(null, null, null, lotes::add);
+
+        assertEquals(2, lotes.size());
+        verify(entityManager, times(2)).clear();
+        verify(pedidoRepository, never()).findAll();
+    }
+
+    @Test
+    void testRecorrerPedidosParaExportacion_PorEstadoSinResultados() {
+        when(pedidoRepository.findIdsSiguienteLotePorEstado(0, "ENTREGADO", Pageable.ofSize(500)))
+            .thenReturn(List.of());
+
+        List<List<Pedido>> lotes = new ArrayList<>();
+        pedidoService.recorrerPedidosParaExportacion(null, null, "ENTREGADO", lotes::add);
+
+        assertTrue(lotes.isEmpty());
+        verify(pedidoRepository, never()).findByIdsConDetalles(any());
+    }
+
+    @Test
+    void testContarPedidosParaExportacion_EntreFechas() {
+        LocalDateTime inicio = LocalDateTime.now().minusDays(7);
+        LocalDateTime fin = LocalDateTime.now();
+        when(pedidoRepository.countByFechaPedidoBetween(inicio, fin)).thenReturn(3L);
+
+        assertEquals(3L, pedidoService.contarPedidosParaExportacion(inicio, fin, "PENDIENTE"));
+        verify(pedidoRepository, never()).countByEstado(anyString());
+    }
+
+    // ===== TESTS PARA CREACIÓN DE PEDIDO DESDE CARRITO =====
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCrearPedidoDesdeCarro_UnaConsultaYBatches() {
+        Usuario usuario = createTestUsuario();
+        Producto producto1 = createTestProducto();
+        Producto producto2 = createTestProducto();
+        producto2.setIdProducto(2);
+        Carrito carrito = new Carrito();
+        carrito.agregar(1, 2, 10000);
+        carrito.agregar(2, 1, 5000);
+        carrito.agregar(1, 3, 10000);
+
+        when(productoRepository.findAllById(any())).thenReturn(List.of(producto1, producto2));
+        when(pedidoRepository.save(any(Pedido.class))).thenAnswer(invocation -> {
+            Pedido pedido = invocation.getArgument(0);
+            pedido.setIdPedido(10);
+            return pedido;
+        });
+
+        Pedido resultado = pedidoService.crearPedidoDesdeCarro(usuario, carrito, "ECO-1", "TARJETA", "Dirección",
+                                                                 "checkout@example.com", "Ana Ríos");
+
+        assertEquals(10, resultado.getIdPedido());
+        verify(productoRepository, times(1)).findAllById(any());
+        verify(productoRepository, never()).findById(anyInt());
+        verify(inventarioService).reservarStock(Map.of(1, 5, 2, 1), "test@example.com - Pedido ECO-1");
+        verify(inventarioService, never()).reducirStock(anyInt(), anyInt(), anyString());
+
+        ArgumentCaptor<List<PedidoDetalle>> detalles = ArgumentCaptor.forClass(List.class);
+        verify(pedidoDetalleRepository).insertarDetallesEnLote(eq(10), detalles.capture());
+        verify(pedidoDetalleRepository, never()).save(any(PedidoDetalle.class));
+        // 550.00 - 5% (27.50) = 522.50 + 18% IGV (94.05) = 616.55
+        assertEquals(0, new BigDecimal("550.00").compareTo(resultado.getSubtotal()));
+        assertEquals(0, new BigDecimal("94.05").compareTo(resultado.getImpuestos()));
+        // La confirmación va a los datos del checkout, no a los de la cuenta
+        verify(emailOutboxService).encolarConfirmacionPedido("checkout@example.com", "Ana Ríos", "ECO-1", "616.55");
+        assertEquals(2, detalles.getValue().size());
+        assertEquals(0, new BigDecimal("500.00").compareTo(detalles.getValue().get(0).getSubtotal()));
+    }
+
+    @Test
+    void testCrearPedidoDesdeCarro_ProductoNoEncontrado() {
+        Usuario usuario = createTestUsuario();
+        Carrito carrito = new Carrito();
+        carrito.agregar(99, 1, 1000);
+        when(productoRepository.findAllById(any())).thenReturn(List.of());
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () ->
+            pedidoService.crearPedidoDesdeCarro(usuario, carrito, "ECO-2", "TARJETA", "Dirección",
+                                                "checkout@example.com", "Ana Ríos"));
+
+        assertEquals("Producto no encontrado con ID: 99", exception.getCause().getMessage());
+        verify(inventarioService, never()).reservarStock(any(), anyString());
+        verify(pedidoRepository, never()).save(any(Pedido.class));
+    }
+
+    @Test
+    void testObtenerEstadisticasClientes_UnaConsultaParaTodaLaPagina() {
+        LocalDateTime ultimo = LocalDateTime.of(2025, 3, 1, 10, 0);
+        List<Object[]> filas = new ArrayList<>();
+        filas.add(new Object[] {1, 3L, 2L, new BigDecimal("150.00"), ultimo});
+        filas.add(new Object[] {2, 1L, 0L, null, ultimo.minusDays(5)});
+        when(pedidoRepository.obtenerEstadisticasPorUsuarios(List.of(1, 2, 3))).thenReturn(filas);
+
+        Map<Integer, EstadisticasClienteDTO> estadisticas = pedidoService.obtenerEstadisticasClientes(List.of(1, 2, 3));
+
+        assertEquals(3, estadisticas.get(1).getTotalPedidos());
+        assertEquals(new BigDecimal("75.00"), estadisticas.get(1).getPromedioPedido());
+        assertEquals(ultimo, estadisticas.get(1).getFechaUltimoPedido());
+        assertEquals(BigDecimal.ZERO, estadisticas.get(2).getTotalGastado());
+        assertEquals(BigDecimal.ZERO, estadisticas.get(2).getPromedioPedido());
+        // Un cliente sin pedidos no sale en la consulta pero sí en el resultado
+        assertEquals(0, estadisticas.get(3).getTotalPedidos());
+        assertNull(estadisticas.get(3).getFechaUltimoPedido());
+        verify(pedidoRepository, never()).findByUsuarioOrderByFechaPedidoDesc(any());
+    }
+
+    @Test
+    void testCalcularTotalGastadoPorUsuario_UsuarioNoExiste() {
+        when(usuarioRepository.existsById(999)).thenReturn(false);
+
+        assertThrows(RuntimeException.class, () -> pedidoService.calcularTotalGastadoPorUsuario(999));
+        verify(pedidoRepository, never()).obtenerEstadisticasPorUsuarios(any());
+    }
+}
@@ -0,0 +1,86 @@
+package com.ecovivashop.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ecovivashop.dto.Carrito;
+
+/**
+ * Microbenchmark del cálculo de importes: el código anterior (líneas Map en la
+ * sesión, BigDecimal.valueOf(double)) frente a PricingEngine con y sin la
+ * cotización en caché. No es un test; se ejecuta a mano tras compilar los tests:
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes com.ecovivashop.service.PricingEngineBenchmark
+ * </pre>
+ *
+ * El proyecto no incluye JMH, así que hace su propio calentamiento y consume los
+ * resultados para que el JIT no elimine el trabajo. Los números sirven para comparar
+ * las variantes entre sí, no como medida absoluta.
+ */
+public class PricingEngineBenchmark {
+
+    private static final int LINEAS = 8;
+    private static final int ITERACIONES = 2_000_000;
+    private static final int RONDAS = 5;
+
+    private static long sumidero;
+
+    public static void main(String[] args) {
+        List<Map<String, Object>> carritoAnterior = new ArrayList<>();
+        Carrito carrito = new Carrito();
+        for (int i = 1; i <= LINEAS; i++) {
+            BigDecimal precio = new BigDecimal(i * 13 + ".90");
+            Map<String, Object> item = new HashMap<>();
+            item.put("idProducto", i);
+            item.put("precio", precio);
+            item.put("cantidad", i % 3 + 1);
+            carritoAnterior.add(item);
+            carrito.agregar(i, i % 3 + 1, Carrito.aCentimos(precio));
+        }
+
+        for (int ronda = 1; ronda <= RONDAS; ronda++) {
+            System.out.printf("Ronda %d: anterior %.1f ns/op | motor %.1f ns/op | motor en caché %.1f ns/op%n", ronda,
+                medir(() -> calculoAnterior(carritoAnterior)),
+                medir(() -> PricingEngine.cotizar(carrito.getSubtotalCentimos()).totalCentimos()),
+                medir(() -> PricingEngine.cotizar(carrito).totalCentimos()));
+        }
+        System.out.println("(sumidero " + sumidero + ")");
+    }
+
+    private static double medir(java.util.function.LongSupplier operacion) {
+        long inicio = System.nanoTime();
+        long acumulado = 0;
+        for (int i = 0; i < ITERACIONES; i++) {
+            acumulado += operacion.getAsLong();
+        }
+        sumidero += acumulado;
+        return (System.nanoTime() - inicio) / (double) ITERACIONES;
+    }
+
+    // Copia del cálculo que hacían ClientController.carrito/checkout/procesarPago
+    private static long calculoAnterior(List<Map<String, Object>> carrito) {
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (Map<String, Object> item : carrito) {
+            Object precio = item.get("precio");
+            Object cantidad = item.get("cantidad");
+            BigDecimal precioBD = BigDecimal.ZERO;
+            if (precio instanceof BigDecimal bd) {
+                precioBD = bd;
+            } else if (precio instanceof Double d) {
+                precioBD = BigDecimal.valueOf(d);
+            }
+            int cantidadInt = cantidad instanceof Integer i ? i : 0;
+            subtotal = subtotal.add(precioBD.multiply(BigDecimal.valueOf(cantidadInt)));
+        }
+        BigDecimal descuento = subtotal.multiply(BigDecimal.valueOf(0.05));
+        BigDecimal baseImponible = subtotal.subtract(descuento);
+        BigDecimal igv = baseImponible.multiply(BigDecimal.valueOf(0.18));
+        return subtotal.subtract(descuento).add(igv).unscaledValue().longValue();
+    }
+
+}
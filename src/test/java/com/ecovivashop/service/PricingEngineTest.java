@@ -0,0 +1,71 @@
+package com.ecovivashop.service;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.Test;
+
+import com.ecovivashop.dto.Carrito;
+import com.ecovivashop.dto.Cotizacion;
+import com.ecovivashop.entity.Pedido;
+import com.ecovivashop.entity.PedidoDetalle;
+
+class PricingEngineTest {
+
+    @Test
+    void testCotizar_DescuentoEcoEIgvSobreLaBase() {
+        Cotizacion cotizacion = PricingEngine.cotizar(10_000);
+
+        assertEquals(500, cotizacion.descuentoCentimos());
+        assertEquals(9_500, cotizacion.getBaseImponibleCentimos());
+        assertEquals(1_710, cotizacion.igvCentimos());
+        assertEquals(0, cotizacion.envioCentimos());
+        assertEquals(11_210, cotizacion.totalCentimos());
+        assertEquals(new BigDecimal("112.10"), cotizacion.getTotal());
+    }
+
+    @Test
+    void testCotizar_RedondeoHalfUpPorImporte() {
+        // 19.99: descuento 0.9995 -> 1.00; base 18.99; IGV 3.4182 -> 3.42
+        Cotizacion cotizacion = PricingEngine.cotizar(1_999);
+
+        assertEquals(100, cotizacion.descuentoCentimos());
+        assertEquals(342, cotizacion.igvCentimos());
+        assertEquals(1_899 + 342, cotizacion.totalCentimos());
+        assertEquals(0, PricingEngine.cotizar(0).totalCentimos());
+    }
+
+    @Test
+    void testCotizar_CarritoReutilizaLaCotizacionMientrasNoCambia() {
+        Carrito carrito = new Carrito();
+        carrito.agregar(1, 2, 4_550);
+
+        Cotizacion primera = PricingEngine.cotizar(carrito);
+        assertSame(primera, PricingEngine.cotizar(carrito));
+
+        carrito.actualizarCantidad(1, 3);
+        Cotizacion segunda = PricingEngine.cotizar(carrito);
+        assertNotSame(primera, segunda);
+        assertEquals(13_650, segunda.subtotalCentimos());
+    }
+
+    @Test
+    void testDesdePedido_UsaImportesGuardadosOLineas() {
+        PedidoDetalle detalle = new PedidoDetalle(null, null, 3, new BigDecimal("10.00"));
+        Pedido antiguo = new Pedido();
+        antiguo.setDetalles(Set.of(detalle));
+
+        assertEquals(PricingEngine.cotizar(3_000), PricingEngine.desdePedido(antiguo));
+
+        Pedido pedido = new Pedido();
+        pedido.setSubtotal(new BigDecimal("30.00"));
+        pedido.setDescuento(new BigDecimal("1.50"));
+        pedido.setCostoEnvio(BigDecimal.ZERO);
+        pedido.setImpuestos(new BigDecimal("5.13"));
+        pedido.setTotal(new BigDecimal("33.63"));
+        assertEquals(new Cotizacion(3_000, 150, 0, 513, 3_363), PricingEngine.desdePedido(pedido));
+    }
+}
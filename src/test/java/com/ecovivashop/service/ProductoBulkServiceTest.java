@@ -0,0 +1,187 @@
+package com.ecovivashop.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.ecovivashop.dto.ProductoBulkUploadResult;
+import com.ecovivashop.dto.TrabajoCargaMasiva;
+
+// Sin transacción de prueba: cada lote confirma la suya, como en producción
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(ProductoBulkService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "app.productos.carga-masiva.lote=2")
+class ProductoBulkServiceTest {
+
+    private static final String CABECERA = "nombre,descripcion,precio,categoria,stock_inicial\n";
+
+    @Autowired
+    private ProductoBulkService productoBulkService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    @SuppressWarnings({"removal", "unused"})
+    private ProductoService productoService;
+
+    @MockBean
+    @SuppressWarnings({"removal", "unused"})
+    private AlmacenBlobService almacenBlobService;
+
+    @TestConfiguration
+    static class Config {
+        // Requerido por el CommandLineRunner de datos iniciales
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder();
+        }
+
+        @Bean
+        SyncTaskExecutor cargaMasivaExecutor() {
+            return new SyncTaskExecutor();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        when(productoService.obtenerCategoriasDisponibles()).thenReturn(List.of("Hogar"));
+    }
+
+    @AfterEach
+    void limpiar() {
+        jdbcTemplate.update("DELETE FROM tb_inventario WHERE id_producto IN "
+            + "(SELECT id_producto FROM tb_producto WHERE nombre LIKE 'Carga %')");
+        jdbcTemplate.update("DELETE FROM tb_producto WHERE nombre LIKE 'Carga %'");
+    }
+
+    private ProductoBulkUploadResult cargarCSV(String contenido, boolean permitirNuevasCategorias) throws IOException {
+        MockMultipartFile archivo = new MockMultipartFile("archivo", "productos.csv", "text/csv",
+            contenido.getBytes(StandardCharsets.UTF_8));
+        return productoBulkService.procesarArchivo(archivo, permitirNuevasCategorias);
+    }
+
+    private Map<String, Object> stockDe(String nombre) {
+        return jdbcTemplate.queryForMap("SELECT i.stock, i.stock_minimo FROM tb_inventario i "
+            + "JOIN tb_producto p ON p.id_producto = i.id_producto WHERE p.nombre = ?", nombre);
+    }
+
+    @Test
+    void testProcesarArchivo_CSVPorLotesConErroresPorFila() throws IOException {
+        ProductoBulkUploadResult resultado = cargarCSV("\uFEFF" + CABECERA
+            + "Carga A,Desc,10.50,Hogar,7\n"
+            + "Carga B,Desc,abc,Hogar,1\n"
+            + "\n"
+            + "Carga C,Desc,5,Jardín,1\n"
+            + "Carga D,Desc,\"S/ 1,5\",Hogar,\n"
+            + "Carga E,Desc,3,Hogar,2\n", false);
+
+        assertEquals(3, resultado.getProductosProcesados());
+        assertEquals(List.of("Fila 3: Formato de precio inválido: abc",
+                             "Fila 5: Categoría no existe: Jardín. Categorías disponibles: Hogar"),
+                     resultado.getErrores());
+        assertEquals(7, stockDe("Carga A").get("stock"));
+        assertEquals(0, stockDe("Carga D").get("stock"));
+        assertEquals(5, stockDe("Carga D").get("stock_minimo"));
+    }
+
+    @Test
+    void testProcesarArchivo_FilaRechazadaPorLaBaseDeDatosNoTumbaElLote() throws IOException {
+        ProductoBulkUploadResult resultado = cargarCSV(CABECERA
+            + "Carga A,Desc,10,Hogar,1\n"
+            + "Carga " + "x".repeat(200) + ",Desc,10,Hogar,1\n"
+            + "Carga C,Desc,10,Hogar,1\n", false);
+
+        assertEquals(2, resultado.getProductosProcesados());
+        assertEquals(1, resultado.getErrores().size());
+        assertTrue(resultado.getErrores().get(0).startsWith("Fila 3: Error al guardar producto"));
+    }
+
+    @Test
+    void testProcesarArchivo_ExcelEnStreamingConCategoriaNueva() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (XSSFWorkbook libro = new XSSFWorkbook()) {
+            Sheet hoja = libro.createSheet("Productos");
+            Row cabecera = hoja.createRow(0);
+            String[] columnas = {"nombre", "descripcion", "precio", "categoria", "stock_inicial"};
+            for (int i = 0; i < columnas.length; i++) {
+                cabecera.createCell(i).setCellValue(columnas[i]);
+            }
+            Row fila = hoja.createRow(1);
+            fila.createCell(0).setCellValue("Carga Excel");
+            fila.createCell(1).setCellValue("Desc");
+            fila.createCell(2).setCellValue(2500);
+            fila.createCell(3).setCellValue("Jardín");
+            fila.createCell(4).setCellValue(50);
+            // Una fila con celdas vacías en medio
+            Row incompleta = hoja.createRow(3);
+            incompleta.createCell(0).setCellValue("Carga Excel 2");
+            incompleta.createCell(3).setCellValue("Jardín");
+            libro.write(bytes);
+        }
+        MockMultipartFile archivo = new MockMultipartFile("archivo", "productos.xlsx",
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", bytes.toByteArray());
+
+        ProductoBulkUploadResult resultado = productoBulkService.procesarArchivo(archivo, true);
+
+        assertEquals(1, resultado.getProductosProcesados());
+        assertEquals(List.of("Jardín"), resultado.getCategoriasCreadas());
+        assertEquals(List.of("Fila 4: La descripción es obligatoria"), resultado.getErrores());
+        assertEquals(List.of("Fila 2: Se creará nueva categoría: Jardín"), resultado.getAdvertencias());
+        assertEquals(50, stockDe("Carga Excel").get("stock"));
+    }
+
+    @Test
+    void testIniciarCarga_TrabajoConProgresoEInforme() throws IOException {
+        MockMultipartFile archivo = new MockMultipartFile("archivo", "productos.csv", "text/csv",
+            (CABECERA + "Carga A,Desc,10,Hogar,1\nCarga B,,10,Hogar,1\n").getBytes(StandardCharsets.UTF_8));
+
+        TrabajoCargaMasiva trabajo = productoBulkService.iniciarCarga(archivo, false);
+
+        assertEquals(TrabajoCargaMasiva.Estado.COMPLETADO, trabajo.getEstado());
+        assertEquals(trabajo, productoBulkService.obtenerTrabajo(trabajo.getId()).orElseThrow());
+        assertEquals(2, trabajo.getFilasLeidas());
+        assertEquals(1, trabajo.getProductosGuardados());
+        assertEquals(1, trabajo.getErrores());
+        String informe = new String(productoBulkService.generarInformeErrores(trabajo), StandardCharsets.UTF_8);
+        assertTrue(informe.contains("\"ERROR\",\"Fila 3: La descripción es obligatoria\""));
+    }
+
+    @Test
+    void testProcesarArchivo_SinEncabezadosObligatorios() throws IOException {
+        ProductoBulkUploadResult resultado = cargarCSV("nombre,precio\nCarga A,10\n", false);
+
+        assertEquals(0, resultado.getProductosProcesados());
+        assertEquals("Faltan encabezados obligatorios: descripcion, categoria", resultado.getErrores().get(0));
+    }
+}
@@ -0,0 +1,99 @@
+package com.ecovivashop.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.ecovivashop.repository.ProductoRepository;
+import com.ecovivashop.service.ProductoSearchIndex.DocumentoProducto;
+
+class ProductoSearchIndexTest {
+
+    private ProductoRepository productoRepository;
+    private ProductoSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        productoRepository = mock(ProductoRepository.class);
+        List<Object[]> filas = new ArrayList<>();
+        filas.add(new Object[] {1, "Lámpara Solar LED", "Ilumina tu jardín con energía renovable", "Iluminación", "EcoLuz", true});
+        filas.add(new Object[] {2, "Panel solar portátil", "Carga tus dispositivos con la lámpara del sol", "Energía", "SunPower", true});
+        filas.add(new Object[] {3, "Botella reutilizable", "Acero inoxidable, sin plásticos", "Hogar", "Verde", true});
+        filas.add(new Object[] {4, "Refrigerador eficiente", "Clase A+++ con bajo consumo", "Electrodomésticos", "Frío", false});
+        when(productoRepository.findDocumentosBusquedaDespuesDe(eq(0), any())).thenReturn(filas);
+        when(productoRepository.findDocumentosBusquedaDespuesDe(eq(4), any())).thenReturn(List.of());
+
+        index = new ProductoSearchIndex(productoRepository);
+        index.reconstruir();
+    }
+
+    @Test
+    void testReconstruir_MarcaElIndiceComoListo() {
+        assertTrue(index.isListo());
+        assertFalse(new ProductoSearchIndex(productoRepository).isListo());
+    }
+
+    @Test
+    void testBuscar_SinTildesNiMayusculas() {
+        assertEquals(List.of(1, 2), index.buscar("LAMPARA", true, 10));
+        assertEquals(List.of(3), index.buscar("plastico", true, 10));
+    }
+
+    @Test
+    void testBuscar_PluralesYPalabrasVacias() {
+        assertEquals(List.of(1, 2), index.buscar("las lámparas", true, 10));
+        assertEquals(List.of(2), index.buscar("paneles", true, 10));
+    }
+
+    @Test
+    void testBuscar_PrefijoYErrorTipografico() {
+        assertEquals(List.of(3), index.buscar("reutil", true, 10));
+        assertEquals(List.of(3), index.buscar("botela", true, 10));
+        assertEquals(List.of(4), index.buscar("refrigerdor", false, 10));
+    }
+
+    @Test
+    void testBuscar_OrdenaPorRelevanciaYExigeTodosLosTerminos() {
+        // "solar" está en el nombre de ambos; "lampara" pesa más en el nombre del 1
+        assertEquals(List.of(1, 2), index.buscar("lampara solar", true, 10));
+        assertEquals(List.of(2), index.buscar("solar portatil", true, 10));
+        assertTrue(index.buscar("solar inexistente", true, 10).isEmpty());
+    }
+
+    @Test
+    void testBuscar_SoloActivosYLimite() {
+        assertTrue(index.buscar("refrigerador", true, 10).isEmpty());
+        assertEquals(List.of(4), index.buscar("refrigerador", false, 10));
+        assertEquals(1, index.buscar("solar", true, 1).size());
+        assertTrue(index.buscar("  ", true, 10).isEmpty());
+    }
+
+    @Test
+    void testIndexarYEliminar_ActualizanSinReconstruir() {
+        index.indexar(new DocumentoProducto(3, "Termo de bambú", null, "Hogar", null, true));
+        assertTrue(index.buscar("botella", true, 10).isEmpty());
+        assertEquals(List.of(3), index.buscar("bambu", true, 10));
+
+        index.indexar(new DocumentoProducto(5, "Lámpara de bambú", null, "Iluminación", null, true));
+        assertEquals(List.of(5), index.buscar("lampara bambu", true, 10));
+
+        index.eliminar(5);
+        assertEquals(List.of(3), index.buscar("bambu", true, 10));
+    }
+
+    @Test
+    void testAnalizar() {
+        assertEquals(List.of("lampara", "solar", "jardin"), ProductoSearchIndex.analizar("Lámparas solares para el jardín"));
+        assertEquals(1, ProductoSearchIndex.distancia("botela", "botella", 2));
+        assertEquals(3, ProductoSearchIndex.distancia("abc", "xyz", 2));
+    }
+}
@@ -8,18 +8,24 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -30,13 +36,21 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
+import com.ecovivashop.dto.ProductoCatalogoDTO;
+import com.ecovivashop.dto.ProductoFacetasDTO;
+import com.ecovivashop.dto.ProductoFiltro;
 import com.ecovivashop.entity.Inventario;
 import com.ecovivashop.entity.PedidoDetalle;
 import com.ecovivashop.entity.Producto;
 import com.ecovivashop.repository.InventarioRepository;
 import com.ecovivashop.repository.ProductoRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 @ExtendWith(MockitoExtension.class)
 class ProductoServiceTest {
 
@@ -46,6 +60,15 @@ class ProductoServiceTest {
     @Mock
     private InventarioRepository inventarioRepository;
 
+    @Mock
+    private ProductoSearchIndex productoSearchIndex;
+
+    @Mock
+    private Executor cacheExecutor;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private ProductoService productoService;
 
@@ -171,6 +194,76 @@ class ProductoServiceTest {
         verify(productoRepository, times(1)).findByIdWithInventario(1);
     }
 
+    @Test
+    void testAlModificarProducto_InvalidaSuEntradaYLaListaDeActivos() {
+        Producto producto = createTestProducto();
+        when(productoRepository.findByIdWithInventario(1)).thenReturn(Optional.of(producto));
+        when(productoRepository.findByEstadoTrue()).thenReturn(List.of(producto));
+        productoService.findById(1);
+        productoService.findById(2);
+        productoService.obtenerProductosActivos();
+
+        productoService.alModificarProducto(ProductoModificadoEvent.guardado(producto));
+        productoService.findById(1);
+        productoService.findById(2);
+        productoService.obtenerProductosActivos();
+
+        verify(productoRepository, times(2)).findByIdWithInventario(1);
+        verify(productoRepository, times(1)).findByIdWithInventario(2);
+        verify(productoRepository, times(2)).findByEstadoTrue();
+        assertEquals(1.0, meterRegistry.get("productos.cache.invalidaciones").tag("evento", "producto").counter().count());
+    }
+
+    @Test
+    void testAlModificarInventario_SoloInvalidaLasPaginasAfectadas() {
+        when(productoRepository.findCatalogoDespuesDe(0, Pageable.ofSize(2))).thenReturn(List.of(crearTarjeta(1, 5), crearTarjeta(2, 5)));
+        when(productoRepository.findCatalogoDespuesDe(2, Pageable.ofSize(2))).thenReturn(List.of(crearTarjeta(3, 5)));
+        when(productoRepository.countByEstadoTrue()).thenReturn(3L);
+        productoService.obtenerPaginaCatalogo(0, 2, null);
+        productoService.obtenerPaginaCatalogo(1, 2, 2);
+
+        productoService.alModificarInventario(InventarioModificadoEvent.deProductos(List.of(3)));
+        productoService.obtenerPaginaCatalogo(0, 2, null);
+        productoService.obtenerPaginaCatalogo(1, 2, 2);
+
+        verify(productoRepository, times(1)).findCatalogoDespuesDe(0, Pageable.ofSize(2));
+        verify(productoRepository, times(2)).findCatalogoDespuesDe(2, Pageable.ofSize(2));
+        verify(productoRepository, times(1)).countByEstadoTrue();
+    }
+
+    @Test
+    void testAlModificarInventario_RecargaLaListaDeActivos() {
+        Producto anterior = createTestProducto();
+        Producto actualizado = createTestProducto();
+        when(productoRepository.findByEstadoTrue()).thenReturn(List.of(anterior)).thenReturn(List.of(actualizado));
+        doAnswer(invocacion -> {
+            invocacion.<Runnable>getArgument(0).run();
+            return null;
+        }).when(cacheExecutor).execute(any(Runnable.class));
+
+        // Sin lista en caché no hay nada que recargar
+        productoService.alModificarInventario(InventarioModificadoEvent.deProductos(List.of(1)));
+        verify(productoRepository, never()).findByEstadoTrue();
+
+        assertSame(anterior, productoService.obtenerProductosActivos().get(0));
+        productoService.alModificarInventario(InventarioModificadoEvent.deProductos(List.of(1)));
+
+        assertSame(actualizado, productoService.obtenerProductosActivos().get(0));
+        verify(productoRepository, times(2)).findByEstadoTrue();
+    }
+
+    @Test
+    void testCaches_PublicanMetricasDeAciertosYFallos() {
+        when(productoRepository.findByIdWithInventario(1)).thenReturn(Optional.of(createTestProducto()));
+
+        productoService.findById(1);
+        productoService.findById(1);
+        productoService.findById(1);
+
+        assertEquals(2.0, meterRegistry.get("cache.gets").tag("cache", "producto").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "producto").tag("result", "miss").functionCounter().count());
+    }
+
     @Test
     void testFindById_NotFound() {
         when(productoRepository.findByIdWithInventario(999)).thenReturn(Optional.empty());
@@ -327,6 +420,96 @@ class ProductoServiceTest {
         verify(productoRepository, times(1)).buscarProductosPaginado("test", pageable);
     }
 
+    @Test
+    void testBuscarProductos_ConIndiceRespetaRelevancia() {
+        Producto primero = createTestProducto();
+        primero.setIdProducto(7);
+        Producto segundo = createTestProducto();
+        segundo.setIdProducto(3);
+        when(productoSearchIndex.isListo()).thenReturn(true);
+        when(productoSearchIndex.buscar("lampara", false)).thenReturn(List.of(7, 3));
+        when(productoRepository.findByIdsWithInventario(List.of(7, 3))).thenReturn(List.of(segundo, primero));
+
+        List<Producto> result = productoService.buscarProductos("lampara");
+
+        assertEquals(List.of(7, 3), result.stream().map(Producto::getIdProducto).toList());
+        verify(productoRepository, never()).buscarProductos(any());
+    }
+
+    @Test
+    void testBuscarProductosPaginado_ConIndiceCargaSoloLaPagina() {
+        Producto producto = createTestProducto();
+        producto.setIdProducto(3);
+        when(productoSearchIndex.isListo()).thenReturn(true);
+        when(productoSearchIndex.buscar("solar", true)).thenReturn(List.of(5, 4, 3));
+        when(productoRepository.findByIdsWithInventario(List.of(3))).thenReturn(List.of(producto));
+
+        Page<Producto> result = productoService.buscarProductosPaginado("solar", PageRequest.of(1, 2));
+
+        assertEquals(3, result.getTotalElements());
+        assertEquals(1, result.getContent().size());
+        assertEquals(3, result.getContent().get(0).getIdProducto());
+        verify(productoRepository, never()).buscarProductosPaginado(any(), any());
+    }
+
+    @Test
+    void testBuscarProductosPaginado_ConIndiceCuentaTodasLasCoincidencias() {
+        List<Integer> ids = IntStream.rangeClosed(1, 1500).boxed().toList();
+        when(productoSearchIndex.isListo()).thenReturn(true);
+        when(productoSearchIndex.buscar("solar", true)).thenReturn(ids);
+        when(productoRepository.findByIdsWithInventario(List.of(1491, 1492, 1493, 1494, 1495, 1496, 1497, 1498, 1499, 1500)))
+            .thenReturn(List.of());
+
+        Page<Producto> result = productoService.buscarProductosPaginado("solar", PageRequest.of(149, 10));
+
+        assertEquals(1500, result.getTotalElements());
+        assertEquals(150, result.getTotalPages());
+    }
+
+    @Test
+    void testBuscarProductosPaginado_DemasiadasCoincidenciasOrdenaPorTextoEnBaseDeDatos() {
+        // Más ids de los que admite un IN en PostgreSQL
+        List<Integer> ids = IntStream.rangeClosed(1, 70_000).boxed().toList();
+        Pageable pageable = PageRequest.of(3, 10, Sort.by("precio"));
+        when(productoSearchIndex.isListo()).thenReturn(true);
+        when(productoSearchIndex.buscar("solar", true)).thenReturn(ids);
+        when(productoRepository.buscarProductosPaginado("solar", pageable))
+            .thenReturn(new PageImpl<>(createTestProductos(), pageable, 70_000));
+
+        Page<Producto> result = productoService.buscarProductosPaginado("solar", pageable);
+
+        assertEquals(70_000, result.getTotalElements());
+        verify(productoRepository, never()).findByIdProductoIn(any(), any());
+        verify(productoRepository, never()).findByIdsWithInventario(any());
+    }
+
+    @Test
+    void testBuscarProductos_ConIndiceCargaEnLotes() {
+        List<Integer> ids = IntStream.rangeClosed(1, 2500).boxed().toList();
+        when(productoSearchIndex.isListo()).thenReturn(true);
+        when(productoSearchIndex.buscar("solar", false)).thenReturn(ids);
+        when(productoRepository.findByIdsWithInventario(any())).thenReturn(List.of());
+
+        productoService.buscarProductos("solar");
+
+        verify(productoRepository).findByIdsWithInventario(ids.subList(0, 1000));
+        verify(productoRepository).findByIdsWithInventario(ids.subList(1000, 2000));
+        verify(productoRepository).findByIdsWithInventario(ids.subList(2000, 2500));
+    }
+
+    @Test
+    void testBuscarProductosPaginado_ConIndiceYOrdenDelegaEnBaseDeDatos() {
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("precio"));
+        Page<Producto> page = new PageImpl<>(createTestProductos(), pageable, 2);
+        when(productoSearchIndex.isListo()).thenReturn(true);
+        when(productoSearchIndex.buscar("solar", true)).thenReturn(List.of(2, 1));
+        when(productoRepository.findByIdProductoIn(List.of(2, 1), pageable)).thenReturn(page);
+
+        Page<Producto> result = productoService.buscarProductosPaginado("solar", pageable);
+
+        assertEquals(2, result.getContent().size());
+    }
+
     @Test
     void testObtenerProductosEcoAmigables() {
         List<Producto> productos = createTestProductos();
@@ -777,89 +960,155 @@ class ProductoServiceTest {
     }
 
     @Test
-    void testBuscarProductosConFiltros_SinFiltros() {
+    @SuppressWarnings("unchecked")
+    void testBuscarProductosConFiltros_UsaUnaSolaEspecificacion() {
         List<Producto> productos = createTestProductos();
         Pageable pageable = PageRequest.of(0, 10);
         Page<Producto> page = new PageImpl<>(productos, pageable, productos.size());
-        when(productoRepository.findByEstadoTrueWithInventario(pageable)).thenReturn(page);
+        when(productoRepository.findAll(any(Specification.class), eq(pageable))).thenReturn(page);
 
-        Page<Producto> result = productoService.buscarProductosConFiltros(null, null, null, null, pageable);
+        Page<Producto> sinFiltros = productoService.buscarProductosConFiltros(null, null, null, null, pageable);
+        Page<Producto> combinados = productoService.buscarProductosConFiltros("test", "Electrónicos", "50.00", null, pageable);
 
-        assertNotNull(result);
-        assertEquals(2, result.getContent().size());
-        verify(productoRepository, times(1)).findByEstadoTrueWithInventario(pageable);
+        assertEquals(2, sinFiltros.getContent().size());
+        assertEquals(2, combinados.getContent().size());
+        verify(productoRepository, times(2)).findAll(any(Specification.class), eq(pageable));
     }
 
     @Test
-    void testBuscarProductosConFiltros_SoloBusqueda() {
-        List<Producto> productos = createTestProductos();
+    @SuppressWarnings("unchecked")
+    void testBuscarProductosConFiltros_BusquedaConIndice() {
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Producto> page = new PageImpl<>(productos, pageable, productos.size());
-        when(productoRepository.buscarProductosPaginadoWithInventario("test", pageable)).thenReturn(page);
+        when(productoSearchIndex.isListo()).thenReturn(true);
+        when(productoSearchIndex.buscar("test", true)).thenReturn(List.of(1, 2));
+        when(productoRepository.findAll(any(Specification.class), eq(pageable)))
+            .thenReturn(new PageImpl<>(createTestProductos(), pageable, 2));
 
         Page<Producto> result = productoService.buscarProductosConFiltros("test", null, null, null, pageable);
 
-        assertNotNull(result);
         assertEquals(2, result.getContent().size());
-        verify(productoRepository, times(1)).buscarProductosPaginadoWithInventario("test", pageable);
+        verify(productoSearchIndex).buscar("test", true);
     }
 
     @Test
-    void testBuscarProductosConFiltros_BusquedaYCategoria() {
-        List<Producto> productos = createTestProductos();
-        Pageable pageable = PageRequest.of(0, 10);
-        Page<Producto> page = new PageImpl<>(productos, pageable, productos.size());
-        when(productoRepository.findByNombreContainingIgnoreCaseAndCategoriaAndEstadoTrue(
-            "test", "Electrónicos", pageable)).thenReturn(page);
+    @SuppressWarnings("unchecked")
+    void testBuscarCatalogo_MapeaTarjetasConStock() {
+        Producto producto = createTestProducto();
+        Inventario inventario = new Inventario();
+        inventario.setStock(4);
+        producto.setInventario(inventario);
+        when(productoRepository.findAll(any(Specification.class), any(Pageable.class)))
+            .thenReturn(new PageImpl<>(List.of(producto)));
 
-        Page<Producto> result = productoService.buscarProductosConFiltros("test", "Electrónicos", null, null, pageable);
+        Page<ProductoCatalogoDTO> result = productoService.buscarCatalogo(
+            ProductoFiltro.desdeParametros(null, null, "Marca Test", null, null, "7", true), PageRequest.of(0, 500));
 
-        assertNotNull(result);
-        assertEquals(2, result.getContent().size());
-        verify(productoRepository, times(1)).findByNombreContainingIgnoreCaseAndCategoriaAndEstadoTrue(
-            "test", "Electrónicos", pageable);
+        assertEquals(1, result.getContent().size());
+        assertEquals(4, result.getContent().get(0).getStock());
+        assertTrue(result.getContent().get(0).isStockBajo());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testObtenerFacetas_UnaConsultaAgrupadaCacheada() {
+        List<Object[]> filas = new ArrayList<>();
+        filas.add(new Object[] {"Hogar", "Verde", 3L, 2L});
+        filas.add(new Object[] {"Hogar", "Sol", 1L, 0L});
+        filas.add(new Object[] {"Energía", "Sol", 2L, 2L});
+        when(productoRepository.contarFacetas(any(Specification.class))).thenReturn(filas);
+
+        ProductoFacetasDTO facetas = productoService.obtenerFacetas(
+            ProductoFiltro.desdeParametros(null, "Hogar", null, null, null, null, false));
+        // Otra categoría con el resto de filtros iguales reutiliza los conteos
+        ProductoFacetasDTO otraCategoria = productoService.obtenerFacetas(
+            ProductoFiltro.desdeParametros(null, "Energía", null, null, null, null, false));
+
+        assertEquals(4L, facetas.getCantidadCategoria("Hogar"));
+        assertEquals(3L, facetas.getMarcas().get("Sol"));
+        assertEquals(6L, facetas.getTotal());
+        assertEquals(4L, facetas.getConStock());
+        assertEquals(0L, facetas.getCantidadCategoria("Inexistente"));
+        assertEquals(facetas, otraCategoria);
+        verify(productoRepository, times(1)).contarFacetas(any(Specification.class));
+
+        productoService.invalidarCacheCatalogo();
+        productoService.obtenerFacetas(new ProductoFiltro());
+        verify(productoRepository, times(2)).contarFacetas(any(Specification.class));
     }
 
     @Test
-    void testBuscarProductosConFiltros_SoloCategoria() {
+    void testFindByCategoria() {
         List<Producto> productos = createTestProductos();
-        Pageable pageable = PageRequest.of(0, 10);
-        Page<Producto> page = new PageImpl<>(productos, pageable, productos.size());
-        when(productoRepository.findByCategoriaAndEstadoTrueWithInventario("Electrónicos", pageable)).thenReturn(page);
+        when(productoRepository.findByCategoriaAndEstadoTrue("Electrónicos")).thenReturn(productos);
 
-        Page<Producto> result = productoService.buscarProductosConFiltros(null, "Electrónicos", null, null, pageable);
+        List<Producto> result = productoService.findByCategoria("Electrónicos");
 
         assertNotNull(result);
-        assertEquals(2, result.getContent().size());
-        verify(productoRepository, times(1)).findByCategoriaAndEstadoTrueWithInventario("Electrónicos", pageable);
+        assertEquals(2, result.size());
+        assertEquals("Electrónicos", result.get(0).getCategoria());
+        verify(productoRepository, times(1)).findByCategoriaAndEstadoTrue("Electrónicos");
+    }
+
+    // ===== TESTS PARA EL CATÁLOGO PAGINADO POR KEYSET =====
+
+    private ProductoCatalogoDTO crearTarjeta(Integer id, Integer stock) {
+        return new ProductoCatalogoDTO(id, "Producto " + id, "Descripción", BigDecimal.TEN,
+                                       "Hogar", null, BigDecimal.valueOf(8), stock);
     }
 
     @Test
-    void testBuscarProductosConFiltros_SoloRangoPrecios() {
-        List<Producto> productos = createTestProductos();
-        Pageable pageable = PageRequest.of(0, 10);
-        Page<Producto> page = new PageImpl<>(productos, pageable, productos.size());
-        when(productoRepository.findByPrecioBetweenAndEstadoTrueWithInventario(
-            new BigDecimal("50.00"), new BigDecimal("150.00"), pageable)).thenReturn(page);
+    void testObtenerPaginaCatalogo_PrimeraPaginaCacheada() {
+        List<ProductoCatalogoDTO> tarjetas = List.of(crearTarjeta(1, 20), crearTarjeta(2, 0));
+        when(productoRepository.findCatalogoDespuesDe(0, Pageable.ofSize(12))).thenReturn(tarjetas);
+        when(productoRepository.countByEstadoTrue()).thenReturn(30L);
+
+        Page<ProductoCatalogoDTO> primera = productoService.obtenerPaginaCatalogo(0, 12, null);
+        Page<ProductoCatalogoDTO> repetida = productoService.obtenerPaginaCatalogo(0, 12, null);
+
+        assertEquals(tarjetas, primera.getContent());
+        assertEquals(30L, primera.getTotalElements());
+        assertEquals(3, primera.getTotalPages());
+        assertEquals(tarjetas, repetida.getContent());
+        verify(productoRepository, times(1)).findCatalogoDespuesDe(0, Pageable.ofSize(12));
+        verify(productoRepository, times(1)).countByEstadoTrue();
+        verify(productoRepository, never()).findByEstadoTrue();
+    }
 
-        Page<Producto> result = productoService.buscarProductosConFiltros(null, null, "50.00", "150.00", pageable);
+    @Test
+    void testObtenerPaginaCatalogo_PaginaNumeradaLocalizaInicio() {
+        // La página 2 empieza después del producto en la posición 23
+        when(productoRepository.findIdsCatalogo(PageRequest.of(23, 1))).thenReturn(List.of(57));
+        when(productoRepository.findCatalogoDespuesDe(57, Pageable.ofSize(12))).thenReturn(List.of(crearTarjeta(58, 3)));
+        when(productoRepository.countByEstadoTrue()).thenReturn(30L);
 
-        assertNotNull(result);
-        assertEquals(2, result.getContent().size());
-        verify(productoRepository, times(1)).findByPrecioBetweenAndEstadoTrueWithInventario(
-            new BigDecimal("50.00"), new BigDecimal("150.00"), pageable);
+        Page<ProductoCatalogoDTO> pagina = productoService.obtenerPaginaCatalogo(2, 12, null);
+
+        assertEquals(2, pagina.getNumber());
+        assertEquals(58, pagina.getContent().get(0).getIdProducto());
+        assertTrue(pagina.getContent().get(0).isStockBajo());
     }
 
     @Test
-    void testFindByCategoria() {
-        List<Producto> productos = createTestProductos();
-        when(productoRepository.findByCategoriaAndEstadoTrue("Electrónicos")).thenReturn(productos);
+    void testObtenerPaginaCatalogo_SaltoProfundoSinCursorNoUsaOffset() {
+        when(productoRepository.findCatalogoDespuesDe(Integer.MAX_VALUE, Pageable.ofSize(12))).thenReturn(List.of());
+        when(productoRepository.countByEstadoTrue()).thenReturn(100_000L);
 
-        List<Producto> result = productoService.findByCategoria("Electrónicos");
+        Page<ProductoCatalogoDTO> pagina = productoService.obtenerPaginaCatalogo(
+            ProductoService.PAGINA_MAXIMA_SIN_CURSOR + 1, 12, null);
 
-        assertNotNull(result);
-        assertEquals(2, result.size());
-        assertEquals("Electrónicos", result.get(0).getCategoria());
-        verify(productoRepository, times(1)).findByCategoriaAndEstadoTrue("Electrónicos");
+        assertFalse(pagina.hasContent());
+        verify(productoRepository, never()).findIdsCatalogo(any());
+    }
+
+    @Test
+    void testObtenerPaginaCatalogo_CursorYTamanoMaximo() {
+        when(productoRepository.findCatalogoDespuesDe(40, Pageable.ofSize(48))).thenReturn(List.of());
+        when(productoRepository.countByEstadoTrue()).thenReturn(40L);
+
+        Page<ProductoCatalogoDTO> pagina = productoService.obtenerPaginaCatalogo(1, 10_000, 40);
+
+        assertEquals(48, pagina.getSize());
+        assertFalse(pagina.hasContent());
+        verify(productoRepository, never()).findIdsCatalogo(any());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,105 @@
+package com.ecovivashop.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servidor SMTP mínimo para pruebas: acepta cualquier remitente, rechaza los
+ * destinatarios que empiezan por "rechazado" y guarda los destinatarios de
+ * cada mensaje aceptado.
+ */
+class SmtpServidorPrueba implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final Thread hilo;
+    private final AtomicInteger conexiones = new AtomicInteger();
+    private final List<String> destinatariosRecibidos = new CopyOnWriteArrayList<>();
+
+    SmtpServidorPrueba() throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.hilo = new Thread(this::aceptar, "smtp-prueba");
+        this.hilo.setDaemon(true);
+        this.hilo.start();
+    }
+
+    int getPuerto() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    int getConexiones() {
+        return this.conexiones.get();
+    }
+
+    List<String> getDestinatariosRecibidos() {
+        return this.destinatariosRecibidos;
+    }
+
+    private void aceptar() {
+        while (!this.serverSocket.isClosed()) {
+            try (Socket socket = this.serverSocket.accept()) {
+                this.conexiones.incrementAndGet();
+                atender(socket);
+            } catch (IOException e) {
+                // Servidor cerrado
+            }
+        }
+    }
+
+    private void atender(Socket socket) throws IOException {
+        BufferedReader entrada = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        OutputStream salida = socket.getOutputStream();
+        responder(salida, "220 localhost SMTP de prueba");
+
+        String destinatario = null;
+        String linea;
+        while ((linea = entrada.readLine()) != null) {
+            String comando = linea.toUpperCase();
+            if (comando.startsWith("EHLO") || comando.startsWith("HELO")) {
+                responder(salida, "250 localhost");
+            } else if (comando.startsWith("MAIL FROM")) {
+                destinatario = null;
+                responder(salida, "250 OK");
+            } else if (comando.startsWith("RCPT TO")) {
+                String direccion = linea.substring(linea.indexOf('<') + 1, linea.indexOf('>'));
+                if (direccion.startsWith("rechazado")) {
+                    responder(salida, "550 Buzón no disponible");
+                } else {
+                    destinatario = direccion;
+                    responder(salida, "250 OK");
+                }
+            } else if (comando.startsWith("DATA")) {
+                responder(salida, "354 Fin con <CRLF>.<CRLF>");
+                while ((linea = entrada.readLine()) != null && !linea.equals(".")) {
+                    // Cuerpo del mensaje
+                }
+                this.destinatariosRecibidos.add(destinatario);
+                responder(salida, "250 OK");
+            } else if (comando.startsWith("QUIT")) {
+                responder(salida, "221 Adiós");
+                return;
+            } else {
+                // RSET, NOOP y demás
+                responder(salida, "250 OK");
+            }
+        }
+    }
+
+    private static void responder(OutputStream salida, String respuesta) throws IOException {
+        salida.write((respuesta + "\r\n").getBytes(StandardCharsets.UTF_8));
+        salida.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+    }
+}
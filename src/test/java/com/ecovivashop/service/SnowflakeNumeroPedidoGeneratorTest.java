@@ -0,0 +1,149 @@
+package com.ecovivashop.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.ConfigDataApplicationContextInitializer;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.NestedExceptionUtils;
+
+import com.ecovivashop.config.AppProperties;
+
+class SnowflakeNumeroPedidoGeneratorTest {
+
+    private static final int HILOS = 16;
+    private static final int PEDIDOS_POR_HILO = 10_000;
+
+    @Test
+    void testGenerar_SinColisionesBajoConcurrencia() throws Exception {
+        // Dos instancias de la aplicación generando a la vez
+        SnowflakeNumeroPedidoGenerator nodoA = new SnowflakeNumeroPedidoGenerator("ECO-", 1, System::currentTimeMillis);
+        SnowflakeNumeroPedidoGenerator nodoB = new SnowflakeNumeroPedidoGenerator("ECO-", 2, System::currentTimeMillis);
+        Set<String> numeros = ConcurrentHashMap.newKeySet();
+        CountDownLatch salida = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(HILOS);
+        List<Future<Boolean>> resultados = new ArrayList<>();
+        for (int h = 0; h < HILOS; h++) {
+            SnowflakeNumeroPedidoGenerator generador = h % 2 == 0 ? nodoA : nodoB;
+            resultados.add(pool.submit(() -> {
+                salida.await();
+                String anterior = "";
+                boolean creciente = true;
+                for (int i = 0; i < PEDIDOS_POR_HILO; i++) {
+                    String numero = generador.generar();
+                    creciente &= numero.compareTo(anterior) > 0;
+                    anterior = numero;
+                    numeros.add(numero);
+                }
+                return creciente;
+            }));
+        }
+
+        long inicio = System.nanoTime();
+        salida.countDown();
+        for (Future<Boolean> resultado : resultados) {
+            assertTrue(resultado.get(), "Los números de un nodo deben ser crecientes");
+        }
+        double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(HILOS * PEDIDOS_POR_HILO, numeros.size());
+        assertTrue(HILOS * PEDIDOS_POR_HILO / segundos > 10_000,
+            "Se esperaban más de 10.000 pedidos/s, se obtuvieron " + (long) (HILOS * PEDIDOS_POR_HILO / segundos));
+    }
+
+    @Test
+    void testGenerar_FormatoCabeEnColumna() {
+        SnowflakeNumeroPedidoGenerator generador = new SnowflakeNumeroPedidoGenerator("ECO-", 1023, System::currentTimeMillis);
+
+        String numero = generador.generar();
+
+        assertTrue(numero.matches("ECO-[0-9A-Z]{13}"), numero);
+        assertTrue(numero.length() <= 20);
+    }
+
+    @Test
+    void testGenerar_RelojRetrocedeSigueCreciendo() {
+        AtomicLong reloj = new AtomicLong(SnowflakeNumeroPedidoGenerator.EPOCA + 1_000_000);
+        SnowflakeNumeroPedidoGenerator generador = new SnowflakeNumeroPedidoGenerator("ECO-", 5, reloj::get);
+
+        String primero = generador.generar();
+        reloj.addAndGet(-10_000);
+        String segundo = generador.generar();
+
+        assertTrue(segundo.compareTo(primero) > 0);
+    }
+
+    @Test
+    void testGenerar_SecuenciaAgotadaNoRepite() {
+        // Reloj congelado: más de 4096 números en el mismo milisegundo
+        long ahora = SnowflakeNumeroPedidoGenerator.EPOCA + 42;
+        SnowflakeNumeroPedidoGenerator generador = new SnowflakeNumeroPedidoGenerator("ECO-", 7, () -> ahora);
+
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(generador.siguienteId());
+        }
+
+        assertEquals(10_000, ids.size());
+    }
+
+    @Test
+    void testConstructor_ParametrosInvalidos() {
+        assertThrows(IllegalArgumentException.class, () ->
+            new SnowflakeNumeroPedidoGenerator("ECO-", 1024, System::currentTimeMillis));
+        assertThrows(IllegalArgumentException.class, () ->
+            new SnowflakeNumeroPedidoGenerator("PREFIJO-LARGO-", 1, System::currentTimeMillis));
+    }
+
+    @Test
+    void testConstructorSpring_UsaElNodoConfigurado() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getPedidos().setNodoId(42);
+
+        new ApplicationContextRunner()
+            .withBean(AppProperties.class, () -> appProperties)
+            .withBean(SnowflakeNumeroPedidoGenerator.class)
+            .run(contexto -> {
+                assertNull(contexto.getStartupFailure());
+                assertEquals(42, contexto.getBean(SnowflakeNumeroPedidoGenerator.class).getNodo());
+            });
+    }
+
+    @Test
+    void testConstructorSpring_SinNodoNoArranca() {
+        // Con el application.properties real, como en producción sin APP_PEDIDOS_NODOID
+        new ApplicationContextRunner()
+            .withInitializer(new ConfigDataApplicationContextInitializer())
+            .withUserConfiguration(AppProperties.class)
+            .withBean(SnowflakeNumeroPedidoGenerator.class)
+            .run(contexto -> assertInstanceOf(IllegalStateException.class,
+                NestedExceptionUtils.getRootCause(contexto.getStartupFailure())));
+    }
+
+    @Test
+    void testConstructorSpring_NodoDesdeLaConfiguracion() {
+        new ApplicationContextRunner()
+            .withInitializer(new ConfigDataApplicationContextInitializer())
+            .withUserConfiguration(AppProperties.class)
+            .withBean(SnowflakeNumeroPedidoGenerator.class)
+            .withPropertyValues("app.pedidos.nodo-id=3")
+            .run(contexto -> assertEquals(3, contexto.getBean(SnowflakeNumeroPedidoGenerator.class).getNodo()));
+    }
+}